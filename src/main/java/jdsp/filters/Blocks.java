@@ -0,0 +1,31 @@
+/**
+ * Bounds checks of caller supplied buffers.
+ *
+ * @author Keith Chow
+ */
+package net.kcundercover.jdsp.filters;
+
+/**
+ * Bounds check shared by the filters that process blocks of caller
+ * supplied arrays.
+ */
+final class Blocks {
+    private Blocks() {}
+
+    /**
+     * Throw if either block is outside its array
+     * @param srcLength Length of the input array
+     * @param srcOff Offset of the first input value
+     * @param numIn Number of input values
+     * @param dstLength Length of the output array
+     * @param dstOff Offset of the first output value
+     * @param numOut Number of output values
+     */
+    static void check(int srcLength, int srcOff, int numIn,
+            int dstLength, int dstOff, long numOut){
+        if (numIn < 0 || srcOff < 0 || dstOff < 0 ||
+                srcOff > srcLength - numIn || dstOff > dstLength - numOut)
+            throw new IndexOutOfBoundsException(
+                "Block of " + numIn + " values does not fit the buffers");
+    }
+}
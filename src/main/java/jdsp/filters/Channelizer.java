@@ -0,0 +1,239 @@
+/**
+ * Polyphase FFT channelizer.
+ *
+ * @author Keith Chow
+ */
+package net.kcundercover.jdsp.filters;
+import java.util.Arrays;
+import net.kcundercover.jdsp.math.FftPlan;
+
+/**
+ * Analysis filter bank splitting complex baseband into K channels centered
+ * at k / K cycles per sample.  Channel k is the input mixed down by
+ * exp(-j 2 pi k n / K), filtered by the lowpass prototype h and decimated
+ * by D, where D = K (critically sampled) or K / 2 (2x oversampled):
+ * <pre>
+ * y_k[m] = sum_n h[n] x[mD - n] exp(-j 2 pi k (mD - n) / K)
+ * </pre>
+ * The prototype is split into K polyphase branches, and every output frame
+ * costs one pass over the taps plus a K point FFT across the branches,
+ * instead of filtering and mixing once per channel.
+ *
+ * The input history and the output phase are kept between calls, so a
+ * signal channelized in pieces gives the same frames as at once.
+ */
+public class Channelizer {
+    /** Taps per polyphase branch of the default prototype */
+    public final static int DEFAULT_TAPS_PER_BRANCH = 16;
+
+    /** New input samples per chunk */
+    private final static int CHUNK = 4096;
+
+    /** Number of channels K */
+    private final int numChannels;
+
+    /** Input samples per output frame D */
+    private final int decim;
+
+    /** Prototype split into branches, branches[r][p] = h[p K + r] */
+    private final double[][] branches;
+
+    /** Input samples kept between calls (P K - 1) */
+    private final int hist;
+
+    /** History followed by the current chunk */
+    private final double[] workReal, workImag;
+
+    /** Branch outputs, transformed in place into the channels */
+    private final double[] branchReal, branchImag;
+
+    /** Unscaled inverse FFT across the branches */
+    private final FftPlan plan;
+
+    /** Index of the newest sample of the next frame, relative to the next input */
+    private int next = 0;
+
+    /** True when the next frame has an odd index (oversampled phase) */
+    private boolean oddFrame = false;
+
+    /**
+     * Constructor with the default prototype
+     * @param numChannels Number of channels K
+     * @param oversampled True to decimate by K / 2 instead of K
+     * @see #designPrototype
+     */
+    public Channelizer(int numChannels, boolean oversampled){
+        this(numChannels, oversampled, designPrototype(numChannels));
+    }
+
+    /**
+     * Constructor
+     * @param numChannels Number of channels K
+     * @param oversampled True to decimate by K / 2 instead of K (K even)
+     * @param prototype Lowpass prototype at the input rate
+     */
+    public Channelizer(int numChannels, boolean oversampled, double[] prototype){
+        // ---------------------  error checking  ---------------------------
+        if (numChannels < 1)
+            throw new IllegalArgumentException("Expecting at least 1 channel");
+        if (oversampled && (numChannels & 1) == 1)
+            throw new IllegalArgumentException(
+                "Oversampling needs an even number of channels");
+        if (prototype.length < 1)
+            throw new IllegalArgumentException("Expecting at least 1 tap");
+
+        this.numChannels = numChannels;
+        this.decim = oversampled ? numChannels / 2 : numChannels;
+
+        // -----------------  split into polyphase branches  ----------------
+        int tapsPerBranch = (prototype.length + numChannels - 1) / numChannels;
+        branches = new double[numChannels][tapsPerBranch];
+        for (int ind0 = 0; ind0 < prototype.length; ind0++)
+            branches[ind0 % numChannels][ind0 / numChannels] = prototype[ind0];
+        hist = tapsPerBranch * numChannels - 1;
+
+        workReal = new double[hist + CHUNK];
+        workImag = new double[hist + CHUNK];
+        branchReal = new double[numChannels];
+        branchImag = new double[numChannels];
+        plan = FftPlan.of(numChannels, true, FftPlan.Precision.DOUBLE);
+    }
+
+    /**
+     * Design the default prototype, a Hamming window lowpass as wide as one
+     * channel with unity DC gain.
+     * @param numChannels Number of channels K
+     * @return Prototype taps at the input rate
+     */
+    public static double[] designPrototype(int numChannels){
+        double[] taps = FilterDesign.firWindowDesignD(
+            DEFAULT_TAPS_PER_BRANCH * numChannels, "HAMMING", 1.0 / numChannels);
+        double sum = 0;
+        for (double tap : taps)
+            sum += tap;
+        for (int ind0 = 0; ind0 < taps.length; ind0++)
+            taps[ind0] /= sum;
+        return taps;
+    }
+
+    // ======================================================================
+    // ----------------------------  getters  -------------------------------
+    // ======================================================================
+    /**
+     * Get the number of channels
+     * @return K
+     */
+    public int getNumChannels() { return numChannels; }
+
+    /**
+     * Get the number of input samples per output frame
+     * @return D (K or K / 2)
+     */
+    public int getDecimation() { return decim; }
+
+    /**
+     * Get the number of frames the next call will produce
+     * @param len Number of complex input samples of the next call
+     * @return Number of output frames
+     */
+    public int getNumFrames(int len){
+        return next < len ? (len - next + decim - 1) / decim : 0;
+    }
+
+    /** Clear the history and the output phase */
+    public void reset(){
+        Arrays.fill(workReal, 0, hist, 0);
+        Arrays.fill(workImag, 0, hist, 0);
+        next = 0;
+        oddFrame = false;
+    }
+
+    // ======================================================================
+    // ---------------------------  processing  -----------------------------
+    // ======================================================================
+    /**
+     * Channelize a block of complex interleaved samples.  Each frame holds
+     * the K channels of one output time as complex interleaved values:
+     * channel k of frame m is at dst[dstOff + 2 (m K + k)].  Nothing is
+     * allocated.
+     * @param src Complex interleaved input
+     * @param srcOff Offset (in doubles) of the first input sample
+     * @param dst Output frames (room for {@link #getNumFrames} frames)
+     * @param dstOff Offset (in doubles) of the first frame
+     * @param len Number of complex input samples
+     * @return Number of frames written
+     */
+    public int process(double[] src, int srcOff, double[] dst, int dstOff,
+            int len){
+        int numFrames = getNumFrames(len);
+        Blocks.check(src.length, srcOff, 2 * len, dst.length, dstOff,
+            2L * numFrames * numChannels);
+
+        int count = 0;
+        for (int pos = 0; pos < len; ){
+            int num = Math.min(CHUNK, len - pos);
+            for (int ind0 = 0; ind0 < num; ind0++){
+                workReal[hist + ind0] = src[srcOff + 2 * (pos + ind0)];
+                workImag[hist + ind0] = src[srcOff + 2 * (pos + ind0) + 1];
+            }
+            for (; next < num; next += decim)
+                frame(hist + next, dst, dstOff + 2 * numChannels * count++);
+            next -= num;
+            System.arraycopy(workReal, num, workReal, 0, hist);
+            System.arraycopy(workImag, num, workImag, 0, hist);
+            pos += num;
+        }
+        return count;
+    }
+
+    /**
+     * Channelize a block of complex interleaved samples.
+     * @param complexInput Complex interleaved input
+     * @return Complex interleaved stream of each channel, [K][2 * frames]
+     */
+    public double[][] process(double[] complexInput){
+        if (complexInput.length % 2 == 1)
+            throw new IllegalArgumentException(
+                "Expecting interleaved complex, should be even number");
+        int len = complexInput.length / 2;
+        int numFrames = getNumFrames(len);
+        double[] frames = new double[2 * numFrames * numChannels];
+        process(complexInput, 0, frames, 0, len);
+
+        double[][] output = new double[numChannels][2 * numFrames];
+        for (int frame = 0; frame < numFrames; frame++)
+            for (int chan = 0; chan < numChannels; chan++){
+                output[chan][2 * frame] = frames[2 * (frame * numChannels + chan)];
+                output[chan][2 * frame + 1] = frames[2 * (frame * numChannels + chan) + 1];
+            }
+        return output;
+    }
+
+    /** One frame whose newest input sample is work[newest] */
+    private void frame(int newest, double[] dst, int dstOff){
+        // ------------  branch r: sum_p h[p K + r] x[t - r - p K]  ---------
+        for (int branch = 0; branch < numChannels; branch++){
+            double[] taps = branches[branch];
+            double sumReal = 0, sumImag = 0;
+            for (int tap = 0, ind = newest - branch; tap < taps.length;
+                    tap++, ind -= numChannels){
+                sumReal += taps[tap] * workReal[ind];
+                sumImag += taps[tap] * workImag[ind];
+            }
+            branchReal[branch] = sumReal;
+            branchImag[branch] = sumImag;
+        }
+
+        // -----------  channels: sum_r v_r exp(+j 2 pi k r / K)  -----------
+        plan.executeSplit(branchReal, branchImag);
+
+        // oversampled: exp(-j 2 pi k m D / K) = (-1)^(k m)
+        boolean flip = decim != numChannels && oddFrame;
+        for (int chan = 0; chan < numChannels; chan++){
+            double sign = flip && (chan & 1) == 1 ? -1 : 1;
+            dst[dstOff + 2 * chan] = sign * branchReal[chan];
+            dst[dstOff + 2 * chan + 1] = sign * branchImag[chan];
+        }
+        oddFrame = !oddFrame;
+    }
+}
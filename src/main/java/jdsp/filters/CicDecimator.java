@@ -0,0 +1,356 @@
+/**
+ * Cascaded integrator-comb decimator.
+ *
+ * @author Keith Chow
+ */
+package net.kcundercover.jdsp.filters;
+import java.util.Arrays;
+
+/**
+ * Multiplierless CIC decimator for 16 bit samples, e.g. from
+ * {@link net.kcundercover.jdsp.io.FileReader#loadSignalRawShort}.  N
+ * integrators run at the input rate, the signal is decimated by R, then N
+ * combs with differential delay M run at the output rate.  The response is
+ * (sum_{k &lt; RM} z^-k)^N with a DC gain of (RM)^N.
+ *
+ * The registers are two's complement and are allowed to wrap: as long as
+ * they are as wide as the output (16 + ceil(N log2(RM)) bits) the
+ * integrator overflows cancel in the combs and the output is exact.  int
+ * registers are used when the output fits in 32 bits, long otherwise.
+ * The state carries over between calls (one real or complex stream per
+ * instance).
+ */
+public class CicDecimator {
+    /** Bits of the input samples */
+    public final static int INPUT_BITS = 16;
+
+    /** Outputs per chunk of the floating point methods */
+    private final static int CHUNK = 1024;
+
+    /** Number of integrator / comb stages N */
+    private final int order;
+
+    /** Decimation ratio R */
+    private final int ratio;
+
+    /** Differential delay M of the combs */
+    private final int diffDelay;
+
+    /** Bits of the output (and of the registers needed) */
+    private final int outputBits;
+
+    /** Registers per channel (real or I, Q), only one width allocated */
+    private final int[][] integInt;
+    private final int[][][] combInt;
+    private final long[][] integLong;
+    private final long[][][] combLong;
+
+    /** Inputs since the last output and comb delay line index, per channel */
+    private final int[] phases = new int[2];
+    private final int[] combIndex = new int[2];
+
+    /** Raw outputs of the floating point methods */
+    private final long[] scratch = new long[2 * CHUNK];
+
+    /**
+     * Constructor
+     * @param order Number of integrator / comb stages N
+     * @param ratio Decimation ratio R
+     * @param diffDelay Differential delay M (usually 1 or 2)
+     */
+    public CicDecimator(int order, int ratio, int diffDelay){
+        // ---------------------  error checking  ---------------------------
+        if (order < 1 || ratio < 1 || diffDelay < 1)
+            throw new IllegalArgumentException(
+                "Order, ratio and differential delay should be >= 1");
+        outputBits = INPUT_BITS + bitGrowth(order, ratio, diffDelay);
+        if (outputBits > Long.SIZE)
+            throw new IllegalArgumentException("Output needs " + outputBits +
+                " bits, more than a long register");
+
+        this.order = order;
+        this.ratio = ratio;
+        this.diffDelay = diffDelay;
+        if (outputBits <= Integer.SIZE){
+            integInt = new int[2][order];
+            combInt = new int[2][order][diffDelay];
+            integLong = null;
+            combLong = null;
+        }
+        else{
+            integInt = null;
+            combInt = null;
+            integLong = new long[2][order];
+            combLong = new long[2][order][diffDelay];
+        }
+    }
+
+    /**
+     * Register growth of a CIC filter
+     * @param order Number of stages N
+     * @param ratio Rate change R
+     * @param diffDelay Differential delay M
+     * @return ceil(N log2(RM)) bits
+     */
+    static int bitGrowth(int order, int ratio, int diffDelay){
+        double bits = order * Math.log((double) ratio * diffDelay) / Math.log(2);
+        return (int) Math.ceil(bits - 1e-9);
+    }
+
+    // ======================================================================
+    // ----------------------------  getters  -------------------------------
+    // ======================================================================
+    /**
+     * Get the number of stages
+     * @return N
+     */
+    public int getOrder() { return order; }
+
+    /**
+     * Get the decimation ratio
+     * @return R
+     */
+    public int getRatio() { return ratio; }
+
+    /**
+     * Get the differential delay
+     * @return M
+     */
+    public int getDiffDelay() { return diffDelay; }
+
+    /**
+     * Get the width of the output and of the registers needed
+     * @return 16 + ceil(N log2(RM)) bits
+     */
+    public int getOutputBits() { return outputBits; }
+
+    /**
+     * Check if long registers are used
+     * @return True if the output does not fit in 32 bits
+     */
+    public boolean isLongAccumulator() { return integLong != null; }
+
+    /**
+     * Get the DC gain, removed by the floating point methods
+     * @return (RM)^N
+     */
+    public double getGain() {
+        return Math.pow((double) ratio * diffDelay, order);
+    }
+
+    /**
+     * Get the number of outputs the next call will produce
+     * @param len Number of (real or complex) input samples of the next call
+     * @return Number of output samples
+     */
+    public int getNumOutputs(int len){
+        return (int) (((long) phases[0] + len) / ratio);
+    }
+
+    /** Clear the registers and the decimation phase */
+    public void reset(){
+        for (int ch = 0; ch < 2; ch++){
+            if (integInt != null){
+                Arrays.fill(integInt[ch], 0);
+                for (int[] comb : combInt[ch])
+                    Arrays.fill(comb, 0);
+            }
+            else{
+                Arrays.fill(integLong[ch], 0);
+                for (long[] comb : combLong[ch])
+                    Arrays.fill(comb, 0);
+            }
+        }
+        Arrays.fill(phases, 0);
+        Arrays.fill(combIndex, 0);
+    }
+
+    // ======================================================================
+    // ---------------------------  processing  -----------------------------
+    // ======================================================================
+    /**
+     * Decimate real samples, full precision output.  Nothing is allocated.
+     * @param src Input samples
+     * @param srcOff Offset of the first input sample
+     * @param dst Output samples (room for {@link #getNumOutputs} samples)
+     * @param dstOff Offset of the first output sample
+     * @param len Number of input samples
+     * @return Number of output samples written
+     */
+    public int process(short[] src, int srcOff, long[] dst, int dstOff, int len){
+        Blocks.check(src.length, srcOff, len, dst.length, dstOff,
+            getNumOutputs(len));
+        return decimate(src, srcOff, 1, len, 0, dst, dstOff, 1);
+    }
+
+    /**
+     * Decimate real samples, output scaled by 1 / gain.  Nothing is allocated.
+     * @param src Input samples
+     * @param srcOff Offset of the first input sample
+     * @param dst Output samples (room for {@link #getNumOutputs} samples)
+     * @param dstOff Offset of the first output sample
+     * @param len Number of input samples
+     * @return Number of output samples written
+     */
+    public int process(short[] src, int srcOff, double[] dst, int dstOff, int len){
+        Blocks.check(src.length, srcOff, len, dst.length, dstOff,
+            getNumOutputs(len));
+        double scale = 1.0 / getGain();
+        int step = (int) Math.min(Integer.MAX_VALUE, (long) CHUNK * ratio);
+        int count = 0;
+        for (int pos = 0; pos < len; pos += step){
+            int num = decimate(src, srcOff + pos, 1, Math.min(step, len - pos),
+                0, scratch, 0, 1);
+            for (int ind0 = 0; ind0 < num; ind0++)
+                dst[dstOff + count++] = scratch[ind0] * scale;
+        }
+        return count;
+    }
+
+    /**
+     * Decimate real samples.
+     * @param input Input samples
+     * @return Output scaled by 1 / gain
+     */
+    public double[] process(short[] input){
+        double[] output = new double[getNumOutputs(input.length)];
+        process(input, 0, output, 0, input.length);
+        return output;
+    }
+
+    /**
+     * Decimate complex interleaved samples, full precision output.  Nothing
+     * is allocated.
+     * @param src Complex interleaved input
+     * @param srcOff Offset (in shorts) of the first input sample
+     * @param dst Complex interleaved output (room for
+     *     {@link #getNumOutputs} samples)
+     * @param dstOff Offset (in longs) of the first output sample
+     * @param len Number of complex input samples
+     * @return Number of complex output samples written
+     */
+    public int processComplexInterleaved(short[] src, int srcOff, long[] dst,
+            int dstOff, int len){
+        Blocks.check(src.length, srcOff, 2 * len, dst.length, dstOff,
+            2 * getNumOutputs(len));
+        decimate(src, srcOff, 2, len, 0, dst, dstOff, 2);
+        return decimate(src, srcOff + 1, 2, len, 1, dst, dstOff + 1, 2);
+    }
+
+    /**
+     * Decimate complex interleaved samples, output scaled by 1 / gain.
+     * Nothing is allocated.
+     * @param src Complex interleaved input
+     * @param srcOff Offset (in shorts) of the first input sample
+     * @param dst Complex interleaved output (room for
+     *     {@link #getNumOutputs} samples)
+     * @param dstOff Offset (in doubles) of the first output sample
+     * @param len Number of complex input samples
+     * @return Number of complex output samples written
+     */
+    public int processComplexInterleaved(short[] src, int srcOff, double[] dst,
+            int dstOff, int len){
+        Blocks.check(src.length, srcOff, 2 * len, dst.length, dstOff,
+            2 * getNumOutputs(len));
+        double scale = 1.0 / getGain();
+        int step = (int) Math.min(Integer.MAX_VALUE / 2, (long) CHUNK * ratio);
+        int count = 0;
+        for (int pos = 0; pos < len; pos += step){
+            int num = Math.min(step, len - pos);
+            decimate(src, srcOff + 2 * pos, 2, num, 0, scratch, 0, 2);
+            num = decimate(src, srcOff + 2 * pos + 1, 2, num, 1, scratch, 1, 2);
+            for (int ind0 = 0; ind0 < 2 * num; ind0++)
+                dst[dstOff + 2 * count + ind0] = scratch[ind0] * scale;
+            count += num;
+        }
+        return count;
+    }
+
+    /**
+     * Decimate complex interleaved samples.
+     * @param complexInput Complex interleaved input
+     * @return Complex interleaved output scaled by 1 / gain
+     */
+    public double[] processComplexInterleaved(short[] complexInput){
+        if (complexInput.length % 2 == 1)
+            throw new IllegalArgumentException(
+                "Expecting interleaved complex, should be even number");
+        int len = complexInput.length / 2;
+        double[] output = new double[2 * getNumOutputs(len)];
+        processComplexInterleaved(complexInput, 0, output, 0, len);
+        return output;
+    }
+
+    // ======================================================================
+    // ----------------------------  kernels  -------------------------------
+    // ======================================================================
+    /** Run one channel over len strided samples */
+    private int decimate(short[] src, int srcOff, int stride, int len, int ch,
+            long[] dst, int dstOff, int dstStride){
+        if (integInt != null)
+            return decimateInt(src, srcOff, stride, len, ch, dst, dstOff, dstStride);
+        return decimateLong(src, srcOff, stride, len, ch, dst, dstOff, dstStride);
+    }
+
+    private int decimateInt(short[] src, int srcOff, int stride, int len, int ch,
+            long[] dst, int dstOff, int dstStride){
+        int[] integ = integInt[ch];
+        int[][] comb = combInt[ch];
+        int phase = phases[ch];
+        int index = combIndex[ch];
+        int count = 0;
+        for (int ind0 = 0; ind0 < len; ind0++){
+            // -------------------  integrators (wrap)  ---------------------
+            int acc = src[srcOff + stride * ind0];
+            for (int stage = 0; stage < order; stage++)
+                acc = integ[stage] += acc;
+            if (++phase < ratio)
+                continue;
+
+            // ----------------------  combs at R  --------------------------
+            phase = 0;
+            for (int stage = 0; stage < order; stage++){
+                int delayed = comb[stage][index];
+                comb[stage][index] = acc;
+                acc -= delayed;
+            }
+            if (++index == diffDelay)
+                index = 0;
+            dst[dstOff + dstStride * count++] = acc;
+        }
+        phases[ch] = phase;
+        combIndex[ch] = index;
+        return count;
+    }
+
+    private int decimateLong(short[] src, int srcOff, int stride, int len, int ch,
+            long[] dst, int dstOff, int dstStride){
+        long[] integ = integLong[ch];
+        long[][] comb = combLong[ch];
+        int phase = phases[ch];
+        int index = combIndex[ch];
+        int count = 0;
+        for (int ind0 = 0; ind0 < len; ind0++){
+            // -------------------  integrators (wrap)  ---------------------
+            long acc = src[srcOff + stride * ind0];
+            for (int stage = 0; stage < order; stage++)
+                acc = integ[stage] += acc;
+            if (++phase < ratio)
+                continue;
+
+            // ----------------------  combs at R  --------------------------
+            phase = 0;
+            for (int stage = 0; stage < order; stage++){
+                long delayed = comb[stage][index];
+                comb[stage][index] = acc;
+                acc -= delayed;
+            }
+            if (++index == diffDelay)
+                index = 0;
+            dst[dstOff + dstStride * count++] = acc;
+        }
+        phases[ch] = phase;
+        combIndex[ch] = index;
+        return count;
+    }
+}
@@ -0,0 +1,328 @@
+/**
+ * Cascaded integrator-comb interpolator.
+ *
+ * @author Keith Chow
+ */
+package net.kcundercover.jdsp.filters;
+import java.util.Arrays;
+
+/**
+ * Multiplierless CIC interpolator for 16 bit samples.  N combs with
+ * differential delay M run at the input rate, the signal is zero stuffed
+ * by R, then N integrators run at the output rate.  The response is
+ * (sum_{k &lt; RM} z^-k)^N with a gain of (RM)^N / R.
+ *
+ * Like {@link CicDecimator}, the registers are two's complement and wrap
+ * without harm as long as they are as wide as the output; int registers
+ * are used when 16 + ceil(N log2(RM)) bits fit in 32, long otherwise.
+ */
+public class CicInterpolator {
+    /** Inputs per chunk of the floating point methods */
+    private final static int CHUNK = 1024;
+
+    /** Number of comb / integrator stages N */
+    private final int order;
+
+    /** Interpolation ratio R */
+    private final int ratio;
+
+    /** Differential delay M of the combs */
+    private final int diffDelay;
+
+    /** Bits of the registers needed */
+    private final int outputBits;
+
+    /** Registers per channel (real or I, Q), only one width allocated */
+    private final int[][] integInt;
+    private final int[][][] combInt;
+    private final long[][] integLong;
+    private final long[][][] combLong;
+
+    /** Comb delay line index, per channel */
+    private final int[] combIndex = new int[2];
+
+    /** Raw outputs of the floating point methods (lazy) */
+    private long[] scratch;
+
+    /**
+     * Constructor
+     * @param order Number of comb / integrator stages N
+     * @param ratio Interpolation ratio R
+     * @param diffDelay Differential delay M (usually 1 or 2)
+     */
+    public CicInterpolator(int order, int ratio, int diffDelay){
+        // ---------------------  error checking  ---------------------------
+        if (order < 1 || ratio < 1 || diffDelay < 1)
+            throw new IllegalArgumentException(
+                "Order, ratio and differential delay should be >= 1");
+        outputBits = CicDecimator.INPUT_BITS +
+            CicDecimator.bitGrowth(order, ratio, diffDelay);
+        if (outputBits > Long.SIZE)
+            throw new IllegalArgumentException("Output needs " + outputBits +
+                " bits, more than a long register");
+
+        this.order = order;
+        this.ratio = ratio;
+        this.diffDelay = diffDelay;
+        if (outputBits <= Integer.SIZE){
+            integInt = new int[2][order];
+            combInt = new int[2][order][diffDelay];
+            integLong = null;
+            combLong = null;
+        }
+        else{
+            integInt = null;
+            combInt = null;
+            integLong = new long[2][order];
+            combLong = new long[2][order][diffDelay];
+        }
+    }
+
+    // ======================================================================
+    // ----------------------------  getters  -------------------------------
+    // ======================================================================
+    /**
+     * Get the number of stages
+     * @return N
+     */
+    public int getOrder() { return order; }
+
+    /**
+     * Get the interpolation ratio
+     * @return R
+     */
+    public int getRatio() { return ratio; }
+
+    /**
+     * Get the differential delay
+     * @return M
+     */
+    public int getDiffDelay() { return diffDelay; }
+
+    /**
+     * Get the width of the registers needed
+     * @return 16 + ceil(N log2(RM)) bits
+     */
+    public int getOutputBits() { return outputBits; }
+
+    /**
+     * Check if long registers are used
+     * @return True if the registers do not fit in 32 bits
+     */
+    public boolean isLongAccumulator() { return integLong != null; }
+
+    /**
+     * Get the gain, removed by the floating point methods
+     * @return (RM)^N / R
+     */
+    public double getGain() {
+        return Math.pow((double) ratio * diffDelay, order) / ratio;
+    }
+
+    /** Clear the registers */
+    public void reset(){
+        for (int ch = 0; ch < 2; ch++){
+            if (integInt != null){
+                Arrays.fill(integInt[ch], 0);
+                for (int[] comb : combInt[ch])
+                    Arrays.fill(comb, 0);
+            }
+            else{
+                Arrays.fill(integLong[ch], 0);
+                for (long[] comb : combLong[ch])
+                    Arrays.fill(comb, 0);
+            }
+        }
+        Arrays.fill(combIndex, 0);
+    }
+
+    // ======================================================================
+    // ---------------------------  processing  -----------------------------
+    // ======================================================================
+    /**
+     * Interpolate real samples, full precision output.  Nothing is allocated.
+     * @param src Input samples
+     * @param srcOff Offset of the first input sample
+     * @param dst Output samples (room for len * R samples)
+     * @param dstOff Offset of the first output sample
+     * @param len Number of input samples
+     * @return Number of output samples written
+     */
+    public int process(short[] src, int srcOff, long[] dst, int dstOff, int len){
+        Blocks.check(src.length, srcOff, len, dst.length, dstOff,
+            (long) len * ratio);
+        return interpolate(src, srcOff, 1, len, 0, dst, dstOff, 1);
+    }
+
+    /**
+     * Interpolate real samples, output scaled by 1 / gain.  Nothing is
+     * allocated after the first call.
+     * @param src Input samples
+     * @param srcOff Offset of the first input sample
+     * @param dst Output samples (room for len * R samples)
+     * @param dstOff Offset of the first output sample
+     * @param len Number of input samples
+     * @return Number of output samples written
+     */
+    public int process(short[] src, int srcOff, double[] dst, int dstOff, int len){
+        Blocks.check(src.length, srcOff, len, dst.length, dstOff,
+            (long) len * ratio);
+        long[] raw = scratch();
+        double scale = 1.0 / getGain();
+        int count = 0;
+        for (int pos = 0; pos < len; pos += CHUNK){
+            int num = interpolate(src, srcOff + pos, 1, Math.min(CHUNK, len - pos),
+                0, raw, 0, 1);
+            for (int ind0 = 0; ind0 < num; ind0++)
+                dst[dstOff + count++] = raw[ind0] * scale;
+        }
+        return count;
+    }
+
+    /**
+     * Interpolate real samples.
+     * @param input Input samples
+     * @return Output scaled by 1 / gain
+     */
+    public double[] process(short[] input){
+        double[] output = new double[input.length * ratio];
+        process(input, 0, output, 0, input.length);
+        return output;
+    }
+
+    /**
+     * Interpolate complex interleaved samples, full precision output.
+     * Nothing is allocated.
+     * @param src Complex interleaved input
+     * @param srcOff Offset (in shorts) of the first input sample
+     * @param dst Complex interleaved output (room for len * R samples)
+     * @param dstOff Offset (in longs) of the first output sample
+     * @param len Number of complex input samples
+     * @return Number of complex output samples written
+     */
+    public int processComplexInterleaved(short[] src, int srcOff, long[] dst,
+            int dstOff, int len){
+        Blocks.check(src.length, srcOff, 2 * len, dst.length, dstOff,
+            2L * len * ratio);
+        interpolate(src, srcOff, 2, len, 0, dst, dstOff, 2);
+        return interpolate(src, srcOff + 1, 2, len, 1, dst, dstOff + 1, 2);
+    }
+
+    /**
+     * Interpolate complex interleaved samples, output scaled by 1 / gain.
+     * Nothing is allocated after the first call.
+     * @param src Complex interleaved input
+     * @param srcOff Offset (in shorts) of the first input sample
+     * @param dst Complex interleaved output (room for len * R samples)
+     * @param dstOff Offset (in doubles) of the first output sample
+     * @param len Number of complex input samples
+     * @return Number of complex output samples written
+     */
+    public int processComplexInterleaved(short[] src, int srcOff, double[] dst,
+            int dstOff, int len){
+        Blocks.check(src.length, srcOff, 2 * len, dst.length, dstOff,
+            2L * len * ratio);
+        long[] raw = scratch();
+        double scale = 1.0 / getGain();
+        int count = 0;
+        for (int pos = 0; pos < len; pos += CHUNK){
+            int num = Math.min(CHUNK, len - pos);
+            interpolate(src, srcOff + 2 * pos, 2, num, 0, raw, 0, 2);
+            num = interpolate(src, srcOff + 2 * pos + 1, 2, num, 1, raw, 1, 2);
+            for (int ind0 = 0; ind0 < 2 * num; ind0++)
+                dst[dstOff + 2 * count + ind0] = raw[ind0] * scale;
+            count += num;
+        }
+        return count;
+    }
+
+    /**
+     * Interpolate complex interleaved samples.
+     * @param complexInput Complex interleaved input
+     * @return Complex interleaved output scaled by 1 / gain
+     */
+    public double[] processComplexInterleaved(short[] complexInput){
+        if (complexInput.length % 2 == 1)
+            throw new IllegalArgumentException(
+                "Expecting interleaved complex, should be even number");
+        double[] output = new double[complexInput.length * ratio];
+        processComplexInterleaved(complexInput, 0, output, 0,
+            complexInput.length / 2);
+        return output;
+    }
+
+    // ======================================================================
+    // ----------------------------  kernels  -------------------------------
+    // ======================================================================
+    private long[] scratch(){
+        if (scratch == null)
+            scratch = new long[2 * CHUNK * ratio];
+        return scratch;
+    }
+
+    /** Run one channel over len strided samples */
+    private int interpolate(short[] src, int srcOff, int stride, int len, int ch,
+            long[] dst, int dstOff, int dstStride){
+        if (integInt != null)
+            return interpolateInt(src, srcOff, stride, len, ch, dst, dstOff, dstStride);
+        return interpolateLong(src, srcOff, stride, len, ch, dst, dstOff, dstStride);
+    }
+
+    private int interpolateInt(short[] src, int srcOff, int stride, int len,
+            int ch, long[] dst, int dstOff, int dstStride){
+        int[] integ = integInt[ch];
+        int[][] comb = combInt[ch];
+        int index = combIndex[ch];
+        int count = 0;
+        for (int ind0 = 0; ind0 < len; ind0++){
+            // --------------------  combs at the input rate  ---------------
+            int acc = src[srcOff + stride * ind0];
+            for (int stage = 0; stage < order; stage++){
+                int delayed = comb[stage][index];
+                comb[stage][index] = acc;
+                acc -= delayed;
+            }
+            if (++index == diffDelay)
+                index = 0;
+
+            // -----------  zero stuff, integrators at R (wrap)  ------------
+            for (int phase = 0; phase < ratio; phase++){
+                int value = phase == 0 ? acc : 0;
+                for (int stage = 0; stage < order; stage++)
+                    value = integ[stage] += value;
+                dst[dstOff + dstStride * count++] = value;
+            }
+        }
+        combIndex[ch] = index;
+        return count;
+    }
+
+    private int interpolateLong(short[] src, int srcOff, int stride, int len,
+            int ch, long[] dst, int dstOff, int dstStride){
+        long[] integ = integLong[ch];
+        long[][] comb = combLong[ch];
+        int index = combIndex[ch];
+        int count = 0;
+        for (int ind0 = 0; ind0 < len; ind0++){
+            // --------------------  combs at the input rate  ---------------
+            long acc = src[srcOff + stride * ind0];
+            for (int stage = 0; stage < order; stage++){
+                long delayed = comb[stage][index];
+                comb[stage][index] = acc;
+                acc -= delayed;
+            }
+            if (++index == diffDelay)
+                index = 0;
+
+            // -----------  zero stuff, integrators at R (wrap)  ------------
+            for (int phase = 0; phase < ratio; phase++){
+                long value = phase == 0 ? acc : 0;
+                for (int stage = 0; stage < order; stage++)
+                    value = integ[stage] += value;
+                dst[dstOff + dstStride * count++] = value;
+            }
+        }
+        combIndex[ch] = index;
+        return count;
+    }
+}
@@ -0,0 +1,240 @@
+/**
+ * Fused digital downconverter.
+ *
+ * @author Keith Chow
+ */
+package net.kcundercover.jdsp.filters;
+import java.util.Arrays;
+import net.kcundercover.jdsp.math.Convolve;
+
+/**
+ * Streaming digital downconverter: frequency shift by an NCO, lowpass
+ * filter and decimation in one pass.  Each chunk of input is mixed
+ * straight into the filter history (no shifted copy of the signal), and
+ * only the outputs that are kept are computed, one dot product of the
+ * taps per output and component:
+ * <pre>
+ * v[n] = x[n] exp(j pi normFreq n)
+ * y[m] = sum_k h[k] v[mD - k]
+ * </pre>
+ * The shift uses the convention of
+ * {@link net.kcundercover.jdsp.math.ComplexInterleaved#freqTranslateComplex},
+ * so a carrier at normalized frequency fc is brought to baseband with
+ * normFreq = -fc.
+ *
+ * The NCO rotates a phasor by one complex multiply per sample and is
+ * re-anchored from the accumulated phase every chunk, so the shift stays
+ * phase continuous and accurate across calls.  The filter history and the
+ * decimation phase carry over too (one stream per instance).
+ */
+public class DigitalDownConverter {
+    /** New input samples per chunk */
+    private final static int CHUNK = 4096;
+
+    /** Normalized frequency shift (-1, 1) */
+    private final double normFreq;
+
+    /** Decimation factor D */
+    private final int decim;
+
+    /** Filter taps in reverse order */
+    private final double[] reversed;
+
+    /** Input samples kept between calls (numTaps - 1) */
+    private final int hist;
+
+    /** Mixed history followed by the current chunk, real and imaginary */
+    private final double[] workReal, workImag;
+
+    /** Phasor rotation per sample */
+    private final double stepReal, stepImag;
+
+    /** NCO phase (radians) of the next input sample, in [-pi, pi] */
+    private double phase = 0;
+
+    /** Index of the next output relative to the next input */
+    private int next = 0;
+
+    /**
+     * Constructor with the default lowpass
+     * @param normFreq Normalized frequency shift (-1, 1)
+     * @param decim Decimation factor D
+     * @see Resampler#designPrototype
+     */
+    public DigitalDownConverter(double normFreq, int decim){
+        this(normFreq, decim, Resampler.designPrototype(1, Math.max(decim, 1)));
+    }
+
+    /**
+     * Constructor
+     * @param normFreq Normalized frequency shift (-1, 1)
+     * @param decim Decimation factor D
+     * @param taps Lowpass taps at the input rate
+     */
+    public DigitalDownConverter(double normFreq, int decim, double[] taps){
+        // ---------------------  error checking  ---------------------------
+        if (normFreq > 1 || normFreq < -1)
+            throw new IllegalArgumentException(
+                "norm frequency should be in range (-1,1)");
+        if (decim < 1)
+            throw new IllegalArgumentException("Decimation should be >= 1");
+        if (taps.length < 1)
+            throw new IllegalArgumentException("Expecting at least 1 tap");
+
+        this.normFreq = normFreq;
+        this.decim = decim;
+        reversed = Convolve.reverse(taps);
+        hist = taps.length - 1;
+        workReal = new double[hist + CHUNK];
+        workImag = new double[hist + CHUNK];
+        stepReal = Math.cos(Math.PI * normFreq);
+        stepImag = Math.sin(Math.PI * normFreq);
+    }
+
+    // ======================================================================
+    // ----------------------------  getters  -------------------------------
+    // ======================================================================
+    /**
+     * Get the frequency shift
+     * @return Normalized frequency shift
+     */
+    public double getFrequency() { return normFreq; }
+
+    /**
+     * Get the decimation factor
+     * @return D
+     */
+    public int getDecimation() { return decim; }
+
+    /**
+     * Get the number of taps
+     * @return Filter length
+     */
+    public int getNumTaps() { return reversed.length; }
+
+    /**
+     * Get the number of outputs the next call will produce
+     * @param len Number of (real or complex) input samples of the next call
+     * @return Number of complex output samples
+     */
+    public int getNumOutputs(int len){
+        return next < len ? (len - next + decim - 1) / decim : 0;
+    }
+
+    /** Clear the filter history, the NCO phase and the decimation phase */
+    public void reset(){
+        Arrays.fill(workReal, 0, hist, 0);
+        Arrays.fill(workImag, 0, hist, 0);
+        phase = 0;
+        next = 0;
+    }
+
+    // ======================================================================
+    // ---------------------------  processing  -----------------------------
+    // ======================================================================
+    /**
+     * Downconvert complex interleaved samples.  Nothing is allocated.  src
+     * and dst may be the same array and offset.
+     * @param src Complex interleaved input
+     * @param srcOff Offset (in doubles) of the first input sample
+     * @param dst Complex interleaved output (room for
+     *     {@link #getNumOutputs} samples)
+     * @param dstOff Offset (in doubles) of the first output sample
+     * @param len Number of complex input samples
+     * @return Number of complex output samples written
+     */
+    public int processComplexInterleaved(double[] src, int srcOff, double[] dst,
+            int dstOff, int len){
+        Blocks.check(src.length, srcOff, 2 * len, dst.length, dstOff,
+            2 * getNumOutputs(len));
+        return convert(src, srcOff, true, dst, dstOff, len);
+    }
+
+    /**
+     * Downconvert complex interleaved samples.
+     * @param complexInput Complex interleaved input
+     * @return Complex interleaved output
+     */
+    public double[] processComplexInterleaved(double[] complexInput){
+        if (complexInput.length % 2 == 1)
+            throw new IllegalArgumentException(
+                "Expecting interleaved complex, should be even number");
+        int len = complexInput.length / 2;
+        double[] output = new double[2 * getNumOutputs(len)];
+        processComplexInterleaved(complexInput, 0, output, 0, len);
+        return output;
+    }
+
+    /**
+     * Downconvert real samples to complex.  Nothing is allocated.
+     * @param src Input samples
+     * @param srcOff Offset of the first input sample
+     * @param dst Complex interleaved output (room for
+     *     {@link #getNumOutputs} samples)
+     * @param dstOff Offset (in doubles) of the first output sample
+     * @param len Number of input samples
+     * @return Number of complex output samples written
+     */
+    public int processReal(double[] src, int srcOff, double[] dst, int dstOff,
+            int len){
+        Blocks.check(src.length, srcOff, len, dst.length, dstOff,
+            2 * getNumOutputs(len));
+        return convert(src, srcOff, false, dst, dstOff, len);
+    }
+
+    /**
+     * Downconvert real samples to complex.
+     * @param input Input samples
+     * @return Complex interleaved output
+     */
+    public double[] processReal(double[] input){
+        double[] output = new double[2 * getNumOutputs(input.length)];
+        processReal(input, 0, output, 0, input.length);
+        return output;
+    }
+
+    /** Mix, filter and decimate chunk by chunk */
+    private int convert(double[] src, int srcOff, boolean complex,
+            double[] dst, int dstOff, int len){
+        int count = 0;
+        for (int pos = 0; pos < len; ){
+            int num = Math.min(CHUNK, len - pos);
+
+            // --------------  mix into the filter history  -----------------
+            double ncoReal = Math.cos(phase), ncoImag = Math.sin(phase);
+            for (int ind0 = 0; ind0 < num; ind0++){
+                double re, im;
+                if (complex){
+                    double xr = src[srcOff + 2 * (pos + ind0)];
+                    double xi = src[srcOff + 2 * (pos + ind0) + 1];
+                    re = xr * ncoReal - xi * ncoImag;
+                    im = xr * ncoImag + xi * ncoReal;
+                }
+                else{
+                    double xr = src[srcOff + pos + ind0];
+                    re = xr * ncoReal;
+                    im = xr * ncoImag;
+                }
+                workReal[hist + ind0] = re;
+                workImag[hist + ind0] = im;
+                double tmp = ncoReal * stepReal - ncoImag * stepImag;
+                ncoImag = ncoReal * stepImag + ncoImag * stepReal;
+                ncoReal = tmp;
+            }
+            phase = Math.IEEEremainder(phase + Math.PI * normFreq * num,
+                2 * Math.PI);
+
+            // ----------------  outputs that are kept only  ----------------
+            for (; next < num; next += decim){
+                dst[dstOff + 2 * count] = Convolve.dot(workReal, next, reversed);
+                dst[dstOff + 2 * count + 1] = Convolve.dot(workImag, next, reversed);
+                count++;
+            }
+            next -= num;
+            System.arraycopy(workReal, num, workReal, 0, hist);
+            System.arraycopy(workImag, num, workImag, 0, hist);
+            pos += num;
+        }
+        return count;
+    }
+}
@@ -4,8 +4,9 @@
  * @version 0.0
  */
 package net.kcundercover.jdsp.filters;
-import net.kcundercover.jdsp.math.Convolve;
 import net.kcundercover.jdsp.filters.FilterDesign;
+import net.kcundercover.jdsp.math.Convolve;
+import net.kcundercover.jdsp.math.ConvolveCalibration;
 
 /** Double Filter */
 public class FilterD{
@@ -18,8 +19,17 @@ public class FilterD{
     /** Denominator of filter */
     private double[] coefDenominator;
 
-    /** State of the filter */
-    private double[] filterState;
+    /** State of the filter (streaming FIR over the numerator) */
+    private StreamingFirD filterState;
+
+    /** Recursive state, null for FIR designs */
+    private IirFilterD iirState;
+
+    /**
+     * FIR designs filter long blocks with overlap-save, null to choose from
+     * the crossover table of {@link ConvolveCalibration#getDefault}
+     */
+    private Boolean fftBlocks = null;
 
     /** Constructor
      *
@@ -33,6 +43,7 @@ public class FilterD{
         // initialize to moving average filter
         coefNumerator = FilterDesign.designMovingAverageD(numNumerator);
         coefDenominator = new double[0];
+        filterState = newFirState();
     }
 
     /**
@@ -40,7 +51,9 @@ public class FilterD{
      * and design technique.  This will update interal properties.
      *
      * @param numNum Number of numerator filter coefs.
-     * @param numDen Number of denominator filter coefs.
+     * @param numDen Number of denominator filter coefs.  For the IIR
+     *     designs (BUTTERWORTH, CHEBYSHEV, ELLIPTIC) the order is numDen - 1
+     *     and numNum is ignored.
      * @param design The design technique to use.
      * @param bandwidth Normalized bandwidth. (0.5 = half the sampling rate)
      */
@@ -57,7 +70,8 @@ public class FilterD{
             case "MOVING AVERAGE":
                 coefNumerator = FilterDesign.designMovingAverageD(numNum);
                 coefDenominator = new double[0];
-                filterState = new double[numNum - 1];
+                filterState = newFirState();
+                iirState = null;
                 break;
 
             // handle window design method
@@ -67,7 +81,16 @@ public class FilterD{
                 coefNumerator = FilterDesign.firWindowDesignD(
                     numNum, design, bandwidth);
                 coefDenominator = new double[0];
-                filterState = new double[numNum - 1];
+                filterState = newFirState();
+                iirState = null;
+                break;
+
+            // recursive designs, numDen - 1 poles as biquads
+            case "BUTTERWORTH":
+            case "CHEBYSHEV":
+            case "ELLIPTIC":
+                setFilter(FilterDesign.designIirSos(design, numDen - 1,
+                    bandwidth / 2));
                 break;
 
             // no matches...design not supported
@@ -83,21 +106,96 @@ public class FilterD{
      * @return Filtered output
      */
     public double[] applyFilter(double[] input){
-        // ------------------------  load filter state  ---------------------
-        double[] tmp = new double[input.length + filterState.length];
-        System.arraycopy(filterState, 0, tmp, 0, filterState.length);
-        System.arraycopy(input, 0, tmp, filterState.length, input.length);
-        double[] output = Convolve.convolve(tmp, coefNumerator);
+        // ----------  filter with the state kept by the stream  -----------
+        double[] output = new double[input.length];
+        applyFilter(input, 0, output, 0, input.length);
+        return output;
+    }
+
+    /**
+     * Apply the filter to part of a signal, writing into a buffer owned by
+     * the caller.  Nothing is allocated, and src and dst may be the same
+     * array with the same offset.
+     * @param src Input signal
+     * @param srcOff Offset of the first input sample
+     * @param dst Filtered output
+     * @param dstOff Offset of the first output sample
+     * @param len Number of samples
+     */
+    public void applyFilter(double[] src, int srcOff, double[] dst, int dstOff,
+            int len){
+        // -------------------------  error checking  -----------------------
+        Blocks.check(src.length, srcOff, len, dst.length, dstOff, len);
+
+        if (iirState != null)
+            iirState.process(src, srcOff, dst, dstOff, len);
+        else
+            filterState.process(src, srcOff, dst, dstOff, len);
+    }
 
-        // update filterState
-        System.arraycopy(tmp, tmp.length - filterState.length,
-            filterState, 0, filterState.length);
+    /**
+     * Use a cascade of second order sections (clears the state)
+     * @param sos Rows of {b0, b1, b2, a0, a1, a2}
+     */
+    public void setFilter(double[][] sos){
+        iirState = new IirFilterD(sos);
+        double[][] tf = FilterDesign.sosToTransferFunction(sos);
+        coefNumerator = tf[0];
+        coefDenominator = tf[1];
+    }
+
+    /**
+     * Use the transfer function B(z) / A(z) (clears the state).  An empty
+     * or {1} denominator gives an FIR filter.
+     * @param numerator Feed forward taps b
+     * @param denominator Feedback taps a
+     */
+    public void setFilter(double[] numerator, double[] denominator){
+        coefNumerator = numerator.clone();
+        coefDenominator = denominator.clone();
+        if (denominator.length == 0 ||
+                (denominator.length == 1 && denominator[0] == 1)){
+            filterState = newFirState();
+            iirState = null;
+        }
+        else
+            iirState = new IirFilterD(numerator, denominator);
+    }
 
-        // prepare output
-        tmp = new double[input.length];
-        System.arraycopy(output, filterState.length, tmp, 0, tmp.length);
+    /**
+     * Filter long blocks of FIR designs with overlap-save FFT blocks
+     * instead of the direct form (clears the state of FIR designs).  The
+     * FFT size only depends on the number of taps.  The output then
+     * differs from the direct form by rounding.  Until this is called the
+     * choice follows the crossover table, see {@link #isFftBlocks}.
+     * @param enabled True for overlap-save, false for the direct form
+     */
+    public void setFftBlocks(boolean enabled){
+        fftBlocks = enabled;
+        if (iirState == null)
+            filterState = newFirState();
+    }
+
+    /**
+     * Check if FIR designs filter long blocks with overlap-save.  Unless
+     * set by {@link #setFftBlocks}, overlap-save is used when the default
+     * crossover table does not pick the direct form for one FFT block of
+     * new samples against the taps.
+     * @return True for overlap-save, false for the direct form
+     */
+    public boolean isFftBlocks(){
+        return iirState == null && filterState.isFrequencyDomain();
+    }
 
-        return tmp;
+    /** New streaming FIR over the numerator */
+    private StreamingFirD newFirState(){
+        int numTaps = coefNumerator.length;
+        int nfft = StreamingFirD.fftSizeFor(numTaps);
+        boolean useFft = fftBlocks != null ? fftBlocks :
+            ConvolveCalibration.getDefault().select(
+                ConvolveCalibration.Kind.DOUBLE, nfft - numTaps + 1, numTaps) !=
+            Convolve.Strategy.DIRECT;
+        return new StreamingFirD(coefNumerator, useFft ? nfft : 0);
     }
 
     // =====================  static methods  ===============================
@@ -2,6 +2,9 @@
  * @author Keith Chow
  */
 package net.kcundercover.jdsp.filters;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.math3.complex.Complex;
 
 /** FilterDesign object */
 public class FilterDesign {
@@ -45,7 +48,9 @@ public class FilterDesign {
     /** Design an FIR filter with the WindowDesign Method.
      *
      * This first designs an ideal IIR filter of the specified bandwidth.
-     * This is multipled in time with the desired window.
+     * This is multipled in time with the desired window.  The sample grid
+     * is computed per index so the taps are exactly symmetric; designs
+     * differ from the older accumulated grid in the last float bits.
      * @param numTap Number of elements of the filter
      * @param window The String name of the type of window
      * @param normalizeBandwidth The desired bandwidth of the filter.
@@ -62,17 +67,9 @@ public class FilterDesign {
         float pi = (float)Math.PI;
         float tmp;
         // -------------------------  prepare x  ----------------------------
-        float xInc = 1.0f / numTap;
-
-        if ((numTap&1) == 1){
-            // odd
-            x[0] = -(numTap - 1) / 2.0f / numTap;
-        }else{
-            // even
-            x[0] = (0.5f - numTap / 2) / numTap;
-        }
-        for (int ind0 = 1; ind0 < numTap; ind0 ++){
-            x[ind0] = x[ind0 - 1] + xInc;
+        // computed per index (not accumulated) so x is exactly symmetric
+        for (int ind0 = 0; ind0 < numTap; ind0 ++){
+            x[ind0] = (ind0 - (numTap - 1) / 2.0f) / numTap;
         }
         // -----------------------  design window  -------------------------
         float[] win = designWindowF(window, x);
@@ -108,6 +105,7 @@ public class FilterDesign {
     /** Design a moving average filter.
      * @param numNum Number of elements of the filter.
      * @return The designed filter
+     * @see MovingAverage
      */
     public static float[] designMovingAverageF(int numNum){
         // -------------------------  error checking  -----------------------
@@ -161,7 +159,9 @@ public class FilterDesign {
 
     /**Design an FIR filter with the WindowDesigen Method.
      * This first designs an ideal IIR filter of the specified bandwidth.
-     * This is multipled in time with the desired window.
+     * This is multipled in time with the desired window.  The sample grid
+     * is computed per index so the taps are exactly symmetric; designs
+     * differ from the older accumulated grid in the last float bits.
      * @param numTap Number of elements of the filter
      * @param window The String name of the type of window
      * @param normalizeBandwidth The desired bandwidth of the filter.
@@ -178,17 +178,9 @@ public class FilterDesign {
         double pi = Math.PI;
         double tmp;
         // -------------------------  prepare x  ----------------------------
-        double xInc = 1.0f / numTap;
-
-        if ((numTap&1) == 1){
-            // odd
-            x[0] = -(numTap - 1) / 2.0 / numTap;
-        }else{
-            // even
-            x[0] = (0.5 - numTap / 2) / numTap;
-        }
-        for (int ind0 = 1; ind0 < numTap; ind0 ++){
-            x[ind0] = x[ind0 - 1] + xInc;
+        // computed per index (not accumulated) so x is exactly symmetric
+        for (int ind0 = 0; ind0 < numTap; ind0 ++){
+            x[ind0] = (ind0 - (numTap - 1) / 2.0) / numTap;
         }
         // -----------------------  design window  -------------------------
         double[] win = designWindowD(window, x);
@@ -224,6 +216,7 @@ public class FilterDesign {
     /** Design a moving average filter.
      * @param numNum Number of elements of the filter.
      * @return The designed filter
+     * @see MovingAverage
      */
     public static double[] designMovingAverageD(int numNum){
         // -------------------------  error checking  -----------------------
@@ -271,4 +264,410 @@ public class FilterDesign {
 
         return filter;
     }
-}
\ No newline at end of file
+
+    /** Design a half-band lowpass filter.
+     * A Hamming window design with a bandwidth of 0.5, so every tap at an
+     * even distance from the center is zero.  Those taps are set exactly to
+     * 0, the center to 0.5 and the other taps made exactly symmetric and
+     * scaled to sum to 0.5 (unity DC gain).
+     *
+     * @param numTap Number of elements of the filter (4K + 3)
+     * @return The designed filter
+     * @see HalfBandDecimator
+     */
+    public static double[] designHalfBand(int numTap){
+        // -------------------------  error checking  -----------------------
+        if (numTap < 3 || numTap % 4 != 3)
+            throw new IllegalArgumentException(
+                "Half-band filters need 4K + 3 taps");
+
+        double[] output = firWindowDesignD(numTap, "HAMMING", 0.5);
+        int center = numTap / 2;
+        double mySum = 0.0;
+        for (int ind0 = 0; ind0 < center; ind0++){
+            // exact zeros and exact symmetry
+            double tap = ((center - ind0) & 1) == 0 ? 0 :
+                (output[ind0] + output[numTap - 1 - ind0]) / 2;
+            output[ind0] = tap;
+            output[numTap - 1 - ind0] = tap;
+            mySum += 2 * tap;
+        }
+        for (int ind0 = 0; ind0 < numTap; ind0++)
+            output[ind0] *= 0.5 / mySum;
+        output[center] = 0.5;
+        return output;
+    }
+
+    /** Design a CIC compensation filter.
+     * The FIR runs at the CIC output rate and inverts the CIC droop
+     * |sin(pi M f) / (R M sin(pi f / R))|^N up to the cutoff, above which
+     * it is a lowpass.  The ideal response is integrated into a linear
+     * phase impulse response, then multiplied by a Hamming window.
+     *
+     * @param numTap Number of elements of the filter
+     * @param order Number of CIC stages N
+     * @param ratio CIC rate change R
+     * @param diffDelay CIC differential delay M
+     * @param cutoff Passband edge (cycles per output sample, below 0.5)
+     * @return The designed filter (unity DC gain)
+     * @see CicDecimator
+     */
+    public static double[] designCicCompensator(int numTap, int order,
+            int ratio, int diffDelay, double cutoff){
+        // -------------------------  error checking  -----------------------
+        if (numTap < 1 || order < 1 || ratio < 1 || diffDelay < 1)
+            throw new IllegalArgumentException(
+                "Taps, order, ratio and differential delay should be >= 1");
+        if (cutoff <= 0 || cutoff >= 0.5)
+            throw new IllegalArgumentException("Cutoff should be in (0, 0.5)");
+
+        // --------------  inverse droop, sampled up to cutoff  -------------
+        int numPoints = 16 * numTap + 1;
+        double df = cutoff / (numPoints - 1);
+        double[] desired = new double[numPoints];
+        for (int ind0 = 0; ind0 < numPoints; ind0++){
+            double f = ind0 * df;
+            double droop = f == 0 ? 1.0 :
+                Math.sin(Math.PI * diffDelay * f) /
+                ((double) ratio * diffDelay * Math.sin(Math.PI * f / ratio));
+            desired[ind0] = Math.pow(Math.abs(droop), -order);
+        }
+
+        // ---------  h(t) = 2 int_0^cutoff D(f) cos(2 pi f t) df  ----------
+        double[] output = new double[numTap];
+        double[] x = new double[numTap];
+        for (int ind0 = 0; ind0 < numTap; ind0++){
+            double t = ind0 - (numTap - 1) / 2.0;
+            x[ind0] = t / numTap;
+            double sum = 0;
+            for (int ind1 = 0; ind1 < numPoints; ind1++){
+                double weight = ind1 == 0 || ind1 == numPoints - 1 ? 0.5 : 1.0;
+                sum += weight * desired[ind1] * Math.cos(2 * Math.PI * ind1 * df * t);
+            }
+            output[ind0] = 2 * sum * df;
+        }
+
+        // ----------------------  window, normalize  -----------------------
+        double[] win = designWindowD("HAMMING", x);
+        double mySum = 0.0;
+        for (int ind0 = 0; ind0 < numTap; ind0++){
+            output[ind0] *= win[ind0];
+            mySum += output[ind0];
+        }
+        for (int ind0 = 0; ind0 < numTap; ind0++)
+            output[ind0] /= mySum;
+        return output;
+    }
+
+    // ======================================================================
+    // ---------------------  IIR design (biquad cascade)  ------------------
+    // ======================================================================
+    /** Passband ripple used by designIirSos (dB) */
+    public final static double DEFAULT_RIPPLE = 1.0;
+
+    /** Stopband attenuation used by designIirSos (dB) */
+    public final static double DEFAULT_ATTENUATION = 60.0;
+
+    /**
+     * Design a lowpass IIR filter by name as second order sections.
+     * Chebyshev and elliptic designs use {@link #DEFAULT_RIPPLE} and
+     * {@link #DEFAULT_ATTENUATION}.
+     *
+     * @param design Design from {"BUTTERWORTH", "CHEBYSHEV", "ELLIPTIC"}
+     * @param order Filter order (number of poles)
+     * @param cutoff Normalized cutoff (cycles per sample, 0 to 0.5)
+     * @return Second order sections
+     */
+    public static double[][] designIirSos(String design, int order,
+            double cutoff){
+        switch (design){
+            case "BUTTERWORTH":
+                return designButterworthSos(order, cutoff, false);
+            case "CHEBYSHEV":
+                return designChebyshevSos(order, DEFAULT_RIPPLE, cutoff, false);
+            case "ELLIPTIC":
+                return designEllipticSos(order, DEFAULT_RIPPLE,
+                    DEFAULT_ATTENUATION, cutoff, false);
+            default:
+                throw new IllegalArgumentException(
+                    "Unsupported IIR design: " + design);
+        }
+    }
+
+    /**
+     * Design a Butterworth filter as second order sections.
+     * Each row of the result is {b0, b1, b2, 1, a1, a2}.
+     *
+     * @param order Filter order (number of poles)
+     * @param cutoff Normalized -3 dB frequency (cycles per sample, 0 to 0.5)
+     * @param highpass True for a highpass, false for a lowpass
+     * @return Second order sections
+     */
+    public static double[][] designButterworthSos(int order, double cutoff,
+            boolean highpass){
+        checkIir(order, cutoff);
+        Complex[] poles = new Complex[order];
+        for (int ind0 = 0; ind0 < order; ind0++){
+            double theta = Math.PI * (2 * ind0 + order + 1) / (2.0 * order);
+            poles[ind0] = new Complex(Math.cos(theta), Math.sin(theta));
+        }
+        return analogToSos(new Complex[0], poles, cutoff, highpass, 1.0);
+    }
+
+    /**
+     * Design a Chebyshev (type I) filter as second order sections.
+     * Each row of the result is {b0, b1, b2, 1, a1, a2}.
+     *
+     * @param order Filter order (number of poles)
+     * @param ripple Peak to peak passband ripple (dB)
+     * @param cutoff Normalized passband edge (cycles per sample, 0 to 0.5)
+     * @param highpass True for a highpass, false for a lowpass
+     * @return Second order sections
+     */
+    public static double[][] designChebyshevSos(int order, double ripple,
+            double cutoff, boolean highpass){
+        checkIir(order, cutoff);
+        if (ripple <= 0)
+            throw new IllegalArgumentException("Ripple should be > 0 dB");
+
+        double ep = Math.sqrt(Math.pow(10, ripple / 10) - 1);
+        double mu = Math.log(1 / ep + Math.sqrt(1 / (ep * ep) + 1)) / order;
+        Complex[] poles = new Complex[order];
+        for (int ind0 = 0; ind0 < order; ind0++){
+            double theta = Math.PI * (2 * ind0 + 1) / (2.0 * order);
+            poles[ind0] = new Complex(-Math.sinh(mu) * Math.sin(theta),
+                Math.cosh(mu) * Math.cos(theta));
+        }
+        double passGain = order % 2 == 0 ? 1 / Math.sqrt(1 + ep * ep) : 1.0;
+        return analogToSos(new Complex[0], poles, cutoff, highpass, passGain);
+    }
+
+    /**
+     * Design an elliptic (Cauer) filter as second order sections, using
+     * the Landen transformation method of Orfanidis.
+     * Each row of the result is {b0, b1, b2, 1, a1, a2}.
+     *
+     * @param order Filter order (number of poles)
+     * @param ripple Peak to peak passband ripple (dB)
+     * @param attenuation Minimum stopband attenuation (dB)
+     * @param cutoff Normalized passband edge (cycles per sample, 0 to 0.5)
+     * @param highpass True for a highpass, false for a lowpass
+     * @return Second order sections
+     */
+    public static double[][] designEllipticSos(int order, double ripple,
+            double attenuation, double cutoff, boolean highpass){
+        checkIir(order, cutoff);
+        if (ripple <= 0 || attenuation <= ripple)
+            throw new IllegalArgumentException(
+                "Expecting 0 < ripple < attenuation (dB)");
+
+        // ----------------  selectivity from the degree equation  ----------
+        double ep = Math.sqrt(Math.pow(10, ripple / 10) - 1);
+        double es = Math.sqrt(Math.pow(10, attenuation / 10) - 1);
+        double k1 = ep / es;
+        double k = ellipdeg(order, k1);
+
+        // --------------------  analog zeros and poles  --------------------
+        int numPairs = order / 2;
+        Complex j = Complex.I;
+        Complex v0 = asne(j.divide(ep), k1).multiply(j.negate()).divide(order);
+        Complex[] zeros = new Complex[2 * numPairs];
+        Complex[] poles = new Complex[order];
+        for (int ind0 = 0; ind0 < numPairs; ind0++){
+            double ui = (2.0 * ind0 + 1) / order;
+            double zeta = cde(new Complex(ui), k).getReal();
+            zeros[2 * ind0] = new Complex(0, 1 / (k * zeta));
+            zeros[2 * ind0 + 1] = zeros[2 * ind0].conjugate();
+            poles[2 * ind0] = j.multiply(cde(
+                new Complex(ui).subtract(j.multiply(v0)), k));
+            poles[2 * ind0 + 1] = poles[2 * ind0].conjugate();
+        }
+        if (order % 2 == 1)
+            poles[order - 1] = new Complex(
+                j.multiply(sne(j.multiply(v0), k)).getReal(), 0);
+
+        double passGain = order % 2 == 0 ? 1 / Math.sqrt(1 + ep * ep) : 1.0;
+        return analogToSos(zeros, poles, cutoff, highpass, passGain);
+    }
+
+    /**
+     * Expand second order sections into one transfer function.
+     * @param sos Second order sections, rows {b0, b1, b2, 1, a1, a2}
+     * @return {numerator, denominator}
+     */
+    public static double[][] sosToTransferFunction(double[][] sos){
+        double[] num = {1.0};
+        double[] den = {1.0};
+        for (double[] section : sos){
+            num = polyMultiply(num, new double[] {section[0], section[1], section[2]});
+            den = polyMultiply(den, new double[] {section[3], section[4], section[5]});
+        }
+        return new double[][] {num, den};
+    }
+
+    /** Product of two polynomials (coefficient convolution) */
+    private static double[] polyMultiply(double[] p1, double[] p2){
+        double[] out = new double[p1.length + p2.length - 1];
+        for (int ind0 = 0; ind0 < p1.length; ind0++)
+            for (int ind1 = 0; ind1 < p2.length; ind1++)
+                out[ind0 + ind1] += p1[ind0] * p2[ind1];
+        return out;
+    }
+
+    private static void checkIir(int order, double cutoff){
+        if (order < 1)
+            throw new IllegalArgumentException("Filter order should be >= 1");
+        if (!(cutoff > 0 && cutoff < 0.5))
+            throw new IllegalArgumentException(
+                "Cutoff should be between 0 and 0.5 cycles per sample");
+    }
+
+    /**
+     * Map an analog lowpass prototype (edge at 1 rad/s) to a digital
+     * lowpass or highpass with the prewarped bilinear transform, and group
+     * the result into second order sections.
+     * @param passGain Gain of the prototype at DC
+     */
+    private static double[][] analogToSos(Complex[] zeros, Complex[] poles,
+            double cutoff, boolean highpass, double passGain){
+        // -------------  frequency transform, then bilinear  ---------------
+        double warped = Math.tan(Math.PI * cutoff);
+        List<Complex> polePairs = new ArrayList<>();
+        List<Double> realPoles = new ArrayList<>();
+        List<Complex> zeroPairs = new ArrayList<>();
+        List<Double> realZeros = new ArrayList<>();
+        for (Complex p : poles)
+            sortRoot(bilinear(p, warped, highpass), polePairs, realPoles);
+        for (Complex z : zeros)
+            sortRoot(bilinear(z, warped, highpass), zeroPairs, realZeros);
+        // zeros at infinity land on Nyquist (lowpass) or DC (highpass)
+        for (int ind0 = zeros.length; ind0 < poles.length; ind0++)
+            realZeros.add(highpass ? 1.0 : -1.0);
+
+        // -----  poles nearest the unit circle pick their zeros first  -----
+        polePairs.sort((p1, p2) -> Double.compare(p2.abs(), p1.abs()));
+        List<double[]> sections = new ArrayList<>();
+        for (Complex p : polePairs){
+            double[] b = takeZeros(zeroPairs, realZeros, p, 2);
+            sections.add(0, new double[] {b[0], b[1], b[2],
+                1, -2 * p.getReal(), p.abs() * p.abs()});
+        }
+        for (int ind0 = 0; ind0 < realPoles.size(); ind0 += 2){
+            double p1 = realPoles.get(ind0);
+            double p2 = ind0 + 1 < realPoles.size() ? realPoles.get(ind0 + 1) : 0;
+            double[] b = takeZeros(zeroPairs, realZeros, new Complex(p1),
+                ind0 + 1 < realPoles.size() ? 2 : 1);
+            sections.add(0, new double[] {b[0], b[1], b[2], 1, -(p1 + p2), p1 * p2});
+        }
+
+        // -----------------  passband gain on the first section  -----------
+        // evaluate at z = 1 (lowpass) or z = -1 (highpass), where z^-1 = z
+        double z0 = highpass ? -1.0 : 1.0;
+        double response = 1.0;
+        for (double[] s : sections)
+            response *= (s[0] + s[1] * z0 + s[2]) / (s[3] + s[4] * z0 + s[5]);
+        double[][] sos = sections.toArray(new double[0][]);
+        for (int ind0 = 0; ind0 < 3; ind0++)
+            sos[0][ind0] *= passGain / response;
+        return sos;
+    }
+
+    /** Prewarped frequency transform followed by the bilinear transform */
+    private static Complex bilinear(Complex s, double warped, boolean highpass){
+        Complex scaled = highpass ? new Complex(warped).divide(s) : s.multiply(warped);
+        return Complex.ONE.add(scaled).divide(Complex.ONE.subtract(scaled));
+    }
+
+    /** Keep one root of each conjugate pair, and the real roots */
+    private static void sortRoot(Complex root, List<Complex> pairs,
+            List<Double> reals){
+        if (Math.abs(root.getImaginary()) <= 1e-10 * Math.max(1, root.abs()))
+            reals.add(root.getReal());
+        else if (root.getImaginary() > 0)
+            pairs.add(root);
+    }
+
+    /**
+     * Remove the zeros for a section of numPoles poles around p: the
+     * nearest conjugate pair for two poles if any are left, otherwise up
+     * to numPoles real zeros.
+     * @return {b0, b1, b2} with b0 = 1
+     */
+    private static double[] takeZeros(List<Complex> zeroPairs,
+            List<Double> realZeros, Complex p, int numPoles){
+        if (!zeroPairs.isEmpty() && (numPoles == 2 || realZeros.isEmpty())){
+            Complex best = zeroPairs.get(0);
+            for (Complex z : zeroPairs)
+                if (z.subtract(p).abs() < best.subtract(p).abs())
+                    best = z;
+            zeroPairs.remove(best);
+            return new double[] {1, -2 * best.getReal(), best.abs() * best.abs()};
+        }
+        double[] roots = new double[2];
+        int numZeros = 0;
+        while (numZeros < numPoles && !realZeros.isEmpty())
+            roots[numZeros++] = realZeros.remove(realZeros.size() - 1);
+        return new double[] {1, -(roots[0] + roots[1]), roots[0] * roots[1]};
+    }
+
+    // ----------  Jacobi elliptic functions by Landen transformations  ------
+    /** Descending Landen sequence of moduli */
+    private static double[] landen(double k){
+        List<Double> moduli = new ArrayList<>();
+        while (k > 1e-15){
+            double kp = Math.sqrt(1 - k * k);
+            k = Math.pow(k / (1 + kp), 2);
+            moduli.add(k);
+        }
+        double[] out = new double[moduli.size()];
+        for (int ind0 = 0; ind0 < out.length; ind0++)
+            out[ind0] = moduli.get(ind0);
+        return out;
+    }
+
+    /** cd(u K, k), u in units of the quarter period K */
+    private static Complex cde(Complex u, double k){
+        return ascend(u.multiply(Math.PI / 2).cos(), k);
+    }
+
+    /** sn(u K, k), u in units of the quarter period K */
+    private static Complex sne(Complex u, double k){
+        return ascend(u.multiply(Math.PI / 2).sin(), k);
+    }
+
+    /** Ascending Landen transformation from modulus 0 back to k */
+    private static Complex ascend(Complex w, double k){
+        double[] v = landen(k);
+        for (int ind0 = v.length - 1; ind0 >= 0; ind0--){
+            w = w.multiply(1 + v[ind0]).divide(
+                Complex.ONE.add(w.multiply(w).multiply(v[ind0])));
+        }
+        return w;
+    }
+
+    /** Inverse of sne: u such that sn(u K, k) = w */
+    private static Complex asne(Complex w, double k){
+        double[] v = landen(k);
+        double v1 = k;
+        for (int ind0 = 0; ind0 < v.length; ind0++){
+            Complex root = Complex.ONE.subtract(
+                w.multiply(w).multiply(v1 * v1)).sqrt();
+            w = w.divide(Complex.ONE.add(root)).multiply(2 / (1 + v[ind0]));
+            v1 = v[ind0];
+        }
+        // acde then asne = 1 - acde
+        return Complex.ONE.subtract(w.acos().multiply(2 / Math.PI));
+    }
+
+    /** Solve the degree equation for the selectivity modulus k */
+    private static double ellipdeg(int order, double k1){
+        double k1p = Math.sqrt(1 - k1 * k1);
+        double prod = 1.0;
+        for (int ind0 = 1; ind0 <= order / 2; ind0++){
+            double ui = (2.0 * ind0 - 1) / order;
+            prod *= sne(new Complex(ui), k1p).getReal();
+        }
+        double kp = Math.pow(k1p, order) * Math.pow(prod, 4);
+        return Math.sqrt(1 - kp * kp);
+    }
+}
@@ -1,6 +1,7 @@
 package net.kcundercover.jdsp.filters;
 import net.kcundercover.jdsp.filters.FilterDesign;
 import net.kcundercover.jdsp.math.Convolve;
+import net.kcundercover.jdsp.math.ConvolveCalibration;
 import java.security.InvalidParameterException;
 /**
  * The FilterF class will implement the following static methods:
@@ -15,8 +16,17 @@ public class FilterF{
     /** Denominator of filter */
     private float[] coefDenominator;
 
-    /** State of the filter */
-    private float[] filterState;
+    /** State of the filter (streaming FIR over the numerator) */
+    private StreamingFirF filterState;
+
+    /** Recursive state, null for FIR designs */
+    private IirFilterF iirState;
+
+    /**
+     * FIR designs filter long blocks with overlap-save, null to choose from
+     * the crossover table of {@link ConvolveCalibration#getDefault}
+     */
+    private Boolean fftBlocks = null;
 
     /**Constructor
      *
@@ -30,6 +40,7 @@ public class FilterF{
         // initialize to moving average filter
         coefNumerator = FilterDesign.designMovingAverageF(numNumerator);
         coefDenominator = new float[0];
+        filterState = newFirState();
     }
 
     /**
@@ -37,7 +48,9 @@ public class FilterF{
      * and design technique.  This will update interal properties.
      *
      * @param numNum Number of numerator filter coefs.
-     * @param numDen Number of denominator filter coefs.
+     * @param numDen Number of denominator filter coefs.  For the IIR
+     *     designs (BUTTERWORTH, CHEBYSHEV, ELLIPTIC) the order is numDen - 1
+     *     and numNum is ignored.
      * @param design The design technique to use.
      * @param bandwidth Normalized bandwidth. (0.5 = half the sampling rate)
      */
@@ -54,7 +67,8 @@ public class FilterF{
             case "MOVING AVERAGE":
                 coefNumerator = FilterDesign.designMovingAverageF(numNum);
                 coefDenominator = new float[0];
-                filterState = new float[numNum - 1];
+                filterState = newFirState();
+                iirState = null;
                 break;
 
             // handle window design method
@@ -64,7 +78,16 @@ public class FilterF{
                 coefNumerator = FilterDesign.firWindowDesignF(
                     numNum, design, bandwidth);
                 coefDenominator = new float[0];
-                filterState = new float[numNum - 1];
+                filterState = newFirState();
+                iirState = null;
+                break;
+
+            // recursive designs, numDen - 1 poles as biquads
+            case "BUTTERWORTH":
+            case "CHEBYSHEV":
+            case "ELLIPTIC":
+                setFilter(FilterDesign.designIirSos(design, numDen - 1,
+                    bandwidth / 2));
                 break;
 
             // no matches...design not supported
@@ -80,22 +103,109 @@ public class FilterF{
      * @return Filtered output
      */
     public float[] applyFilter(float[] input){
+        // ----------  filter with the state kept by the stream  -----------
+        float[] output = new float[input.length];
+        applyFilter(input, 0, output, 0, input.length);
+        return output;
+    }
+
+    /**
+     * Apply the filter to part of a signal, writing into a buffer owned by
+     * the caller.  Nothing is allocated, and src and dst may be the same
+     * array with the same offset.
+     * @param src Input signal
+     * @param srcOff Offset of the first input sample
+     * @param dst Filtered output
+     * @param dstOff Offset of the first output sample
+     * @param len Number of samples
+     */
+    public void applyFilter(float[] src, int srcOff, float[] dst, int dstOff,
+            int len){
+        // -------------------------  error checking  -----------------------
+        Blocks.check(src.length, srcOff, len, dst.length, dstOff, len);
+
+        if (iirState != null)
+            iirState.process(src, srcOff, dst, dstOff, len);
+        else
+            filterState.process(src, srcOff, dst, dstOff, len);
+    }
+
+    /**
+     * Use a cascade of second order sections (clears the state)
+     * @param sos Rows of {b0, b1, b2, a0, a1, a2}
+     */
+    public void setFilter(double[][] sos){
+        iirState = new IirFilterF(sos);
+        double[][] tf = FilterDesign.sosToTransferFunction(sos);
+        coefNumerator = toFloat(tf[0]);
+        coefDenominator = toFloat(tf[1]);
+    }
 
-        // ------------------------  load filter state  ---------------------
-        float[] tmp = new float[input.length + filterState.length];
-        System.arraycopy(filterState, 0, tmp, 0, filterState.length);
-        System.arraycopy(input, 0, tmp, filterState.length, input.length);
-        float[] output = Convolve.convolve(tmp, coefNumerator);
+    /**
+     * Use the transfer function B(z) / A(z) (clears the state).  An empty
+     * or {1} denominator gives an FIR filter.
+     * @param numerator Feed forward taps b
+     * @param denominator Feedback taps a
+     */
+    public void setFilter(float[] numerator, float[] denominator){
+        coefNumerator = numerator.clone();
+        coefDenominator = denominator.clone();
+        if (denominator.length == 0 ||
+                (denominator.length == 1 && denominator[0] == 1)){
+            filterState = newFirState();
+            iirState = null;
+        }
+        else
+            iirState = new IirFilterF(toDouble(numerator), toDouble(denominator));
+    }
 
+    /**
+     * Filter long blocks of FIR designs with overlap-save FFT blocks
+     * instead of the direct form (clears the state of FIR designs).  The
+     * FFT size only depends on the number of taps.  The output then
+     * differs from the direct form by rounding.  Until this is called the
+     * choice follows the crossover table, see {@link #isFftBlocks}.
+     * @param enabled True for overlap-save, false for the direct form
+     */
+    public void setFftBlocks(boolean enabled){
+        fftBlocks = enabled;
+        if (iirState == null)
+            filterState = newFirState();
+    }
 
-        // update filterState
-        System.arraycopy(tmp, tmp.length - filterState.length,
-            filterState, 0, filterState.length);
+    /**
+     * Check if FIR designs filter long blocks with overlap-save.  Unless
+     * set by {@link #setFftBlocks}, overlap-save is used when the default
+     * crossover table does not pick the direct form for one FFT block of
+     * new samples against the taps.
+     * @return True for overlap-save, false for the direct form
+     */
+    public boolean isFftBlocks(){
+        return iirState == null && filterState.isFrequencyDomain();
+    }
 
-        // prepare output
-        tmp = new float[input.length];
-        System.arraycopy(output, filterState.length, tmp, 0, tmp.length);
+    /** New streaming FIR over the numerator */
+    private StreamingFirF newFirState(){
+        int numTaps = coefNumerator.length;
+        int nfft = StreamingFirF.fftSizeFor(numTaps);
+        boolean useFft = fftBlocks != null ? fftBlocks :
+            ConvolveCalibration.getDefault().select(
+                ConvolveCalibration.Kind.FLOAT, nfft - numTaps + 1, numTaps) !=
+            Convolve.Strategy.DIRECT;
+        return new StreamingFirF(coefNumerator, useFft ? nfft : 0);
+    }
+
+    private static float[] toFloat(double[] values){
+        float[] out = new float[values.length];
+        for (int ind0 = 0; ind0 < values.length; ind0++)
+            out[ind0] = (float) values[ind0];
+        return out;
+    }
 
-        return tmp;
+    private static double[] toDouble(float[] values){
+        double[] out = new double[values.length];
+        for (int ind0 = 0; ind0 < values.length; ind0++)
+            out[ind0] = values[ind0];
+        return out;
     }
 }
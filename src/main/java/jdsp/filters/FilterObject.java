@@ -10,6 +10,24 @@ public class FilterObject{
     /** Numerator of the filter */
     private double[] numerator = {1.0};
 
+    /** Numerator in reverse order, for the direct form kernels */
+    private double[] reversed = {1.0};
+
+    /** Linear phase symmetry of the numerator */
+    private Convolve.Symmetry symmetry = Convolve.Symmetry.NONE;
+
+    /** New complex samples per streaming chunk */
+    private final static int STREAM_CHUNK = 2048;
+
+    /**
+     * Complex interleaved stream state: the last M-1 input samples
+     * followed by room for one chunk (allocated on first use)
+     */
+    private double[] streamWork;
+
+    /** Interleaved output scratch of the split real / imaginary stream */
+    private double[] streamOut;
+
     /** Denominator of the filter */
     private double[] denominator = {1.0};
 
@@ -21,7 +39,9 @@ public class FilterObject{
     // -------------------------  get methods  ------------------------------
     // ======================================================================
     /**
-     * Get the numerator (feed forward taps)
+     * Get the numerator (feed forward taps).  This is the live array used by
+     * the filter, not a copy: after editing it in place, pass it back to
+     * {@link #setNumerator} so the cached reversed taps and symmetry follow.
      * @return Feed forward taps of a filter
      */
     public double[] getNumerator() { return this.numerator; }
@@ -32,17 +52,27 @@ public class FilterObject{
      */
     public double[] getDenominator() { return this.denominator; }
 
+    /**
+     * Get the linear phase symmetry detected in the numerator
+     * @return Symmetry of the feed forward taps
+     */
+    public Convolve.Symmetry getSymmetry() { return this.symmetry; }
+
     // ======================================================================
     // -------------------------  set methods  ------------------------------
     // ======================================================================
-    /** Set the numerator(feedfoward taps) of the FilterObject
+    /** Set the numerator(feedfoward taps) of the FilterObject.  The taps
+     * are copied, so later edits of the caller's array have no effect.
      *
      * @param numerator Numerator of the filter
      */
     public void setNumerator(double [] numerator){
         assert numerator.length >= 1:
             "Expecting numerator with length >= 1";
-        this.numerator = numerator;
+        this.numerator = numerator.clone();
+        this.reversed = Convolve.reverse(numerator);
+        this.symmetry = Convolve.symmetryOf(reversed);
+        this.streamWork = null;
     }
 
     /** Set the denominator (feedback taps) of the FilterObject
@@ -59,7 +89,7 @@ public class FilterObject{
      * @return Complex interleaved filted output
      */
     public double[] filterComplexInterleaved(double[] complexInput){
-        return Convolve.convolveRealComplex(this.getNumerator(), complexInput);
+        return Convolve.convolveRealComplexAuto(this.getNumerator(), complexInput);
     }
     /** Filter a real input signal
      *
@@ -67,6 +97,181 @@ public class FilterObject{
      * @return Filtered signal
      */
     public double[] filterReal(double[] realInput){
-        return Convolve.convolve(this.getNumerator(), realInput);
+        return Convolve.convolveAuto(this.getNumerator(), realInput);
+    }
+
+    /**
+     * Filter part of a real signal into a buffer owned by the caller.
+     * Like {@link #filterReal(double[])} the full convolution is written,
+     * so dst needs room for len + M - 1 samples.  Nothing is allocated.
+     *
+     * @param src Real input signal
+     * @param srcOff Offset of the first input sample
+     * @param dst Filtered signal
+     * @param dstOff Offset of the first output sample
+     * @param len Number of input samples
+     * @return Number of output samples written (len + M - 1)
+     */
+    public int filterReal(double[] src, int srcOff, double[] dst, int dstOff,
+            int len){
+        int numOut = len + reversed.length - 1;
+        Blocks.check(src.length, srcOff, len, dst.length, dstOff, numOut);
+        fullConvolve(src, srcOff, 1, len, dst, dstOff);
+        return numOut;
+    }
+
+    /**
+     * Filter part of a complex interleaved signal into a buffer owned by
+     * the caller.  Like {@link #filterComplexInterleaved(double[])} the
+     * full convolution is written, so dst needs room for 2 * (len + M - 1)
+     * values.  Nothing is allocated.
+     *
+     * @param src Complex interleaved input signal
+     * @param srcOff Offset (in doubles) of the first input sample
+     * @param dst Complex interleaved filtered signal
+     * @param dstOff Offset (in doubles) of the first output sample
+     * @param len Number of complex input samples
+     * @return Number of complex output samples written (len + M - 1)
+     */
+    public int filterComplexInterleaved(double[] src, int srcOff, double[] dst,
+            int dstOff, int len){
+        int numOut = len + reversed.length - 1;
+        Blocks.check(src.length, srcOff, 2 * len, dst.length, dstOff, 2 * numOut);
+        fullConvolve(src, srcOff, 2, len, dst, dstOff);
+        return numOut;
+    }
+
+    /**
+     * Full convolution of len samples (stride 1 real, stride 2 complex
+     * interleaved) with the numerator.  Outputs where every tap overlaps
+     * the input use the vector kernel, the ramp in and out are scalar.
+     */
+    private void fullConvolve(double[] src, int srcOff, int stride, int len,
+            double[] dst, int dstOff){
+        int lag = stride * (reversed.length - 1);
+        int numIn = stride * len;
+        int numOut = numIn + lag;
+
+        // full overlap outputs [lag, numIn)
+        int start = Math.min(lag, numOut);
+        int end = Math.max(start, numIn);
+        if (end > start)
+            Convolve.convolveValid(src, srcOff + start - lag, stride, reversed,
+                symmetry, dst, dstOff + start, end - start);
+
+        for (int ind0 = 0; ind0 < start; ind0++)
+            dst[dstOff + ind0] = partial(src, srcOff, stride, numIn, ind0);
+        for (int ind0 = end; ind0 < numOut; ind0++)
+            dst[dstOff + ind0] = partial(src, srcOff, stride, numIn, ind0);
+    }
+
+    /** Output where only some taps overlap the input */
+    private double partial(double[] src, int srcOff, int stride, int numIn,
+            int ind){
+        int base = ind - stride * (reversed.length - 1);
+        int lo = base >= 0 ? 0 : (stride - 1 - base) / stride;
+        int hi = Math.min(reversed.length, (numIn - 1 - base) / stride + 1);
+        double sum = 0;
+        for (int tap = lo; tap < hi; tap++)
+            sum += reversed[tap] * src[srcOff + base + stride * tap];
+        return sum;
+    }
+
+    // ======================================================================
+    // ----------------------  streaming complex filter  ---------------------
+    // ======================================================================
+    /**
+     * Filter the next block of a continuous complex interleaved stream.
+     * The last M-1 samples are carried between calls so exactly one output
+     * is produced per input, as if the whole stream was filtered at once.
+     * Nothing is allocated after the first call, and src and dst may be the
+     * same array with the same offset.
+     *
+     * @param src Complex interleaved input signal
+     * @param srcOff Offset (in doubles) of the first input sample
+     * @param dst Complex interleaved filtered signal
+     * @param dstOff Offset (in doubles) of the first output sample
+     * @param len Number of complex samples
+     */
+    public void streamComplexInterleaved(double[] src, int srcOff, double[] dst,
+            int dstOff, int len){
+        Blocks.check(src.length, srcOff, 2 * len, dst.length, dstOff, 2 * len);
+        double[] work = streamWork();
+        int hist = 2 * (reversed.length - 1);
+        for (int pos = 0; pos < len; ){
+            int num = Math.min(STREAM_CHUNK, len - pos);
+            System.arraycopy(src, srcOff + 2 * pos, work, hist, 2 * num);
+            Convolve.convolveValid(work, 0, 2, reversed, symmetry,
+                dst, dstOff + 2 * pos, 2 * num);
+            System.arraycopy(work, 2 * num, work, 0, hist);
+            pos += num;
+        }
+    }
+
+    /**
+     * Filter the next block of a continuous complex interleaved stream.
+     * @param complexInput Complex interleaved input signal
+     * @return Complex interleaved filtered signal (same length as input)
+     * @see #streamComplexInterleaved(double[], int, double[], int, int)
+     */
+    public double[] streamComplexInterleaved(double[] complexInput){
+        if (complexInput.length % 2 == 1)
+            throw new IllegalArgumentException(
+                "Expecting interleaved complex, should be even number");
+        double[] output = new double[complexInput.length];
+        streamComplexInterleaved(complexInput, 0, output, 0,
+            complexInput.length / 2);
+        return output;
+    }
+
+    /**
+     * Filter the next block of a continuous complex stream held as
+     * separate real and imaginary arrays.  Shares its state with
+     * {@link #streamComplexInterleaved}, so the two can be mixed.
+     *
+     * @param srcReal Real part of the input
+     * @param srcImag Imaginary part of the input
+     * @param srcOff Offset of the first input sample
+     * @param dstReal Real part of the output
+     * @param dstImag Imaginary part of the output
+     * @param dstOff Offset of the first output sample
+     * @param len Number of complex samples
+     */
+    public void streamComplex(double[] srcReal, double[] srcImag, int srcOff,
+            double[] dstReal, double[] dstImag, int dstOff, int len){
+        Blocks.check(srcReal.length, srcOff, len, dstReal.length, dstOff, len);
+        Blocks.check(srcImag.length, srcOff, len, dstImag.length, dstOff, len);
+        double[] work = streamWork();
+        int hist = 2 * (reversed.length - 1);
+        for (int pos = 0; pos < len; ){
+            int num = Math.min(STREAM_CHUNK, len - pos);
+            for (int ind0 = 0; ind0 < num; ind0++){
+                work[hist + 2 * ind0] = srcReal[srcOff + pos + ind0];
+                work[hist + 2 * ind0 + 1] = srcImag[srcOff + pos + ind0];
+            }
+            Convolve.convolveValid(work, 0, 2, reversed, symmetry,
+                streamOut, 0, 2 * num);
+            for (int ind0 = 0; ind0 < num; ind0++){
+                dstReal[dstOff + pos + ind0] = streamOut[2 * ind0];
+                dstImag[dstOff + pos + ind0] = streamOut[2 * ind0 + 1];
+            }
+            System.arraycopy(work, 2 * num, work, 0, hist);
+            pos += num;
+        }
+    }
+
+    /** Clear the state of the complex stream (zero history) */
+    public void resetStream(){
+        if (streamWork != null)
+            java.util.Arrays.fill(streamWork, 0);
+    }
+
+    /** Stream buffers for the current numerator */
+    private double[] streamWork(){
+        if (streamWork == null){
+            streamWork = new double[2 * (reversed.length - 1 + STREAM_CHUNK)];
+            streamOut = new double[2 * STREAM_CHUNK];
+        }
+        return streamWork;
     }
-}
\ No newline at end of file
+}
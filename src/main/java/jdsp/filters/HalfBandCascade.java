@@ -0,0 +1,199 @@
+/**
+ * Chain of half-band decimators.
+ *
+ * @author Keith Chow
+ */
+package net.kcundercover.jdsp.filters;
+
+/**
+ * Decimation by 2^k as a chain of {@link HalfBandDecimator} stages.  Only
+ * the last stage has to be sharp: every earlier stage only protects the
+ * final passband from aliasing, so its transition band is twice as wide
+ * and it needs about half the taps of the stage after it.  Each call runs
+ * the input through all stages in cache sized chunks.
+ */
+public class HalfBandCascade {
+    /** Shortest stage (K = 1) */
+    public final static int MIN_TAPS = 7;
+
+    /** Input samples per chunk (multiple of every stage ratio) */
+    private final static int CHUNK = 4096;
+
+    /** Stages, first runs at the input rate */
+    private final HalfBandDecimator[] stages;
+
+    /** Ping-pong buffers between stages */
+    private final double[] bufA, bufB;
+
+    /**
+     * Cascade with the default half-band designs
+     * @param numStages Number of stages k (decimation 2^k)
+     * @param finalTaps Taps of the last stage (4K + 3), earlier stages
+     *     use about half the taps of the next one
+     * @see #stageTaps
+     */
+    public HalfBandCascade(int numStages, int finalTaps){
+        this(designStages(numStages, finalTaps));
+    }
+
+    /**
+     * Cascade of caller designed stages
+     * @param stageTaps Half-band taps of each stage, first stage first
+     */
+    public HalfBandCascade(double[][] stageTaps){
+        if (stageTaps.length < 1 || stageTaps.length > 30)
+            throw new IllegalArgumentException("Expecting 1 to 30 stages");
+        stages = new HalfBandDecimator[stageTaps.length];
+        for (int ind0 = 0; ind0 < stages.length; ind0++)
+            stages[ind0] = new HalfBandDecimator(stageTaps[ind0]);
+        bufA = new double[CHUNK + 2];
+        bufB = new double[CHUNK + 2];
+    }
+
+    /**
+     * Number of taps of each stage of the default cascade
+     * @param numStages Number of stages k
+     * @param finalTaps Taps of the last stage (4K + 3)
+     * @return Taps per stage, first stage first
+     */
+    public static int[] stageTaps(int numStages, int finalTaps){
+        if (numStages < 1)
+            throw new IllegalArgumentException("Expecting at least 1 stage");
+        int[] taps = new int[numStages];
+        taps[numStages - 1] = finalTaps;
+        for (int ind0 = numStages - 2; ind0 >= 0; ind0--){
+            // 4K + 3 nearest to half the next stage
+            int half = (taps[ind0 + 1] + 1) / 2;
+            taps[ind0] = Math.max(MIN_TAPS, 4 * Math.round((half - 3) / 4.0f) + 3);
+        }
+        return taps;
+    }
+
+    private static double[][] designStages(int numStages, int finalTaps){
+        int[] taps = stageTaps(numStages, finalTaps);
+        double[][] stageTaps = new double[numStages][];
+        for (int ind0 = 0; ind0 < numStages; ind0++)
+            stageTaps[ind0] = FilterDesign.designHalfBand(taps[ind0]);
+        return stageTaps;
+    }
+
+    // ======================================================================
+    // ----------------------------  getters  -------------------------------
+    // ======================================================================
+    /**
+     * Get the number of stages
+     * @return k
+     */
+    public int getNumStages() { return stages.length; }
+
+    /**
+     * Get the total decimation
+     * @return 2^k
+     */
+    public int getDecimation() { return 1 << stages.length; }
+
+    /**
+     * Get the number of outputs the next call will produce
+     * @param len Number of (real or complex) input samples of the next call
+     * @return Number of output samples
+     */
+    public int getNumOutputs(int len){
+        for (HalfBandDecimator stage : stages)
+            len = stage.getNumOutputs(len);
+        return len;
+    }
+
+    /** Clear the history of every stage */
+    public void reset(){
+        for (HalfBandDecimator stage : stages)
+            stage.reset();
+    }
+
+    // ======================================================================
+    // ---------------------------  processing  -----------------------------
+    // ======================================================================
+    /**
+     * Decimate real samples by 2^k.  Nothing is allocated.
+     * @param src Input samples
+     * @param srcOff Offset of the first input sample
+     * @param dst Output samples (room for {@link #getNumOutputs} samples)
+     * @param dstOff Offset of the first output sample
+     * @param len Number of input samples
+     * @return Number of output samples written
+     */
+    public int process(double[] src, int srcOff, double[] dst, int dstOff,
+            int len){
+        int numOut = getNumOutputs(len);
+        Blocks.check(src.length, srcOff, len, dst.length, dstOff, numOut);
+        return run(src, srcOff, dst, dstOff, len, false);
+    }
+
+    /**
+     * Decimate real samples by 2^k.
+     * @param input Input samples
+     * @return Decimated output
+     */
+    public double[] process(double[] input){
+        double[] output = new double[getNumOutputs(input.length)];
+        process(input, 0, output, 0, input.length);
+        return output;
+    }
+
+    /**
+     * Decimate complex interleaved samples by 2^k.  Nothing is allocated
+     * after the first call.
+     * @param src Complex interleaved input
+     * @param srcOff Offset (in doubles) of the first input sample
+     * @param dst Complex interleaved output (room for
+     *     {@link #getNumOutputs} samples)
+     * @param dstOff Offset (in doubles) of the first output sample
+     * @param len Number of complex input samples
+     * @return Number of complex output samples written
+     */
+    public int processComplexInterleaved(double[] src, int srcOff, double[] dst,
+            int dstOff, int len){
+        int numOut = getNumOutputs(len);
+        Blocks.check(src.length, srcOff, 2 * len, dst.length, dstOff, 2L * numOut);
+        return run(src, srcOff, dst, dstOff, len, true);
+    }
+
+    /**
+     * Decimate complex interleaved samples by 2^k.
+     * @param complexInput Complex interleaved input
+     * @return Complex interleaved decimated output
+     */
+    public double[] processComplexInterleaved(double[] complexInput){
+        if (complexInput.length % 2 == 1)
+            throw new IllegalArgumentException(
+                "Expecting interleaved complex, should be even number");
+        int len = complexInput.length / 2;
+        double[] output = new double[2 * getNumOutputs(len)];
+        processComplexInterleaved(complexInput, 0, output, 0, len);
+        return output;
+    }
+
+    /** Chunk by chunk through every stage */
+    private int run(double[] src, int srcOff, double[] dst, int dstOff, int len,
+            boolean complex){
+        int width = complex ? 2 : 1;
+        int step = CHUNK / width;
+        int count = 0;
+        for (int pos = 0; pos < len; pos += step){
+            double[] in = src;
+            int inOff = srcOff + width * pos;
+            int num = Math.min(step, len - pos);
+            for (int ind0 = 0; ind0 < stages.length; ind0++){
+                boolean last = ind0 == stages.length - 1;
+                double[] out = last ? dst : (in == bufA ? bufB : bufA);
+                int outOff = last ? dstOff + width * count : 0;
+                num = complex ?
+                    stages[ind0].processComplexInterleaved(in, inOff, out, outOff, num) :
+                    stages[ind0].process(in, inOff, out, outOff, num);
+                in = out;
+                inOff = 0;
+            }
+            count += num;
+        }
+        return count;
+    }
+}
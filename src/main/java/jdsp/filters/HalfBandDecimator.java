@@ -0,0 +1,220 @@
+/**
+ * Half-band decimate by 2 filter.
+ *
+ * @author Keith Chow
+ */
+package net.kcundercover.jdsp.filters;
+import java.util.Arrays;
+import net.kcundercover.jdsp.math.Convolve;
+
+/**
+ * Streaming half-band lowpass followed by decimation by 2.  A half-band
+ * filter of 4K + 3 taps has every tap at an even distance from the center
+ * equal to zero, so each output y[m] (newest input x[2m]) is
+ * <pre>
+ * y[m] = h[c] x[2m - c] + sum_j h[2j] x[2m - 2j]      (c = 2K + 1)
+ * </pre>
+ * Only the 2K + 2 nonzero taps are applied, to the even samples, and only
+ * for the outputs that are kept: about a quarter of the multiplies of a
+ * full rate convolution followed by decimation.
+ *
+ * The history and the decimation phase carry over between calls (one real
+ * or complex stream per instance).
+ */
+public class HalfBandDecimator {
+    /** New input samples per chunk (even) */
+    private final static int CHUNK = 4096;
+
+    /** Number of taps 4K + 3 */
+    private final int numTaps;
+
+    /** Taps h[2j] in reverse order */
+    private final double[] branch;
+
+    /** Linear phase symmetry of the branch taps */
+    private final Convolve.Symmetry symmetry;
+
+    /** Center tap h[c] */
+    private final double center;
+
+    /** Input samples kept between calls (numTaps - 1) */
+    private final int hist;
+
+    /** History followed by the current chunk, per channel (real or I, Q) */
+    private final double[][] work = new double[2][];
+
+    /** Even samples of the current chunk, and outputs of complex chunks */
+    private final double[] gather, result;
+
+    /** Index of the newest sample of the next output, per channel */
+    private final int[] next = new int[2];
+
+    /**
+     * Constructor with the default half-band design
+     * @param numTaps Number of taps (4K + 3)
+     * @see FilterDesign#designHalfBand
+     */
+    public HalfBandDecimator(int numTaps){
+        this(FilterDesign.designHalfBand(numTaps));
+    }
+
+    /**
+     * Constructor
+     * @param taps Half-band taps (4K + 3), the taps at an even distance
+     *     from the center are treated as zero
+     */
+    public HalfBandDecimator(double[] taps){
+        // ---------------------  error checking  ---------------------------
+        if (taps.length < 3 || taps.length % 4 != 3)
+            throw new IllegalArgumentException(
+                "Half-band filters need 4K + 3 taps");
+
+        numTaps = taps.length;
+        branch = new double[numTaps / 2 + 1];
+        for (int ind0 = 0; ind0 < branch.length; ind0++)
+            branch[ind0] = taps[numTaps - 1 - 2 * ind0];
+        symmetry = Convolve.symmetryOf(branch);
+        center = taps[numTaps / 2];
+        hist = numTaps - 1;
+        work[0] = new double[hist + CHUNK];
+        gather = new double[CHUNK / 2 + branch.length];
+        result = new double[CHUNK / 2 + 1];
+    }
+
+    // ======================================================================
+    // ----------------------------  getters  -------------------------------
+    // ======================================================================
+    /**
+     * Get the number of taps
+     * @return 4K + 3
+     */
+    public int getNumTaps() { return numTaps; }
+
+    /**
+     * Get the number of outputs the next call will produce
+     * @param len Number of (real or complex) input samples of the next call
+     * @return Number of output samples
+     */
+    public int getNumOutputs(int len){
+        return next[0] < len ? (len - next[0] + 1) / 2 : 0;
+    }
+
+    /** Clear the history and the decimation phase */
+    public void reset(){
+        for (double[] w : work)
+            if (w != null)
+                Arrays.fill(w, 0, hist, 0);
+        Arrays.fill(next, 0);
+    }
+
+    // ======================================================================
+    // ---------------------------  processing  -----------------------------
+    // ======================================================================
+    /**
+     * Filter and decimate real samples.  Nothing is allocated.  src and
+     * dst may be the same array and offset.
+     * @param src Input samples
+     * @param srcOff Offset of the first input sample
+     * @param dst Output samples (room for {@link #getNumOutputs} samples)
+     * @param dstOff Offset of the first output sample
+     * @param len Number of input samples
+     * @return Number of output samples written
+     */
+    public int process(double[] src, int srcOff, double[] dst, int dstOff,
+            int len){
+        Blocks.check(src.length, srcOff, len, dst.length, dstOff,
+            getNumOutputs(len));
+        return decimate(src, srcOff, 1, len, 0, dst, dstOff, 1);
+    }
+
+    /**
+     * Filter and decimate real samples.
+     * @param input Input samples
+     * @return Decimated output
+     */
+    public double[] process(double[] input){
+        double[] output = new double[getNumOutputs(input.length)];
+        process(input, 0, output, 0, input.length);
+        return output;
+    }
+
+    /**
+     * Filter and decimate complex interleaved samples.  Nothing is
+     * allocated after the first call.  src and dst may be the same array
+     * and offset.
+     * @param src Complex interleaved input
+     * @param srcOff Offset (in doubles) of the first input sample
+     * @param dst Complex interleaved output (room for
+     *     {@link #getNumOutputs} samples)
+     * @param dstOff Offset (in doubles) of the first output sample
+     * @param len Number of complex input samples
+     * @return Number of complex output samples written
+     */
+    public int processComplexInterleaved(double[] src, int srcOff, double[] dst,
+            int dstOff, int len){
+        Blocks.check(src.length, srcOff, 2 * len, dst.length, dstOff,
+            2 * getNumOutputs(len));
+        if (work[1] == null)
+            work[1] = new double[hist + CHUNK];
+        int count = 0;
+        for (int pos = 0; pos < len; pos += CHUNK){
+            int num = Math.min(CHUNK, len - pos);
+            decimate(src, srcOff + 2 * pos, 2, num, 0, dst, dstOff + 2 * count, 2);
+            count += decimate(src, srcOff + 2 * pos + 1, 2, num, 1,
+                dst, dstOff + 2 * count + 1, 2);
+        }
+        return count;
+    }
+
+    /**
+     * Filter and decimate complex interleaved samples.
+     * @param complexInput Complex interleaved input
+     * @return Complex interleaved decimated output
+     */
+    public double[] processComplexInterleaved(double[] complexInput){
+        if (complexInput.length % 2 == 1)
+            throw new IllegalArgumentException(
+                "Expecting interleaved complex, should be even number");
+        int len = complexInput.length / 2;
+        double[] output = new double[2 * getNumOutputs(len)];
+        processComplexInterleaved(complexInput, 0, output, 0, len);
+        return output;
+    }
+
+    /** Run one channel over len strided samples */
+    private int decimate(double[] src, int srcOff, int stride, int len, int ch,
+            double[] dst, int dstOff, int dstStride){
+        double[] w = work[ch];
+        int nxt = next[ch];
+        int count = 0;
+        for (int pos = 0; pos < len; ){
+            int num = Math.min(CHUNK, len - pos);
+            if (stride == 1)
+                System.arraycopy(src, srcOff + pos, w, hist, num);
+            else
+                for (int ind0 = 0; ind0 < num; ind0++)
+                    w[hist + ind0] = src[srcOff + stride * (pos + ind0)];
+
+            // --------  even samples through the nonzero taps only  --------
+            int numOut = nxt < num ? (num - nxt + 1) / 2 : 0;
+            if (numOut > 0){
+                for (int ind0 = 0; ind0 < numOut + branch.length - 1; ind0++)
+                    gather[ind0] = w[nxt + 2 * ind0];
+                Convolve.convolveValid(gather, 0, 1, branch, symmetry,
+                    result, 0, numOut);
+
+                // ---------------------  center tap  -----------------------
+                int centerOff = hist + nxt - numTaps / 2;
+                for (int ind0 = 0; ind0 < numOut; ind0++)
+                    dst[dstOff + dstStride * (count + ind0)] = result[ind0] +
+                        center * w[centerOff + 2 * ind0];
+            }
+            count += numOut;
+            nxt += 2 * numOut - num;
+            System.arraycopy(w, num, w, 0, hist);
+            pos += num;
+        }
+        next[ch] = nxt;
+        return count;
+    }
+}
@@ -0,0 +1,173 @@
+/**
+ * Half-band interpolate by 2 filter.
+ *
+ * @author Keith Chow
+ */
+package net.kcundercover.jdsp.filters;
+import java.util.Arrays;
+import net.kcundercover.jdsp.math.Convolve;
+
+/**
+ * Streaming interpolation by 2 with a half-band lowpass (gain 2).  With
+ * 4K + 3 taps and center c = 2K + 1, zero stuffing leaves two phases:
+ * <pre>
+ * y[2m]     = 2 sum_j h[2j] x[m - j]
+ * y[2m + 1] = 2 h[c] x[m - K]
+ * </pre>
+ * so the even outputs use only the 2K + 2 nonzero taps and the odd outputs
+ * are a delayed, scaled copy of the input.
+ */
+public class HalfBandInterpolator {
+    /** New input samples per chunk */
+    private final static int CHUNK = 4096;
+
+    /** Number of taps 4K + 3 */
+    private final int numTaps;
+
+    /** Taps 2 h[2j] in reverse order */
+    private final double[] branch;
+
+    /** Linear phase symmetry of the branch taps */
+    private final Convolve.Symmetry symmetry;
+
+    /** Odd phase gain 2 h[c] */
+    private final double center;
+
+    /** Input samples kept between calls (2K + 1) */
+    private final int hist;
+
+    /** History followed by the current chunk, per channel (real or I, Q) */
+    private final double[][] work = new double[2][];
+
+    /** Even outputs of the current chunk */
+    private final double[] result = new double[CHUNK];
+
+    /**
+     * Constructor with the default half-band design
+     * @param numTaps Number of taps (4K + 3)
+     * @see FilterDesign#designHalfBand
+     */
+    public HalfBandInterpolator(int numTaps){
+        this(FilterDesign.designHalfBand(numTaps));
+    }
+
+    /**
+     * Constructor
+     * @param taps Half-band taps (4K + 3), the taps at an even distance
+     *     from the center are treated as zero
+     */
+    public HalfBandInterpolator(double[] taps){
+        // ---------------------  error checking  ---------------------------
+        if (taps.length < 3 || taps.length % 4 != 3)
+            throw new IllegalArgumentException(
+                "Half-band filters need 4K + 3 taps");
+
+        numTaps = taps.length;
+        branch = new double[numTaps / 2 + 1];
+        for (int ind0 = 0; ind0 < branch.length; ind0++)
+            branch[ind0] = 2 * taps[numTaps - 1 - 2 * ind0];
+        symmetry = Convolve.symmetryOf(branch);
+        center = 2 * taps[numTaps / 2];
+        hist = branch.length - 1;
+        work[0] = new double[hist + CHUNK];
+    }
+
+    /**
+     * Get the number of taps
+     * @return 4K + 3
+     */
+    public int getNumTaps() { return numTaps; }
+
+    /** Clear the history */
+    public void reset(){
+        for (double[] w : work)
+            if (w != null)
+                Arrays.fill(w, 0, hist, 0);
+    }
+
+    // ======================================================================
+    // ---------------------------  processing  -----------------------------
+    // ======================================================================
+    /**
+     * Interpolate real samples.  Nothing is allocated.
+     * @param src Input samples
+     * @param srcOff Offset of the first input sample
+     * @param dst Output samples (room for 2 len samples)
+     * @param dstOff Offset of the first output sample
+     * @param len Number of input samples
+     * @return Number of output samples written (2 len)
+     */
+    public int process(double[] src, int srcOff, double[] dst, int dstOff,
+            int len){
+        Blocks.check(src.length, srcOff, len, dst.length, dstOff, 2L * len);
+        return interpolate(src, srcOff, 1, len, 0, dst, dstOff, 1);
+    }
+
+    /**
+     * Interpolate real samples.
+     * @param input Input samples
+     * @return Interpolated output
+     */
+    public double[] process(double[] input){
+        double[] output = new double[2 * input.length];
+        process(input, 0, output, 0, input.length);
+        return output;
+    }
+
+    /**
+     * Interpolate complex interleaved samples.  Nothing is allocated after
+     * the first call.
+     * @param src Complex interleaved input
+     * @param srcOff Offset (in doubles) of the first input sample
+     * @param dst Complex interleaved output (room for 2 len samples)
+     * @param dstOff Offset (in doubles) of the first output sample
+     * @param len Number of complex input samples
+     * @return Number of complex output samples written (2 len)
+     */
+    public int processComplexInterleaved(double[] src, int srcOff, double[] dst,
+            int dstOff, int len){
+        Blocks.check(src.length, srcOff, 2 * len, dst.length, dstOff, 4L * len);
+        if (work[1] == null)
+            work[1] = new double[hist + CHUNK];
+        interpolate(src, srcOff, 2, len, 0, dst, dstOff, 2);
+        return interpolate(src, srcOff + 1, 2, len, 1, dst, dstOff + 1, 2);
+    }
+
+    /**
+     * Interpolate complex interleaved samples.
+     * @param complexInput Complex interleaved input
+     * @return Complex interleaved interpolated output
+     */
+    public double[] processComplexInterleaved(double[] complexInput){
+        if (complexInput.length % 2 == 1)
+            throw new IllegalArgumentException(
+                "Expecting interleaved complex, should be even number");
+        double[] output = new double[2 * complexInput.length];
+        processComplexInterleaved(complexInput, 0, output, 0,
+            complexInput.length / 2);
+        return output;
+    }
+
+    /** Run one channel over len strided samples */
+    private int interpolate(double[] src, int srcOff, int stride, int len, int ch,
+            double[] dst, int dstOff, int dstStride){
+        double[] w = work[ch];
+        int delay = hist - numTaps / 4;
+        for (int pos = 0; pos < len; ){
+            int num = Math.min(CHUNK, len - pos);
+            for (int ind0 = 0; ind0 < num; ind0++)
+                w[hist + ind0] = src[srcOff + stride * (pos + ind0)];
+
+            // ----------  even phase: nonzero taps, odd phase: delay  -------
+            Convolve.convolveValid(w, 0, 1, branch, symmetry, result, 0, num);
+            for (int ind0 = 0; ind0 < num; ind0++){
+                int out = dstOff + dstStride * 2 * (pos + ind0);
+                dst[out] = result[ind0];
+                dst[out + dstStride] = center * w[delay + ind0];
+            }
+            System.arraycopy(w, num, w, 0, hist);
+            pos += num;
+        }
+        return 2 * len;
+    }
+}
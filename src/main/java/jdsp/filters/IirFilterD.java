@@ -0,0 +1,132 @@
+/**
+ * Streaming IIR filter.
+ *
+ * @author Keith Chow
+ */
+package net.kcundercover.jdsp.filters;
+import java.util.Arrays;
+
+/**
+ * Stateful IIR filter in direct form II transposed.  The filter is either
+ * one section of any order built from a numerator and denominator, or a
+ * cascade of second order sections (biquads), which keeps high order
+ * designs numerically stable.  Blocks of any size can be processed and
+ * the state carries over between calls.
+ */
+public class IirFilterD {
+    /** Numerator of each section (normalized by a0) */
+    private final double[][] numerators;
+
+    /** Denominator of each section (normalized by a0) */
+    private final double[][] denominators;
+
+    /** Delay line of each section */
+    private final double[][] states;
+
+    /**
+     * Single section filter with the transfer function B(z) / A(z)
+     * @param numerator Feed forward taps b
+     * @param denominator Feedback taps a (a[0] should not be 0)
+     */
+    public IirFilterD(double[] numerator, double[] denominator){
+        // ---------------------  error checking  ---------------------------
+        if (numerator.length == 0 || denominator.length == 0 ||
+                denominator[0] == 0)
+            throw new IllegalArgumentException(
+                "Expecting a numerator and a denominator with a[0] != 0");
+
+        // -----------------  normalize, pad to equal length  ---------------
+        int len = Math.max(numerator.length, denominator.length);
+        double[] b = new double[len];
+        double[] a = new double[len];
+        for (int ind0 = 0; ind0 < numerator.length; ind0++)
+            b[ind0] = numerator[ind0] / denominator[0];
+        for (int ind0 = 0; ind0 < denominator.length; ind0++)
+            a[ind0] = denominator[ind0] / denominator[0];
+        numerators = new double[][] {b};
+        denominators = new double[][] {a};
+        states = new double[][] {new double[len - 1]};
+    }
+
+    /**
+     * Cascade of second order sections
+     * @param sos Rows of {b0, b1, b2, a0, a1, a2}
+     * @see FilterDesign#designButterworthSos
+     */
+    public IirFilterD(double[][] sos){
+        if (sos.length == 0)
+            throw new IllegalArgumentException("Expecting at least 1 section");
+        numerators = new double[sos.length][];
+        denominators = new double[sos.length][];
+        states = new double[sos.length][2];
+        for (int ind0 = 0; ind0 < sos.length; ind0++){
+            double[] s = sos[ind0];
+            if (s.length != 6 || s[3] == 0)
+                throw new IllegalArgumentException(
+                    "Expecting sections of {b0, b1, b2, a0, a1, a2}, a0 != 0");
+            numerators[ind0] = new double[] {s[0] / s[3], s[1] / s[3], s[2] / s[3]};
+            denominators[ind0] = new double[] {1, s[4] / s[3], s[5] / s[3]};
+        }
+    }
+
+    /**
+     * Get the number of sections
+     * @return Number of cascaded sections
+     */
+    public int getNumSections() { return numerators.length; }
+
+    /** Clear the state (zero initial conditions) */
+    public void reset(){
+        for (double[] state : states)
+            Arrays.fill(state, 0);
+    }
+
+    /**
+     * Filter a block of samples.  In place operation (same array and
+     * offset) is allowed.  Nothing is allocated.
+     * @param src Input samples
+     * @param srcOff Offset of the first input sample
+     * @param dst Output samples
+     * @param dstOff Offset of the first output sample
+     * @param len Number of samples
+     */
+    public void process(double[] src, int srcOff, double[] dst, int dstOff,
+            int len){
+        for (int sec = 0; sec < numerators.length; sec++){
+            // first section reads the input, the rest run in place
+            double[] in = sec == 0 ? src : dst;
+            int inOff = sec == 0 ? srcOff : dstOff;
+            double[] b = numerators[sec];
+            double[] a = denominators[sec];
+            double[] z = states[sec];
+
+            if (b.length == 3){
+                // -------------------------  biquad  -----------------------
+                double b0 = b[0], b1 = b[1], b2 = b[2], a1 = a[1], a2 = a[2];
+                double z0 = z[0], z1 = z[1];
+                for (int ind0 = 0; ind0 < len; ind0++){
+                    double x = in[inOff + ind0];
+                    double y = b0 * x + z0;
+                    z0 = b1 * x - a1 * y + z1;
+                    z1 = b2 * x - a2 * y;
+                    dst[dstOff + ind0] = y;
+                }
+                z[0] = z0;
+                z[1] = z1;
+                continue;
+            }
+
+            // ----------------------  any order  ---------------------------
+            int order = b.length - 1;
+            for (int ind0 = 0; ind0 < len; ind0++){
+                double x = in[inOff + ind0];
+                double y = b[0] * x + (order > 0 ? z[0] : 0);
+                for (int ind1 = 0; ind1 < order - 1; ind1++)
+                    z[ind1] = b[ind1 + 1] * x - a[ind1 + 1] * y + z[ind1 + 1];
+                if (order > 0)
+                    z[order - 1] = b[order] * x - a[order] * y;
+                dst[dstOff + ind0] = y;
+            }
+        }
+    }
+}
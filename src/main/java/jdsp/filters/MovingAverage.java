@@ -0,0 +1,212 @@
+/**
+ * Running sum moving average filter.
+ *
+ * @author Keith Chow
+ */
+package net.kcundercover.jdsp.filters;
+import java.util.Arrays;
+
+/**
+ * Streaming moving average (boxcar) of N samples at a constant cost per
+ * sample.  Each stage keeps a running sum of its last N inputs,
+ * <pre>
+ * S[n] = S[n - 1] + x[n] - x[n - N]
+ * </pre>
+ * so the cost does not depend on N.  The rounding errors of the add and
+ * subtract would otherwise accumulate without bound, so every time the
+ * history ring wraps (once per N samples) each sum is recomputed from the
+ * stored samples, at an amortized cost of one add per sample.
+ *
+ * Several stages can be cascaded: k boxcars of N samples approach a
+ * Gaussian (variance k (N^2 - 1) / 12) with a group delay of
+ * k (N - 1) / 2 samples.  The output is either the average (unity DC
+ * gain per stage) or the raw sum (boxcar integrator).
+ *
+ * The history carries over between calls (one real or complex stream
+ * per instance), so filtering in pieces matches filtering at once from a
+ * zero state.
+ */
+public class MovingAverage {
+    /** Number of samples averaged by each stage */
+    private final int length;
+
+    /** Number of cascaded stages */
+    private final int numStages;
+
+    /** Output scale of each stage, 1 / N (average) or 1 (integrator) */
+    private final double scale;
+
+    /** Last N inputs of each stage, per channel (real or I, Q) */
+    private final double[][][] ring = new double[2][][];
+
+    /** Running sum of each stage, per channel */
+    private final double[][] sums = new double[2][];
+
+    /** Ring position of the oldest sample, per channel */
+    private final int[] pos = new int[2];
+
+    /**
+     * Single stage moving average
+     * @param length Number of samples averaged N
+     */
+    public MovingAverage(int length){
+        this(length, 1, true);
+    }
+
+    /**
+     * Cascade of moving averages
+     * @param length Number of samples averaged by each stage N
+     * @param numStages Number of cascaded stages k
+     */
+    public MovingAverage(int length, int numStages){
+        this(length, numStages, true);
+    }
+
+    /**
+     * Constructor
+     * @param length Number of samples of each stage N
+     * @param numStages Number of cascaded stages k
+     * @param normalize True for the average, false for the running sum
+     *     (boxcar integrator, gain N per stage)
+     */
+    public MovingAverage(int length, int numStages, boolean normalize){
+        // ---------------------  error checking  ---------------------------
+        if (length < 1)
+            throw new IllegalArgumentException("Expecting length >= 1");
+        if (numStages < 1)
+            throw new IllegalArgumentException("Expecting at least 1 stage");
+
+        this.length = length;
+        this.numStages = numStages;
+        this.scale = normalize ? 1.0 / length : 1.0;
+        ring[0] = new double[numStages][length];
+        sums[0] = new double[numStages];
+    }
+
+    // ======================================================================
+    // ----------------------------  getters  -------------------------------
+    // ======================================================================
+    /**
+     * Get the number of samples of each stage
+     * @return N
+     */
+    public int getLength() { return length; }
+
+    /**
+     * Get the number of cascaded stages
+     * @return k
+     */
+    public int getNumStages() { return numStages; }
+
+    /**
+     * Get the group delay of the cascade
+     * @return k (N - 1) / 2 samples
+     */
+    public double getDelay() { return numStages * (length - 1) / 2.0; }
+
+    /** Clear the history */
+    public void reset(){
+        for (int ch = 0; ch < 2; ch++){
+            if (ring[ch] == null)
+                continue;
+            for (double[] r : ring[ch])
+                Arrays.fill(r, 0);
+            Arrays.fill(sums[ch], 0);
+        }
+        Arrays.fill(pos, 0);
+    }
+
+    // ======================================================================
+    // ---------------------------  processing  -----------------------------
+    // ======================================================================
+    /**
+     * Filter real samples.  Nothing is allocated.  In place operation
+     * (same array and offset) is allowed.
+     * @param src Input samples
+     * @param srcOff Offset of the first input sample
+     * @param dst Output samples
+     * @param dstOff Offset of the first output sample
+     * @param len Number of samples
+     */
+    public void process(double[] src, int srcOff, double[] dst, int dstOff,
+            int len){
+        Blocks.check(src.length, srcOff, len, dst.length, dstOff, len);
+        filter(src, srcOff, 1, len, 0, dst, dstOff);
+    }
+
+    /**
+     * Filter real samples.
+     * @param input Input samples
+     * @return Filtered output (same length as input)
+     */
+    public double[] process(double[] input){
+        double[] output = new double[input.length];
+        process(input, 0, output, 0, input.length);
+        return output;
+    }
+
+    /**
+     * Filter complex interleaved samples.  Nothing is allocated after the
+     * first call.  In place operation (same array and offset) is allowed.
+     * @param src Complex interleaved input
+     * @param srcOff Offset (in doubles) of the first input sample
+     * @param dst Complex interleaved output
+     * @param dstOff Offset (in doubles) of the first output sample
+     * @param len Number of complex samples
+     */
+    public void processComplexInterleaved(double[] src, int srcOff, double[] dst,
+            int dstOff, int len){
+        Blocks.check(src.length, srcOff, 2 * len, dst.length, dstOff, 2 * len);
+        if (ring[1] == null){
+            ring[1] = new double[numStages][length];
+            sums[1] = new double[numStages];
+        }
+        filter(src, srcOff, 2, len, 0, dst, dstOff);
+        filter(src, srcOff + 1, 2, len, 1, dst, dstOff + 1);
+    }
+
+    /**
+     * Filter complex interleaved samples.
+     * @param complexInput Complex interleaved input
+     * @return Complex interleaved output (same length as input)
+     */
+    public double[] processComplexInterleaved(double[] complexInput){
+        if (complexInput.length % 2 == 1)
+            throw new IllegalArgumentException(
+                "Expecting interleaved complex, should be even number");
+        double[] output = new double[complexInput.length];
+        processComplexInterleaved(complexInput, 0, output, 0,
+            complexInput.length / 2);
+        return output;
+    }
+
+    /** Run one channel over len strided samples */
+    private void filter(double[] src, int srcOff, int stride, int len, int ch,
+            double[] dst, int dstOff){
+        double[][] r = ring[ch];
+        double[] sum = sums[ch];
+        int p = pos[ch];
+        for (int ind0 = 0; ind0 < len; ind0++){
+            double value = src[srcOff + stride * ind0];
+            for (int stage = 0; stage < numStages; stage++){
+                double[] hist = r[stage];
+                sum[stage] += value - hist[p];
+                hist[p] = value;
+                value = sum[stage] * scale;
+            }
+            dst[dstOff + stride * ind0] = value;
+
+            // ---------  ring wrapped: re-sum to drop the drift  -----------
+            if (++p == length){
+                p = 0;
+                for (int stage = 0; stage < numStages; stage++){
+                    double total = 0;
+                    for (double v : r[stage])
+                        total += v;
+                    sum[stage] = total;
+                }
+            }
+        }
+        pos[ch] = p;
+    }
+}
@@ -0,0 +1,262 @@
+/**
+ * Polyphase rational resampler.
+ *
+ * @author Keith Chow
+ */
+package net.kcundercover.jdsp.filters;
+import java.util.Arrays;
+import net.kcundercover.jdsp.math.Convolve;
+
+/**
+ * Streaming resampler by a rational factor interp / decim.  Conceptually
+ * the input is upsampled by interp (zero stuffing), filtered by a lowpass
+ * prototype and downsampled by decim.  The prototype is split into interp
+ * polyphase branches so only the outputs that are kept are computed, each
+ * costing one dot product of about numTaps / interp taps.
+ *
+ * The last taps-per-phase - 1 input samples and the output phase are kept
+ * between calls, so a signal resampled in pieces gives the same output as
+ * resampling it at once.  Real and complex interleaved inputs are
+ * supported (one stream per instance).
+ */
+public class Resampler {
+    /** Taps per polyphase branch of the default prototype */
+    public final static int DEFAULT_TAPS_PER_PHASE = 24;
+
+    /** New input samples per chunk */
+    private final static int CHUNK = 4096;
+
+    /** Upsampling and downsampling factors */
+    private final int interp, decim;
+
+    /** Polyphase branches in reverse order, [interp][tapsPerPhase] */
+    private final double[][] phases;
+
+    /** Input samples kept between calls (tapsPerPhase - 1) */
+    private final int hist;
+
+    /** History followed by the current chunk (real part) */
+    private final double[] workReal;
+
+    /** History followed by the current chunk (imaginary part, lazy) */
+    private double[] workImag;
+
+    /** Upsampled time of the next output, relative to the next input */
+    private long next = 0;
+
+    /**
+     * Constructor with the default prototype.  The ratio is reduced first,
+     * so 50 / 1 and 100 / 2 are the same resampler.
+     * @param interp Upsampling factor L
+     * @param decim Downsampling factor M
+     * @see #designPrototype
+     */
+    public Resampler(int interp, int decim){
+        this(interp / gcd(interp, decim), decim / gcd(interp, decim),
+            designPrototype(interp / gcd(interp, decim),
+                decim / gcd(interp, decim)));
+    }
+
+    /**
+     * Constructor
+     * @param interp Upsampling factor L
+     * @param decim Downsampling factor M
+     * @param prototype Lowpass prototype at the upsampled rate, scaled by
+     *     L so a unity DC gain prototype keeps the signal level
+     */
+    public Resampler(int interp, int decim, double[] prototype){
+        // ---------------------  error checking  ---------------------------
+        if (interp < 1 || decim < 1)
+            throw new IllegalArgumentException(
+                "Interpolation and decimation should be >= 1");
+        if (prototype.length < 1)
+            throw new IllegalArgumentException("Expecting at least 1 tap");
+
+        this.interp = interp;
+        this.decim = decim;
+
+        // -----------------  split into polyphase branches  ----------------
+        int tapsPerPhase = (prototype.length + interp - 1) / interp;
+        phases = new double[interp][tapsPerPhase];
+        for (int ind0 = 0; ind0 < prototype.length; ind0++){
+            int phase = ind0 % interp;
+            int tap = ind0 / interp;
+            phases[phase][tapsPerPhase - 1 - tap] = interp * prototype[ind0];
+        }
+        hist = tapsPerPhase - 1;
+        workReal = new double[hist + CHUNK];
+    }
+
+    /**
+     * Design the default prototype, a Hamming window lowpass cut at the
+     * Nyquist rate of the slower of the input and output, with unity DC gain.
+     * @param interp Upsampling factor L
+     * @param decim Downsampling factor M
+     * @return Prototype taps at the upsampled rate
+     */
+    public static double[] designPrototype(int interp, int decim){
+        int factor = Math.max(interp, decim);
+        double[] taps = FilterDesign.firWindowDesignD(
+            DEFAULT_TAPS_PER_PHASE * factor, "HAMMING", 1.0 / factor);
+        double sum = 0;
+        for (double tap : taps)
+            sum += tap;
+        for (int ind0 = 0; ind0 < taps.length; ind0++)
+            taps[ind0] /= sum;
+        return taps;
+    }
+
+    // ======================================================================
+    // ----------------------------  getters  -------------------------------
+    // ======================================================================
+    /**
+     * Get the upsampling factor
+     * @return L
+     */
+    public int getInterpolation() { return interp; }
+
+    /**
+     * Get the downsampling factor
+     * @return M
+     */
+    public int getDecimation() { return decim; }
+
+    /**
+     * Get the length of each polyphase branch
+     * @return Taps per phase
+     */
+    public int getTapsPerPhase() { return hist + 1; }
+
+    /**
+     * Get the number of outputs the next call will produce
+     * @param len Number of input samples of the next call
+     * @return Number of output samples
+     */
+    public int getNumOutputs(int len){
+        long end = (long) len * interp;
+        return next < end ? (int) ((end - next + decim - 1) / decim) : 0;
+    }
+
+    /** Clear the history and the output phase */
+    public void reset(){
+        Arrays.fill(workReal, 0, hist, 0);
+        if (workImag != null)
+            Arrays.fill(workImag, 0, hist, 0);
+        next = 0;
+    }
+
+    // ======================================================================
+    // ---------------------------  processing  -----------------------------
+    // ======================================================================
+    /**
+     * Resample a block of real samples.  Nothing is allocated.  src and dst
+     * may be the same array and offset when interp &lt;= decim.
+     * @param src Input samples
+     * @param srcOff Offset of the first input sample
+     * @param dst Output samples (room for {@link #getNumOutputs} samples)
+     * @param dstOff Offset of the first output sample
+     * @param len Number of input samples
+     * @return Number of output samples written
+     */
+    public int process(double[] src, int srcOff, double[] dst, int dstOff,
+            int len){
+        int numOut = getNumOutputs(len);
+        Blocks.check(src.length, srcOff, len, dst.length, dstOff, numOut);
+
+        int count = 0;
+        for (int pos = 0; pos < len; ){
+            int num = Math.min(CHUNK, len - pos);
+            System.arraycopy(src, srcOff + pos, workReal, hist, num);
+            long end = (long) num * interp;
+            for (; next < end; next += decim){
+                int ind = (int) (next / interp);
+                double[] phase = phases[(int) (next - (long) ind * interp)];
+                dst[dstOff + count++] = Convolve.dot(workReal, ind, phase);
+            }
+            next -= end;
+            System.arraycopy(workReal, num, workReal, 0, hist);
+            pos += num;
+        }
+        return count;
+    }
+
+    /**
+     * Resample a block of real samples.
+     * @param input Input samples
+     * @return Resampled output
+     */
+    public double[] process(double[] input){
+        double[] output = new double[getNumOutputs(input.length)];
+        process(input, 0, output, 0, input.length);
+        return output;
+    }
+
+    /**
+     * Resample a block of complex interleaved samples.  Nothing is allocated
+     * after the first call.  src and dst may be the same array and offset
+     * when interp &lt;= decim.
+     * @param src Complex interleaved input
+     * @param srcOff Offset (in doubles) of the first input sample
+     * @param dst Complex interleaved output (room for
+     *     {@link #getNumOutputs} samples)
+     * @param dstOff Offset (in doubles) of the first output sample
+     * @param len Number of complex input samples
+     * @return Number of complex output samples written
+     */
+    public int processComplexInterleaved(double[] src, int srcOff, double[] dst,
+            int dstOff, int len){
+        int numOut = getNumOutputs(len);
+        Blocks.check(src.length, srcOff, 2 * len, dst.length, dstOff, 2 * numOut);
+        if (workImag == null)
+            workImag = new double[workReal.length];
+
+        int count = 0;
+        for (int pos = 0; pos < len; ){
+            int num = Math.min(CHUNK, len - pos);
+            for (int ind0 = 0; ind0 < num; ind0++){
+                workReal[hist + ind0] = src[srcOff + 2 * (pos + ind0)];
+                workImag[hist + ind0] = src[srcOff + 2 * (pos + ind0) + 1];
+            }
+            long end = (long) num * interp;
+            for (; next < end; next += decim){
+                int ind = (int) (next / interp);
+                double[] phase = phases[(int) (next - (long) ind * interp)];
+                dst[dstOff + 2 * count] = Convolve.dot(workReal, ind, phase);
+                dst[dstOff + 2 * count + 1] = Convolve.dot(workImag, ind, phase);
+                count++;
+            }
+            next -= end;
+            System.arraycopy(workReal, num, workReal, 0, hist);
+            System.arraycopy(workImag, num, workImag, 0, hist);
+            pos += num;
+        }
+        return count;
+    }
+
+    /**
+     * Resample a block of complex interleaved samples.
+     * @param complexInput Complex interleaved input
+     * @return Complex interleaved resampled output
+     */
+    public double[] processComplexInterleaved(double[] complexInput){
+        if (complexInput.length % 2 == 1)
+            throw new IllegalArgumentException(
+                "Expecting interleaved complex, should be even number");
+        int len = complexInput.length / 2;
+        double[] output = new double[2 * getNumOutputs(len)];
+        processComplexInterleaved(complexInput, 0, output, 0, len);
+        return output;
+    }
+
+    // ======================================================================
+    // ----------------------------  helpers  -------------------------------
+    // ======================================================================
+    private static int gcd(int a, int b){
+        while (b != 0){
+            int tmp = a % b;
+            a = b;
+            b = tmp;
+        }
+        return Math.max(a, 1);
+    }
+}
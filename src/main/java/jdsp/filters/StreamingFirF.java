@@ -0,0 +1,175 @@
+/**
+ * Streaming FIR filter.
+ *
+ * @author Keith Chow
+ */
+package net.kcundercover.jdsp.filters;
+import java.util.Arrays;
+import net.kcundercover.jdsp.math.Convolve;
+import net.kcundercover.jdsp.math.FftPlan;
+import net.kcundercover.jdsp.math.RealFftPlan;
+
+/**
+ * Stateful FIR filter for blocks of any size.  The last M-1 input samples
+ * are kept between calls, so filtering a signal in pieces matches
+ * filtering it at once (y[n] = sum_k h[k] x[n-k], zero initial state) up
+ * to rounding.  The direct form uses fused multiply-adds and folds the
+ * mirrored samples of linear phase taps, so its output can differ from a
+ * plain sum of products in the last bits.
+ *
+ * By default the vectorized direct form runs over a buffer holding the
+ * history followed by the new samples.  Given an FFT size, long filters
+ * use overlap-save instead: every full block of nfft-M+1 new samples
+ * costs one real FFT pair (the output then differs from the direct form
+ * by rounding), and
+ * the remainder of a call falls back to the direct form so no output is
+ * delayed.  All buffers are allocated once by the constructor.
+ */
+public class StreamingFirF {
+    /** New samples per direct form chunk */
+    private final static int DIRECT_CHUNK = 4096;
+
+    /** Filter taps in reverse order */
+    private final float[] reversed;
+
+    /** Linear phase symmetry of the taps (direct form folds mirrored samples) */
+    private final Convolve.Symmetry symmetry;
+
+    /** History (M-1 samples) followed by the current chunk */
+    private final float[] work;
+
+    /** New samples per chunk */
+    private final int step;
+
+    /** Overlap-save plan, null for the direct form */
+    private final RealFftPlan plan;
+
+    /** Tap response scaled by 1 / nfft, and spectrum / time scratch */
+    private final float[] response, spectrum, time;
+
+    /**
+     * Constructor for the direct form.  Overlap-save is only used when an
+     * FFT size is given, see {@link #StreamingFirF(float[], int)} and
+     * {@link #fftSizeFor}.
+     * @param taps Filter taps (length M)
+     */
+    public StreamingFirF(float[] taps){
+        this(taps, 0);
+    }
+
+    /**
+     * Constructor
+     * @param taps Filter taps (length M)
+     * @param nfft Overlap-save FFT size (at least M), 0 for the direct form
+     */
+    public StreamingFirF(float[] taps, int nfft){
+        // ---------------------  error checking  ---------------------------
+        if (taps.length < 1)
+            throw new IllegalArgumentException("Expecting at least 1 tap");
+        if (nfft != 0 && nfft < taps.length)
+            throw new IllegalArgumentException(
+                "FFT size should be >= the number of taps");
+
+        int numTaps = taps.length;
+        reversed = new float[numTaps];
+        for (int ind0 = 0; ind0 < numTaps; ind0++)
+            reversed[ind0] = taps[numTaps - 1 - ind0];
+        symmetry = Convolve.symmetryOf(reversed);
+
+        // ------------------  direct form or overlap-save  -----------------
+        if (nfft == 0){
+            step = DIRECT_CHUNK;
+            plan = null;
+            response = spectrum = time = null;
+        }
+        else{
+            step = nfft - numTaps + 1;
+            plan = RealFftPlan.of(nfft, FftPlan.Precision.FLOAT);
+            response = new float[2 * plan.getNumBins()];
+            spectrum = new float[2 * plan.getNumBins()];
+            time = new float[nfft];
+            System.arraycopy(taps, 0, time, 0, numTaps);
+            plan.forward(time, 0, response, 0);
+            for (int ind0 = 0; ind0 < response.length; ind0++)
+                response[ind0] /= nfft;
+        }
+        work = new float[numTaps - 1 + step];
+    }
+
+    /**
+     * FFT size suggested for overlap-save, from the tap count only (the
+     * butterfly count of long blocks, {@link Convolve#fftBlockSize}).
+     * @param numTaps Number of taps (M)
+     * @return FFT size (at least M)
+     */
+    public static int fftSizeFor(int numTaps){
+        return Convolve.fftBlockSize(1 << 20, numTaps);
+    }
+
+    /**
+     * Get the number of taps
+     * @return M
+     */
+    public int getNumTaps() { return reversed.length; }
+
+    /**
+     * Check if long blocks use overlap-save
+     * @return True for overlap-save, false for the direct form only
+     */
+    public boolean isFrequencyDomain() { return plan != null; }
+
+    /**
+     * Get the linear phase symmetry used by the direct form
+     * @return Symmetry of the taps
+     */
+    public Convolve.Symmetry getSymmetry() { return symmetry; }
+
+    /** Clear the history (zero state) */
+    public void reset(){
+        Arrays.fill(work, 0, reversed.length - 1, 0);
+    }
+
+    /**
+     * Filter a block of samples.  In place operation (same array and
+     * offset) is allowed.  Nothing is allocated (with the opt-in Vector API
+     * FFT butterflies, see {@link FftPlan#setVectorEnabled}, overlap-save
+     * depends on the JIT scalarizing their temporaries).
+     * @param src Input samples
+     * @param srcOff Offset of the first input sample
+     * @param dst Output samples
+     * @param dstOff Offset of the first output sample
+     * @param len Number of samples
+     */
+    public void process(float[] src, int srcOff, float[] dst, int dstOff,
+            int len){
+        int hist = reversed.length - 1;
+        int pos = 0;
+
+        // ----------------  overlap-save on full blocks  -------------------
+        if (plan != null){
+            for (; len - pos >= step; pos += step){
+                System.arraycopy(src, srcOff + pos, work, hist, step);
+                plan.forward(work, 0, spectrum, 0);
+                for (int ind0 = 0; ind0 < spectrum.length; ind0 += 2){
+                    float re = spectrum[ind0], im = spectrum[ind0 + 1];
+                    float hr = response[ind0], hi = response[ind0 + 1];
+                    spectrum[ind0] = re * hr - im * hi;
+                    spectrum[ind0 + 1] = re * hi + im * hr;
+                }
+                System.arraycopy(work, step, work, 0, hist);
+                plan.inverse(spectrum, 0, time, 0);
+                System.arraycopy(time, hist, dst, dstOff + pos, step);
+            }
+        }
+
+        // -------------------  direct form on the rest  --------------------
+        while (pos < len){
+            int num = Math.min(step, len - pos);
+            System.arraycopy(src, srcOff + pos, work, hist, num);
+            Convolve.convolveValid(work, 0, 1, reversed, symmetry,
+                dst, dstOff + pos, num);
+            System.arraycopy(work, num, work, 0, hist);
+            pos += num;
+        }
+    }
+}
@@ -42,4 +42,13 @@ public class FileInfo{
      * @return Get filesize in number of bytes.
      */
     public long getFileSize(){ return fileSize; }
+
+    /** Get the number of whole samples in the file
+     * @param bytesPerSample Bytes of one (real or complex) sample
+     * @return Number of samples (64 bit, captures can exceed 2^31)
+     */
+    public long getNumSamples(int bytesPerSample){
+        assert bytesPerSample > 0 : "Bytes per sample should be positive";
+        return fileSize / bytesPerSample;
+    }
 }
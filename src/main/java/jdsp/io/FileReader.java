@@ -7,9 +7,15 @@
  */
 package net.kcundercover.jdsp.io;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
 import java.nio.ShortBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.io.Closeable;
 import java.io.RandomAccessFile;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -22,8 +28,17 @@ import java.util.logging.ConsoleHandler;
 /**
  * The FileReader will access a RandomAccessFile to load data
  *
+ * Reads are positional (FileChannel.read at an offset, the file pointer
+ * is never moved) into a read block taken from a small shared pool, so
+ * one FileReader can serve many threads without locks.  At most
+ * {@link #MAX_POOLED} direct blocks exist per reader; threads reading
+ * while all of them are in use get a heap block sized to their request.
+ * {@link #close} releases the channel and the blocks.  Interrupting a
+ * thread while it reads closes the channel for every thread (FileChannel
+ * is interruptible), so do not interrupt readers of a shared instance.
+ *
  */
-public class FileReader {
+public class FileReader implements Closeable {
     /** Logger */
     protected Logger logger;
 
@@ -37,11 +52,31 @@ public class FileReader {
     /** Multiplier if complex */
     public final static int[] MULTIPLIER = {1, 2, 1, 2};
 
+    /** Default size of the read block in bytes */
+    public final static int DEFAULT_BLOCK_SIZE = 1 << 20;
+
+    /** Largest number of direct read blocks of one reader */
+    public final static int MAX_POOLED = 4;
+
     private String filepath;
     private final RandomAccessFile myFile;
+    private final FileChannel channel;
     private boolean bigEndian = false;
     private int dType = 0;
 
+    /** Largest number of bytes read at once */
+    private volatile int blockSize = DEFAULT_BLOCK_SIZE;
+
+    /** Idle direct read blocks of blockSize bytes */
+    private final ArrayBlockingQueue<ByteBuffer> pool =
+        new ArrayBlockingQueue<>(MAX_POOLED);
+
+    /** Direct read blocks allocated and not dropped (idle or in use) */
+    private final AtomicInteger numDirect = new AtomicInteger();
+
+    /** Set by close, blocks are no longer pooled */
+    private volatile boolean closed = false;
+
 
     /** Construct a FileReader.
      * This creates a RandomAccessFile to the specified filepath.
@@ -52,11 +87,12 @@ public class FileReader {
      */
     public FileReader(final String filepath, int dtype, final boolean bigEndian)
             throws FileNotFoundException {
-        assert (dtype < 0 || dtype > DATA_TYPE.length) : "dtype out of range";
+        assert (dtype >= 0 && dtype < DATA_TYPE.length) : "dtype out of range";
 
         // store the parameters to the attributes
         this.filepath = filepath;
         myFile = new RandomAccessFile(filepath, "r");
+        channel = myFile.getChannel();
         this.bigEndian = bigEndian;
         dType = dtype;
 
@@ -87,66 +123,48 @@ public class FileReader {
      * @return DataObject to store the recovered samples
      * @see loadSignalRawAsFloat
      */
-    public DataObject loadSignal(final int sampleOffset, final int numSamples) {
+    public DataObject loadSignal(final long sampleOffset, final int numSamples) {
         // ------------------------  prepare variables  ---------------------
         // initialize output
         DataObject out = new DataObject(filepath);
+        int numValues = numValues(numSamples);
+        long byteOffset = sampleOffset * bytesPerSample();
+
+        short[] sArray;
+        float[] fArray;
+        switch(DATA_TYPE[dType]){
+            case "INT16":
+                sArray = new short[numValues];
+                readShorts(byteOffset, sArray, null, 0, numValues);
+                logger.fine("loadSignal() Real Int16");
+                out.addFeature(sArray, "Real");
+                break;
 
-        // number of bytes to load
-        int numBytes = numSamples *
-            BYTES_PER_SAMPLE[dType] * MULTIPLIER[dType];
-
-        // number of values to use
-        int numVals;
-
-        try {
-            // ---------------  skip to desired sample offset  --------------
-            myFile.seek(sampleOffset *
-                BYTES_PER_SAMPLE[dType] * MULTIPLIER[dType]);
-
-            // get byte array
-            byte[] tmp = new byte[numBytes];
-            myFile.read(tmp);
-            short[] sArray;
-            float[] fArray;
-            switch(DATA_TYPE[dType]){
-                case "INT16":
-                    sArray = new short[numSamples];
-                    numVals = bytesToShort(tmp, sArray, bigEndian);
-                    logger.fine("loadSignal() Real Int16");
-                    out.addFeature(sArray, "Real");
-                    break;
-
-                case "COMPLEX INT16":
-                    sArray = new short[numSamples * 2];
-                    numVals = bytesToShort(tmp, sArray, bigEndian);
-                    logger.fine("loadSignal() Complex Int16");
-                    short[][] sRealImag = ComplexInterleaved.getRealImag(sArray);
-                    out.addFeature(sRealImag[0], "Real");
-                    out.addFeature(sRealImag[1], "Imaginary");
-                    break;
+            case "COMPLEX INT16":
+                sArray = new short[numValues];
+                readShorts(byteOffset, sArray, null, 0, numValues);
+                logger.fine("loadSignal() Complex Int16");
+                short[][] sRealImag = ComplexInterleaved.getRealImag(sArray);
+                out.addFeature(sRealImag[0], "Real");
+                out.addFeature(sRealImag[1], "Imaginary");
+                break;
 
-                case "FLOAT32":
-                    fArray = new float[numSamples];
-                    numVals = byteToFloat(tmp, fArray, bigEndian);
-                    logger.fine("loadSignal() Float32");
-                    out.addFeature(fArray, "Real");
-                    break;
+            case "FLOAT32":
+                fArray = new float[numValues];
+                readFloats(byteOffset, fArray, 0, numValues);
+                logger.fine("loadSignal() Float32");
+                out.addFeature(fArray, "Real");
+                break;
 
-                case "COMPLEX FLOAT32":
-                    fArray = new float[numSamples * 2];
-                    numVals = byteToFloat(tmp, fArray, bigEndian);
-                    logger.fine("loadSignal() Complex Float32");
-                    float[][] fRealImag = ComplexInterleaved.getRealImag(fArray);
-                    out.addFeature(fRealImag[0], "Real");
-                    out.addFeature(fRealImag[1], "Imaginary");
-                    break;
-            }
-        }
-        catch(IOException ioe) {
-            logger.warning(ioe.toString());
+            case "COMPLEX FLOAT32":
+                fArray = new float[numValues];
+                readFloats(byteOffset, fArray, 0, numValues);
+                logger.fine("loadSignal() Complex Float32");
+                float[][] fRealImag = ComplexInterleaved.getRealImag(fArray);
+                out.addFeature(fRealImag[0], "Real");
+                out.addFeature(fRealImag[1], "Imaginary");
+                break;
         }
-
         return out;
     }
 
@@ -157,30 +175,14 @@ public class FileReader {
      * @param isComplex If true, output will be doubled in sized, with real and imaginary values interleaved.
      * @return The float or complex interleaved float array
      */
-    public float[] loadSignalRawFloat(final int sampleOffset, final int numSamples, boolean isComplex) {
-        // number of bytes to load
-        int numBytes = numSamples * BYTES_PER_SAMPLE[dType] * MULTIPLIER[dType];
-
-        // get byte array
-        byte[] tmp = new byte[numBytes];
-        logger.fine("Reading in " + numSamples + " samples or " + numSamples * MULTIPLIER[dType] + " elements");
-
-        try {
-            // skip to the appropriate file location (sample offset from front of file)
-            myFile.seek(sampleOffset *
-                BYTES_PER_SAMPLE[dType] * MULTIPLIER[dType]);
-
-            // read from file
-            myFile.read(tmp);
-        }
-        catch(IOException ioe) {
-            logger.warning(ioe.toString());
-        }
-
-        // convert the bytes to float
-        float[] fArray = new float[numSamples * MULTIPLIER[dType]];
-        int numVals = byteToFloat(tmp, fArray, bigEndian);
-        if (numVals < numSamples) {
+    public float[] loadSignalRawFloat(final long sampleOffset, final int numSamples, boolean isComplex) {
+        int numValues = numValues(numSamples);
+        logger.fine("Reading in " + numSamples + " samples or " + numValues + " elements");
+
+        // read the bytes as float, block by block
+        float[] fArray = new float[numValues];
+        int numVals = readFloats(sampleOffset * bytesPerSample(), fArray, 0, numValues);
+        if (numVals < numValues) {
             float[] out = new float[numVals];
             System.arraycopy(fArray, 0, out, 0, numVals);
             return out;
@@ -189,40 +191,23 @@ public class FileReader {
         return fArray;
     }
 
-/**
+    /**
      * Load signal as raw shorts
      * @param sampleOffset An offset of samples from start of file
      * @param numSamples Number of samples to load
      * @param isComplex If true, output will be doubled in sized, with real and imaginary values interleaved.
      * @return The short or complex interleaved short array
      */
-    public short[] loadSignalRawShort(final int sampleOffset, final int numSamples, boolean isComplex) {
-        // number of bytes to load
-        int numBytes = numSamples *
-            BYTES_PER_SAMPLE[dType] * MULTIPLIER[dType];
-
-        // get byte array
-        byte[] tmp = new byte[numBytes];
-        logger.fine("Reading in " + numSamples + " samples or " + numSamples * MULTIPLIER[dType] + " elements");
-
-        try {
-            // skip to the appropriate file location (sample offset from front of file)
-            myFile.seek(sampleOffset *
-                BYTES_PER_SAMPLE[dType] * MULTIPLIER[dType]);
-
-            // read from file
-            myFile.read(tmp);
-        }
-        catch(IOException ioe) {
-            logger.warning(ioe.toString());
-        }
+    public short[] loadSignalRawShort(final long sampleOffset, final int numSamples, boolean isComplex) {
+        int numValues = numValues(numSamples);
+        logger.fine("Reading in " + numSamples + " samples or " + numValues + " elements");
 
-        // convert the bytes to float
-        short[] fArray = new short[numSamples * MULTIPLIER[dType]];
-        bytesToShort(tmp, fArray, bigEndian);
+        // read the bytes as short, block by block
+        short[] sArray = new short[numValues];
+        readShorts(sampleOffset * bytesPerSample(), sArray, null, 0, numValues);
 
         // return the short array
-        return fArray;
+        return sArray;
     }
 
 
@@ -230,77 +215,232 @@ public class FileReader {
      * Load signal as raw floats.
      * @param sampleOffset The number of samples from the start of file
      * @param numSamples Number of samples to load.
-     * @return Float samples
+     * @return Float samples, fewer at the end of the file
+     * @see #readAsFloat
      */
-    public float[] loadSignalRawAsFloat(final int sampleOffset, final int numSamples) {
-        // number of bytes to load
-        int bps = BYTES_PER_SAMPLE[dType];
-        int numBytes = numSamples * bps * MULTIPLIER[dType];
-
-        // number of values to use
-        int numVals;
-
-        try {
-            // ---------------  skip to desired sample offset  --------------
-            myFile.seek(sampleOffset *
-                BYTES_PER_SAMPLE[dType] * MULTIPLIER[dType]);
-
-            // ---------------------  get byte array  -----------------------
-            byte[] tmp = new byte[numBytes];
-            int nBytes = myFile.read(tmp);
+    public float[] loadSignalRawAsFloat(final long sampleOffset, final int numSamples) {
+        float[] fArray = new float[numValues(numSamples)];
+        int numVals = MULTIPLIER[dType] * readAsFloat(sampleOffset, fArray, 0, numSamples);
+        if (numVals < fArray.length) {
+            float[] out = new float[numVals];
+            System.arraycopy(fArray, 0, out, 0, numVals);
+            return out;
+        }
+        return fArray;
+    }
 
-            // ----------------  convert to bytes to float  -----------------
-            short[] sArray;
-            float[] fArray;
-            float[] out;
+    /**
+     * Read samples as floats into a caller supplied buffer (int16 scaled
+     * by 1 / 32767).  The file is read one block at a time, so nothing
+     * beyond the block of {@link #getBlockSize} bytes is allocated.
+     * @param sampleOffset The number of samples from the start of file
+     * @param dst Output values (complex interleaved for complex files)
+     * @param dstOff Offset of the first output value
+     * @param numSamples Number of samples to read
+     * @return Number of samples read, fewer at the end of the file
+     */
+    public int readAsFloat(final long sampleOffset, float[] dst, int dstOff,
+            final int numSamples) {
+        int numValues = numValues(numSamples);
+        Objects.checkFromIndexSize(dstOff, numValues, dst.length);
+        long byteOffset = sampleOffset * bytesPerSample();
+        int numVals = BYTES_PER_SAMPLE[dType] == 2 ?
+            readShorts(byteOffset, null, dst, dstOff, numValues) :
+            readFloats(byteOffset, dst, dstOff, numValues);
+        return numVals / MULTIPLIER[dType];
+    }
 
-            switch(DATA_TYPE[dType]){
-                case "INT16":
-                    logger.fine("loadSignal() Real Int16");
+    /**
+     * Read int16 samples into a caller supplied buffer, one block at a time.
+     * @param sampleOffset The number of samples from the start of file
+     * @param dst Output values (complex interleaved for complex files)
+     * @param dstOff Offset of the first output value
+     * @param numSamples Number of samples to read
+     * @return Number of samples read, fewer at the end of the file
+     */
+    public int readAsShort(final long sampleOffset, short[] dst, int dstOff,
+            final int numSamples) {
+        if (BYTES_PER_SAMPLE[dType] != 2)
+            throw new IllegalStateException(
+                "readAsShort needs an INT16 file, not " + DATA_TYPE[dType]);
+        int numValues = numValues(numSamples);
+        Objects.checkFromIndexSize(dstOff, numValues, dst.length);
+        return readShorts(sampleOffset * bytesPerSample(), dst, null, dstOff,
+            numValues) / MULTIPLIER[dType];
+    }
 
-                    // convert bytes to short
-                    sArray = new short[numSamples];
-                    numVals = bytesToShort(tmp, sArray, bigEndian);
+    /**
+     * Get the number of (real or complex) samples in the file
+     * @return Number of whole samples, 0 if the size cannot be read
+     */
+    public long getNumSamples() {
+        try {
+            return channel.size() / bytesPerSample();
+        }
+        catch (IOException ioe) {
+            logger.warning(ioe.toString());
+            return 0;
+        }
+    }
 
-                    // convert short to floats
-                    out = new float[numVals];
-                    for (int ind = 0; ind < numVals; ind++)
-                        out[ind] = (float) (sArray[ind] / 32767.);
-                    return out;
+    /**
+     * Get the size of the read block
+     * @return Largest number of bytes read (and allocated) at once
+     */
+    public int getBlockSize() {
+        return blockSize;
+    }
 
-                case "COMPLEX INT16":
-                    logger.fine("loadSignal() Complex Int16");
+    /**
+     * Set the size of the read block.  Larger requests are read in several
+     * blocks, so this bounds the temporary memory of every load (one block
+     * per reading thread, at most {@link #MAX_POOLED} of them direct).
+     * @param blockSize Number of bytes (at least one complex float32 sample)
+     */
+    public void setBlockSize(int blockSize) {
+        if (blockSize < 8)
+            throw new IllegalArgumentException("Block size should be >= 8 bytes");
+        this.blockSize = blockSize;
+        while (pool.poll() != null)
+            numDirect.decrementAndGet();
+    }
 
-                    // convert bytes to short
-                    sArray = new short[numSamples * 2];
-                    numVals = bytesToShort(tmp, sArray, bigEndian);
-                    fArray = new float[numVals];
-                    for (int ind=0; ind < numVals; ind ++)
-                        fArray[ind] = (float) (sArray[ind] / 32767.0);
-                    return fArray;
+    /**
+     * Close the file and drop the read blocks.  Later reads fail (logged)
+     * and return no samples.
+     * @throws IOException If the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        pool.clear();
+        myFile.close();
+    }
 
-                case "FLOAT32":
-                    logger.fine("loadSignal() Float32");
-                    fArray = new float[numSamples];
+    // ======================================================================
+    // -------------------------  block reading  ----------------------------
+    // ======================================================================
+    /** Bytes per (real or complex) sample */
+    private int bytesPerSample() {
+        return BYTES_PER_SAMPLE[dType] * MULTIPLIER[dType];
+    }
 
-                    numVals = byteToFloat(tmp, fArray, bigEndian);
+    /** Number of values of numSamples samples, within array limits */
+    private int numValues(int numSamples) {
+        long numValues = (long) numSamples * MULTIPLIER[dType];
+        if (numSamples < 0 || numValues > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException(
+                "Cannot load " + numSamples + " samples into one array");
+        return (int) numValues;
+    }
 
-                    return fArray;
+    /**
+     * Take a read block: an idle direct block, a new one while fewer than
+     * MAX_POOLED exist, otherwise a heap block sized to the request
+     * @param numBytes Bytes of the whole request
+     */
+    private ByteBuffer acquireBlock(long numBytes) {
+        int size = blockSize;
+        ByteBuffer buf;
+        while ((buf = pool.poll()) != null && buf.capacity() != size)
+            numDirect.decrementAndGet();    // left from an older block size
+        if (buf == null) {
+            if (!closed && numDirect.incrementAndGet() <= MAX_POOLED)
+                buf = ByteBuffer.allocateDirect(size);
+            else {
+                if (!closed)
+                    numDirect.decrementAndGet();
+                buf = ByteBuffer.allocate((int) Math.min(numBytes, size));
+            }
+        }
+        return buf.order(bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+    }
 
-                case "COMPLEX FLOAT32":
-                    logger.fine("loadSignal() Complex Float32");
+    /** Give a block back, direct blocks of the current size are reused */
+    private void releaseBlock(ByteBuffer buf) {
+        if (buf.isDirect() && (closed || buf.capacity() != blockSize ||
+                !pool.offer(buf)))
+            numDirect.decrementAndGet();
+    }
 
-                    fArray = new float[numSamples * 2];
-                    numVals = byteToFloat(tmp, fArray, bigEndian);
-                    return fArray;
+    /**
+     * Read up to numBytes (at most one block) at byteOffset into buf,
+     * without moving the file pointer
+     * @return The block, from 0 to the number of bytes read (fewer only at
+     *     the end of the file)
+     */
+    private ByteBuffer fillBlock(ByteBuffer buf, long byteOffset, int numBytes)
+            throws IOException {
+        buf.clear().limit(numBytes);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, byteOffset + buf.position()) < 0)
+                break;
+        }
+        return buf.flip();
+    }
 
+    /**
+     * Read int16 values block by block, into shorts or scaled floats
+     * @return Number of values read
+     */
+    private int readShorts(long byteOffset, short[] sDst, float[] fDst,
+            int dstOff, int numValues) {
+        ByteBuffer buf = acquireBlock(2L * numValues);
+        int perBlock = buf.capacity() / 2;
+        int count = 0;
+        try {
+            while (count < numValues) {
+                int want = Math.min(perBlock, numValues - count);
+                ShortBuffer view = fillBlock(buf, byteOffset + 2L * count, 2 * want)
+                    .asShortBuffer();
+                int got = view.remaining();
+                if (sDst != null)
+                    view.get(sDst, dstOff + count, got);
+                else
+                    for (int ind = 0; ind < got; ind++)
+                        fDst[dstOff + count + ind] = (float) (view.get(ind) / 32767.);
+                count += got;
+                if (got < want)
+                    break;
             }
         }
         catch (IOException ioe) {
             logger.warning(ioe.toString());
         }
-        return null;
+        finally {
+            releaseBlock(buf);
+        }
+        return count;
+    }
 
+    /**
+     * Read float32 values block by block
+     * @return Number of values read
+     */
+    private int readFloats(long byteOffset, float[] dst, int dstOff,
+            int numValues) {
+        ByteBuffer buf = acquireBlock(4L * numValues);
+        int perBlock = buf.capacity() / 4;
+        int count = 0;
+        try {
+            while (count < numValues) {
+                int want = Math.min(perBlock, numValues - count);
+                FloatBuffer view = fillBlock(buf, byteOffset + 4L * count, 4 * want)
+                    .asFloatBuffer();
+                int got = view.remaining();
+                view.get(dst, dstOff + count, got);
+                count += got;
+                if (got < want)
+                    break;
+            }
+        }
+        catch (IOException ioe) {
+            logger.warning(ioe.toString());
+        }
+        finally {
+            releaseBlock(buf);
+        }
+        return count;
     }
 
 
@@ -345,12 +485,14 @@ public class FileReader {
             case 2:
                 if (bigEndian){
                     for (int ind0 = 0; ind0 < numOut; ind0++) {
-                        shortArray[ind0] = (short) ((bytes[ind0*2]<<8) + bytes[ind0*2+1]);
+                        shortArray[ind0] = (short) ((bytes[ind0*2]<<8) |
+                            (bytes[ind0*2+1] & 0xFF));
                     }
                 }
                 else{
                     for (int ind0 = 0; ind0 < numOut; ind0++) {
-                        shortArray[ind0] = (short) ((bytes[ind0*2+1]<<8) + bytes[ind0*2]);
+                        shortArray[ind0] = (short) ((bytes[ind0*2+1]<<8) |
+                            (bytes[ind0*2] & 0xFF));
                     }
                 }
                 break;
@@ -0,0 +1,229 @@
+/**
+ * Memory mapped access to raw signal files.
+ *
+ * @author Keith Chow
+ */
+package net.kcundercover.jdsp.io;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * Read only, memory mapped view of a raw signal file, using the data types
+ * of {@link FileReader#DATA_TYPE}.  Samples are read straight from the
+ * page cache: the typed views are buffers over the mapped memory (no copy
+ * at all) and the conversion to float reads the mapped memory once, with
+ * no system call per request.
+ *
+ * A single mapping is limited to 2 GB, so the file is mapped as regions
+ * of {@link #REGION_SIZE} bytes starting every REGION_SIZE - MAX_VIEW
+ * bytes.  Consecutive regions overlap by {@link #MAX_VIEW} bytes, so any
+ * view up to MAX_VIEW bytes lies inside one region.  Only address space is
+ * reserved, pages are loaded on first touch.
+ *
+ * Views share the mapping and are independent of each other, so one
+ * reader can be used by several threads.
+ */
+public class MappedSignalReader implements Closeable {
+    /** Bytes per mapped region */
+    public final static int REGION_SIZE = 1 << 30;
+
+    /** Largest view in bytes (overlap of consecutive regions) */
+    public final static int MAX_VIEW = 1 << 26;
+
+    /** Distance between the starts of consecutive regions */
+    private final static long REGION_STEP = REGION_SIZE - MAX_VIEW;
+
+    private final String filepath;
+    private final int dType;
+    private final boolean bigEndian;
+    private final long fileSize;
+
+    /** Mapped regions, region i starts at byte i * REGION_STEP */
+    private MappedByteBuffer[] regions;
+
+    /**
+     * Map a raw signal file
+     * @param filepath Path to the file
+     * @param dtype Data type index to the file.  @see FileReader#DATA_TYPE
+     * @param bigEndian Specify endianess
+     * @throws IOException If the file cannot be opened or mapped
+     */
+    public MappedSignalReader(final String filepath, int dtype,
+            final boolean bigEndian) throws IOException {
+        if (dtype < 0 || dtype >= FileReader.DATA_TYPE.length)
+            throw new IllegalArgumentException("dtype out of range");
+
+        this.filepath = filepath;
+        this.dType = dtype;
+        this.bigEndian = bigEndian;
+
+        // -------------------------  map regions  --------------------------
+        Path path = Paths.get(filepath);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+            fileSize = channel.size();
+            int numRegions = fileSize <= REGION_SIZE ? 1 :
+                (int) ((fileSize - MAX_VIEW + REGION_STEP - 1) / REGION_STEP);
+            regions = new MappedByteBuffer[numRegions];
+            for (int ind0 = 0; ind0 < numRegions; ind0++){
+                long start = ind0 * REGION_STEP;
+                long size = Math.min(REGION_SIZE, fileSize - start);
+                regions[ind0] = channel.map(FileChannel.MapMode.READ_ONLY,
+                    start, size);
+            }
+        }
+        // the mapping stays valid after the channel is closed
+    }
+
+    // ======================================================================
+    // ----------------------------  getters  -------------------------------
+    // ======================================================================
+    /** Get the file path
+     * @return File path of the mapping
+     */
+    public String getFilePath() { return filepath; }
+
+    /** Get the index of the data type
+     * @return Index to FileReader.DATA_TYPE
+     */
+    public int getDataTypeIndex() { return dType; }
+
+    /** Get whether the file is big endian.
+     * @return Big Endianess check.
+     */
+    public boolean getBigEndian() { return bigEndian; }
+
+    /** Get the size of the file
+     * @return File size in bytes
+     */
+    public long getFileSize() { return fileSize; }
+
+    /**
+     * Get the number of (real or complex) samples in the file
+     * @return Number of whole samples
+     */
+    public long getNumSamples() { return fileSize / bytesPerSample(); }
+
+    /** Release the mapping (views already handed out stay valid) */
+    @Override
+    public void close() {
+        regions = null;
+    }
+
+    // ======================================================================
+    // ------------------------------  views  -------------------------------
+    // ======================================================================
+    /**
+     * View of int16 samples on the mapped memory, no copy.  Complex files
+     * give 2 interleaved values per sample.
+     * @param sampleOffset Offset in samples from start of file
+     * @param numSamples Number of samples
+     * @return Read only buffer of numSamples * (1 or 2) values
+     */
+    public ShortBuffer shortView(long sampleOffset, int numSamples) {
+        if (FileReader.BYTES_PER_SAMPLE[dType] != 2)
+            throw new IllegalStateException(
+                "shortView needs an INT16 file, not " + FileReader.DATA_TYPE[dType]);
+        return byteView(sampleOffset, numSamples).asShortBuffer();
+    }
+
+    /**
+     * View of float32 samples on the mapped memory, no copy.  Complex
+     * files give 2 interleaved values per sample.
+     * @param sampleOffset Offset in samples from start of file
+     * @param numSamples Number of samples
+     * @return Read only buffer of numSamples * (1 or 2) values
+     */
+    public FloatBuffer floatView(long sampleOffset, int numSamples) {
+        if (FileReader.BYTES_PER_SAMPLE[dType] != 4)
+            throw new IllegalStateException(
+                "floatView needs a FLOAT32 file, not " + FileReader.DATA_TYPE[dType]);
+        return byteView(sampleOffset, numSamples).asFloatBuffer();
+    }
+
+    /**
+     * Read samples as floats (int16 scaled by 1 / 32767, as
+     * {@link FileReader#loadSignalRawAsFloat}).  Nothing is allocated
+     * beyond the view objects.
+     * @param sampleOffset Offset in samples from start of file
+     * @param dst Output values (complex interleaved for complex files)
+     * @param dstOff Offset of the first output value
+     * @param numSamples Number of samples to read
+     * @return Number of samples read, fewer at the end of the file
+     */
+    public int readAsFloat(long sampleOffset, float[] dst, int dstOff,
+            int numSamples) {
+        int mult = FileReader.MULTIPLIER[dType];
+        int num = (int) Math.max(0, Math.min(numSamples,
+            getNumSamples() - sampleOffset));
+        Objects.checkFromIndexSize(dstOff, (long) mult * num, dst.length);
+
+        // --------------------  one view per MAX_VIEW  ---------------------
+        int maxSamples = MAX_VIEW / bytesPerSample();
+        for (int pos = 0; pos < num; ){
+            int count = Math.min(maxSamples, num - pos);
+            int out = dstOff + mult * pos;
+            if (FileReader.BYTES_PER_SAMPLE[dType] == 2){
+                ShortBuffer view = shortView(sampleOffset + pos, count);
+                for (int ind0 = 0; ind0 < mult * count; ind0++)
+                    dst[out + ind0] = (float) (view.get(ind0) / 32767.0);
+            }
+            else
+                floatView(sampleOffset + pos, count).get(dst, out, mult * count);
+            pos += count;
+        }
+        return num;
+    }
+
+    /**
+     * Read samples as floats into a new array.
+     * @param sampleOffset Offset in samples from start of file
+     * @param numSamples Number of samples to read
+     * @return Float values (complex interleaved for complex files),
+     *     shorter at the end of the file
+     */
+    public float[] readAsFloat(long sampleOffset, int numSamples) {
+        int num = (int) Math.max(0, Math.min(numSamples,
+            getNumSamples() - sampleOffset));
+        float[] out = new float[num * FileReader.MULTIPLIER[dType]];
+        readAsFloat(sampleOffset, out, 0, num);
+        return out;
+    }
+
+    // ======================================================================
+    // ----------------------------  helpers  -------------------------------
+    // ======================================================================
+    private int bytesPerSample() {
+        return FileReader.BYTES_PER_SAMPLE[dType] * FileReader.MULTIPLIER[dType];
+    }
+
+    /** Byte view of whole samples, inside one region */
+    private ByteBuffer byteView(long sampleOffset, int numSamples) {
+        MappedByteBuffer[] regs = regions;
+        if (regs == null)
+            throw new IllegalStateException("Reader is closed");
+        long start = sampleOffset * bytesPerSample();
+        long numBytes = (long) numSamples * bytesPerSample();
+        if (sampleOffset < 0 || numSamples < 0 || start > fileSize - numBytes)
+            throw new IndexOutOfBoundsException(
+                "Samples [" + sampleOffset + ", " + (sampleOffset + numSamples) +
+                ") are outside the file");
+        if (numBytes > MAX_VIEW)
+            throw new IllegalArgumentException(
+                "Views are limited to " + MAX_VIEW + " bytes");
+
+        int region = (int) Math.min(start / REGION_STEP, regs.length - 1);
+        int pos = (int) (start - region * REGION_STEP);
+        return regs[region].slice(pos, (int) numBytes)
+            .order(bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+    }
+}
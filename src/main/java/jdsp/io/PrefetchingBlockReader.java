@@ -0,0 +1,190 @@
+/**
+ * Read ahead of block by block file processing.
+ *
+ * @author Keith Chow
+ */
+package net.kcundercover.jdsp.io;
+import java.time.Duration;
+import java.util.Spliterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * {@link SignalBlockReader} run by a background virtual thread that keeps
+ * up to depth blocks read and decoded ahead of the consumer, so the disk
+ * works while the consumer filters and transforms.  The queue is bounded:
+ * the reader thread waits while depth blocks are ready (backpressure),
+ * and {@link #close} stops it (cancellation).
+ *
+ * The blocks come from a ring of depth + 2 reusable buffers: the ready
+ * blocks, the one being read and the one held by the consumer.  A block
+ * is therefore only valid until the next call to {@link #next}.
+ */
+public class PrefetchingBlockReader implements Spliterator<SignalBlockReader.Block>,
+        AutoCloseable {
+    /** Default number of blocks read ahead */
+    public final static int DEFAULT_DEPTH = 4;
+
+    /** Marks the end of the blocks in the queue */
+    private final static SignalBlockReader.Block END =
+        new SignalBlockReader.Block(SignalBlockReader.Format.FLOAT, 0);
+
+    /** Blocks read ahead, END after the last one */
+    private final ArrayBlockingQueue<SignalBlockReader.Block> ready;
+
+    /** Reader thread */
+    private final Thread thread;
+
+    /** Failure of the reader thread, rethrown to the consumer */
+    private volatile Throwable error;
+
+    /** Set by close, the reader thread stops after the current block */
+    private volatile boolean cancelled = false;
+
+    /** Blocks not handed out yet */
+    private long remaining;
+
+    /** True after END was taken or the reader was closed */
+    private boolean finished = false;
+
+    /**
+     * Constructor with {@link #DEFAULT_DEPTH} blocks read ahead
+     * @param reader File to read
+     * @param blockSize Samples per block
+     * @param hop Samples between the starts of consecutive blocks
+     * @param format Value type of the blocks
+     */
+    public PrefetchingBlockReader(FileReader reader, int blockSize, int hop,
+            SignalBlockReader.Format format) {
+        this(reader, blockSize, hop, format, DEFAULT_DEPTH);
+    }
+
+    /**
+     * Constructor, starts reading ahead
+     * @param reader File to read
+     * @param blockSize Samples per block
+     * @param hop Samples between the starts of consecutive blocks
+     * @param format Value type of the blocks
+     * @param depth Number of blocks read ahead (at least 1)
+     */
+    public PrefetchingBlockReader(FileReader reader, int blockSize, int hop,
+            SignalBlockReader.Format format, int depth) {
+        if (depth < 1)
+            throw new IllegalArgumentException("Expecting depth >= 1");
+
+        SignalBlockReader source = new SignalBlockReader(reader, blockSize, hop,
+            format, depth + 2);
+        remaining = source.estimateSize();
+        ready = new ArrayBlockingQueue<>(depth);
+        thread = Thread.ofVirtual().name("prefetch " + reader.getFilePath())
+            .start(() -> produce(source));
+    }
+
+    /** Read blocks until the end of the file, a failure or close */
+    private void produce(SignalBlockReader source) {
+        try {
+            try {
+                SignalBlockReader.Block block;
+                while (!cancelled && (block = source.next()) != null)
+                    ready.put(block);
+            }
+            catch (Throwable t) {
+                // any failure still ends the queue, or next() waits forever
+                error = t;
+            }
+            if (!cancelled)
+                ready.put(END);
+        }
+        catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ======================================================================
+    // ----------------------------  iteration  -----------------------------
+    // ======================================================================
+    /**
+     * Get the next block, waiting if it is not read yet.  The previous
+     * block is handed back to the reader thread.
+     * @return The block, null after the last block or once closed
+     * @throws IllegalStateException If the reader thread failed (the
+     *     failure is the cause)
+     */
+    public SignalBlockReader.Block next() {
+        if (finished)
+            return null;
+        SignalBlockReader.Block block;
+        try {
+            block = ready.take();
+        }
+        catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            close();
+            return null;
+        }
+        if (block == END) {
+            finished = true;
+            if (error != null)
+                throw new IllegalStateException("Prefetch failed", error);
+            return null;
+        }
+        remaining--;
+        return block;
+    }
+
+    /**
+     * Sequential stream of the blocks.  Each block is only valid until
+     * the next one is taken, so do not collect them.
+     * @return Stream over the remaining blocks
+     */
+    public Stream<SignalBlockReader.Block> stream() {
+        return StreamSupport.stream(this, false).onClose(this::close);
+    }
+
+    /**
+     * Stop reading ahead, the blocks not taken are dropped.  The reader
+     * thread is not interrupted (an interrupt would close a FileChannel),
+     * draining the queue releases it.
+     */
+    @Override
+    public void close() {
+        finished = true;
+        cancelled = true;
+        ready.clear();
+    }
+
+    /**
+     * Wait for the reader thread to stop, after the last block or close
+     * @param millis Longest wait in milliseconds
+     * @return True if the reader thread has stopped
+     * @throws InterruptedException If the wait is interrupted
+     */
+    public boolean awaitTermination(long millis) throws InterruptedException {
+        return thread.join(Duration.ofMillis(millis));
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super SignalBlockReader.Block> action) {
+        SignalBlockReader.Block block = next();
+        if (block == null)
+            return false;
+        action.accept(block);
+        return true;
+    }
+
+    /** Never splits, the blocks share the ring buffers
+     * @return null
+     */
+    @Override
+    public Spliterator<SignalBlockReader.Block> trySplit() { return null; }
+
+    @Override
+    public long estimateSize() { return finished ? 0 : remaining; }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL | SIZED;
+    }
+}
@@ -0,0 +1,260 @@
+/**
+ * Block by block iteration over raw signal files.
+ *
+ * @author Keith Chow
+ */
+package net.kcundercover.jdsp.io;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Sequential reader of fixed size blocks from a {@link FileReader}.
+ * Block k starts at sample k * hop, so hop &lt; blockSize gives
+ * overlapping blocks (the overlap is copied from the previous block, not
+ * read again) and hop &gt; blockSize skips samples.  The last block is
+ * zero padded past the end of the file.
+ *
+ * Blocks are filled into a small ring of reusable buffers, converted to
+ * the selected {@link Format}, so nothing is allocated after the
+ * constructor.  A block stays valid until ringSize - 1 further blocks
+ * have been read.  The reader is also a sequential {@link Spliterator}
+ * (it does not split, the buffers are shared), see {@link #stream}.
+ */
+public class SignalBlockReader implements Spliterator<SignalBlockReader.Block> {
+    /** Default number of reusable blocks */
+    public final static int DEFAULT_RING_SIZE = 4;
+
+    /** Value type of the blocks */
+    public enum Format {
+        /** Raw int16 values (int16 files only) */
+        SHORT,
+        /** Float values, int16 scaled by 1 / 32767 */
+        FLOAT,
+        /** Double values, int16 scaled by 1 / 32767 */
+        DOUBLE
+    }
+
+    /** One block of samples (complex interleaved for complex files) */
+    public final static class Block {
+        private final short[] shorts;
+        private final float[] floats;
+        private final double[] doubles;
+        private long offset;
+        private int numSamples;
+
+        Block(Format format, int numValues) {
+            shorts = format == Format.SHORT ? new short[numValues] : null;
+            floats = format == Format.FLOAT ? new float[numValues] : null;
+            doubles = format == Format.DOUBLE ? new double[numValues] : null;
+        }
+
+        /** Get the position of the block
+         * @return Offset of the first sample from the start of file
+         */
+        public long getOffset() { return offset; }
+
+        /** Get the number of samples from the file
+         * @return Samples before the zero padding (blockSize except at the end)
+         */
+        public int getNumSamples() { return numSamples; }
+
+        /** Get the values of a SHORT block
+         * @return Reused buffer, null for other formats
+         */
+        public short[] getShorts() { return shorts; }
+
+        /** Get the values of a FLOAT block
+         * @return Reused buffer, null for other formats
+         */
+        public float[] getFloats() { return floats; }
+
+        /** Get the values of a DOUBLE block
+         * @return Reused buffer, null for other formats
+         */
+        public double[] getDoubles() { return doubles; }
+    }
+
+    private final FileReader reader;
+    private final int blockSize, hop, mult;
+    private final Format format;
+
+    /** Number of samples in the file */
+    private final long end;
+
+    /** Reusable blocks, the next one filled is blocks[ringPos] */
+    private final Block[] blocks;
+    private int ringPos = 0;
+
+    /** Last block handed out (source of the overlap) */
+    private Block previous;
+
+    /** Float scratch of DOUBLE blocks */
+    private final float[] scratch;
+
+    /** Offset of the next block */
+    private long next = 0;
+
+    /**
+     * Constructor with {@link #DEFAULT_RING_SIZE} buffers
+     * @param reader File to read
+     * @param blockSize Samples per block
+     * @param hop Samples between the starts of consecutive blocks
+     * @param format Value type of the blocks
+     */
+    public SignalBlockReader(FileReader reader, int blockSize, int hop,
+            Format format) {
+        this(reader, blockSize, hop, format, DEFAULT_RING_SIZE);
+    }
+
+    /**
+     * Constructor
+     * @param reader File to read
+     * @param blockSize Samples per block
+     * @param hop Samples between the starts of consecutive blocks
+     * @param format Value type of the blocks
+     * @param ringSize Number of reusable blocks (at least 2)
+     */
+    public SignalBlockReader(FileReader reader, int blockSize, int hop,
+            Format format, int ringSize) {
+        // ---------------------  error checking  ---------------------------
+        if (blockSize < 1 || hop < 1)
+            throw new IllegalArgumentException(
+                "Block size and hop should be >= 1");
+        if (ringSize < 2)
+            throw new IllegalArgumentException("Expecting at least 2 buffers");
+        if (format == Format.SHORT &&
+                FileReader.BYTES_PER_SAMPLE[reader.getDataTypeIndex()] != 2)
+            throw new IllegalArgumentException(
+                "SHORT blocks need an INT16 file, not " + reader.getDataType());
+
+        this.reader = reader;
+        this.blockSize = blockSize;
+        this.hop = hop;
+        this.format = format;
+        this.mult = FileReader.MULTIPLIER[reader.getDataTypeIndex()];
+        this.end = reader.getNumSamples();
+        blocks = new Block[ringSize];
+        for (int ind0 = 0; ind0 < ringSize; ind0++)
+            blocks[ind0] = new Block(format, mult * blockSize);
+        scratch = format == Format.DOUBLE ? new float[mult * blockSize] : null;
+    }
+
+    // ======================================================================
+    // ----------------------------  getters  -------------------------------
+    // ======================================================================
+    /** Get the number of samples per block
+     * @return Block size
+     */
+    public int getBlockSize() { return blockSize; }
+
+    /** Get the distance between blocks
+     * @return Hop in samples
+     */
+    public int getHop() { return hop; }
+
+    /** Get the value type of the blocks
+     * @return Format
+     */
+    public Format getFormat() { return format; }
+
+    /**
+     * Check for more blocks
+     * @return True if {@link #next} will return a block
+     */
+    public boolean hasNext() { return next < end; }
+
+    // ======================================================================
+    // ----------------------------  iteration  -----------------------------
+    // ======================================================================
+    /**
+     * Read the next block into the ring
+     * @return The block, null after the last block
+     * @throws UncheckedIOException If fewer samples than the file holds
+     *     were read (for example the file shrank or the channel was closed)
+     */
+    public Block next() {
+        if (next >= end)
+            return null;
+        Block block = blocks[ringPos];
+        ringPos = (ringPos + 1) % blocks.length;
+        fill(block, next);
+        previous = block;
+        next += hop;
+        return block;
+    }
+
+    /**
+     * Sequential stream of the blocks.  Each block is only valid until
+     * ringSize - 1 further blocks were read, so do not collect them.
+     * @return Stream over the remaining blocks
+     */
+    public Stream<Block> stream() {
+        return StreamSupport.stream(this, false);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Block> action) {
+        Block block = next();
+        if (block == null)
+            return false;
+        action.accept(block);
+        return true;
+    }
+
+    /** Never splits, the blocks share the ring buffers
+     * @return null
+     */
+    @Override
+    public Spliterator<Block> trySplit() { return null; }
+
+    @Override
+    public long estimateSize() {
+        return next >= end ? 0 : (end - next + hop - 1) / hop;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL | SIZED;
+    }
+
+    /** Copy the overlap from the previous block, read the rest */
+    private void fill(Block block, long offset) {
+        int keep = previous != null && hop < blockSize ? blockSize - hop : 0;
+        int numNew = blockSize - keep;
+        int got;
+        switch (format) {
+            case SHORT:
+                if (keep > 0)
+                    System.arraycopy(previous.shorts, mult * hop, block.shorts, 0, mult * keep);
+                got = reader.readAsShort(offset + keep, block.shorts, mult * keep, numNew);
+                Arrays.fill(block.shorts, mult * (keep + got), mult * blockSize, (short) 0);
+                break;
+            case FLOAT:
+                if (keep > 0)
+                    System.arraycopy(previous.floats, mult * hop, block.floats, 0, mult * keep);
+                got = reader.readAsFloat(offset + keep, block.floats, mult * keep, numNew);
+                Arrays.fill(block.floats, mult * (keep + got), mult * blockSize, 0f);
+                break;
+            default:
+                if (keep > 0)
+                    System.arraycopy(previous.doubles, mult * hop, block.doubles, 0, mult * keep);
+                got = reader.readAsFloat(offset + keep, scratch, 0, numNew);
+                for (int ind0 = 0; ind0 < mult * got; ind0++)
+                    block.doubles[mult * keep + ind0] = scratch[ind0];
+                Arrays.fill(block.doubles, mult * (keep + got), mult * blockSize, 0);
+        }
+        // ------------  a short read before the end is a failure  ------------
+        long expected = Math.max(0, Math.min(numNew, end - offset - keep));
+        if (got < expected)
+            throw new UncheckedIOException(new IOException("Read " + got +
+                " of " + expected + " samples at sample " + (offset + keep) +
+                " of " + reader.getFilePath()));
+        block.offset = offset;
+        block.numSamples = (int) Math.min(keep, end - offset) + got;
+    }
+}
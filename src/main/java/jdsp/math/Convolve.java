@@ -3,6 +3,10 @@
  * @author Keith Chow
  */
 package net.kcundercover.jdsp.math;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
 
 /** Convolve class */
 public class Convolve {
@@ -12,8 +16,28 @@ public class Convolve {
     /** Default Constructor */
     public Convolve() {}
 
+    /** Use the Vector API kernels (system property jdsp.convolve.vector) */
+    private static volatile boolean vectorEnabled = Boolean.parseBoolean(
+        System.getProperty("jdsp.convolve.vector", "true"));
+
     /**
-     * Convolve 2 vectors together.
+     * Enable or disable the Vector API kernels of the direct convolution
+     * (for comparison against the scalar loops)
+     * @param enabled If false, only the scalar loops are used
+     */
+    public static void setVectorEnabled(boolean enabled) {
+        vectorEnabled = enabled;
+    }
+
+    /**
+     * Check if the Vector API kernels are enabled
+     * @return True if direct convolution runs across vector lanes
+     */
+    public static boolean isVectorEnabled() { return vectorEnabled; }
+
+    /**
+     * Convolve 2 vectors together.  Products and sums wrap around like
+     * int arithmetic; see {@link #convolveLong} for a widened result.
      *
      * @param input1 First vector (length N) real values
      * @param input2 Second vector (length M) real values
@@ -24,40 +48,49 @@ public class Convolve {
         int len1 = input1.length;
         int len2 = input2.length;
         int len3 = len1 + len2 - 1;
-        int start;
 
         // allocate output
-        int[] output = new int[len3];
+        int[] output = new int[Math.max(0, len3)];
+        if (len1 == 0 || len2 == 0)
+            return output;
 
-        if (len2 >= len1){
-            for (int ind0 = 0; ind0 < len1; ind0++){
-                for (int ind1 = 0; ind1 < ind0 + 1; ind1++){
-                    output[ind0] += input1[ind0 - ind1] * input2[ind1];
-                }
-            }
-            for (int ind0 = len1; ind0 < len3; ind0++){
-                start = (ind0 - len2 + 1 < 0) ? 0 : ind0 - len2 + 1;
-                for (int ind1=start; ind1 < len1; ind1++){
-                    int tmp = input2[ind0 - ind1];
-                    output[ind0] += input1[ind1] * tmp;
-                }
-            }
-        }
-        else{
-            for (int ind0 = 0; ind0 < len2; ind0++){
-                for (int ind1 = 0; ind1 < ind0 + 1; ind1++){
-                    output[ind0] += input2[ind0 - ind1] * input1[ind1];
-                }
-            }
-            for (int ind0 = len2; ind0 < len3; ind0++){
-                start = (ind0 - len1 + 1 < 0) ? 0 : ind0 - len1 + 1;
-                for (int ind1=start; ind1 < len2; ind1++){
-                    int tmp = input1[ind0 - ind1];
-                    output[ind0] += input2[ind1] * tmp;
-                }
-            }
-        }
+        // shorter vector is reversed once and slid across the longer one
+        int[] signal = len1 >= len2 ? input1 : input2;
+        int[] filter = signal == input1 ? input2 : input1;
+        ConvolveVectorKernels.convolve(signal, reverse(filter), 1,
+            output, 0, len3, vectorEnabled);
+        return output;
+    }
+
+    /**
+     * Convolve 2 vectors together, accumulating in 64 bits so the output
+     * does not overflow.
+     *
+     * @param input1 First vector (length N) real values
+     * @param input2 Second vector (length M) real values
+     * @return The convolved outputed (length M + N - 1)
+     */
+    public static long[] convolveLong(int[] input1, int[] input2){
+        // ----------------  setup local variables  -------------------------
+        int len1 = input1.length;
+        int len2 = input2.length;
+        int len3 = len1 + len2 - 1;
+        long[] output = new long[Math.max(0, len3)];
+        if (len1 == 0 || len2 == 0)
+            return output;
+
+        // ---------------  widen, reverse shorter vector  ------------------
+        int[] signal = len1 >= len2 ? input1 : input2;
+        int[] filter = signal == input1 ? input2 : input1;
+        long[] wide = new long[signal.length];
+        for (int ind0 = 0; ind0 < wide.length; ind0++)
+            wide[ind0] = signal[ind0];
+        long[] reversed = new long[filter.length];
+        for (int ind0 = 0; ind0 < reversed.length; ind0++)
+            reversed[ind0] = filter[filter.length - 1 - ind0];
 
+        ConvolveVectorKernels.convolve(wide, reversed, 1,
+            output, 0, len3, vectorEnabled);
         return output;
     }
 
@@ -73,38 +106,15 @@ public class Convolve {
         int len1 = input1.length;
         int len2 = input2.length;
         int len3 = len1 + len2 - 1;
-        int start;
-        float[] output = new float[len3];
-
-        if (len2 >= len1){
-            for (int ind0 = 0; ind0 < len1; ind0++){
-                for (int ind1 = 0; ind1 < ind0 + 1; ind1++){
-                    output[ind0] += input1[ind0 - ind1] * input2[ind1];
-                }
-            }
-            for (int ind0 = len1; ind0 < len3; ind0++){
-                start = (ind0 - len2 + 1 < 0) ? 0 : ind0 - len2 + 1;
-                for (int ind1=start; ind1 < len1; ind1++){
-                    float tmp = input2[ind0 - ind1];
-                    output[ind0] += input1[ind1] * tmp;
-                }
-            }
-        }
-        else{
-            for (int ind0 = 0; ind0 < len2; ind0++){
-                for (int ind1 = 0; ind1 < ind0 + 1; ind1++){
-                    output[ind0] += input2[ind0 - ind1] * input1[ind1];
-                }
-            }
-            for (int ind0 = len2; ind0 < len3; ind0++){
-                start = (ind0 - len1 + 1 < 0) ? 0 : ind0 - len1 + 1;
-                for (int ind1=start; ind1 < len2; ind1++){
-                    float tmp = input1[ind0 - ind1];
-                    output[ind0] += input2[ind1] * tmp;
-                }
-            }
-        }
+        float[] output = new float[Math.max(0, len3)];
+        if (len1 == 0 || len2 == 0)
+            return output;
 
+        // shorter vector is reversed once and slid across the longer one
+        float[] signal = len1 >= len2 ? input1 : input2;
+        float[] filter = signal == input1 ? input2 : input1;
+        ConvolveVectorKernels.convolve(signal, reverse(filter), 1,
+            output, 0, len3, vectorEnabled);
         return output;
     }
 
@@ -120,38 +130,15 @@ public class Convolve {
         int len1 = input1.length;
         int len2 = input2.length;
         int len3 = len1 + len2 - 1;
-        int start;
-        double[] output = new double[len3];
-
-        if (len2 >= len1){
-            for (int ind0 = 0; ind0 < len1; ind0++){
-                for (int ind1 = 0; ind1 < ind0+1; ind1++){
-                    output[ind0] += input1[ind0 - ind1] * input2[ind1];
-                }
-            }
-            for (int ind0 = len1; ind0 < len3; ind0++){
-                start = (ind0-len2+1<0) ? 0 : ind0 - len2 + 1;
-                for (int ind1=start; ind1 < len1; ind1++){
-                    double tmp = input2[ind0 - ind1];
-                    output[ind0] += input1[ind1] * tmp;
-                }
-            }
-        }
-        else{
-            for (int ind0 = 0; ind0 < len2; ind0++){
-                for (int ind1 = 0; ind1 < ind0 + 1; ind1++){
-                    output[ind0] += input2[ind0 - ind1] * input1[ind1];
-                }
-            }
-            for (int ind0 = len2; ind0 < len3; ind0++){
-                start = (ind0 - len1 + 1 < 0) ? 0 : ind0 - len1 + 1;
-                for (int ind1=start; ind1 < len2; ind1++){
-                    double tmp = input1[ind0 - ind1];
-                    output[ind0] += input2[ind1] * tmp;
-                }
-            }
-        }
+        double[] output = new double[Math.max(0, len3)];
+        if (len1 == 0 || len2 == 0)
+            return output;
 
+        // shorter vector is reversed once and slid across the longer one
+        double[] signal = len1 >= len2 ? input1 : input2;
+        double[] filter = signal == input1 ? input2 : input1;
+        ConvolveVectorKernels.convolve(signal, reverse(filter), 1,
+            output, 0, len3, vectorEnabled);
         return output;
     }
 
@@ -173,43 +160,956 @@ public class Convolve {
         int len1 = input1.length;
         int len2 = input2.length / 2;
         int len3 = len1 + len2 - 1;
-        int start;
 
         // output is complex interlevaved.  double number of elements
-        double[] output = new double[len3 * 2];
+        double[] output = new double[2 * Math.max(0, len3)];
+        if (len1 == 0 || len2 == 0)
+            return output;
 
         if (len2 >= len1){
-            for (int ind0 = 0; ind0 < len1; ind0++){
-                for (int ind1 = 0; ind1 < ind0+1; ind1++){
-                    output[ind0 * 2] += input1[ind0 - ind1] * input2[ind1 * 2];
-                    output[ind0 * 2 + 1] += input1[ind0 - ind1] * input2[ind1 * 2 + 1];
-                }
-            }
-            for (int ind0 = len1; ind0 < len3; ind0++){
-                start = (ind0-len2+1<0) ? 0 : ind0 - len2 + 1;
-                for (int ind1=start; ind1 < len1; ind1++){
-                    output[ind0 * 2] += input1[ind1] * input2[2 * (ind0 - ind1)];
-                    output[ind0 * 2 + 1] += input1[ind1] * input2[2 * (ind0 - ind1) + 1];
-                }
-            }
+            // real taps across the interleaved samples (stride 2)
+            ConvolveVectorKernels.convolve(input2, reverse(input1), 2,
+                output, 0, 2 * len3, vectorEnabled);
         }
         else{
+            // complex taps, filter with real and imaginary taps separately
+            double[] revReal = new double[len2];
+            double[] revImag = new double[len2];
             for (int ind0 = 0; ind0 < len2; ind0++){
-                for (int ind1 = 0; ind1 < ind0 + 1; ind1++){
-                    output[ind0 * 2] += input2[2*(ind0 - ind1)] * input1[ind1];
-                    output[ind0 * 2 + 1] += input2[2*(ind0 - ind1) + 1] * input1[ind1];
-                }
+                revReal[ind0] = input2[2 * (len2 - 1 - ind0)];
+                revImag[ind0] = input2[2 * (len2 - 1 - ind0) + 1];
+            }
+            double[] outReal = new double[len3];
+            double[] outImag = new double[len3];
+            ConvolveVectorKernels.convolve(input1, revReal, 1,
+                outReal, 0, len3, vectorEnabled);
+            ConvolveVectorKernels.convolve(input1, revImag, 1,
+                outImag, 0, len3, vectorEnabled);
+            for (int ind0 = 0; ind0 < len3; ind0++){
+                output[2 * ind0] = outReal[ind0];
+                output[2 * ind0 + 1] = outImag[ind0];
+            }
+        }
+
+        return output;
+    }
+
+    /**
+     * Single full overlap output with taps reversed by the caller, used by
+     * polyphase filters that only compute the outputs they keep:
+     * sum_j reversed[j] * signal[sigOff + j].
+     *
+     * @param signal Input samples (sigOff + M are read)
+     * @param sigOff Offset of the first sample
+     * @param reversed Filter taps in reverse order (length M)
+     * @return The output sample
+     */
+    public static double dot(double[] signal, int sigOff, double[] reversed){
+        return ConvolveVectorKernels.dot(signal, sigOff, reversed, vectorEnabled);
+    }
+
+    /**
+     * Full overlap convolution with taps reversed by the caller, used by
+     * streaming filters that keep their own history:
+     * output[outOff + n] = sum_j reversed[j] * signal[sigOff + n + j].
+     *
+     * @param signal Input samples (sigOff + count + M - 1 are read)
+     * @param sigOff Offset of the first sample
+     * @param reversed Filter taps in reverse order (length M)
+     * @param output Output vector
+     * @param outOff Offset of the first output
+     * @param count Number of outputs
+     */
+    public static void convolveValid(double[] signal, int sigOff,
+            double[] reversed, double[] output, int outOff, int count){
+        ConvolveVectorKernels.convolveValid(signal, sigOff, 1, reversed,
+            output, outOff, count, vectorEnabled);
+    }
+
+    /**
+     * Full overlap convolution of strided samples with taps reversed by the
+     * caller.  A stride of 2 filters both parts of complex interleaved
+     * data with real taps:
+     * output[outOff + n] = sum_j reversed[j] * signal[sigOff + n + stride * j].
+     *
+     * @param signal Input samples (sigOff + count + stride * (M - 1) are read)
+     * @param sigOff Offset of the first sample
+     * @param stride Distance between samples seen by consecutive taps
+     * @param reversed Filter taps in reverse order (length M)
+     * @param output Output vector
+     * @param outOff Offset of the first output
+     * @param count Number of outputs
+     */
+    public static void convolveValid(double[] signal, int sigOff, int stride,
+            double[] reversed, double[] output, int outOff, int count){
+        ConvolveVectorKernels.convolveValid(signal, sigOff, stride, reversed,
+            output, outOff, count, vectorEnabled);
+    }
+
+    /**
+     * Full overlap convolution with taps reversed by the caller, used by
+     * streaming filters that keep their own history:
+     * output[outOff + n] = sum_j reversed[j] * signal[sigOff + n + j].
+     *
+     * @param signal Input samples (sigOff + count + M - 1 are read)
+     * @param sigOff Offset of the first sample
+     * @param reversed Filter taps in reverse order (length M)
+     * @param output Output vector
+     * @param outOff Offset of the first output
+     * @param count Number of outputs
+     */
+    public static void convolveValid(float[] signal, int sigOff,
+            float[] reversed, float[] output, int outOff, int count){
+        ConvolveVectorKernels.convolveValid(signal, sigOff, 1, reversed,
+            output, outOff, count, vectorEnabled);
+    }
+
+    /**
+     * Full overlap convolution of strided samples with taps reversed by the
+     * caller.  A stride of 2 filters both parts of complex interleaved
+     * data with real taps:
+     * output[outOff + n] = sum_j reversed[j] * signal[sigOff + n + stride * j].
+     *
+     * @param signal Input samples (sigOff + count + stride * (M - 1) are read)
+     * @param sigOff Offset of the first sample
+     * @param stride Distance between samples seen by consecutive taps
+     * @param reversed Filter taps in reverse order (length M)
+     * @param output Output vector
+     * @param outOff Offset of the first output
+     * @param count Number of outputs
+     */
+    public static void convolveValid(float[] signal, int sigOff, int stride,
+            float[] reversed, float[] output, int outOff, int count){
+        ConvolveVectorKernels.convolveValid(signal, sigOff, stride, reversed,
+            output, outOff, count, vectorEnabled);
+    }
+
+    // ======================================================================
+    // -----------------------  linear phase filters  -----------------------
+    // ======================================================================
+    /** Symmetry of a set of filter taps */
+    public enum Symmetry {
+        /** No symmetry, one multiply per tap */
+        NONE,
+        /** h[k] = h[M-1-k] (even), mirrored samples are pre-added */
+        SYMMETRIC,
+        /** h[k] = -h[M-1-k] (odd), mirrored samples are subtracted */
+        ANTISYMMETRIC
+    }
+
+    /**
+     * Detect exact (bit for bit) symmetry of filter taps, so folding the
+     * mirrored samples cannot change the filter.
+     * @param taps Filter taps (forward or reversed)
+     * @return Symmetry of the taps, NONE for fewer than 2 taps
+     */
+    public static Symmetry symmetryOf(double[] taps) {
+        int numTaps = taps.length;
+        boolean sym = numTaps > 1, anti = numTaps > 1;
+        for (int ind0 = 0; ind0 < numTaps / 2; ind0++) {
+            sym &= taps[ind0] == taps[numTaps - 1 - ind0];
+            anti &= taps[ind0] == -taps[numTaps - 1 - ind0];
+        }
+        if ((numTaps & 1) == 1)
+            anti &= taps[numTaps / 2] == 0;
+        return sym ? Symmetry.SYMMETRIC :
+            anti ? Symmetry.ANTISYMMETRIC : Symmetry.NONE;
+    }
+
+    /**
+     * Detect exact (bit for bit) symmetry of filter taps, so folding the
+     * mirrored samples cannot change the filter.
+     * @param taps Filter taps (forward or reversed)
+     * @return Symmetry of the taps, NONE for fewer than 2 taps
+     */
+    public static Symmetry symmetryOf(float[] taps) {
+        int numTaps = taps.length;
+        boolean sym = numTaps > 1, anti = numTaps > 1;
+        for (int ind0 = 0; ind0 < numTaps / 2; ind0++) {
+            sym &= taps[ind0] == taps[numTaps - 1 - ind0];
+            anti &= taps[ind0] == -taps[numTaps - 1 - ind0];
+        }
+        if ((numTaps & 1) == 1)
+            anti &= taps[numTaps / 2] == 0;
+        return sym ? Symmetry.SYMMETRIC :
+            anti ? Symmetry.ANTISYMMETRIC : Symmetry.NONE;
+    }
+
+    /**
+     * Full overlap convolution of strided samples with taps reversed by the
+     * caller, folding mirrored samples of symmetric and antisymmetric taps
+     * (about half the multiplies).  Same output, up to rounding, as
+     * {@link #convolveValid(double[], int, int, double[], double[], int, int)}.
+     *
+     * @param signal Input samples (sigOff + count + stride * (M - 1) are read)
+     * @param sigOff Offset of the first sample
+     * @param stride Distance between samples seen by consecutive taps
+     * @param reversed Filter taps in reverse order (length M)
+     * @param symmetry Symmetry of the taps, from {@link #symmetryOf}
+     * @param output Output vector
+     * @param outOff Offset of the first output
+     * @param count Number of outputs
+     */
+    public static void convolveValid(double[] signal, int sigOff, int stride,
+            double[] reversed, Symmetry symmetry, double[] output, int outOff,
+            int count){
+        if (symmetry == Symmetry.NONE)
+            ConvolveVectorKernels.convolveValid(signal, sigOff, stride, reversed,
+                output, outOff, count, vectorEnabled);
+        else
+            ConvolveVectorKernels.convolveValidSymmetric(signal, sigOff, stride,
+                reversed, symmetry == Symmetry.ANTISYMMETRIC,
+                output, outOff, count, vectorEnabled);
+    }
+
+    /**
+     * Full overlap convolution of strided samples with taps reversed by the
+     * caller, folding mirrored samples of symmetric and antisymmetric taps
+     * (about half the multiplies).  Same output, up to rounding, as
+     * {@link #convolveValid(float[], int, int, float[], float[], int, int)}.
+     *
+     * @param signal Input samples (sigOff + count + stride * (M - 1) are read)
+     * @param sigOff Offset of the first sample
+     * @param stride Distance between samples seen by consecutive taps
+     * @param reversed Filter taps in reverse order (length M)
+     * @param symmetry Symmetry of the taps, from {@link #symmetryOf}
+     * @param output Output vector
+     * @param outOff Offset of the first output
+     * @param count Number of outputs
+     */
+    public static void convolveValid(float[] signal, int sigOff, int stride,
+            float[] reversed, Symmetry symmetry, float[] output, int outOff,
+            int count){
+        if (symmetry == Symmetry.NONE)
+            ConvolveVectorKernels.convolveValid(signal, sigOff, stride, reversed,
+                output, outOff, count, vectorEnabled);
+        else
+            ConvolveVectorKernels.convolveValidSymmetric(signal, sigOff, stride,
+                reversed, symmetry == Symmetry.ANTISYMMETRIC,
+                output, outOff, count, vectorEnabled);
+    }
+
+    /**
+     * Reverse a vector (taps for the direct form kernels)
+     * @param input Vector to reverse
+     * @return New vector in reverse order
+     */
+    public static int[] reverse(int[] input) {
+        int[] output = new int[input.length];
+        for (int ind0 = 0; ind0 < input.length; ind0++)
+            output[ind0] = input[input.length - 1 - ind0];
+        return output;
+    }
+
+    /**
+     * Reverse a vector (taps for the direct form kernels)
+     * @param input Vector to reverse
+     * @return New vector in reverse order
+     */
+    public static float[] reverse(float[] input) {
+        float[] output = new float[input.length];
+        for (int ind0 = 0; ind0 < input.length; ind0++)
+            output[ind0] = input[input.length - 1 - ind0];
+        return output;
+    }
+
+    /**
+     * Reverse a vector (taps for the direct form kernels)
+     * @param input Vector to reverse
+     * @return New vector in reverse order
+     */
+    public static double[] reverse(double[] input) {
+        double[] output = new double[input.length];
+        for (int ind0 = 0; ind0 < input.length; ind0++)
+            output[ind0] = input[input.length - 1 - ind0];
+        return output;
+    }
+
+    // ======================================================================
+    // -----------------------  FFT fast convolution  -----------------------
+    // ======================================================================
+    /** Block processing used by the FFT convolution */
+    public enum BlockMode {
+        /** Transform disjoint input blocks, add the overlapping tails */
+        OVERLAP_ADD,
+        /** Transform overlapping input blocks, discard the wrapped head */
+        OVERLAP_SAVE
+    }
+
+    /**
+     * Select the FFT size for block convolution.  Power of two sizes from
+     * the filter length up to a single transform of the whole output are
+     * compared by their total butterfly count.
+     * @param signalLen Length of the longer operand
+     * @param filterLen Length of the shorter operand
+     * @return FFT size (at least filterLen)
+     */
+    public static int fftBlockSize(int signalLen, int filterLen) {
+        int full = FFT.nextPowerOfTwo(signalLen + filterLen - 1);
+        int best = full;
+        double bestCost = blockCost(signalLen, filterLen, full);
+        for (int nfft = FFT.nextPowerOfTwo(filterLen); nfft < full; nfft <<= 1) {
+            double cost = blockCost(signalLen, filterLen, nfft);
+            if (cost < bestCost) {
+                bestCost = cost;
+                best = nfft;
+            }
+        }
+        return best;
+    }
+
+    /** Butterfly count of convolving with blocks of nfft points */
+    private static double blockCost(int signalLen, int filterLen, int nfft) {
+        int step = nfft - filterLen + 1;
+        long numBlocks = (signalLen + (long) step - 1) / step;
+        // forward + inverse per block
+        return 2.0 * numBlocks * nfft * (Math.log(nfft) / Math.log(2) + 1);
+    }
+
+    /** Resolve and verify the block size requested by the caller */
+    private static int checkBlockSize(int signalLen, int filterLen, int nfft) {
+        if (nfft <= 0)
+            return fftBlockSize(signalLen, filterLen);
+        if (nfft < filterLen)
+            throw new IllegalArgumentException(
+                "Block size should be >= the shorter input length");
+        return nfft;
+    }
+
+    /**
+     * Convolve 2 vectors together with overlap-add FFT blocks.
+     *
+     * @param input1 First vector (length N)
+     * @param input2 Second vector (length M)
+     * @return The convolved output (length M+N-1)
+     */
+    public static double[] fftConvolve(double[] input1, double[] input2) {
+        return fftConvolve(input1, input2, BlockMode.OVERLAP_ADD, 0);
+    }
+
+    /**
+     * Convolve 2 vectors together with FFT blocks.
+     *
+     * @param input1 First vector (length N)
+     * @param input2 Second vector (length M)
+     * @param mode Overlap-add or overlap-save
+     * @param nfft FFT size (0 to select automatically)
+     * @return The convolved output (length M+N-1)
+     */
+    public static double[] fftConvolve(double[] input1, double[] input2,
+            BlockMode mode, int nfft) {
+        if (input1.length == 0 || input2.length == 0)
+            return new double[Math.max(0, input1.length + input2.length - 1)];
+
+        // ---------------  shorter operand is the filter  ------------------
+        double[] signal = input1.length >= input2.length ? input1 : input2;
+        double[] filter = signal == input1 ? input2 : input1;
+        nfft = checkBlockSize(signal.length, filter.length, nfft);
+        double[] output = new double[signal.length + filter.length - 1];
+        blockConvolve(signal, filter, output, mode, nfft);
+        return output;
+    }
+
+    /**
+     * Convolve 2 complex vectors together with overlap-add FFT blocks.
+     *
+     * @param input1 First vector (length N * 2) complex interleaved
+     * @param input2 Second vector (length M * 2) complex interleaved
+     * @return The convolved output (length (M+N-1) * 2) complex interleaved
+     */
+    public static double[] fftConvolveComplex(double[] input1, double[] input2) {
+        return fftConvolveComplex(input1, input2, BlockMode.OVERLAP_ADD, 0);
+    }
+
+    /**
+     * Convolve 2 complex vectors together with FFT blocks.
+     *
+     * @param input1 First vector (length N * 2) complex interleaved
+     * @param input2 Second vector (length M * 2) complex interleaved
+     * @param mode Overlap-add or overlap-save
+     * @param nfft FFT size (0 to select automatically)
+     * @return The convolved output (length (M+N-1) * 2) complex interleaved
+     */
+    public static double[] fftConvolveComplex(double[] input1, double[] input2,
+            BlockMode mode, int nfft) {
+        // ---------------------  error checking  ---------------------------
+        if (input1.length % 2 == 1 || input2.length % 2 == 1)
+            throw new IllegalArgumentException(
+                "Expecting interleaved complex, should be even number");
+        if (input1.length == 0 || input2.length == 0)
+            return new double[2 * Math.max(0,
+                (input1.length + input2.length) / 2 - 1)];
+
+        // ---------------  shorter operand is the filter  ------------------
+        double[] signal = input1.length >= input2.length ? input1 : input2;
+        double[] filter = signal == input1 ? input2 : input1;
+        nfft = checkBlockSize(signal.length / 2, filter.length / 2, nfft);
+        double[] output = new double[signal.length + filter.length - 2];
+        blockConvolveComplex(signal, filter, output, mode, nfft);
+        return output;
+    }
+
+    /**
+     * Convolve a real vector with a complex vector using FFT blocks.
+     * Drop in replacement for {@link #convolveRealComplex}.
+     *
+     * @param input1 First vector (length N)
+     * @param input2 Second vector (length M * 2) complex interleaved
+     * @return The convolved outputed (length (M+N-1) * 2) complex interleaved
+     */
+    public static double[] fftConvolveRealComplex(double[] input1, double[] input2) {
+        return fftConvolveRealComplex(input1, input2, BlockMode.OVERLAP_ADD, 0);
+    }
+
+    /**
+     * Convolve a real vector with a complex vector using FFT blocks.
+     *
+     * @param input1 First vector (length N)
+     * @param input2 Second vector (length M * 2) complex interleaved
+     * @param mode Overlap-add or overlap-save
+     * @param nfft FFT size (0 to select automatically)
+     * @return The convolved outputed (length (M+N-1) * 2) complex interleaved
+     */
+    public static double[] fftConvolveRealComplex(double[] input1, double[] input2,
+            BlockMode mode, int nfft) {
+        if (input2.length % 2 == 1)
+            throw new IllegalArgumentException(
+                "Expecting interleaved complex, should be even number");
+
+        // real input promoted to complex (zero imaginary)
+        double[] complex1 = new double[2 * input1.length];
+        for (int ind0 = 0; ind0 < input1.length; ind0++)
+            complex1[2 * ind0] = input1[ind0];
+        return fftConvolveComplex(complex1, input2, mode, nfft);
+    }
+
+    /**
+     * Real block convolution of signal (length N) with filter (length M),
+     * writing all N+M-1 outputs.
+     */
+    private static void blockConvolve(double[] signal, double[] filter,
+            double[] output, BlockMode mode, int nfft) {
+        // ----------------  setup local variables  -------------------------
+        int len1 = signal.length;
+        int len2 = filter.length;
+        int len3 = output.length;
+        int step = nfft - len2 + 1;
+        RealFftPlan plan = RealFftPlan.of(nfft, FftPlan.Precision.DOUBLE);
+        int numBins = plan.getNumBins();
+        double[] buffer = new double[nfft];
+        double[] spectrum = new double[2 * numBins];
+        double[] response = new double[2 * numBins];
+
+        // filter response, with the inverse 1 / nfft folded in
+        System.arraycopy(filter, 0, buffer, 0, len2);
+        plan.forward(buffer, 0, response, 0);
+        for (int ind0 = 0; ind0 < response.length; ind0++)
+            response[ind0] /= nfft;
+
+        // -----------------------  process blocks  -------------------------
+        boolean add = mode == BlockMode.OVERLAP_ADD;
+        int end = add ? len1 : len3;
+        for (int start = 0; start < end; start += step) {
+            // overlap-save reads M-1 samples of history before each block
+            int inStart = add ? start : start - len2 + 1;
+            int inLen = add ? step : nfft;
+            int lo = Math.max(0, -inStart);
+            int hi = Math.max(lo, Math.min(inLen, len1 - inStart));
+            Arrays.fill(buffer, 0, lo, 0);
+            System.arraycopy(signal, inStart + lo, buffer, lo, hi - lo);
+            Arrays.fill(buffer, hi, nfft, 0);
+
+            plan.forward(buffer, 0, spectrum, 0);
+            multiplySpectrum(spectrum, response, numBins);
+            plan.inverse(spectrum, 0, buffer, 0);
+
+            if (add) {
+                int num = Math.min(nfft, len3 - start);
+                for (int ind0 = 0; ind0 < num; ind0++)
+                    output[start + ind0] += buffer[ind0];
             }
-            for (int ind0 = len2; ind0 < len3; ind0++){
-                start = (ind0 - len1 + 1 < 0) ? 0 : ind0 - len1 + 1;
-                for (int ind1=start; ind1 < len2; ind1++){
-                    double tmp = input1[ind0 - ind1];
-                    output[2 * ind0] += input2[2 * ind1] * input1[ind0-ind1];
-                    output[2 * ind0 + 1] += input2[2 * ind1 + 1] * input1[ind0 - ind1];
-                }
+            else
+                System.arraycopy(buffer, len2 - 1, output, start,
+                    Math.min(step, len3 - start));
+        }
+    }
+
+    /**
+     * Complex block convolution of signal (N samples) with filter
+     * (M samples), writing all N+M-1 outputs.
+     */
+    private static void blockConvolveComplex(double[] signal, double[] filter,
+            double[] output, BlockMode mode, int nfft) {
+        // ----------------  setup local variables  -------------------------
+        int len1 = signal.length / 2;
+        int len2 = filter.length / 2;
+        int len3 = output.length / 2;
+        int step = nfft - len2 + 1;
+        FftPlan forward = FftPlan.of(nfft, false, FftPlan.Precision.DOUBLE);
+        FftPlan inverse = FftPlan.of(nfft, true, FftPlan.Precision.DOUBLE);
+        double[] buffer = new double[2 * nfft];
+        double[] response = new double[2 * nfft];
+
+        // filter response, with the inverse 1 / nfft folded in
+        System.arraycopy(filter, 0, response, 0, 2 * len2);
+        forward.execute(response, 0, response, 0);
+        for (int ind0 = 0; ind0 < response.length; ind0++)
+            response[ind0] /= nfft;
+
+        // -----------------------  process blocks  -------------------------
+        boolean add = mode == BlockMode.OVERLAP_ADD;
+        int end = add ? len1 : len3;
+        for (int start = 0; start < end; start += step) {
+            // overlap-save reads M-1 samples of history before each block
+            int inStart = add ? start : start - len2 + 1;
+            int inLen = add ? step : nfft;
+            int lo = Math.max(0, -inStart);
+            int hi = Math.max(lo, Math.min(inLen, len1 - inStart));
+            Arrays.fill(buffer, 0, 2 * lo, 0);
+            System.arraycopy(signal, 2 * (inStart + lo), buffer, 2 * lo,
+                2 * (hi - lo));
+            Arrays.fill(buffer, 2 * hi, 2 * nfft, 0);
+
+            forward.execute(buffer, 0, buffer, 0);
+            multiplySpectrum(buffer, response, nfft);
+            inverse.execute(buffer, 0, buffer, 0);
+
+            if (add) {
+                int num = 2 * Math.min(nfft, len3 - start);
+                for (int ind0 = 0; ind0 < num; ind0++)
+                    output[2 * start + ind0] += buffer[ind0];
             }
+            else
+                System.arraycopy(buffer, 2 * (len2 - 1), output, 2 * start,
+                    2 * Math.min(step, len3 - start));
+        }
+    }
+
+    /** In place complex multiply of numBins interleaved bins */
+    private static void multiplySpectrum(double[] spectrum, double[] response,
+            int numBins) {
+        for (int ind0 = 0; ind0 < 2 * numBins; ind0 += 2) {
+            double re = spectrum[ind0], im = spectrum[ind0 + 1];
+            double hr = response[ind0], hi = response[ind0 + 1];
+            spectrum[ind0] = re * hr - im * hi;
+            spectrum[ind0 + 1] = re * hi + im * hr;
         }
+    }
+
+    // ----------------------  float FFT convolution  -----------------------
+    /**
+     * Convolve 2 vectors together with overlap-add FFT blocks.
+     *
+     * @param input1 First vector (length N)
+     * @param input2 Second vector (length M)
+     * @return The convolved output (length M+N-1)
+     */
+    public static float[] fftConvolve(float[] input1, float[] input2) {
+        return fftConvolve(input1, input2, BlockMode.OVERLAP_ADD, 0);
+    }
+
+    /**
+     * Convolve 2 vectors together with FFT blocks.
+     *
+     * @param input1 First vector (length N)
+     * @param input2 Second vector (length M)
+     * @param mode Overlap-add or overlap-save
+     * @param nfft FFT size (0 to select automatically)
+     * @return The convolved output (length M+N-1)
+     */
+    public static float[] fftConvolve(float[] input1, float[] input2,
+            BlockMode mode, int nfft) {
+        if (input1.length == 0 || input2.length == 0)
+            return new float[Math.max(0, input1.length + input2.length - 1)];
+
+        // ---------------  shorter operand is the filter  ------------------
+        float[] signal = input1.length >= input2.length ? input1 : input2;
+        float[] filter = signal == input1 ? input2 : input1;
+        nfft = checkBlockSize(signal.length, filter.length, nfft);
+        float[] output = new float[signal.length + filter.length - 1];
+        blockConvolve(signal, filter, output, mode, nfft);
+        return output;
+    }
+
+    /**
+     * Convolve 2 complex vectors together with overlap-add FFT blocks.
+     *
+     * @param input1 First vector (length N * 2) complex interleaved
+     * @param input2 Second vector (length M * 2) complex interleaved
+     * @return The convolved output (length (M+N-1) * 2) complex interleaved
+     */
+    public static float[] fftConvolveComplex(float[] input1, float[] input2) {
+        return fftConvolveComplex(input1, input2, BlockMode.OVERLAP_ADD, 0);
+    }
+
+    /**
+     * Convolve 2 complex vectors together with FFT blocks.
+     *
+     * @param input1 First vector (length N * 2) complex interleaved
+     * @param input2 Second vector (length M * 2) complex interleaved
+     * @param mode Overlap-add or overlap-save
+     * @param nfft FFT size (0 to select automatically)
+     * @return The convolved output (length (M+N-1) * 2) complex interleaved
+     */
+    public static float[] fftConvolveComplex(float[] input1, float[] input2,
+            BlockMode mode, int nfft) {
+        // ---------------------  error checking  ---------------------------
+        if (input1.length % 2 == 1 || input2.length % 2 == 1)
+            throw new IllegalArgumentException(
+                "Expecting interleaved complex, should be even number");
+        if (input1.length == 0 || input2.length == 0)
+            return new float[2 * Math.max(0,
+                (input1.length + input2.length) / 2 - 1)];
+
+        // ---------------  shorter operand is the filter  ------------------
+        float[] signal = input1.length >= input2.length ? input1 : input2;
+        float[] filter = signal == input1 ? input2 : input1;
+        nfft = checkBlockSize(signal.length / 2, filter.length / 2, nfft);
+        float[] output = new float[signal.length + filter.length - 2];
+        blockConvolveComplex(signal, filter, output, mode, nfft);
+        return output;
+    }
+
+    /**
+     * Real block convolution of signal (length N) with filter (length M),
+     * writing all N+M-1 outputs.
+     */
+    private static void blockConvolve(float[] signal, float[] filter,
+            float[] output, BlockMode mode, int nfft) {
+        // ----------------  setup local variables  -------------------------
+        int len1 = signal.length;
+        int len2 = filter.length;
+        int len3 = output.length;
+        int step = nfft - len2 + 1;
+        RealFftPlan plan = RealFftPlan.of(nfft, FftPlan.Precision.FLOAT);
+        int numBins = plan.getNumBins();
+        float[] buffer = new float[nfft];
+        float[] spectrum = new float[2 * numBins];
+        float[] response = new float[2 * numBins];
+
+        // filter response, with the inverse 1 / nfft folded in
+        System.arraycopy(filter, 0, buffer, 0, len2);
+        plan.forward(buffer, 0, response, 0);
+        for (int ind0 = 0; ind0 < response.length; ind0++)
+            response[ind0] /= nfft;
+
+        // -----------------------  process blocks  -------------------------
+        boolean add = mode == BlockMode.OVERLAP_ADD;
+        int end = add ? len1 : len3;
+        for (int start = 0; start < end; start += step) {
+            // overlap-save reads M-1 samples of history before each block
+            int inStart = add ? start : start - len2 + 1;
+            int inLen = add ? step : nfft;
+            int lo = Math.max(0, -inStart);
+            int hi = Math.max(lo, Math.min(inLen, len1 - inStart));
+            Arrays.fill(buffer, 0, lo, 0);
+            System.arraycopy(signal, inStart + lo, buffer, lo, hi - lo);
+            Arrays.fill(buffer, hi, nfft, 0);
+
+            plan.forward(buffer, 0, spectrum, 0);
+            multiplySpectrum(spectrum, response, numBins);
+            plan.inverse(spectrum, 0, buffer, 0);
+
+            if (add) {
+                int num = Math.min(nfft, len3 - start);
+                for (int ind0 = 0; ind0 < num; ind0++)
+                    output[start + ind0] += buffer[ind0];
+            }
+            else
+                System.arraycopy(buffer, len2 - 1, output, start,
+                    Math.min(step, len3 - start));
+        }
+    }
+
+    /**
+     * Complex block convolution of signal (N samples) with filter
+     * (M samples), writing all N+M-1 outputs.
+     */
+    private static void blockConvolveComplex(float[] signal, float[] filter,
+            float[] output, BlockMode mode, int nfft) {
+        // ----------------  setup local variables  -------------------------
+        int len1 = signal.length / 2;
+        int len2 = filter.length / 2;
+        int len3 = output.length / 2;
+        int step = nfft - len2 + 1;
+        FftPlan forward = FftPlan.of(nfft, false, FftPlan.Precision.FLOAT);
+        FftPlan inverse = FftPlan.of(nfft, true, FftPlan.Precision.FLOAT);
+        float[] buffer = new float[2 * nfft];
+        float[] response = new float[2 * nfft];
+
+        // filter response, with the inverse 1 / nfft folded in
+        System.arraycopy(filter, 0, response, 0, 2 * len2);
+        forward.execute(response, 0, response, 0);
+        for (int ind0 = 0; ind0 < response.length; ind0++)
+            response[ind0] /= nfft;
+
+        // -----------------------  process blocks  -------------------------
+        boolean add = mode == BlockMode.OVERLAP_ADD;
+        int end = add ? len1 : len3;
+        for (int start = 0; start < end; start += step) {
+            // overlap-save reads M-1 samples of history before each block
+            int inStart = add ? start : start - len2 + 1;
+            int inLen = add ? step : nfft;
+            int lo = Math.max(0, -inStart);
+            int hi = Math.max(lo, Math.min(inLen, len1 - inStart));
+            Arrays.fill(buffer, 0, 2 * lo, 0);
+            System.arraycopy(signal, 2 * (inStart + lo), buffer, 2 * lo,
+                2 * (hi - lo));
+            Arrays.fill(buffer, 2 * hi, 2 * nfft, 0);
+
+            forward.execute(buffer, 0, buffer, 0);
+            multiplySpectrum(buffer, response, nfft);
+            inverse.execute(buffer, 0, buffer, 0);
+
+            if (add) {
+                int num = 2 * Math.min(nfft, len3 - start);
+                for (int ind0 = 0; ind0 < num; ind0++)
+                    output[2 * start + ind0] += buffer[ind0];
+            }
+            else
+                System.arraycopy(buffer, 2 * (len2 - 1), output, 2 * start,
+                    2 * Math.min(step, len3 - start));
+        }
+    }
+
+    /** In place complex multiply of numBins interleaved bins */
+    private static void multiplySpectrum(float[] spectrum, float[] response,
+            int numBins) {
+        for (int ind0 = 0; ind0 < 2 * numBins; ind0 += 2) {
+            float re = spectrum[ind0], im = spectrum[ind0 + 1];
+            float hr = response[ind0], hi = response[ind0 + 1];
+            spectrum[ind0] = re * hr - im * hi;
+            spectrum[ind0 + 1] = re * hi + im * hr;
+        }
+    }
+
+    // ======================================================================
+    // -----------------------  automatic strategy  -------------------------
+    // ======================================================================
+    /** Convolution strategy chosen by {@link #convolveAuto} */
+    public enum Strategy {
+        /** Direct O(N*M) loops */
+        DIRECT,
+        /** Single threaded FFT overlap-add */
+        FFT_OVERLAP_ADD,
+        /** FFT overlap-add of signal chunks across the common pool */
+        PARALLEL_BLOCK
+    }
+
+    /** Logger */
+    private static Logger logger = Logger.getLogger("Convolve");
+
+    /**
+     * Select the strategy {@link #convolveAuto} uses for these lengths,
+     * based on {@link ConvolveCalibration#getDefault()}.
+     * @param len1 Length of the first vector
+     * @param len2 Length of the second vector
+     * @return The selected strategy
+     */
+    public static Strategy selectStrategy(int len1, int len2) {
+        return selectStrategy(ConvolveCalibration.Kind.DOUBLE, len1, len2);
+    }
+
+    /**
+     * Select the strategy {@link #convolveAuto} uses for these lengths and
+     * this kind of convolution.
+     * @param kind Kind of convolution
+     * @param len1 Length of the first vector (in samples)
+     * @param len2 Length of the second vector (in samples)
+     * @return The selected strategy
+     */
+    public static Strategy selectStrategy(ConvolveCalibration.Kind kind,
+            int len1, int len2) {
+        return ConvolveCalibration.getDefault().select(kind, len1, len2);
+    }
+
+    /**
+     * Convolve 2 vectors together with the fastest strategy for their
+     * lengths.  The choice is logged at FINE level.
+     *
+     * @param input1 First vector (length N)
+     * @param input2 Second vector (length M)
+     * @return The convolved output (length M+N-1)
+     */
+    public static double[] convolveAuto(double[] input1, double[] input2) {
+        Strategy strategy = selectStrategy(input1.length, input2.length);
+        logger.fine(() -> "convolveAuto " + input1.length + " x " +
+            input2.length + " using " + strategy);
+        switch (strategy) {
+            case FFT_OVERLAP_ADD:
+                return fftConvolve(input1, input2);
+            case PARALLEL_BLOCK:
+                return fftConvolveParallel(input1, input2);
+            default:
+                return convolve(input1, input2);
+        }
+    }
+
+    /**
+     * Convolve 2 vectors together with the fastest strategy for their
+     * lengths.  The choice is logged at FINE level.
+     *
+     * @param input1 First vector (length N)
+     * @param input2 Second vector (length M)
+     * @return The convolved output (length M+N-1)
+     */
+    public static float[] convolveAuto(float[] input1, float[] input2) {
+        Strategy strategy = selectStrategy(ConvolveCalibration.Kind.FLOAT,
+            input1.length, input2.length);
+        logger.fine(() -> "convolveAuto " + input1.length + " x " +
+            input2.length + " using " + strategy);
+        switch (strategy) {
+            case FFT_OVERLAP_ADD:
+                return fftConvolve(input1, input2);
+            case PARALLEL_BLOCK:
+                return fftConvolveParallel(input1, input2);
+            default:
+                return convolve(input1, input2);
+        }
+    }
+
+    /**
+     * Convolve a real vector with a complex vector using the fastest
+     * strategy for their lengths.
+     *
+     * @param input1 First vector (length N)
+     * @param input2 Second vector (length M * 2) complex interleaved
+     * @return The convolved outputed (length (M+N-1) * 2) complex interleaved
+     */
+    public static double[] convolveRealComplexAuto(double[] input1, double[] input2) {
+        Strategy strategy = selectStrategy(ConvolveCalibration.Kind.COMPLEX,
+            input1.length, input2.length / 2);
+        logger.fine(() -> "convolveRealComplexAuto " + input1.length + " x " +
+            input2.length / 2 + " using " + strategy);
+        switch (strategy) {
+            case FFT_OVERLAP_ADD:
+                return fftConvolveRealComplex(input1, input2);
+            case PARALLEL_BLOCK:
+                double[] complex1 = new double[2 * input1.length];
+                for (int ind0 = 0; ind0 < input1.length; ind0++)
+                    complex1[2 * ind0] = input1[ind0];
+                return fftConvolveComplexParallel(complex1, input2);
+            default:
+                return convolveRealComplex(input1, input2);
+        }
+    }
+
+    /**
+     * Number of chunks to split a signal into for parallel blocks.  Chunks
+     * are kept several filter lengths long so the overlap stays small.
+     */
+    private static int numChunks(int signalLen, int filterLen) {
+        int maxChunks = 4 * ForkJoinPool.getCommonPoolParallelism();
+        long minChunk = Math.max(4096L, 8L * filterLen);
+        return (int) Math.max(1, Math.min(maxChunks, signalLen / minChunk));
+    }
+
+    /**
+     * Convolve 2 vectors together, running FFT overlap-add on chunks of the
+     * longer vector across the common pool.
+     *
+     * @param input1 First vector (length N)
+     * @param input2 Second vector (length M)
+     * @return The convolved output (length M+N-1)
+     */
+    public static double[] fftConvolveParallel(double[] input1, double[] input2) {
+        if (input1.length == 0 || input2.length == 0)
+            return new double[Math.max(0, input1.length + input2.length - 1)];
+        double[] signal = input1.length >= input2.length ? input1 : input2;
+        double[] filter = signal == input1 ? input2 : input1;
+        int len1 = signal.length;
+        int numChunks = numChunks(len1, filter.length);
+        int chunk = (len1 + numChunks - 1) / numChunks;
+        int nfft = fftBlockSize(chunk, filter.length);
+
+        // ---------  convolve each chunk, then add overlapping tails  ------
+        double[][] parts = new double[numChunks][];
+        IntStream.range(0, numChunks).parallel().forEach(ind0 -> {
+            int start = ind0 * chunk;
+            double[] piece = Arrays.copyOfRange(signal, start,
+                Math.min(len1, start + chunk));
+            parts[ind0] = new double[piece.length + filter.length - 1];
+            blockConvolve(piece, filter, parts[ind0], BlockMode.OVERLAP_ADD, nfft);
+        });
+        double[] output = new double[len1 + filter.length - 1];
+        for (int ind0 = 0; ind0 < numChunks; ind0++)
+            for (int ind1 = 0; ind1 < parts[ind0].length; ind1++)
+                output[ind0 * chunk + ind1] += parts[ind0][ind1];
+        return output;
+    }
+
+    /**
+     * Convolve 2 vectors together, running FFT overlap-add on chunks of the
+     * longer vector across the common pool.
+     *
+     * @param input1 First vector (length N)
+     * @param input2 Second vector (length M)
+     * @return The convolved output (length M+N-1)
+     */
+    public static float[] fftConvolveParallel(float[] input1, float[] input2) {
+        if (input1.length == 0 || input2.length == 0)
+            return new float[Math.max(0, input1.length + input2.length - 1)];
+        float[] signal = input1.length >= input2.length ? input1 : input2;
+        float[] filter = signal == input1 ? input2 : input1;
+        int len1 = signal.length;
+        int numChunks = numChunks(len1, filter.length);
+        int chunk = (len1 + numChunks - 1) / numChunks;
+        int nfft = fftBlockSize(chunk, filter.length);
+
+        // ---------  convolve each chunk, then add overlapping tails  ------
+        float[][] parts = new float[numChunks][];
+        IntStream.range(0, numChunks).parallel().forEach(ind0 -> {
+            int start = ind0 * chunk;
+            float[] piece = Arrays.copyOfRange(signal, start,
+                Math.min(len1, start + chunk));
+            parts[ind0] = new float[piece.length + filter.length - 1];
+            blockConvolve(piece, filter, parts[ind0], BlockMode.OVERLAP_ADD, nfft);
+        });
+        float[] output = new float[len1 + filter.length - 1];
+        for (int ind0 = 0; ind0 < numChunks; ind0++)
+            for (int ind1 = 0; ind1 < parts[ind0].length; ind1++)
+                output[ind0 * chunk + ind1] += parts[ind0][ind1];
+        return output;
+    }
+
+    /**
+     * Convolve 2 complex vectors together, running FFT overlap-add on
+     * chunks of the longer vector across the common pool.
+     *
+     * @param input1 First vector (length N * 2) complex interleaved
+     * @param input2 Second vector (length M * 2) complex interleaved
+     * @return The convolved output (length (M+N-1) * 2) complex interleaved
+     */
+    public static double[] fftConvolveComplexParallel(double[] input1,
+            double[] input2) {
+        if (input1.length % 2 == 1 || input2.length % 2 == 1)
+            throw new IllegalArgumentException(
+                "Expecting interleaved complex, should be even number");
+        if (input1.length == 0 || input2.length == 0)
+            return new double[2 * Math.max(0,
+                (input1.length + input2.length) / 2 - 1)];
+        double[] signal = input1.length >= input2.length ? input1 : input2;
+        double[] filter = signal == input1 ? input2 : input1;
+        int len1 = signal.length / 2;
+        int len2 = filter.length / 2;
+        int numChunks = numChunks(len1, len2);
+        int chunk = (len1 + numChunks - 1) / numChunks;
+        int nfft = fftBlockSize(chunk, len2);
 
+        // ---------  convolve each chunk, then add overlapping tails  ------
+        double[][] parts = new double[numChunks][];
+        IntStream.range(0, numChunks).parallel().forEach(ind0 -> {
+            int start = ind0 * chunk;
+            double[] piece = Arrays.copyOfRange(signal, 2 * start,
+                2 * Math.min(len1, start + chunk));
+            parts[ind0] = new double[piece.length + filter.length - 2];
+            blockConvolveComplex(piece, filter, parts[ind0],
+                BlockMode.OVERLAP_ADD, nfft);
+        });
+        double[] output = new double[signal.length + filter.length - 2];
+        for (int ind0 = 0; ind0 < numChunks; ind0++)
+            for (int ind1 = 0; ind1 < parts[ind0].length; ind1++)
+                output[2 * ind0 * chunk + ind1] += parts[ind0][ind1];
         return output;
     }
-}
\ No newline at end of file
+}
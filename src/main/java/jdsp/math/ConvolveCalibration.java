@@ -0,0 +1,496 @@
+/**
+ * Crossover table used to pick a convolution strategy.
+ *
+ * @author Keith Chow
+ */
+package net.kcundercover.jdsp.math;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.Random;
+import java.util.logging.Logger;
+
+/**
+ * Crossover points between direct, FFT overlap-add and parallel block
+ * convolution.  The default table is loaded from the file named by the
+ * {@value #PROPERTY} system property, otherwise the fixed {@link #FIXED}
+ * table is used.  Nothing is timed unless {@link #calibrate} is called, so
+ * the strategy of a given call does not change from run to run.
+ *
+ * The direct crossover is kept separately for double, float and real by
+ * complex convolution ({@link Kind}).  The file is a properties file, for
+ * example
+ * <pre>
+ * signalLengths=1024,16384,131072
+ * directMaxFilter=64,256,256
+ * directMaxFilterFloat=128,256,256
+ * directMaxFilterComplex=64,128,128
+ * parallelMinOutput=262144
+ * </pre>
+ * The float and complex rows default to directMaxFilter when missing.
+ */
+public class ConvolveCalibration {
+    /** System property naming a calibration file to load */
+    public final static String PROPERTY = "jdsp.convolve.calibration";
+
+    /** Kind of convolution, each has its own direct crossover */
+    public enum Kind {
+        /** Real double vectors */
+        DOUBLE,
+        /** Real float vectors */
+        FLOAT,
+        /** Real double vector with a complex interleaved vector */
+        COMPLEX
+    }
+
+    /** Fixed table used when no calibration file is given */
+    public final static ConvolveCalibration FIXED = new ConvolveCalibration(
+        new int[] {1024, 16384, 131072},
+        new int[] {64, 256, 256},
+        new int[] {128, 256, 256},
+        new int[] {64, 128, 128},
+        1 << 18);
+
+    /** Logger */
+    private static Logger logger = Logger.getLogger("ConvolveCalibration");
+
+    /** Table used by {@link Convolve#convolveAuto} (null until needed) */
+    private static volatile ConvolveCalibration current;
+
+    /** Longer operand lengths of the table (ascending) */
+    private final int[] signalLengths;
+
+    /** Longest shorter operand for which direct convolution is faster,
+     * one row per {@link Kind} */
+    private final int[][] directMaxFilter;
+
+    /** Shortest output for which parallel blocks beat a single thread */
+    private final int parallelMinOutput;
+
+    /**
+     * Constructor, the same direct crossover for every {@link Kind}
+     * @param signalLengths Longer operand lengths (ascending)
+     * @param directMaxFilter Direct crossover for each signal length
+     * @param parallelMinOutput Minimum output length for parallel blocks
+     */
+    public ConvolveCalibration(int[] signalLengths, int[] directMaxFilter,
+            int parallelMinOutput) {
+        this(signalLengths, directMaxFilter, directMaxFilter, directMaxFilter,
+            parallelMinOutput);
+    }
+
+    /**
+     * Constructor
+     * @param signalLengths Longer operand lengths (ascending)
+     * @param directMaxDouble Double crossover for each signal length
+     * @param directMaxFloat Float crossover for each signal length
+     * @param directMaxComplex Real by complex crossover for each signal length
+     * @param parallelMinOutput Minimum output length for parallel blocks
+     */
+    public ConvolveCalibration(int[] signalLengths, int[] directMaxDouble,
+            int[] directMaxFloat, int[] directMaxComplex, int parallelMinOutput) {
+        // ---------------------  error checking  ---------------------------
+        if (signalLengths.length == 0 ||
+                signalLengths.length != directMaxDouble.length ||
+                signalLengths.length != directMaxFloat.length ||
+                signalLengths.length != directMaxComplex.length)
+            throw new IllegalArgumentException(
+                "Expecting one crossover per signal length");
+        for (int ind0 = 1; ind0 < signalLengths.length; ind0++)
+            if (signalLengths[ind0] <= signalLengths[ind0 - 1])
+                throw new IllegalArgumentException(
+                    "Signal lengths should be ascending");
+
+        this.signalLengths = signalLengths.clone();
+        this.directMaxFilter = new int[][] {directMaxDouble.clone(),
+            directMaxFloat.clone(), directMaxComplex.clone()};
+        this.parallelMinOutput = parallelMinOutput;
+    }
+
+    // ======================================================================
+    // -------------------------  default table  ----------------------------
+    // ======================================================================
+    /**
+     * Get the table used by {@link Convolve#convolveAuto}.  On first use it
+     * is loaded from {@value #PROPERTY} when set, otherwise {@link #FIXED}
+     * is used.  Nothing is measured here, see {@link #calibrate}.
+     * @return The default calibration
+     */
+    public static ConvolveCalibration getDefault() {
+        ConvolveCalibration cal = current;
+        if (cal != null)
+            return cal;
+        synchronized (ConvolveCalibration.class) {
+            if (current == null) {
+                String fname = System.getProperty(PROPERTY);
+                if (fname != null) {
+                    try {
+                        current = load(Paths.get(fname));
+                        logger.info("Loaded convolution calibration " + fname);
+                    }
+                    catch (IOException | IllegalArgumentException ioe) {
+                        logger.warning("Unable to load " + fname + ": " +
+                            ioe.getMessage());
+                    }
+                }
+                if (current == null)
+                    current = FIXED;
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Replace the default table.
+     * @param calibration New table (null to load or use the fixed table
+     *     again on next use)
+     */
+    public static void setDefault(ConvolveCalibration calibration) {
+        current = calibration;
+    }
+
+    /**
+     * Measure this machine and make the result the default table.  Takes
+     * a few seconds, so call it once at start up (and {@link #save} the
+     * result to skip it on later runs).
+     * @return The measured calibration
+     */
+    public static ConvolveCalibration calibrate() {
+        ConvolveCalibration cal = measure();
+        logger.info("Measured convolution calibration " + cal);
+        setDefault(cal);
+        return cal;
+    }
+
+    // ======================================================================
+    // ---------------------------  selection  ------------------------------
+    // ======================================================================
+    /**
+     * Select the fastest strategy for convolving two double vectors.
+     * @param len1 Length of the first vector
+     * @param len2 Length of the second vector
+     * @return The selected strategy
+     */
+    public Convolve.Strategy select(int len1, int len2) {
+        return select(Kind.DOUBLE, len1, len2);
+    }
+
+    /**
+     * Select the fastest strategy for convolving two vectors.
+     * @param kind Kind of convolution
+     * @param len1 Length of the first vector (in samples)
+     * @param len2 Length of the second vector (in samples)
+     * @return The selected strategy
+     */
+    public Convolve.Strategy select(Kind kind, int len1, int len2) {
+        int shorter = Math.min(len1, len2);
+        int longer = Math.max(len1, len2);
+
+        // crossover of the largest tabulated length not above the signal
+        int row = 0;
+        while (row + 1 < signalLengths.length && signalLengths[row + 1] <= longer)
+            row++;
+
+        if (shorter <= directMaxFilter[kind.ordinal()][row])
+            return Convolve.Strategy.DIRECT;
+        if ((long) len1 + len2 - 1 >= parallelMinOutput)
+            return Convolve.Strategy.PARALLEL_BLOCK;
+        return Convolve.Strategy.FFT_OVERLAP_ADD;
+    }
+
+    /**
+     * Get the longer operand lengths of the table
+     * @return Signal lengths (ascending)
+     */
+    public int[] getSignalLengths() { return signalLengths.clone(); }
+
+    /**
+     * Get the double direct convolution crossover for each signal length
+     * @return Longest filter where direct convolution is faster
+     */
+    public int[] getDirectMaxFilter() { return getDirectMaxFilter(Kind.DOUBLE); }
+
+    /**
+     * Get the direct convolution crossover for each signal length
+     * @param kind Kind of convolution
+     * @return Longest filter where direct convolution is faster
+     */
+    public int[] getDirectMaxFilter(Kind kind) {
+        return directMaxFilter[kind.ordinal()].clone();
+    }
+
+    /**
+     * Get the parallel block crossover
+     * @return Shortest output length where parallel blocks are faster
+     */
+    public int getParallelMinOutput() { return parallelMinOutput; }
+
+    // ======================================================================
+    // ---------------------------  measuring  ------------------------------
+    // ======================================================================
+    /** Filter lengths timed for each signal length */
+    private final static int MIN_FILTER = 4, MAX_FILTER = 1024;
+
+    /** Warm up time of each kind, in nanoseconds */
+    private final static long WARM_UP_NANOS = 500_000_000L;
+
+    /** Shortest time of one timing sample, in nanoseconds */
+    private final static long SAMPLE_NANOS = 1_000_000L;
+
+    /** Timing samples per measurement (the median is kept) */
+    private final static int NUM_SAMPLES = 5;
+
+    /**
+     * Measure the crossover points on this machine, without changing the
+     * default table.  Every kind is warmed up until the JIT has compiled
+     * both paths, every filter length from {@value #MIN_FILTER} to
+     * {@value #MAX_FILTER} is timed (median of several samples), and the
+     * FFT / direct time ratios are smoothed to decrease with the filter
+     * length before the crossover is read, so one noisy comparison does
+     * not move it.  Takes a few seconds.
+     * @return Measured calibration
+     */
+    public static ConvolveCalibration measure() {
+        int[] signalLengths = FIXED.signalLengths;
+        int[][] directMax = new int[Kind.values().length][];
+        Random r = new Random(0);
+        for (Kind kind : Kind.values()) {
+            warmUp(kind, signalLengths, r);
+            directMax[kind.ordinal()] = measureDirect(kind, signalLengths, r);
+        }
+        return new ConvolveCalibration(signalLengths,
+            directMax[Kind.DOUBLE.ordinal()], directMax[Kind.FLOAT.ordinal()],
+            directMax[Kind.COMPLEX.ordinal()], measureParallel(r));
+    }
+
+    /**
+     * Run both paths of one kind on every signal and filter length of the
+     * table, at least once and until {@link #WARM_UP_NANOS} has passed, so
+     * the JIT has compiled the kernels for all of them before anything is
+     * timed.
+     */
+    private static void warmUp(Kind kind, int[] signalLengths, Random r) {
+        long stop = System.nanoTime() + WARM_UP_NANOS;
+        boolean once = false;
+        while (!once || System.nanoTime() < stop) {
+            for (int signalLen : signalLengths) {
+                double[] signal = randomSignal(r, signalLen);
+                for (int filterLen = MIN_FILTER; filterLen <= MAX_FILTER; filterLen <<= 1) {
+                    Runnable[] path = paths(kind, signal, randomSignal(r, filterLen));
+                    path[0].run();
+                    path[1].run();
+                }
+            }
+            once = true;
+        }
+    }
+
+    /** Direct vs FFT crossover of one kind for each signal length */
+    private static int[] measureDirect(Kind kind, int[] signalLengths, Random r) {
+        int numFilters = Integer.numberOfTrailingZeros(MAX_FILTER / MIN_FILTER) + 1;
+        int[] out = new int[signalLengths.length];
+        double[] logRatio = new double[numFilters];
+        for (int row = 0; row < signalLengths.length; row++) {
+            double[] signal = randomSignal(r, signalLengths[row]);
+            for (int ind0 = 0; ind0 < numFilters; ind0++) {
+                Runnable[] path = paths(kind, signal,
+                    randomSignal(r, MIN_FILTER << ind0));
+                logRatio[ind0] = Math.log(medianTime(path[1]) / medianTime(path[0]));
+            }
+
+            // longest filter where the FFT is still slower
+            double[] smooth = smoothDecreasing(logRatio);
+            out[row] = MIN_FILTER / 2;
+            for (int ind0 = 0; ind0 < numFilters && smooth[ind0] >= 0; ind0++)
+                out[row] = MIN_FILTER << ind0;
+        }
+        return out;
+    }
+
+    /** FFT vs parallel blocks crossover, doubling the signal length */
+    private static int measureParallel(Random r) {
+        if (Runtime.getRuntime().availableProcessors() < 2)
+            return Integer.MAX_VALUE;
+        int minLen = 1 << 14, numLengths = 7;
+        double[] filter = randomSignal(r, 256);
+        double[] logRatio = new double[numLengths];
+        for (int ind0 = 0; ind0 < numLengths; ind0++) {
+            double[] signal = randomSignal(r, minLen << ind0);
+            logRatio[ind0] = Math.log(
+                medianTime(() -> Convolve.fftConvolveParallel(signal, filter)) /
+                medianTime(() -> Convolve.fftConvolve(signal, filter)));
+        }
+
+        // shortest signal where parallel blocks are faster
+        double[] smooth = smoothDecreasing(logRatio);
+        for (int ind0 = 0; ind0 < numLengths; ind0++)
+            if (smooth[ind0] < 0)
+                return (minLen << ind0) + filter.length - 1;
+        return Integer.MAX_VALUE;
+    }
+
+    /** Direct and FFT convolution of one kind ({direct, fft}) */
+    private static Runnable[] paths(Kind kind, double[] signal, double[] filter) {
+        switch (kind) {
+            case FLOAT:
+                float[] signalF = toFloat(signal), filterF = toFloat(filter);
+                return new Runnable[] {
+                    () -> Convolve.convolve(signalF, filterF),
+                    () -> Convolve.fftConvolve(signalF, filterF)};
+            case COMPLEX:
+                double[] filterC = new double[2 * filter.length];
+                for (int ind0 = 0; ind0 < filter.length; ind0++)
+                    filterC[2 * ind0] = filterC[2 * ind0 + 1] = filter[ind0];
+                return new Runnable[] {
+                    () -> Convolve.convolveRealComplex(signal, filterC),
+                    () -> Convolve.fftConvolveRealComplex(signal, filterC)};
+            default:
+                return new Runnable[] {
+                    () -> Convolve.convolve(signal, filter),
+                    () -> Convolve.fftConvolve(signal, filter)};
+        }
+    }
+
+    /**
+     * Median time of one run in nanoseconds.  Each sample repeats the task
+     * for at least {@link #SAMPLE_NANOS}, so short tasks are not lost in
+     * the timer resolution.
+     */
+    private static double medianTime(Runnable task) {
+        double[] samples = new double[NUM_SAMPLES];
+        for (int ind0 = 0; ind0 < NUM_SAMPLES; ind0++) {
+            int reps = 0;
+            long tic = System.nanoTime(), toc;
+            do {
+                task.run();
+                reps++;
+                toc = System.nanoTime();
+            } while (toc - tic < SAMPLE_NANOS);
+            samples[ind0] = (toc - tic) / (double) reps;
+        }
+        Arrays.sort(samples);
+        return samples[NUM_SAMPLES / 2];
+    }
+
+    /**
+     * Closest non increasing sequence in the least squares sense (pool
+     * adjacent violators).
+     */
+    private static double[] smoothDecreasing(double[] values) {
+        int n = values.length;
+        double[] mean = new double[n];
+        int[] count = new int[n];
+        int numBlocks = 0;
+        for (int ind0 = 0; ind0 < n; ind0++) {
+            mean[numBlocks] = values[ind0];
+            count[numBlocks] = 1;
+            numBlocks++;
+            // merge while a block rises above the previous one
+            while (numBlocks > 1 && mean[numBlocks - 1] > mean[numBlocks - 2]) {
+                int total = count[numBlocks - 2] + count[numBlocks - 1];
+                mean[numBlocks - 2] = (mean[numBlocks - 2] * count[numBlocks - 2] +
+                    mean[numBlocks - 1] * count[numBlocks - 1]) / total;
+                count[numBlocks - 2] = total;
+                numBlocks--;
+            }
+        }
+        double[] out = new double[n];
+        for (int block = 0, pos = 0; block < numBlocks; block++)
+            for (int ind0 = 0; ind0 < count[block]; ind0++)
+                out[pos++] = mean[block];
+        return out;
+    }
+
+    private static double[] randomSignal(Random r, int numValues) {
+        double[] out = new double[numValues];
+        for (int ind0 = 0; ind0 < numValues; ind0++)
+            out[ind0] = r.nextGaussian();
+        return out;
+    }
+
+    private static float[] toFloat(double[] values) {
+        float[] out = new float[values.length];
+        for (int ind0 = 0; ind0 < values.length; ind0++)
+            out[ind0] = (float) values[ind0];
+        return out;
+    }
+
+    // ======================================================================
+    // --------------------------  file support  ----------------------------
+    // ======================================================================
+    /**
+     * Load a calibration file
+     * @param path Properties file written by {@link #save}
+     * @return The calibration
+     * @throws IOException If the file cannot be read
+     */
+    public static ConvolveCalibration load(Path path) throws IOException {
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(path)) {
+            props.load(in);
+        }
+        String parallel = props.getProperty("parallelMinOutput",
+            String.valueOf(Integer.MAX_VALUE));
+        String direct = props.getProperty("directMaxFilter", "");
+        try {
+            return new ConvolveCalibration(
+                parseInts(props.getProperty("signalLengths", "")),
+                parseInts(direct),
+                parseInts(props.getProperty("directMaxFilterFloat", direct)),
+                parseInts(props.getProperty("directMaxFilterComplex", direct)),
+                Integer.parseInt(parallel.trim()));
+        }
+        catch (NumberFormatException nfe) {
+            throw new IOException("Malformed calibration file " + path, nfe);
+        }
+    }
+
+    /**
+     * Save the calibration so later runs can skip {@link #calibrate}
+     * @param path Properties file to write
+     * @throws IOException If the file cannot be written
+     */
+    public void save(Path path) throws IOException {
+        Properties props = new Properties();
+        props.setProperty("signalLengths", joinInts(signalLengths));
+        props.setProperty("directMaxFilter", joinInts(directMaxFilter[0]));
+        props.setProperty("directMaxFilterFloat", joinInts(directMaxFilter[1]));
+        props.setProperty("directMaxFilterComplex", joinInts(directMaxFilter[2]));
+        props.setProperty("parallelMinOutput", String.valueOf(parallelMinOutput));
+        try (OutputStream out = Files.newOutputStream(path)) {
+            props.store(out, "jdsp convolution calibration");
+        }
+    }
+
+    private static int[] parseInts(String csv) {
+        String[] parts = csv.trim().isEmpty() ? new String[0] : csv.split(",");
+        int[] out = new int[parts.length];
+        for (int ind0 = 0; ind0 < parts.length; ind0++)
+            out[ind0] = Integer.parseInt(parts[ind0].trim());
+        return out;
+    }
+
+    private static String joinInts(int[] values) {
+        StringBuilder sb = new StringBuilder();
+        for (int ind0 = 0; ind0 < values.length; ind0++) {
+            if (ind0 > 0)
+                sb.append(',');
+            sb.append(values[ind0]);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "signalLengths=" + joinInts(signalLengths) +
+            " directMaxFilter=" + joinInts(directMaxFilter[0]) +
+            " directMaxFilterFloat=" + joinInts(directMaxFilter[1]) +
+            " directMaxFilterComplex=" + joinInts(directMaxFilter[2]) +
+            " parallelMinOutput=" + parallelMinOutput;
+    }
+}
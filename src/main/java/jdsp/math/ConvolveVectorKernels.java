@@ -0,0 +1,532 @@
+/**
+ * Vector API kernels for direct convolution.
+ *
+ * @author Keith Chow
+ * @since Feb 2026
+ */
+package net.kcundercover.jdsp.math;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Direct form convolution with the taps reversed once by the caller.
+ * Lanes run across consecutive outputs: each reversed tap is broadcast and
+ * multiplied into contiguous signal slices, with four independent
+ * accumulators to hide the FMA latency.  Outputs where the taps only
+ * partially overlap the signal are computed with the scalar loop.
+ */
+final class ConvolveVectorKernels {
+    private static final VectorSpecies<Double> SPECIES_DOUBLE = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> SPECIES_FLOAT = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> SPECIES_INT = IntVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Long> SPECIES_LONG = LongVector.SPECIES_PREFERRED;
+
+    /** Number of lanes per species */
+    private static final int DOUBLE_LANES = SPECIES_DOUBLE.length();
+    private static final int FLOAT_LANES = SPECIES_FLOAT.length();
+    private static final int INT_LANES = SPECIES_INT.length();
+    private static final int LONG_LANES = SPECIES_LONG.length();
+
+    private ConvolveVectorKernels() {}
+
+    /**
+     * Direct convolution outputs [from, to) of a signal with reversed taps.
+     * Indices are flat, so a stride of 2 filters the real and imaginary
+     * parts of a complex interleaved signal with real taps:
+     * output[i] = sum_j reversed[j] * signal[i - stride * (M - 1 - j)].
+     */
+    static void convolve(double[] signal, double[] reversed, int stride,
+            double[] output, int from, int to, boolean useVector) {
+        int numTaps = reversed.length;
+        int lag = stride * (numTaps - 1);
+
+        // --------  full overlap region, 4 accumulators over lanes  --------
+        int start = Math.max(from, lag);
+        int end = Math.min(to, signal.length);
+        int ind0 = from;
+        if (useVector && end - start >= DOUBLE_LANES) {
+            for (; ind0 < start; ind0++)
+                output[ind0] = edge(signal, reversed, stride, ind0);
+            for (; ind0 + 4 * DOUBLE_LANES <= end; ind0 += 4 * DOUBLE_LANES) {
+                DoubleVector acc0 = DoubleVector.zero(SPECIES_DOUBLE);
+                DoubleVector acc1 = acc0, acc2 = acc0, acc3 = acc0;
+                for (int tap = 0, off = ind0 - lag; tap < numTaps; tap++, off += stride) {
+                    DoubleVector b = DoubleVector.broadcast(SPECIES_DOUBLE, reversed[tap]);
+                    acc0 = DoubleVector.fromArray(SPECIES_DOUBLE, signal, off).fma(b, acc0);
+                    acc1 = DoubleVector.fromArray(SPECIES_DOUBLE, signal, off + DOUBLE_LANES).fma(b, acc1);
+                    acc2 = DoubleVector.fromArray(SPECIES_DOUBLE, signal, off + 2 * DOUBLE_LANES).fma(b, acc2);
+                    acc3 = DoubleVector.fromArray(SPECIES_DOUBLE, signal, off + 3 * DOUBLE_LANES).fma(b, acc3);
+                }
+                acc0.intoArray(output, ind0);
+                acc1.intoArray(output, ind0 + DOUBLE_LANES);
+                acc2.intoArray(output, ind0 + 2 * DOUBLE_LANES);
+                acc3.intoArray(output, ind0 + 3 * DOUBLE_LANES);
+            }
+            for (; ind0 + DOUBLE_LANES <= end; ind0 += DOUBLE_LANES) {
+                DoubleVector acc0 = DoubleVector.zero(SPECIES_DOUBLE);
+                for (int tap = 0, off = ind0 - lag; tap < numTaps; tap++, off += stride) {
+                    DoubleVector b = DoubleVector.broadcast(SPECIES_DOUBLE, reversed[tap]);
+                    acc0 = DoubleVector.fromArray(SPECIES_DOUBLE, signal, off).fma(b, acc0);
+                }
+                acc0.intoArray(output, ind0);
+            }
+        }
+
+        // ----------------  partial overlap and scalar tail  ---------------
+        for (; ind0 < to; ind0++)
+            output[ind0] = edge(signal, reversed, stride, ind0);
+    }
+
+    /** Scalar output with only the taps that overlap the signal */
+    private static double edge(double[] signal, double[] reversed, int stride,
+            int ind) {
+        int base = ind - stride * (reversed.length - 1);
+        int lo = base >= 0 ? 0 : (stride - 1 - base) / stride;
+        int hi = Math.min(reversed.length, (signal.length - 1 - base) / stride + 1);
+        double sum = 0;
+        for (int tap = lo; tap < hi; tap++)
+            sum += reversed[tap] * signal[base + stride * tap];
+        return sum;
+    }
+
+    /**
+     * Full overlap outputs only:
+     * output[outOff + n] = sum_j reversed[j] * signal[sigOff + n + stride * j]
+     * for n in [0, count).  The caller guarantees the signal covers
+     * sigOff + count + stride * (M - 1) samples.
+     */
+    static void convolveValid(double[] signal, int sigOff, int stride,
+            double[] reversed,
+            double[] output, int outOff, int count, boolean useVector) {
+        int numTaps = reversed.length;
+        int ind0 = 0;
+        if (useVector) {
+            for (; ind0 + 4 * DOUBLE_LANES <= count; ind0 += 4 * DOUBLE_LANES) {
+                DoubleVector acc0 = DoubleVector.zero(SPECIES_DOUBLE);
+                DoubleVector acc1 = acc0, acc2 = acc0, acc3 = acc0;
+                for (int tap = 0, off = sigOff + ind0; tap < numTaps; tap++, off += stride) {
+                    DoubleVector b = DoubleVector.broadcast(SPECIES_DOUBLE, reversed[tap]);
+                    acc0 = DoubleVector.fromArray(SPECIES_DOUBLE, signal, off).fma(b, acc0);
+                    acc1 = DoubleVector.fromArray(SPECIES_DOUBLE, signal, off + DOUBLE_LANES).fma(b, acc1);
+                    acc2 = DoubleVector.fromArray(SPECIES_DOUBLE, signal, off + 2 * DOUBLE_LANES).fma(b, acc2);
+                    acc3 = DoubleVector.fromArray(SPECIES_DOUBLE, signal, off + 3 * DOUBLE_LANES).fma(b, acc3);
+                }
+                acc0.intoArray(output, outOff + ind0);
+                acc1.intoArray(output, outOff + ind0 + DOUBLE_LANES);
+                acc2.intoArray(output, outOff + ind0 + 2 * DOUBLE_LANES);
+                acc3.intoArray(output, outOff + ind0 + 3 * DOUBLE_LANES);
+            }
+            for (; ind0 + DOUBLE_LANES <= count; ind0 += DOUBLE_LANES) {
+                DoubleVector acc0 = DoubleVector.zero(SPECIES_DOUBLE);
+                for (int tap = 0, off = sigOff + ind0; tap < numTaps; tap++, off += stride) {
+                    DoubleVector b = DoubleVector.broadcast(SPECIES_DOUBLE, reversed[tap]);
+                    acc0 = DoubleVector.fromArray(SPECIES_DOUBLE, signal, off).fma(b, acc0);
+                }
+                acc0.intoArray(output, outOff + ind0);
+            }
+        }
+        for (; ind0 < count; ind0++) {
+            double sum = 0;
+            for (int tap = 0, off = sigOff + ind0; tap < numTaps; tap++, off += stride)
+                sum += reversed[tap] * signal[off];
+            output[outOff + ind0] = sum;
+        }
+    }
+
+    /**
+     * Full overlap outputs of a linear phase filter.  Mirrored samples are
+     * pre-added (symmetric) or subtracted (antisymmetric) so each pair of
+     * taps costs one multiply:
+     * output[outOff + n] = sum_{j &lt; M/2} reversed[j] *
+     *     (signal[sigOff + n + stride * j] +- signal[sigOff + n + stride * (M - 1 - j)])
+     * plus the middle tap of an odd length symmetric filter.
+     */
+    static void convolveValidSymmetric(double[] signal, int sigOff, int stride,
+            double[] reversed, boolean anti,
+            double[] output, int outOff, int count, boolean useVector) {
+        int numTaps = reversed.length;
+        int half = numTaps / 2;
+        int mirror = stride * (numTaps - 1);
+        boolean middle = (numTaps & 1) == 1 && !anti;
+        double midTap = middle ? reversed[half] : 0;
+        int mid = stride * half;
+        int ind0 = 0;
+        if (useVector) {
+            for (; ind0 + 4 * DOUBLE_LANES <= count; ind0 += 4 * DOUBLE_LANES) {
+                int base = sigOff + ind0;
+                DoubleVector acc0 = DoubleVector.zero(SPECIES_DOUBLE);
+                DoubleVector acc1 = acc0, acc2 = acc0, acc3 = acc0;
+                if (middle) {
+                    DoubleVector b = DoubleVector.broadcast(SPECIES_DOUBLE, midTap);
+                    acc0 = DoubleVector.fromArray(SPECIES_DOUBLE, signal, base + mid).mul(b);
+                    acc1 = DoubleVector.fromArray(SPECIES_DOUBLE, signal, base + mid + DOUBLE_LANES).mul(b);
+                    acc2 = DoubleVector.fromArray(SPECIES_DOUBLE, signal, base + mid + 2 * DOUBLE_LANES).mul(b);
+                    acc3 = DoubleVector.fromArray(SPECIES_DOUBLE, signal, base + mid + 3 * DOUBLE_LANES).mul(b);
+                }
+                for (int tap = 0, lo = base, hi = base + mirror; tap < half;
+                        tap++, lo += stride, hi -= stride) {
+                    DoubleVector b = DoubleVector.broadcast(SPECIES_DOUBLE, reversed[tap]);
+                    acc0 = fold(signal, lo, hi, anti).fma(b, acc0);
+                    acc1 = fold(signal, lo + DOUBLE_LANES, hi + DOUBLE_LANES, anti).fma(b, acc1);
+                    acc2 = fold(signal, lo + 2 * DOUBLE_LANES, hi + 2 * DOUBLE_LANES, anti).fma(b, acc2);
+                    acc3 = fold(signal, lo + 3 * DOUBLE_LANES, hi + 3 * DOUBLE_LANES, anti).fma(b, acc3);
+                }
+                acc0.intoArray(output, outOff + ind0);
+                acc1.intoArray(output, outOff + ind0 + DOUBLE_LANES);
+                acc2.intoArray(output, outOff + ind0 + 2 * DOUBLE_LANES);
+                acc3.intoArray(output, outOff + ind0 + 3 * DOUBLE_LANES);
+            }
+            for (; ind0 + DOUBLE_LANES <= count; ind0 += DOUBLE_LANES) {
+                int base = sigOff + ind0;
+                DoubleVector acc0 = DoubleVector.zero(SPECIES_DOUBLE);
+                if (middle)
+                    acc0 = DoubleVector.fromArray(SPECIES_DOUBLE, signal, base + mid).mul(midTap);
+                for (int tap = 0, lo = base, hi = base + mirror; tap < half;
+                        tap++, lo += stride, hi -= stride)
+                    acc0 = fold(signal, lo, hi, anti).fma(
+                        DoubleVector.broadcast(SPECIES_DOUBLE, reversed[tap]), acc0);
+                acc0.intoArray(output, outOff + ind0);
+            }
+        }
+        for (; ind0 < count; ind0++) {
+            int base = sigOff + ind0;
+            double sum = middle ? midTap * signal[base + mid] : 0;
+            for (int tap = 0, lo = base, hi = base + mirror; tap < half;
+                    tap++, lo += stride, hi -= stride)
+                sum += reversed[tap] * (anti ? signal[lo] - signal[hi] : signal[lo] + signal[hi]);
+            output[outOff + ind0] = sum;
+        }
+    }
+
+    /** Mirrored slices pre-added (or subtracted) */
+    private static DoubleVector fold(double[] signal, int lo, int hi, boolean anti) {
+        DoubleVector a = DoubleVector.fromArray(SPECIES_DOUBLE, signal, lo);
+        DoubleVector b = DoubleVector.fromArray(SPECIES_DOUBLE, signal, hi);
+        return anti ? a.sub(b) : a.add(b);
+    }
+
+    /**
+     * Single full overlap output sum_j reversed[j] * signal[sigOff + j],
+     * with the lanes running across the taps instead of the outputs.
+     */
+    static double dot(double[] signal, int sigOff, double[] reversed,
+            boolean useVector) {
+        int numTaps = reversed.length;
+        int tap = 0;
+        double sum = 0;
+        if (useVector && numTaps >= 2 * DOUBLE_LANES) {
+            DoubleVector acc0 = DoubleVector.zero(SPECIES_DOUBLE);
+            DoubleVector acc1 = acc0;
+            for (; tap + 2 * DOUBLE_LANES <= numTaps; tap += 2 * DOUBLE_LANES) {
+                acc0 = DoubleVector.fromArray(SPECIES_DOUBLE, signal, sigOff + tap)
+                    .fma(DoubleVector.fromArray(SPECIES_DOUBLE, reversed, tap), acc0);
+                acc1 = DoubleVector.fromArray(SPECIES_DOUBLE, signal, sigOff + tap + DOUBLE_LANES)
+                    .fma(DoubleVector.fromArray(SPECIES_DOUBLE, reversed, tap + DOUBLE_LANES), acc1);
+            }
+            sum = acc0.add(acc1).reduceLanes(VectorOperators.ADD);
+        }
+        for (; tap < numTaps; tap++)
+            sum += reversed[tap] * signal[sigOff + tap];
+        return sum;
+    }
+
+    /**
+     * Direct convolution outputs [from, to) of a signal with reversed taps.
+     * Indices are flat, so a stride of 2 filters the real and imaginary
+     * parts of a complex interleaved signal with real taps:
+     * output[i] = sum_j reversed[j] * signal[i - stride * (M - 1 - j)].
+     */
+    static void convolve(float[] signal, float[] reversed, int stride,
+            float[] output, int from, int to, boolean useVector) {
+        int numTaps = reversed.length;
+        int lag = stride * (numTaps - 1);
+
+        // --------  full overlap region, 4 accumulators over lanes  --------
+        int start = Math.max(from, lag);
+        int end = Math.min(to, signal.length);
+        int ind0 = from;
+        if (useVector && end - start >= FLOAT_LANES) {
+            for (; ind0 < start; ind0++)
+                output[ind0] = edge(signal, reversed, stride, ind0);
+            for (; ind0 + 4 * FLOAT_LANES <= end; ind0 += 4 * FLOAT_LANES) {
+                FloatVector acc0 = FloatVector.zero(SPECIES_FLOAT);
+                FloatVector acc1 = acc0, acc2 = acc0, acc3 = acc0;
+                for (int tap = 0, off = ind0 - lag; tap < numTaps; tap++, off += stride) {
+                    FloatVector b = FloatVector.broadcast(SPECIES_FLOAT, reversed[tap]);
+                    acc0 = FloatVector.fromArray(SPECIES_FLOAT, signal, off).fma(b, acc0);
+                    acc1 = FloatVector.fromArray(SPECIES_FLOAT, signal, off + FLOAT_LANES).fma(b, acc1);
+                    acc2 = FloatVector.fromArray(SPECIES_FLOAT, signal, off + 2 * FLOAT_LANES).fma(b, acc2);
+                    acc3 = FloatVector.fromArray(SPECIES_FLOAT, signal, off + 3 * FLOAT_LANES).fma(b, acc3);
+                }
+                acc0.intoArray(output, ind0);
+                acc1.intoArray(output, ind0 + FLOAT_LANES);
+                acc2.intoArray(output, ind0 + 2 * FLOAT_LANES);
+                acc3.intoArray(output, ind0 + 3 * FLOAT_LANES);
+            }
+            for (; ind0 + FLOAT_LANES <= end; ind0 += FLOAT_LANES) {
+                FloatVector acc0 = FloatVector.zero(SPECIES_FLOAT);
+                for (int tap = 0, off = ind0 - lag; tap < numTaps; tap++, off += stride) {
+                    FloatVector b = FloatVector.broadcast(SPECIES_FLOAT, reversed[tap]);
+                    acc0 = FloatVector.fromArray(SPECIES_FLOAT, signal, off).fma(b, acc0);
+                }
+                acc0.intoArray(output, ind0);
+            }
+        }
+
+        // ----------------  partial overlap and scalar tail  ---------------
+        for (; ind0 < to; ind0++)
+            output[ind0] = edge(signal, reversed, stride, ind0);
+    }
+
+    /** Scalar output with only the taps that overlap the signal */
+    private static float edge(float[] signal, float[] reversed, int stride,
+            int ind) {
+        int base = ind - stride * (reversed.length - 1);
+        int lo = base >= 0 ? 0 : (stride - 1 - base) / stride;
+        int hi = Math.min(reversed.length, (signal.length - 1 - base) / stride + 1);
+        float sum = 0;
+        for (int tap = lo; tap < hi; tap++)
+            sum += reversed[tap] * signal[base + stride * tap];
+        return sum;
+    }
+
+    /**
+     * Full overlap outputs only:
+     * output[outOff + n] = sum_j reversed[j] * signal[sigOff + n + stride * j]
+     * for n in [0, count).  The caller guarantees the signal covers
+     * sigOff + count + stride * (M - 1) samples.
+     */
+    static void convolveValid(float[] signal, int sigOff, int stride,
+            float[] reversed,
+            float[] output, int outOff, int count, boolean useVector) {
+        int numTaps = reversed.length;
+        int ind0 = 0;
+        if (useVector) {
+            for (; ind0 + 4 * FLOAT_LANES <= count; ind0 += 4 * FLOAT_LANES) {
+                FloatVector acc0 = FloatVector.zero(SPECIES_FLOAT);
+                FloatVector acc1 = acc0, acc2 = acc0, acc3 = acc0;
+                for (int tap = 0, off = sigOff + ind0; tap < numTaps; tap++, off += stride) {
+                    FloatVector b = FloatVector.broadcast(SPECIES_FLOAT, reversed[tap]);
+                    acc0 = FloatVector.fromArray(SPECIES_FLOAT, signal, off).fma(b, acc0);
+                    acc1 = FloatVector.fromArray(SPECIES_FLOAT, signal, off + FLOAT_LANES).fma(b, acc1);
+                    acc2 = FloatVector.fromArray(SPECIES_FLOAT, signal, off + 2 * FLOAT_LANES).fma(b, acc2);
+                    acc3 = FloatVector.fromArray(SPECIES_FLOAT, signal, off + 3 * FLOAT_LANES).fma(b, acc3);
+                }
+                acc0.intoArray(output, outOff + ind0);
+                acc1.intoArray(output, outOff + ind0 + FLOAT_LANES);
+                acc2.intoArray(output, outOff + ind0 + 2 * FLOAT_LANES);
+                acc3.intoArray(output, outOff + ind0 + 3 * FLOAT_LANES);
+            }
+            for (; ind0 + FLOAT_LANES <= count; ind0 += FLOAT_LANES) {
+                FloatVector acc0 = FloatVector.zero(SPECIES_FLOAT);
+                for (int tap = 0, off = sigOff + ind0; tap < numTaps; tap++, off += stride) {
+                    FloatVector b = FloatVector.broadcast(SPECIES_FLOAT, reversed[tap]);
+                    acc0 = FloatVector.fromArray(SPECIES_FLOAT, signal, off).fma(b, acc0);
+                }
+                acc0.intoArray(output, outOff + ind0);
+            }
+        }
+        for (; ind0 < count; ind0++) {
+            float sum = 0;
+            for (int tap = 0, off = sigOff + ind0; tap < numTaps; tap++, off += stride)
+                sum += reversed[tap] * signal[off];
+            output[outOff + ind0] = sum;
+        }
+    }
+
+    /**
+     * Full overlap outputs of a linear phase filter.  Mirrored samples are
+     * pre-added (symmetric) or subtracted (antisymmetric) so each pair of
+     * taps costs one multiply:
+     * output[outOff + n] = sum_{j &lt; M/2} reversed[j] *
+     *     (signal[sigOff + n + stride * j] +- signal[sigOff + n + stride * (M - 1 - j)])
+     * plus the middle tap of an odd length symmetric filter.
+     */
+    static void convolveValidSymmetric(float[] signal, int sigOff, int stride,
+            float[] reversed, boolean anti,
+            float[] output, int outOff, int count, boolean useVector) {
+        int numTaps = reversed.length;
+        int half = numTaps / 2;
+        int mirror = stride * (numTaps - 1);
+        boolean middle = (numTaps & 1) == 1 && !anti;
+        float midTap = middle ? reversed[half] : 0;
+        int mid = stride * half;
+        int ind0 = 0;
+        if (useVector) {
+            for (; ind0 + 4 * FLOAT_LANES <= count; ind0 += 4 * FLOAT_LANES) {
+                int base = sigOff + ind0;
+                FloatVector acc0 = FloatVector.zero(SPECIES_FLOAT);
+                FloatVector acc1 = acc0, acc2 = acc0, acc3 = acc0;
+                if (middle) {
+                    FloatVector b = FloatVector.broadcast(SPECIES_FLOAT, midTap);
+                    acc0 = FloatVector.fromArray(SPECIES_FLOAT, signal, base + mid).mul(b);
+                    acc1 = FloatVector.fromArray(SPECIES_FLOAT, signal, base + mid + FLOAT_LANES).mul(b);
+                    acc2 = FloatVector.fromArray(SPECIES_FLOAT, signal, base + mid + 2 * FLOAT_LANES).mul(b);
+                    acc3 = FloatVector.fromArray(SPECIES_FLOAT, signal, base + mid + 3 * FLOAT_LANES).mul(b);
+                }
+                for (int tap = 0, lo = base, hi = base + mirror; tap < half;
+                        tap++, lo += stride, hi -= stride) {
+                    FloatVector b = FloatVector.broadcast(SPECIES_FLOAT, reversed[tap]);
+                    acc0 = fold(signal, lo, hi, anti).fma(b, acc0);
+                    acc1 = fold(signal, lo + FLOAT_LANES, hi + FLOAT_LANES, anti).fma(b, acc1);
+                    acc2 = fold(signal, lo + 2 * FLOAT_LANES, hi + 2 * FLOAT_LANES, anti).fma(b, acc2);
+                    acc3 = fold(signal, lo + 3 * FLOAT_LANES, hi + 3 * FLOAT_LANES, anti).fma(b, acc3);
+                }
+                acc0.intoArray(output, outOff + ind0);
+                acc1.intoArray(output, outOff + ind0 + FLOAT_LANES);
+                acc2.intoArray(output, outOff + ind0 + 2 * FLOAT_LANES);
+                acc3.intoArray(output, outOff + ind0 + 3 * FLOAT_LANES);
+            }
+            for (; ind0 + FLOAT_LANES <= count; ind0 += FLOAT_LANES) {
+                int base = sigOff + ind0;
+                FloatVector acc0 = FloatVector.zero(SPECIES_FLOAT);
+                if (middle)
+                    acc0 = FloatVector.fromArray(SPECIES_FLOAT, signal, base + mid).mul(midTap);
+                for (int tap = 0, lo = base, hi = base + mirror; tap < half;
+                        tap++, lo += stride, hi -= stride)
+                    acc0 = fold(signal, lo, hi, anti).fma(
+                        FloatVector.broadcast(SPECIES_FLOAT, reversed[tap]), acc0);
+                acc0.intoArray(output, outOff + ind0);
+            }
+        }
+        for (; ind0 < count; ind0++) {
+            int base = sigOff + ind0;
+            float sum = middle ? midTap * signal[base + mid] : 0;
+            for (int tap = 0, lo = base, hi = base + mirror; tap < half;
+                    tap++, lo += stride, hi -= stride)
+                sum += reversed[tap] * (anti ? signal[lo] - signal[hi] : signal[lo] + signal[hi]);
+            output[outOff + ind0] = sum;
+        }
+    }
+
+    /** Mirrored slices pre-added (or subtracted) */
+    private static FloatVector fold(float[] signal, int lo, int hi, boolean anti) {
+        FloatVector a = FloatVector.fromArray(SPECIES_FLOAT, signal, lo);
+        FloatVector b = FloatVector.fromArray(SPECIES_FLOAT, signal, hi);
+        return anti ? a.sub(b) : a.add(b);
+    }
+
+    /**
+     * Direct convolution outputs [from, to) of a signal with reversed taps.
+     * Indices are flat, so a stride of 2 filters the real and imaginary
+     * parts of a complex interleaved signal with real taps:
+     * output[i] = sum_j reversed[j] * signal[i - stride * (M - 1 - j)].
+     */
+    static void convolve(int[] signal, int[] reversed, int stride,
+            int[] output, int from, int to, boolean useVector) {
+        int numTaps = reversed.length;
+        int lag = stride * (numTaps - 1);
+
+        // --------  full overlap region, 4 accumulators over lanes  --------
+        int start = Math.max(from, lag);
+        int end = Math.min(to, signal.length);
+        int ind0 = from;
+        if (useVector && end - start >= INT_LANES) {
+            for (; ind0 < start; ind0++)
+                output[ind0] = edge(signal, reversed, stride, ind0);
+            for (; ind0 + 4 * INT_LANES <= end; ind0 += 4 * INT_LANES) {
+                IntVector acc0 = IntVector.zero(SPECIES_INT);
+                IntVector acc1 = acc0, acc2 = acc0, acc3 = acc0;
+                for (int tap = 0, off = ind0 - lag; tap < numTaps; tap++, off += stride) {
+                    IntVector b = IntVector.broadcast(SPECIES_INT, reversed[tap]);
+                    acc0 = IntVector.fromArray(SPECIES_INT, signal, off).mul(b).add(acc0);
+                    acc1 = IntVector.fromArray(SPECIES_INT, signal, off + INT_LANES).mul(b).add(acc1);
+                    acc2 = IntVector.fromArray(SPECIES_INT, signal, off + 2 * INT_LANES).mul(b).add(acc2);
+                    acc3 = IntVector.fromArray(SPECIES_INT, signal, off + 3 * INT_LANES).mul(b).add(acc3);
+                }
+                acc0.intoArray(output, ind0);
+                acc1.intoArray(output, ind0 + INT_LANES);
+                acc2.intoArray(output, ind0 + 2 * INT_LANES);
+                acc3.intoArray(output, ind0 + 3 * INT_LANES);
+            }
+            for (; ind0 + INT_LANES <= end; ind0 += INT_LANES) {
+                IntVector acc0 = IntVector.zero(SPECIES_INT);
+                for (int tap = 0, off = ind0 - lag; tap < numTaps; tap++, off += stride) {
+                    IntVector b = IntVector.broadcast(SPECIES_INT, reversed[tap]);
+                    acc0 = IntVector.fromArray(SPECIES_INT, signal, off).mul(b).add(acc0);
+                }
+                acc0.intoArray(output, ind0);
+            }
+        }
+
+        // ----------------  partial overlap and scalar tail  ---------------
+        for (; ind0 < to; ind0++)
+            output[ind0] = edge(signal, reversed, stride, ind0);
+    }
+
+    /** Scalar output with only the taps that overlap the signal */
+    private static int edge(int[] signal, int[] reversed, int stride,
+            int ind) {
+        int base = ind - stride * (reversed.length - 1);
+        int lo = base >= 0 ? 0 : (stride - 1 - base) / stride;
+        int hi = Math.min(reversed.length, (signal.length - 1 - base) / stride + 1);
+        int sum = 0;
+        for (int tap = lo; tap < hi; tap++)
+            sum += reversed[tap] * signal[base + stride * tap];
+        return sum;
+    }
+
+    /**
+     * Direct convolution outputs [from, to) of a signal with reversed taps.
+     * Indices are flat, so a stride of 2 filters the real and imaginary
+     * parts of a complex interleaved signal with real taps:
+     * output[i] = sum_j reversed[j] * signal[i - stride * (M - 1 - j)].
+     */
+    static void convolve(long[] signal, long[] reversed, int stride,
+            long[] output, int from, int to, boolean useVector) {
+        int numTaps = reversed.length;
+        int lag = stride * (numTaps - 1);
+
+        // --------  full overlap region, 4 accumulators over lanes  --------
+        int start = Math.max(from, lag);
+        int end = Math.min(to, signal.length);
+        int ind0 = from;
+        if (useVector && end - start >= LONG_LANES) {
+            for (; ind0 < start; ind0++)
+                output[ind0] = edge(signal, reversed, stride, ind0);
+            for (; ind0 + 4 * LONG_LANES <= end; ind0 += 4 * LONG_LANES) {
+                LongVector acc0 = LongVector.zero(SPECIES_LONG);
+                LongVector acc1 = acc0, acc2 = acc0, acc3 = acc0;
+                for (int tap = 0, off = ind0 - lag; tap < numTaps; tap++, off += stride) {
+                    LongVector b = LongVector.broadcast(SPECIES_LONG, reversed[tap]);
+                    acc0 = LongVector.fromArray(SPECIES_LONG, signal, off).mul(b).add(acc0);
+                    acc1 = LongVector.fromArray(SPECIES_LONG, signal, off + LONG_LANES).mul(b).add(acc1);
+                    acc2 = LongVector.fromArray(SPECIES_LONG, signal, off + 2 * LONG_LANES).mul(b).add(acc2);
+                    acc3 = LongVector.fromArray(SPECIES_LONG, signal, off + 3 * LONG_LANES).mul(b).add(acc3);
+                }
+                acc0.intoArray(output, ind0);
+                acc1.intoArray(output, ind0 + LONG_LANES);
+                acc2.intoArray(output, ind0 + 2 * LONG_LANES);
+                acc3.intoArray(output, ind0 + 3 * LONG_LANES);
+            }
+            for (; ind0 + LONG_LANES <= end; ind0 += LONG_LANES) {
+                LongVector acc0 = LongVector.zero(SPECIES_LONG);
+                for (int tap = 0, off = ind0 - lag; tap < numTaps; tap++, off += stride) {
+                    LongVector b = LongVector.broadcast(SPECIES_LONG, reversed[tap]);
+                    acc0 = LongVector.fromArray(SPECIES_LONG, signal, off).mul(b).add(acc0);
+                }
+                acc0.intoArray(output, ind0);
+            }
+        }
+
+        // ----------------  partial overlap and scalar tail  ---------------
+        for (; ind0 < to; ind0++)
+            output[ind0] = edge(signal, reversed, stride, ind0);
+    }
+
+    /** Scalar output with only the taps that overlap the signal */
+    private static long edge(long[] signal, long[] reversed, int stride,
+            int ind) {
+        int base = ind - stride * (reversed.length - 1);
+        int lo = base >= 0 ? 0 : (stride - 1 - base) / stride;
+        int hi = Math.min(reversed.length, (signal.length - 1 - base) / stride + 1);
+        long sum = 0;
+        for (int tap = lo; tap < hi; tap++)
+            sum += reversed[tap] * signal[base + stride * tap];
+        return sum;
+    }
+}
@@ -1,94 +1,245 @@
+/**
+ * Parallel direct convolution.
+ *
+ * @author Keith Chow
+ */
 package net.kcundercover.jdsp.math;
-import java.lang.Thread;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
-/** Convolver object */
-public class Convolver {
-    /** Number of threads */
-    int numThreads = 4;
+/**
+ * Reusable parallel convolver.  The output is split into cache sized
+ * chunks of consecutive samples, each computed by the vectorized direct
+ * kernel of {@link Convolve}.  On a {@link ForkJoinPool} the chunks are
+ * split recursively so idle workers steal them; any other executor gets
+ * one task per chunk.  Every call blocks until its output is complete,
+ * so one instance can serve any number of calls until it is closed.
+ */
+public class Convolver implements AutoCloseable {
+    /** Default bytes of output per chunk */
+    public final static int DEFAULT_CHUNK_BYTES = 1 << 15;
 
-    /** Executor Service */
-    ExecutorService executorService;
+    /** Executor running the chunks */
+    private final Executor executor;
+
+    /** Pool created (and closed) by this convolver, or null */
+    private final ForkJoinPool ownedPool;
+
+    /** Bytes of output per chunk */
+    private final int chunkBytes;
+
+    /** Set once closed */
+    private volatile boolean closed = false;
+
+    /** Convolver on the common ForkJoinPool */
+    public Convolver(){
+        this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_BYTES);
+    }
 
     /**
      * Convolver constructor
-     * @param numThreads create the convolver
+     * @param numThreads Parallelism of a dedicated pool, shut down on close
      */
     public Convolver(int numThreads){
-        this.numThreads = numThreads;
-        executorService = Executors.newFixedThreadPool(numThreads);
+        if (numThreads < 1)
+            throw new IllegalArgumentException("numThreads should be >= 1");
+        ownedPool = new ForkJoinPool(numThreads);
+        executor = ownedPool;
+        chunkBytes = DEFAULT_CHUNK_BYTES;
+    }
+
+    /**
+     * Convolver on a caller supplied executor (not shut down on close)
+     * @param executor Executor running the chunks
+     * @param chunkBytes Bytes of output per chunk
+     */
+    public Convolver(Executor executor, int chunkBytes){
+        if (executor == null)
+            throw new IllegalArgumentException("executor should be set");
+        if (chunkBytes < 1)
+            throw new IllegalArgumentException("chunkBytes should be >= 1");
+        this.executor = executor;
+        this.ownedPool = null;
+        this.chunkBytes = chunkBytes;
     }
 
+    // ======================================================================
+    // -------------------------  convolve methods  -------------------------
+    // ======================================================================
     /**
-     * Convole method using Executor Service
-     * @param in1 Input vector 1
-     * @param in2 Input Vector 2
-     * @return Convoled vected
+     * Convolve 2 vectors together.
+     * @param in1 Input vector 1 (length N)
+     * @param in2 Input vector 2 (length M)
+     * @return Convolved vector (length M+N-1)
      */
     public float[] convolve(final float[] in1, final float[] in2){
+        float[] output = new float[Math.max(0, in1.length + in2.length - 1)];
+        if (in1.length == 0 || in2.length == 0)
+            return output;
 
-        float[] output = new float[in1.length + in2.length - 1];
-        for (int ind0=0; ind0<output.length; ind0++){
-            Runnable command = new ConvolverFloat(in1, in2, output, ind0);
-            executorService.execute(command);
-        }
+        float[] signal = in1.length >= in2.length ? in1 : in2;
+        float[] reversed = Convolve.reverse(signal == in1 ? in2 : in1);
+        boolean useVector = Convolve.isVectorEnabled();
+        run(output.length, Float.BYTES, (from, to) ->
+            ConvolveVectorKernels.convolve(signal, reversed, 1,
+                output, from, to, useVector));
+        return output;
+    }
 
-        executorService.shutdown();
-        while (!executorService.isTerminated()){ }
+    /**
+     * Convolve 2 vectors together.
+     * @param in1 Input vector 1 (length N)
+     * @param in2 Input vector 2 (length M)
+     * @return Convolved vector (length M+N-1)
+     */
+    public double[] convolve(final double[] in1, final double[] in2){
+        double[] output = new double[Math.max(0, in1.length + in2.length - 1)];
+        if (in1.length == 0 || in2.length == 0)
+            return output;
+
+        double[] signal = in1.length >= in2.length ? in1 : in2;
+        double[] reversed = Convolve.reverse(signal == in1 ? in2 : in1);
+        boolean useVector = Convolve.isVectorEnabled();
+        run(output.length, Double.BYTES, (from, to) ->
+            ConvolveVectorKernels.convolve(signal, reversed, 1,
+                output, from, to, useVector));
         return output;
     }
-}
 
-/** 
- * ConvolverFloat object
-*/
-class ConvolverFloat extends Thread {
-    
-    final float[] input1;
-    final float[] input2;
-    float[] output;
-    int len1, len2, ind0;
-
-    public ConvolverFloat(final float[] in1, final float[] in2, float[] out, int ind0) {
-        input1 = in1;
-        input2 = in2;
-        output = out;
-        len1 = input1.length;
-        len2 = input2.length;
-        this.ind0 = ind0;
+    /**
+     * Convolve a real vector with a complex vector.
+     * @param in1 Real vector (length N)
+     * @param in2 Complex interleaved vector (length M * 2)
+     * @return Complex interleaved output (length (M+N-1) * 2)
+     * @see Convolve#convolveRealComplex
+     */
+    public double[] convolveRealComplex(final double[] in1, final double[] in2){
+        // ---------------------  error checking  ---------------------------
+        if (in2.length % 2 == 1)
+            throw new IllegalArgumentException(
+                "Expecting interleaved complex, should be even number");
+
+        int len1 = in1.length;
+        int len2 = in2.length / 2;
+        int len3 = len1 + len2 - 1;
+        double[] output = new double[2 * Math.max(0, len3)];
+        if (len1 == 0 || len2 == 0)
+            return output;
+        boolean useVector = Convolve.isVectorEnabled();
+
+        // -----------  real taps across the interleaved samples  -----------
+        if (len2 >= len1){
+            double[] reversed = Convolve.reverse(in1);
+            run(output.length, Double.BYTES, (from, to) ->
+                ConvolveVectorKernels.convolve(in2, reversed, 2,
+                    output, from, to, useVector));
+            return output;
+        }
+
+        // --------  complex taps, real and imaginary taps separately  ------
+        double[] revReal = new double[len2];
+        double[] revImag = new double[len2];
+        for (int ind0 = 0; ind0 < len2; ind0++){
+            revReal[ind0] = in2[2 * (len2 - 1 - ind0)];
+            revImag[ind0] = in2[2 * (len2 - 1 - ind0) + 1];
+        }
+        double[] outReal = new double[len3];
+        double[] outImag = new double[len3];
+        run(len3, 2 * Double.BYTES, (from, to) -> {
+            ConvolveVectorKernels.convolve(in1, revReal, 1,
+                outReal, from, to, useVector);
+            ConvolveVectorKernels.convolve(in1, revImag, 1,
+                outImag, from, to, useVector);
+        });
+        for (int ind0 = 0; ind0 < len3; ind0++){
+            output[2 * ind0] = outReal[ind0];
+            output[2 * ind0 + 1] = outImag[ind0];
+        }
+        return output;
     }
 
+    /**
+     * Shut down the pool created by this convolver.  Caller supplied
+     * executors and the common pool are left running.
+     */
     @Override
-    public void run(){
-        int start;
-        if (len2 >= len1){
-            if (ind0 < len1){
-                for (int ind1 = 0; ind1 < ind0 + 1; ind1++){
-                    output[ind0] += input1[ind0 - ind1] * input2[ind1];
-                }
-            }
-            else {
-                start = (ind0 - len2 + 1 < 0) ? 0 : ind0 - len2 + 1;
-                for (int ind1=start; ind1 < len1; ind1++){
-                    float tmp = input2[ind0 - ind1];
-                    output[ind0] += input1[ind1] * tmp;
-                }
-            }
+    public void close(){
+        closed = true;
+        if (ownedPool != null)
+            ownedPool.shutdown();
+    }
+
+    // ======================================================================
+    // -----------------------------  chunks  -------------------------------
+    // ======================================================================
+    /** Computes outputs [from, to) */
+    private interface RangeTask {
+        void run(int from, int to);
+    }
+
+    /** Split [0, numOutputs) into chunks and block until all are done */
+    private void run(int numOutputs, int bytesPerOutput, RangeTask task){
+        if (closed)
+            throw new IllegalStateException("Convolver is closed");
+        int chunk = Math.max(1, chunkBytes / bytesPerOutput);
+        if (numOutputs <= chunk){
+            task.run(0, numOutputs);
+            return;
         }
-        else {
-            if (ind0 < len2){
-                for (int ind1 = 0; ind1 < ind0 + 1; ind1++){
-                    output[ind0] += input2[ind0 - ind1] * input1[ind1];
-                }
-            }
-            else{
-                start = (ind0 - len1 + 1 < 0) ? 0 : ind0 - len1 + 1;
-                for (int ind1=start; ind1 < len2; ind1++){
-                    float tmp = input1[ind0 - ind1];
-                    output[ind0] += input2[ind1] * tmp;
-                }
+
+        // ----------------  work stealing on a ForkJoinPool  ---------------
+        if (executor instanceof ForkJoinPool){
+            ((ForkJoinPool) executor).invoke(new Chunks(task, 0, numOutputs, chunk));
+            return;
+        }
+
+        // ----------------  one task per chunk otherwise  ------------------
+        int numChunks = (numOutputs + chunk - 1) / chunk;
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[numChunks];
+        for (int ind0 = 0; ind0 < numChunks; ind0++){
+            int from = ind0 * chunk;
+            int to = Math.min(numOutputs, from + chunk);
+            futures[ind0] = CompletableFuture.runAsync(
+                () -> task.run(from, to), executor);
+        }
+        try{
+            CompletableFuture.allOf(futures).join();
+        }
+        catch (CompletionException ce){
+            if (ce.getCause() instanceof RuntimeException)
+                throw (RuntimeException) ce.getCause();
+            throw ce;
+        }
+    }
+
+    /** Recursively halves the output range down to one chunk */
+    private static class Chunks extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final transient RangeTask task;
+        private final int from, to, chunk;
+
+        Chunks(RangeTask task, int from, int to, int chunk){
+            this.task = task;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected void compute(){
+            if (to - from <= chunk){
+                task.run(from, to);
+                return;
             }
+            // split on a chunk boundary
+            int mid = from + ((to - from) / chunk / 2) * chunk;
+            if (mid == from)
+                mid += chunk;
+            invokeAll(new Chunks(task, from, mid, chunk),
+                new Chunks(task, mid, to, chunk));
         }
     }
-}
\ No newline at end of file
+}
@@ -4,7 +4,6 @@
  * @author GassiusODude
  */
 package net.kcundercover.jdsp.math;
-import net.kcundercover.jdsp.math.Vector;
 
 /** Discrete Time Fourier Transform */
 public class DTFT {
@@ -22,27 +21,23 @@ public class DTFT {
      */
     public static float[] discreteFourierTransform(float[] signal, int nfft) {
         // --------------------  prepare variables  -------------------------
-        float sumReal, sumImag, mult;
+        float sumReal, sumImag;
+
+        // samples beyond nfft wrap around, matching a sum over every sample
+        double[] spectrum = new double[2 * (nfft / 2 + 1)];
+        RealFftPlan.of(nfft, FftPlan.Precision.DOUBLE)
+            .forward(fold(signal, nfft, 1)[0], 0, spectrum, 0);
 
         // prepare output
         float[] output = new float[nfft * 2];
         int len_out = output.length;
-        output[0] = Vector.sum(signal) / 2;
+        output[0] = (float) (spectrum[0] / 2);
 
         for (int freq=1; freq < nfft/2 + 1; freq++) {
-            // initialize sum of real and imaginary
-            sumReal = 0;
-            sumImag = 0;
-
             // --------- exp(j*w*t) = 0.5*cos(wt) + 0.5j * sin(wt)  ---------
-            // update mult for the duration for-loop
-            mult = (float)(2 * Math.PI * freq / nfft);
-            for (int t = 0; t < signal.length; t++) {
-                sumReal += signal[t] * Math.cos(mult * t);
-                sumImag += signal[t] * Math.sin(mult * t);
-            }
-            sumReal /= 2;
-            sumImag /= 2;
+            // exp(+jwt) of a real signal is the conjugate of the FFT
+            sumReal = (float) (spectrum[2 * freq] / 2);
+            sumImag = (float) (-spectrum[2 * freq + 1] / 2);
 
             // ----------------------  update output  -----------------------
             output[freq * 2] = sumReal;
@@ -55,44 +50,45 @@ public class DTFT {
         return output;
     }
     /**
-     * Calculates the discrete time fourier transform of a real input signal
+     * Calculates the discrete time fourier transform of a complex input signal
      * @param signal Complex signal
      * @param nfft Number of FFT points
      * @return Complex FFT (with interleaved floats)
      */
     public static float[] discreteFourierTransformComplex(float[] signal, int nfft) {
-        // --------------------  prepare variables  -------------------------
-        float sumReal, sumImag, mult;
+        // --------- exp(j*w*t) = 0.5*cos(wt) + 0.5j * sin(wt)  -------------
+        double[][] realImag = fold(signal, nfft, 2);
+        FFT.transform(realImag[0], realImag[1], true);
 
-        // prepare output
+        // ----------------------  update output  ---------------------------
         float[] output = new float[nfft * 2];
-        int len_out = output.length;
-        output[0] = Vector.sum(signal) / 2;
-
-        for (int freq=1; freq < nfft -1 ; freq++){
-            // initialize sum of real and imaginary
-            sumReal = 0;
-            sumImag = 0;
-
-            // --------- exp(j*w*t) = 0.5*cos(wt) + 0.5j * sin(wt)  ---------
-            // update mult for the duration for-loop
-            mult = (float)(2 * Math.PI * freq / nfft);
-            for (int t = 0; t < signal.length; t+=2) {
-                sumReal += signal[t] * Math.cos(mult * t/2.0)
-                    - signal[t+1] * Math.sin(mult * t/2.0);
-                sumImag += signal[t] * Math.sin(mult * t/2.0)
-                    + signal[t+1] * Math.cos(mult * t/2.0);
-            }
-            sumReal /= 2;
-            sumImag /= 2;
-
-            // ----------------------  update output  -----------------------
-            output[freq * 2] = sumReal;
-            output[freq * 2 + 1] = sumImag;
+        for (int freq = 0; freq < nfft; freq++) {
+            output[freq * 2] = (float) (realImag[0][freq] / 2);
+            output[freq * 2 + 1] = (float) (realImag[1][freq] / 2);
         }
         return output;
     }
 
+    /**
+     * Wrap the signal modulo nfft samples into split real/imaginary arrays.
+     * @param signal Real or complex interleaved signal
+     * @param nfft Number of FFT points
+     * @param stride 1 for real signals, 2 for complex interleaved
+     * @return Real and imaginary arrays of length nfft
+     */
+    private static double[][] fold(float[] signal, int nfft, int stride) {
+        if (nfft < 1)
+            throw new IllegalArgumentException("nfft should be >= 1");
+        double[][] out = new double[2][nfft];
+        int numSamples = signal.length / stride;
+        for (int t = 0; t < numSamples; t++) {
+            out[0][t % nfft] += signal[t * stride];
+            if (stride == 2)
+                out[1][t % nfft] += signal[t * stride + 1];
+        }
+        return out;
+    }
+
     /**
      * Shift the FFT by half.
      * @param input Input signal
@@ -0,0 +1,379 @@
+/**
+ * Fast Fourier Transform.
+ *
+ * Power of two sizes use an iterative radix-2/4 kernel, sizes that factor
+ * into 2, 3 and 5 use a mixed-radix (Stockham) kernel and every other size
+ * falls back to Bluestein's chirp-z algorithm.  Transforms run through
+ * shared {@link FftPlan} instances from {@link FftPlanCache}; hold on to a
+ * plan directly to avoid the output allocation of these helpers.
+ *
+ * @author Keith Chow
+ */
+package net.kcundercover.jdsp.math;
+import java.util.stream.IntStream;
+
+/** Fast Fourier Transform */
+public class FFT {
+    /** Serial Version UID */
+    public final static long serialVersionUID = 0;
+
+    /** Target working set (bytes) of one block of frames in a batch */
+    private final static int BATCH_BLOCK_BYTES = 1 << 18;
+
+    /** Default constructor */
+    public FFT() {}
+
+    // ======================================================================
+    // -------------------------  float support  ----------------------------
+    // ======================================================================
+    /**
+     * Calculate the FFT of a complex signal.
+     * The signal is zero padded or truncated to nfft samples.
+     * @param signal Complex interleaved signal
+     * @param nfft Number of FFT points
+     * @return Complex FFT (with interleaved floats, length 2 * nfft)
+     */
+    public static float[] fft(float[] signal, int nfft) {
+        return transformInterleaved(signal, nfft, false);
+    }
+
+    /**
+     * Calculate the FFT of a real signal.
+     * The signal is zero padded or truncated to nfft samples.
+     * @param signal Real signal
+     * @param nfft Number of FFT points
+     * @return Complex FFT (with interleaved floats, length 2 * nfft)
+     */
+    public static float[] fftReal(float[] signal, int nfft) {
+        // upper half of a real spectrum is the conjugate of the lower half
+        float[] output = new float[2 * nfft];
+        float[] half = rfft(signal, nfft);
+        System.arraycopy(half, 0, output, 0, half.length);
+        for (int k = nfft / 2 + 1; k < nfft; k++) {
+            output[2 * k] = half[2 * (nfft - k)];
+            output[2 * k + 1] = -half[2 * (nfft - k) + 1];
+        }
+        return output;
+    }
+
+    /**
+     * Calculate the non-redundant half of the FFT of a real signal.
+     * The signal is zero padded or truncated to nfft samples.
+     * @param signal Real signal
+     * @param nfft Number of FFT points
+     * @return Complex bins 0 to nfft/2 (interleaved, length 2 * (nfft/2+1))
+     */
+    public static float[] rfft(float[] signal, int nfft) {
+        checkSize(nfft);
+        float[] input = signal;
+        if (signal.length < nfft) {
+            input = new float[nfft];
+            System.arraycopy(signal, 0, input, 0, signal.length);
+        }
+        float[] output = new float[2 * (nfft / 2 + 1)];
+        RealFftPlan.of(nfft, FftPlan.Precision.FLOAT)
+            .forward(input, 0, output, 0);
+        return output;
+    }
+
+    /**
+     * Calculate the real inverse of a half spectrum (scaled by 1 / nfft).
+     * @param spectrum Complex bins 0 to nfft/2 (interleaved)
+     * @param nfft Number of FFT points
+     * @return Real time signal (length nfft)
+     */
+    public static float[] irfft(float[] spectrum, int nfft) {
+        checkSize(nfft);
+        checkHalfSpectrum(spectrum.length, nfft);
+        float[] output = new float[nfft];
+        RealFftPlan.of(nfft, FftPlan.Precision.FLOAT)
+            .inverse(spectrum, 0, output, 0);
+        float scale = 1.0f / nfft;
+        for (int ind0 = 0; ind0 < nfft; ind0++)
+            output[ind0] *= scale;
+        return output;
+    }
+
+    /**
+     * Calculate the inverse FFT of a complex spectrum (scaled by 1 / nfft).
+     * @param spectrum Complex interleaved spectrum
+     * @param nfft Number of FFT points
+     * @return Complex interleaved time signal (length 2 * nfft)
+     */
+    public static float[] ifft(float[] spectrum, int nfft) {
+        return transformInterleaved(spectrum, nfft, true);
+    }
+
+    // ======================================================================
+    // ----------------------  batched transforms  --------------------------
+    // ======================================================================
+    /**
+     * FFT of many (possibly overlapping) frames of a complex signal.
+     * Frame f starts at sample f * hop; its frameLen bins are written to
+     * dst starting at bin f * frameLen.
+     * @param src Complex interleaved signal
+     * @param frameLen Samples per frame (also the number of FFT points)
+     * @param hop Samples between the start of consecutive frames
+     * @param count Number of frames
+     * @param dst Complex interleaved output (2 * count * frameLen floats)
+     */
+    public static void fftBatch(float[] src, int frameLen, int hop, int count,
+            float[] dst) {
+        fftBatch(src, frameLen, hop, count, dst, false);
+    }
+
+    /**
+     * FFT of many (possibly overlapping) frames of a complex signal.
+     * @param src Complex interleaved signal
+     * @param frameLen Samples per frame (also the number of FFT points)
+     * @param hop Samples between the start of consecutive frames
+     * @param count Number of frames
+     * @param dst Complex interleaved output (2 * count * frameLen floats)
+     * @param parallel If true, spread blocks of frames across the common pool
+     * @see #fftBatch(float[], int, int, int, float[])
+     */
+    public static void fftBatch(float[] src, int frameLen, int hop, int count,
+            float[] dst, boolean parallel) {
+        checkBatch(src.length / 2, dst.length / 2, frameLen, hop, count,
+            frameLen);
+        FftPlan plan = FftPlan.of(frameLen, false, FftPlan.Precision.FLOAT);
+        int blockFrames = Math.max(1, BATCH_BLOCK_BYTES / (16 * frameLen));
+        int numBlocks = (count + blockFrames - 1) / blockFrames;
+
+        if (!parallel || numBlocks == 1) {
+            for (int frame = 0; frame < count; frame++)
+                plan.execute(src, 2 * frame * hop, dst, 2 * frame * frameLen);
+            return;
+        }
+        IntStream.range(0, numBlocks).parallel().forEach(block -> {
+            int end = Math.min(count, (block + 1) * blockFrames);
+            for (int frame = block * blockFrames; frame < end; frame++)
+                plan.execute(src, 2 * frame * hop, dst, 2 * frame * frameLen);
+        });
+    }
+
+    /**
+     * Packed real FFT of many (possibly overlapping) frames of a real
+     * signal.  Frame f starts at sample f * hop; its frameLen/2+1 bins are
+     * written to dst starting at bin f * (frameLen/2+1).
+     * @param src Real signal
+     * @param frameLen Samples per frame (also the number of FFT points)
+     * @param hop Samples between the start of consecutive frames
+     * @param count Number of frames
+     * @param dst Complex interleaved output (2 * count * (frameLen/2+1) floats)
+     * @param parallel If true, spread blocks of frames across the common pool
+     */
+    public static void rfftBatch(float[] src, int frameLen, int hop, int count,
+            float[] dst, boolean parallel) {
+        int numBins = frameLen / 2 + 1;
+        checkBatch(src.length, dst.length / 2, frameLen, hop, count, numBins);
+        RealFftPlan plan = RealFftPlan.of(frameLen, FftPlan.Precision.FLOAT);
+        int blockFrames = Math.max(1, BATCH_BLOCK_BYTES / (8 * frameLen));
+        int numBlocks = (count + blockFrames - 1) / blockFrames;
+
+        if (!parallel || numBlocks == 1) {
+            for (int frame = 0; frame < count; frame++)
+                plan.forward(src, frame * hop, dst, 2 * frame * numBins);
+            return;
+        }
+        IntStream.range(0, numBlocks).parallel().forEach(block -> {
+            int end = Math.min(count, (block + 1) * blockFrames);
+            for (int frame = block * blockFrames; frame < end; frame++)
+                plan.forward(src, frame * hop, dst, 2 * frame * numBins);
+        });
+    }
+
+    // ======================================================================
+    // -------------------------  double support  ---------------------------
+    // ======================================================================
+    /**
+     * Calculate the FFT of a complex signal.
+     * The signal is zero padded or truncated to nfft samples.
+     * @param signal Complex interleaved signal
+     * @param nfft Number of FFT points
+     * @return Complex FFT (with interleaved doubles, length 2 * nfft)
+     */
+    public static double[] fft(double[] signal, int nfft) {
+        return transformInterleaved(signal, nfft, false);
+    }
+
+    /**
+     * Calculate the inverse FFT of a complex spectrum (scaled by 1 / nfft).
+     * @param spectrum Complex interleaved spectrum
+     * @param nfft Number of FFT points
+     * @return Complex interleaved time signal (length 2 * nfft)
+     */
+    public static double[] ifft(double[] spectrum, int nfft) {
+        return transformInterleaved(spectrum, nfft, true);
+    }
+
+    /**
+     * Calculate the non-redundant half of the FFT of a real signal.
+     * The signal is zero padded or truncated to nfft samples.
+     * @param signal Real signal
+     * @param nfft Number of FFT points
+     * @return Complex bins 0 to nfft/2 (interleaved, length 2 * (nfft/2+1))
+     */
+    public static double[] rfft(double[] signal, int nfft) {
+        checkSize(nfft);
+        double[] input = signal;
+        if (signal.length < nfft) {
+            input = new double[nfft];
+            System.arraycopy(signal, 0, input, 0, signal.length);
+        }
+        double[] output = new double[2 * (nfft / 2 + 1)];
+        RealFftPlan.of(nfft, FftPlan.Precision.DOUBLE)
+            .forward(input, 0, output, 0);
+        return output;
+    }
+
+    /**
+     * Calculate the real inverse of a half spectrum (scaled by 1 / nfft).
+     * @param spectrum Complex bins 0 to nfft/2 (interleaved)
+     * @param nfft Number of FFT points
+     * @return Real time signal (length nfft)
+     */
+    public static double[] irfft(double[] spectrum, int nfft) {
+        checkSize(nfft);
+        checkHalfSpectrum(spectrum.length, nfft);
+        double[] output = new double[nfft];
+        RealFftPlan.of(nfft, FftPlan.Precision.DOUBLE)
+            .inverse(spectrum, 0, output, 0);
+        double scale = 1.0 / nfft;
+        for (int ind0 = 0; ind0 < nfft; ind0++)
+            output[ind0] *= scale;
+        return output;
+    }
+
+    /**
+     * In-place, unscaled transform of split real and imaginary arrays.
+     * Any length is supported.
+     * @param real Real part (overwritten with the real part of the output)
+     * @param imag Imaginary part (overwritten with the imaginary output)
+     * @param inverse If true, use the positive exponent (no 1/n scaling)
+     */
+    public static void transform(double[] real, double[] imag, boolean inverse) {
+        // ---------------------  error checking  ---------------------------
+        if (real.length != imag.length)
+            throw new IllegalArgumentException(
+                "real and imaginary lengths need to match");
+
+        if (real.length == 0)
+            return;
+        FftPlan.of(real.length, inverse, FftPlan.Precision.DOUBLE)
+            .executeSplit(real, imag);
+    }
+
+    /**
+     * Check if the value is a power of two
+     * @param n Value to check
+     * @return True if n is a positive power of two
+     */
+    public static boolean isPowerOfTwo(int n) {
+        return n > 0 && (n & (n - 1)) == 0;
+    }
+
+    /**
+     * Get the smallest power of two greater than or equal to n
+     * @param n Minimum value
+     * @return Power of two
+     */
+    public static int nextPowerOfTwo(int n) {
+        if (n <= 1)
+            return 1;
+        int out = Integer.highestOneBit(n - 1) << 1;
+        if (out <= 0)
+            throw new IllegalArgumentException("Size too large: " + n);
+        return out;
+    }
+
+    // ======================================================================
+    // --------------------------  helpers  ---------------------------------
+    // ======================================================================
+    /** Verify the number of FFT points */
+    private static void checkSize(int nfft) {
+        if (nfft < 1)
+            throw new IllegalArgumentException("nfft should be >= 1");
+    }
+
+    /** Verify the frames of a batch fit in the source and destination */
+    private static void checkBatch(int srcSamples, int dstBins, int frameLen,
+            int hop, int count, int binsPerFrame) {
+        checkSize(frameLen);
+        if (hop < 1 || count < 0)
+            throw new IllegalArgumentException(
+                "hop should be >= 1 and count >= 0");
+        if (count > 0 && (long) (count - 1) * hop + frameLen > srcSamples)
+            throw new IllegalArgumentException(
+                "Source too short for " + count + " frames");
+        if ((long) count * binsPerFrame > dstBins)
+            throw new IllegalArgumentException(
+                "Destination too short for " + count + " frames");
+    }
+
+    /** Verify a half spectrum holds nfft/2+1 complex bins */
+    private static void checkHalfSpectrum(int numValues, int nfft) {
+        if (numValues < 2 * (nfft / 2 + 1))
+            throw new IllegalArgumentException(
+                "Expecting " + (nfft / 2 + 1) + " complex bins");
+    }
+
+    /** Check if the value only has factors of 2, 3 and 5 */
+    static boolean isSmooth(int n) {
+        for (int radix : new int[] {2, 3, 5})
+            while (n % radix == 0)
+                n /= radix;
+        return n == 1;
+    }
+
+    /** Factor n into radices of 4, 2, 3 and 5, preferring radix-4 */
+    static int[] factor(int n) {
+        int[] tmp = new int[32];
+        int count = 0;
+        for (int radix : new int[] {4, 2, 3, 5}) {
+            while (n % radix == 0) {
+                tmp[count++] = radix;
+                n /= radix;
+            }
+        }
+        int[] output = new int[count];
+        System.arraycopy(tmp, 0, output, 0, count);
+        return output;
+    }
+
+    /** Transform interleaved float data */
+    private static float[] transformInterleaved(float[] signal, int nfft,
+            boolean inverse) {
+        checkSize(nfft);
+        float[] output = new float[2 * nfft];
+        System.arraycopy(signal, 0, output, 0,
+            Math.min(signal.length / 2, nfft) * 2);
+
+        FftPlan.of(nfft, inverse, FftPlan.Precision.FLOAT)
+            .execute(output, 0, output, 0);
+        if (inverse) {
+            float scale = 1.0f / nfft;
+            for (int ind0 = 0; ind0 < output.length; ind0++)
+                output[ind0] *= scale;
+        }
+        return output;
+    }
+
+    /** Transform interleaved double data */
+    private static double[] transformInterleaved(double[] signal, int nfft,
+            boolean inverse) {
+        checkSize(nfft);
+        double[] output = new double[2 * nfft];
+        System.arraycopy(signal, 0, output, 0,
+            Math.min(signal.length / 2, nfft) * 2);
+
+        FftPlan.of(nfft, inverse, FftPlan.Precision.DOUBLE)
+            .execute(output, 0, output, 0);
+        if (inverse) {
+            double scale = 1.0 / nfft;
+            for (int ind0 = 0; ind0 < output.length; ind0++)
+                output[ind0] *= scale;
+        }
+        return output;
+    }
+}
@@ -0,0 +1,863 @@
+/**
+ * FFT plan.
+ *
+ * A plan holds everything a transform of one size, direction and precision
+ * needs: twiddle tables, the bit-reversal permutation and the Bluestein
+ * chirp.  Tables are computed once in the constructor and shared by every
+ * thread; scratch buffers are kept per thread so a plan can be executed
+ * concurrently without allocating on the hot path.
+ *
+ * @author Keith Chow
+ */
+package net.kcundercover.jdsp.math;
+
+/** Reusable FFT plan of a fixed size, direction and precision */
+public final class FftPlan {
+    /** Arithmetic precision of a plan */
+    public enum Precision {
+        /** Single precision tables and kernels */
+        FLOAT,
+        /** Double precision tables and kernels */
+        DOUBLE
+    }
+
+    /**
+     * Use the Vector API butterflies (system property jdsp.fft.vector).
+     * Off by default: no benchmark shows them faster than the scalar
+     * kernel, and they allocate once the JIT drops their intrinsics.
+     */
+    private static volatile boolean vectorEnabled = Boolean.parseBoolean(
+        System.getProperty("jdsp.fft.vector", "false"));
+
+    /** Size 1, nothing to do */
+    private static final int KIND_TRIVIAL = 0;
+    /** Power of two, radix-2/4 kernel */
+    private static final int KIND_RADIX2 = 1;
+    /** Factors of 2, 3 and 5, Stockham kernel */
+    private static final int KIND_MIXED = 2;
+    /** Any other size, Bluestein kernel */
+    private static final int KIND_BLUESTEIN = 3;
+
+    /** Number of complex points */
+    private final int size;
+
+    /** Direction of the transform */
+    private final boolean inverse;
+
+    /** Precision of tables and kernels */
+    private final Precision precision;
+
+    /** Selected kernel */
+    private final int kind;
+
+    /** Bit-reversal permutation (radix-2 only) */
+    private final int[] bitReverse;
+
+    /** Radix of each stage (mixed radix only) */
+    private final int[] factors;
+
+    /**
+     * Twiddle tables, sign of the direction applied to the sine.
+     * Radix-2 stores W_L^k (k &lt; L/2) for each stage length L at offset
+     * L/2 - 1.  Mixed radix stores W_n^k for k &lt; n.  Bluestein stores the
+     * chirp exp(+-j pi k^2 / n).
+     */
+    private final double[] cosD, sinD;
+    private final float[] cosF, sinF;
+
+    /** Bluestein: FFT of the conjugate chirp, scaled by 1 / m */
+    private final double[] filterReD, filterImD;
+    private final float[] filterReF, filterImF;
+
+    /** Bluestein: forward power of two plan of the convolution size */
+    private final FftPlan inner;
+
+    /** Per thread scratch buffers */
+    private final ThreadLocal<Workspace> workspace;
+
+    /**
+     * Create a plan.  Prefer {@link #of(int, boolean, Precision)} which
+     * shares plans through {@link FftPlanCache}.
+     * @param size Number of complex points
+     * @param inverse If true, use the positive exponent (no 1/n scaling)
+     * @param precision Precision of the tables and kernels
+     */
+    public FftPlan(int size, boolean inverse, Precision precision) {
+        // ---------------------  error checking  ---------------------------
+        if (size < 1)
+            throw new IllegalArgumentException("FFT size should be >= 1");
+        if (precision == null)
+            throw new IllegalArgumentException("precision should be set");
+
+        this.size = size;
+        this.inverse = inverse;
+        this.precision = precision;
+        double sgn = inverse ? 1.0 : -1.0;
+        double[] cos = null, sin = null, filterRe = null, filterIm = null;
+        int[] rev = null, radices = null;
+        FftPlan innerPlan = null;
+
+        // --------------------  build the tables  --------------------------
+        if (size == 1) {
+            kind = KIND_TRIVIAL;
+        }
+        else if (FFT.isPowerOfTwo(size)) {
+            kind = KIND_RADIX2;
+            int log2n = Integer.numberOfTrailingZeros(size);
+            rev = new int[size];
+            for (int ind0 = 0; ind0 < size; ind0++)
+                rev[ind0] = Integer.reverse(ind0) >>> (32 - log2n);
+
+            cos = new double[size - 1];
+            sin = new double[size - 1];
+            for (int len = 2; len <= size; len *= 2) {
+                int offset = len / 2 - 1;
+                for (int k = 0; k < len / 2; k++) {
+                    double ang = 2 * Math.PI * k / len;
+                    cos[offset + k] = Math.cos(ang);
+                    sin[offset + k] = sgn * Math.sin(ang);
+                }
+            }
+        }
+        else if (FFT.isSmooth(size)) {
+            kind = KIND_MIXED;
+            radices = FFT.factor(size);
+            cos = new double[size];
+            sin = new double[size];
+            for (int k = 0; k < size; k++) {
+                double ang = 2 * Math.PI * k / size;
+                cos[k] = Math.cos(ang);
+                sin[k] = sgn * Math.sin(ang);
+            }
+        }
+        else {
+            kind = KIND_BLUESTEIN;
+            int m = FFT.nextPowerOfTwo(2 * size - 1);
+            innerPlan = FftPlanCache.getShared().get(m, false, precision);
+
+            // chirp w[k] = exp(sgn * j * pi * k^2 / n), k^2 reduced mod 2n
+            cos = new double[size];
+            sin = new double[size];
+            for (int k = 0; k < size; k++) {
+                long k2 = ((long) k * k) % (2L * size);
+                double ang = Math.PI * k2 / size;
+                cos[k] = Math.cos(ang);
+                sin[k] = sgn * Math.sin(ang);
+            }
+
+            // filter = FFT(conj(w)) / m, wrapped symmetric about zero
+            filterRe = new double[m];
+            filterIm = new double[m];
+            filterRe[0] = cos[0] / m;
+            filterIm[0] = -sin[0] / m;
+            for (int k = 1; k < size; k++) {
+                filterRe[k] = filterRe[m - k] = cos[k] / m;
+                filterIm[k] = filterIm[m - k] = -sin[k] / m;
+            }
+            FftPlan tablePlan = precision == Precision.DOUBLE ? innerPlan
+                : FftPlanCache.getShared().get(m, false, Precision.DOUBLE);
+            tablePlan.executeSplit(filterRe, filterIm);
+        }
+
+        bitReverse = rev;
+        factors = radices;
+        inner = innerPlan;
+
+        // ---------------  store tables in the plan precision  -------------
+        if (precision == Precision.DOUBLE) {
+            cosD = cos; sinD = sin;
+            filterReD = filterRe; filterImD = filterIm;
+            cosF = sinF = filterReF = filterImF = null;
+        }
+        else {
+            cosF = toFloat(cos); sinF = toFloat(sin);
+            filterReF = toFloat(filterRe); filterImF = toFloat(filterIm);
+            cosD = sinD = filterReD = filterImD = null;
+        }
+
+        final int m = innerPlan == null ? 0 : innerPlan.size;
+        workspace = ThreadLocal.withInitial(
+            () -> new Workspace(size, m, precision));
+    }
+
+    /**
+     * Get a shared plan from the default {@link FftPlanCache}.
+     * @param size Number of complex points
+     * @param inverse If true, use the positive exponent (no 1/n scaling)
+     * @param precision Precision of the tables and kernels
+     * @return The cached plan
+     */
+    public static FftPlan of(int size, boolean inverse, Precision precision) {
+        return FftPlanCache.getShared().get(size, inverse, precision);
+    }
+
+    /**
+     * Switch between the Vector API and the scalar butterflies.  The scalar
+     * kernel is the default; results agree to rounding.
+     * @param enabled True to use the Vector API butterflies
+     */
+    public static void setVectorEnabled(boolean enabled) {
+        vectorEnabled = enabled;
+    }
+
+    /**
+     * Check if the Vector API butterflies are used
+     * @return True if SIMD butterflies are enabled
+     */
+    public static boolean isVectorEnabled() { return vectorEnabled; }
+
+    // ======================================================================
+    // -------------------------  get methods  ------------------------------
+    // ======================================================================
+    /**
+     * Get the number of complex points
+     * @return Size of the transform
+     */
+    public int getSize() { return size; }
+
+    /**
+     * Get the direction of the transform
+     * @return True if this is an (unscaled) inverse transform
+     */
+    public boolean isInverse() { return inverse; }
+
+    /**
+     * Get the precision of the plan
+     * @return Precision of the tables and kernels
+     */
+    public Precision getPrecision() { return precision; }
+
+    // ======================================================================
+    // --------------------------  execute  ---------------------------------
+    // ======================================================================
+    /**
+     * Transform complex interleaved floats.  Input and output may be the
+     * same array.
+     * @param in Complex interleaved input
+     * @param inOff Offset (in floats) of the first input sample
+     * @param out Complex interleaved output
+     * @param outOff Offset (in floats) of the first output sample
+     */
+    public void execute(float[] in, int inOff, float[] out, int outOff) {
+        checkPrecision(Precision.FLOAT);
+        Workspace ws = workspace.get();
+        float[] re = ws.reF, im = ws.imF;
+        for (int ind0 = 0; ind0 < size; ind0++) {
+            re[ind0] = in[inOff + 2 * ind0];
+            im[ind0] = in[inOff + 2 * ind0 + 1];
+        }
+        run(re, im, ws);
+        for (int ind0 = 0; ind0 < size; ind0++) {
+            out[outOff + 2 * ind0] = re[ind0];
+            out[outOff + 2 * ind0 + 1] = im[ind0];
+        }
+    }
+
+    /**
+     * Transform complex interleaved doubles.  Input and output may be the
+     * same array.
+     * @param in Complex interleaved input
+     * @param inOff Offset (in doubles) of the first input sample
+     * @param out Complex interleaved output
+     * @param outOff Offset (in doubles) of the first output sample
+     */
+    public void execute(double[] in, int inOff, double[] out, int outOff) {
+        checkPrecision(Precision.DOUBLE);
+        Workspace ws = workspace.get();
+        double[] re = ws.reD, im = ws.imD;
+        for (int ind0 = 0; ind0 < size; ind0++) {
+            re[ind0] = in[inOff + 2 * ind0];
+            im[ind0] = in[inOff + 2 * ind0 + 1];
+        }
+        run(re, im, ws);
+        for (int ind0 = 0; ind0 < size; ind0++) {
+            out[outOff + 2 * ind0] = re[ind0];
+            out[outOff + 2 * ind0 + 1] = im[ind0];
+        }
+    }
+
+    /**
+     * Transform split real/imaginary floats in place.
+     * Only the first size elements of each array are used.
+     * @param re Real part
+     * @param im Imaginary part
+     */
+    public void executeSplit(float[] re, float[] im) {
+        checkPrecision(Precision.FLOAT);
+        run(re, im, workspace.get());
+    }
+
+    /**
+     * Transform split real/imaginary doubles in place.
+     * Only the first size elements of each array are used.
+     * @param re Real part
+     * @param im Imaginary part
+     */
+    public void executeSplit(double[] re, double[] im) {
+        checkPrecision(Precision.DOUBLE);
+        run(re, im, workspace.get());
+    }
+
+    /** Verify the caller matches the plan precision */
+    private void checkPrecision(Precision expected) {
+        if (precision != expected)
+            throw new IllegalStateException(
+                "Plan precision is " + precision + ", not " + expected);
+    }
+
+    // ======================================================================
+    // ----------------------  double precision  ----------------------------
+    // ======================================================================
+    /** Dispatch to the selected kernel */
+    private void run(double[] re, double[] im, Workspace ws) {
+        double sgn = inverse ? 1.0 : -1.0;
+        switch (kind) {
+            case KIND_RADIX2:
+                radix2(re, im, size, bitReverse, cosD, sinD, sgn);
+                break;
+            case KIND_MIXED:
+                stockham(re, im, ws.tmpReD, ws.tmpImD, size, factors,
+                    cosD, sinD, sgn);
+                break;
+            case KIND_BLUESTEIN:
+                bluestein(re, im, ws.bluReD, ws.bluImD);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /** Bluestein chirp-z transform via the inner power of two plan */
+    private void bluestein(double[] re, double[] im, double[] ar, double[] ai) {
+        int m = inner.size;
+
+        // ---------------  a[k] = x[k] * w[k] (zero padded)  --------------
+        for (int k = 0; k < size; k++) {
+            ar[k] = re[k] * cosD[k] - im[k] * sinD[k];
+            ai[k] = re[k] * sinD[k] + im[k] * cosD[k];
+        }
+        java.util.Arrays.fill(ar, size, m, 0.0);
+        java.util.Arrays.fill(ai, size, m, 0.0);
+
+        // ---------  circular convolution, ifft(X) = conj(fft(conj(X)))  ----
+        inner.executeSplit(ar, ai);
+        for (int k = 0; k < m; k++) {
+            double tr = ar[k] * filterReD[k] - ai[k] * filterImD[k];
+            ai[k] = -(ar[k] * filterImD[k] + ai[k] * filterReD[k]);
+            ar[k] = tr;
+        }
+        inner.executeSplit(ar, ai);
+
+        // -------------------  X[k] = w[k] * conv[k]  ---------------------
+        for (int k = 0; k < size; k++) {
+            double cr = ar[k], ci = -ai[k];
+            re[k] = cr * cosD[k] - ci * sinD[k];
+            im[k] = cr * sinD[k] + ci * cosD[k];
+        }
+    }
+
+    /**
+     * Iterative radix-2/4 decimation in time.  The input is bit-reversed
+     * and pairs of radix-2 stages are merged into radix-4 butterflies.
+     */
+    private static void radix2(double[] re, double[] im, int n, int[] rev,
+            double[] cos, double[] sin, double sgn) {
+        double tr, ti;
+
+        // ---------------------  bit reversal  -----------------------------
+        for (int ind0 = 0; ind0 < n; ind0++) {
+            int ind1 = rev[ind0];
+            if (ind1 > ind0) {
+                tr = re[ind0]; re[ind0] = re[ind1]; re[ind1] = tr;
+                ti = im[ind0]; im[ind0] = im[ind1]; im[ind1] = ti;
+            }
+        }
+
+        // -------------  leading radix-2 stage for odd log2(n)  ------------
+        int span = 1;
+        if ((Integer.numberOfTrailingZeros(n) & 1) == 1) {
+            for (int ind0 = 0; ind0 < n; ind0 += 2) {
+                tr = re[ind0 + 1]; ti = im[ind0 + 1];
+                re[ind0 + 1] = re[ind0] - tr; im[ind0 + 1] = im[ind0] - ti;
+                re[ind0] += tr; im[ind0] += ti;
+            }
+            span = 2;
+        }
+
+        // ----------------------  radix-4 stages  --------------------------
+        for (; 4 * span <= n; span *= 4) {
+            int kStart = 0;
+            if (vectorEnabled && span >= FftVectorKernels.DOUBLE_LANES)
+                kStart = FftVectorKernels.radix4Stage(re, im, n, span,
+                    cos, sin, sgn);
+            radix4Stage(re, im, n, span, cos, sin, sgn, kStart);
+        }
+    }
+
+    /**
+     * Merged pair of radix-2 stages (span to 4 * span), scalar butterflies
+     * for k &gt;= kStart.
+     */
+    private static void radix4Stage(double[] re, double[] im, int n, int span,
+            double[] cos, double[] sin, double sgn, int kStart) {
+        int off1 = span - 1;
+        int off2 = 2 * span - 1;
+        double tr, ti;
+        for (int block = 0; block < n; block += 4 * span) {
+            for (int k = kStart; k < span; k++) {
+                double w1r = cos[off1 + k], w1i = sin[off1 + k];
+                double w2r = cos[off2 + k], w2i = sin[off2 + k];
+                int i0 = block + k, i1 = i0 + span;
+                int i2 = i1 + span, i3 = i2 + span;
+
+                // first radix-2 stage (twiddle W_2s^k)
+                double br = re[i1] * w1r - im[i1] * w1i;
+                double bi = re[i1] * w1i + im[i1] * w1r;
+                double dr = re[i3] * w1r - im[i3] * w1i;
+                double di = re[i3] * w1i + im[i3] * w1r;
+                double a1r = re[i0] + br, a1i = im[i0] + bi;
+                double b1r = re[i0] - br, b1i = im[i0] - bi;
+                double c1r = re[i2] + dr, c1i = im[i2] + di;
+                double d1r = re[i2] - dr, d1i = im[i2] - di;
+
+                // second radix-2 stage (twiddle W_4s^k and W_4s^(k+s))
+                double c2r = c1r * w2r - c1i * w2i;
+                double c2i = c1r * w2i + c1i * w2r;
+                tr = d1r * w2r - d1i * w2i;
+                ti = d1r * w2i + d1i * w2r;
+                double d2r = -sgn * ti, d2i = sgn * tr;
+
+                re[i0] = a1r + c2r; im[i0] = a1i + c2i;
+                re[i2] = a1r - c2r; im[i2] = a1i - c2i;
+                re[i1] = b1r + d2r; im[i1] = b1i + d2i;
+                re[i3] = b1r - d2r; im[i3] = b1i - d2i;
+            }
+        }
+    }
+
+    /**
+     * Mixed radix (4, 2, 3, 5) Stockham autosort kernel.  Stages ping-pong
+     * between the data and the scratch arrays; output is in natural order.
+     */
+    private static void stockham(double[] re, double[] im,
+            double[] tmpRe, double[] tmpIm, int n, int[] factors,
+            double[] cos, double[] sin, double sgn) {
+        double[] srcRe = re, srcIm = im, dstRe = tmpRe, dstIm = tmpIm;
+        int stride = 1;
+        int remain = n;
+        for (int radix : factors) {
+            stockhamStage(srcRe, srcIm, dstRe, dstIm, cos, sin,
+                remain, stride, radix, sgn);
+            double[] tmp = srcRe; srcRe = dstRe; dstRe = tmp;
+            tmp = srcIm; srcIm = dstIm; dstIm = tmp;
+            remain /= radix;
+            stride *= radix;
+        }
+
+        if (srcRe != re) {
+            System.arraycopy(srcRe, 0, re, 0, n);
+            System.arraycopy(srcIm, 0, im, 0, n);
+        }
+    }
+
+    /**
+     * Single Stockham decimation in frequency stage.
+     * @param remain Length of the sub-transforms at this stage
+     * @param stride Number of interleaved sub-transforms
+     */
+    private static void stockhamStage(double[] xr, double[] xi,
+            double[] yr, double[] yi, double[] cos, double[] sin,
+            int remain, int stride, int radix, double sgn) {
+        int m = remain / radix;
+        double c3 = -0.5, s3 = sgn * Math.sqrt(0.75);
+        double c51 = Math.cos(0.4 * Math.PI), c52 = Math.cos(0.8 * Math.PI);
+        double s51 = sgn * Math.sin(0.4 * Math.PI);
+        double s52 = sgn * Math.sin(0.8 * Math.PI);
+        double a0r, a0i, a1r, a1i, a2r, a2i, a3r = 0, a3i = 0, a4r = 0, a4i = 0;
+
+        for (int p = 0; p < m; p++) {
+            for (int q = 0; q < stride; q++) {
+                // -------------------  gather inputs  ----------------------
+                int in = q + stride * p, inStep = stride * m;
+                a0r = xr[in]; a0i = xi[in];
+                a1r = xr[in + inStep]; a1i = xi[in + inStep];
+                a2r = radix > 2 ? xr[in + 2 * inStep] : 0;
+                a2i = radix > 2 ? xi[in + 2 * inStep] : 0;
+                if (radix > 3) {
+                    a3r = xr[in + 3 * inStep]; a3i = xi[in + 3 * inStep];
+                }
+                if (radix > 4) {
+                    a4r = xr[in + 4 * inStep]; a4i = xi[in + 4 * inStep];
+                }
+
+                // -------------------  small DFT  --------------------------
+                switch (radix) {
+                    case 2: {
+                        double tr = a1r, ti = a1i;
+                        a1r = a0r - tr; a1i = a0i - ti;
+                        a0r += tr; a0i += ti;
+                        break;
+                    }
+                    case 3: {
+                        double tr = a1r + a2r, ti = a1i + a2i;
+                        double dr = s3 * (a1r - a2r), di = s3 * (a1i - a2i);
+                        double br = a0r + c3 * tr, bi = a0i + c3 * ti;
+                        a0r += tr; a0i += ti;
+                        a1r = br - di; a1i = bi + dr;
+                        a2r = br + di; a2i = bi - dr;
+                        break;
+                    }
+                    case 4: {
+                        double s0r = a0r + a2r, s0i = a0i + a2i;
+                        double d0r = a0r - a2r, d0i = a0i - a2i;
+                        double s1r = a1r + a3r, s1i = a1i + a3i;
+                        // multiply (a1 - a3) by (sgn * j)
+                        double er = -sgn * (a1i - a3i), ei = sgn * (a1r - a3r);
+                        a0r = s0r + s1r; a0i = s0i + s1i;
+                        a1r = d0r + er; a1i = d0i + ei;
+                        a2r = s0r - s1r; a2i = s0i - s1i;
+                        a3r = d0r - er; a3i = d0i - ei;
+                        break;
+                    }
+                    case 5: {
+                        double t1r = a1r + a4r, t1i = a1i + a4i;
+                        double t2r = a2r + a3r, t2i = a2i + a3i;
+                        double t3r = a1r - a4r, t3i = a1i - a4i;
+                        double t4r = a2r - a3r, t4i = a2i - a3i;
+                        double b1r = a0r + c51 * t1r + c52 * t2r;
+                        double b1i = a0i + c51 * t1i + c52 * t2i;
+                        double b2r = a0r + c52 * t1r + c51 * t2r;
+                        double b2i = a0i + c52 * t1i + c51 * t2i;
+                        // e1 = j(s1 t3 + s2 t4), e2 = j(s2 t3 - s1 t4)
+                        double e1r = -(s51 * t3i + s52 * t4i);
+                        double e1i = s51 * t3r + s52 * t4r;
+                        double e2r = -(s52 * t3i - s51 * t4i);
+                        double e2i = s52 * t3r - s51 * t4r;
+                        a0r += t1r + t2r; a0i += t1i + t2i;
+                        a1r = b1r + e1r; a1i = b1i + e1i;
+                        a4r = b1r - e1r; a4i = b1i - e1i;
+                        a2r = b2r + e2r; a2i = b2i + e2i;
+                        a3r = b2r - e2r; a3i = b2i - e2i;
+                        break;
+                    }
+                    default:
+                        throw new IllegalStateException(
+                            "Unsupported radix: " + radix);
+                }
+
+                // ---------------  twiddle and scatter  --------------------
+                int out = q + stride * radix * p, tw = p * stride;
+                yr[out] = a0r; yi[out] = a0i;
+                yr[out + stride] = a1r * cos[tw] - a1i * sin[tw];
+                yi[out + stride] = a1r * sin[tw] + a1i * cos[tw];
+                if (radix > 2) {
+                    yr[out + 2 * stride] = a2r * cos[2 * tw] - a2i * sin[2 * tw];
+                    yi[out + 2 * stride] = a2r * sin[2 * tw] + a2i * cos[2 * tw];
+                }
+                if (radix > 3) {
+                    yr[out + 3 * stride] = a3r * cos[3 * tw] - a3i * sin[3 * tw];
+                    yi[out + 3 * stride] = a3r * sin[3 * tw] + a3i * cos[3 * tw];
+                }
+                if (radix > 4) {
+                    yr[out + 4 * stride] = a4r * cos[4 * tw] - a4i * sin[4 * tw];
+                    yi[out + 4 * stride] = a4r * sin[4 * tw] + a4i * cos[4 * tw];
+                }
+            }
+        }
+    }
+
+    // ======================================================================
+    // ----------------------  float precision  -----------------------------
+    // ======================================================================
+    /** Dispatch to the selected kernel */
+    private void run(float[] re, float[] im, Workspace ws) {
+        float sgn = inverse ? 1.0f : -1.0f;
+        switch (kind) {
+            case KIND_RADIX2:
+                radix2(re, im, size, bitReverse, cosF, sinF, sgn);
+                break;
+            case KIND_MIXED:
+                stockham(re, im, ws.tmpReF, ws.tmpImF, size, factors,
+                    cosF, sinF, sgn);
+                break;
+            case KIND_BLUESTEIN:
+                bluestein(re, im, ws.bluReF, ws.bluImF);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /** Bluestein chirp-z transform via the inner power of two plan */
+    private void bluestein(float[] re, float[] im, float[] ar, float[] ai) {
+        int m = inner.size;
+
+        // ---------------  a[k] = x[k] * w[k] (zero padded)  --------------
+        for (int k = 0; k < size; k++) {
+            ar[k] = re[k] * cosF[k] - im[k] * sinF[k];
+            ai[k] = re[k] * sinF[k] + im[k] * cosF[k];
+        }
+        java.util.Arrays.fill(ar, size, m, 0.0f);
+        java.util.Arrays.fill(ai, size, m, 0.0f);
+
+        // ---------  circular convolution, ifft(X) = conj(fft(conj(X)))  ----
+        inner.executeSplit(ar, ai);
+        for (int k = 0; k < m; k++) {
+            float tr = ar[k] * filterReF[k] - ai[k] * filterImF[k];
+            ai[k] = -(ar[k] * filterImF[k] + ai[k] * filterReF[k]);
+            ar[k] = tr;
+        }
+        inner.executeSplit(ar, ai);
+
+        // -------------------  X[k] = w[k] * conv[k]  ---------------------
+        for (int k = 0; k < size; k++) {
+            float cr = ar[k], ci = -ai[k];
+            re[k] = cr * cosF[k] - ci * sinF[k];
+            im[k] = cr * sinF[k] + ci * cosF[k];
+        }
+    }
+
+    /**
+     * Iterative radix-2/4 decimation in time.  The input is bit-reversed
+     * and pairs of radix-2 stages are merged into radix-4 butterflies.
+     */
+    private static void radix2(float[] re, float[] im, int n, int[] rev,
+            float[] cos, float[] sin, float sgn) {
+        float tr, ti;
+
+        // ---------------------  bit reversal  -----------------------------
+        for (int ind0 = 0; ind0 < n; ind0++) {
+            int ind1 = rev[ind0];
+            if (ind1 > ind0) {
+                tr = re[ind0]; re[ind0] = re[ind1]; re[ind1] = tr;
+                ti = im[ind0]; im[ind0] = im[ind1]; im[ind1] = ti;
+            }
+        }
+
+        // -------------  leading radix-2 stage for odd log2(n)  ------------
+        int span = 1;
+        if ((Integer.numberOfTrailingZeros(n) & 1) == 1) {
+            for (int ind0 = 0; ind0 < n; ind0 += 2) {
+                tr = re[ind0 + 1]; ti = im[ind0 + 1];
+                re[ind0 + 1] = re[ind0] - tr; im[ind0 + 1] = im[ind0] - ti;
+                re[ind0] += tr; im[ind0] += ti;
+            }
+            span = 2;
+        }
+
+        // ----------------------  radix-4 stages  --------------------------
+        for (; 4 * span <= n; span *= 4) {
+            int kStart = 0;
+            if (vectorEnabled && span >= FftVectorKernels.FLOAT_LANES)
+                kStart = FftVectorKernels.radix4Stage(re, im, n, span,
+                    cos, sin, sgn);
+            radix4Stage(re, im, n, span, cos, sin, sgn, kStart);
+        }
+    }
+
+    /**
+     * Merged pair of radix-2 stages (span to 4 * span), scalar butterflies
+     * for k &gt;= kStart.
+     */
+    private static void radix4Stage(float[] re, float[] im, int n, int span,
+            float[] cos, float[] sin, float sgn, int kStart) {
+        int off1 = span - 1;
+        int off2 = 2 * span - 1;
+        float tr, ti;
+        for (int block = 0; block < n; block += 4 * span) {
+            for (int k = kStart; k < span; k++) {
+                float w1r = cos[off1 + k], w1i = sin[off1 + k];
+                float w2r = cos[off2 + k], w2i = sin[off2 + k];
+                int i0 = block + k, i1 = i0 + span;
+                int i2 = i1 + span, i3 = i2 + span;
+
+                // first radix-2 stage (twiddle W_2s^k)
+                float br = re[i1] * w1r - im[i1] * w1i;
+                float bi = re[i1] * w1i + im[i1] * w1r;
+                float dr = re[i3] * w1r - im[i3] * w1i;
+                float di = re[i3] * w1i + im[i3] * w1r;
+                float a1r = re[i0] + br, a1i = im[i0] + bi;
+                float b1r = re[i0] - br, b1i = im[i0] - bi;
+                float c1r = re[i2] + dr, c1i = im[i2] + di;
+                float d1r = re[i2] - dr, d1i = im[i2] - di;
+
+                // second radix-2 stage (twiddle W_4s^k and W_4s^(k+s))
+                float c2r = c1r * w2r - c1i * w2i;
+                float c2i = c1r * w2i + c1i * w2r;
+                tr = d1r * w2r - d1i * w2i;
+                ti = d1r * w2i + d1i * w2r;
+                float d2r = -sgn * ti, d2i = sgn * tr;
+
+                re[i0] = a1r + c2r; im[i0] = a1i + c2i;
+                re[i2] = a1r - c2r; im[i2] = a1i - c2i;
+                re[i1] = b1r + d2r; im[i1] = b1i + d2i;
+                re[i3] = b1r - d2r; im[i3] = b1i - d2i;
+            }
+        }
+    }
+
+    /**
+     * Mixed radix (4, 2, 3, 5) Stockham autosort kernel.  Stages ping-pong
+     * between the data and the scratch arrays; output is in natural order.
+     */
+    private static void stockham(float[] re, float[] im,
+            float[] tmpRe, float[] tmpIm, int n, int[] factors,
+            float[] cos, float[] sin, float sgn) {
+        float[] srcRe = re, srcIm = im, dstRe = tmpRe, dstIm = tmpIm;
+        int stride = 1;
+        int remain = n;
+        for (int radix : factors) {
+            stockhamStage(srcRe, srcIm, dstRe, dstIm, cos, sin,
+                remain, stride, radix, sgn);
+            float[] tmp = srcRe; srcRe = dstRe; dstRe = tmp;
+            tmp = srcIm; srcIm = dstIm; dstIm = tmp;
+            remain /= radix;
+            stride *= radix;
+        }
+
+        if (srcRe != re) {
+            System.arraycopy(srcRe, 0, re, 0, n);
+            System.arraycopy(srcIm, 0, im, 0, n);
+        }
+    }
+
+    /**
+     * Single Stockham decimation in frequency stage.
+     * @param remain Length of the sub-transforms at this stage
+     * @param stride Number of interleaved sub-transforms
+     */
+    private static void stockhamStage(float[] xr, float[] xi,
+            float[] yr, float[] yi, float[] cos, float[] sin,
+            int remain, int stride, int radix, float sgn) {
+        int m = remain / radix;
+        float c3 = -0.5f, s3 = sgn * (float) Math.sqrt(0.75);
+        float c51 = (float) Math.cos(0.4 * Math.PI), c52 = (float) Math.cos(0.8 * Math.PI);
+        float s51 = sgn * (float) Math.sin(0.4 * Math.PI);
+        float s52 = sgn * (float) Math.sin(0.8 * Math.PI);
+        float a0r, a0i, a1r, a1i, a2r, a2i, a3r = 0, a3i = 0, a4r = 0, a4i = 0;
+
+        for (int p = 0; p < m; p++) {
+            for (int q = 0; q < stride; q++) {
+                // -------------------  gather inputs  ----------------------
+                int in = q + stride * p, inStep = stride * m;
+                a0r = xr[in]; a0i = xi[in];
+                a1r = xr[in + inStep]; a1i = xi[in + inStep];
+                a2r = radix > 2 ? xr[in + 2 * inStep] : 0;
+                a2i = radix > 2 ? xi[in + 2 * inStep] : 0;
+                if (radix > 3) {
+                    a3r = xr[in + 3 * inStep]; a3i = xi[in + 3 * inStep];
+                }
+                if (radix > 4) {
+                    a4r = xr[in + 4 * inStep]; a4i = xi[in + 4 * inStep];
+                }
+
+                // -------------------  small DFT  --------------------------
+                switch (radix) {
+                    case 2: {
+                        float tr = a1r, ti = a1i;
+                        a1r = a0r - tr; a1i = a0i - ti;
+                        a0r += tr; a0i += ti;
+                        break;
+                    }
+                    case 3: {
+                        float tr = a1r + a2r, ti = a1i + a2i;
+                        float dr = s3 * (a1r - a2r), di = s3 * (a1i - a2i);
+                        float br = a0r + c3 * tr, bi = a0i + c3 * ti;
+                        a0r += tr; a0i += ti;
+                        a1r = br - di; a1i = bi + dr;
+                        a2r = br + di; a2i = bi - dr;
+                        break;
+                    }
+                    case 4: {
+                        float s0r = a0r + a2r, s0i = a0i + a2i;
+                        float d0r = a0r - a2r, d0i = a0i - a2i;
+                        float s1r = a1r + a3r, s1i = a1i + a3i;
+                        // multiply (a1 - a3) by (sgn * j)
+                        float er = -sgn * (a1i - a3i), ei = sgn * (a1r - a3r);
+                        a0r = s0r + s1r; a0i = s0i + s1i;
+                        a1r = d0r + er; a1i = d0i + ei;
+                        a2r = s0r - s1r; a2i = s0i - s1i;
+                        a3r = d0r - er; a3i = d0i - ei;
+                        break;
+                    }
+                    case 5: {
+                        float t1r = a1r + a4r, t1i = a1i + a4i;
+                        float t2r = a2r + a3r, t2i = a2i + a3i;
+                        float t3r = a1r - a4r, t3i = a1i - a4i;
+                        float t4r = a2r - a3r, t4i = a2i - a3i;
+                        float b1r = a0r + c51 * t1r + c52 * t2r;
+                        float b1i = a0i + c51 * t1i + c52 * t2i;
+                        float b2r = a0r + c52 * t1r + c51 * t2r;
+                        float b2i = a0i + c52 * t1i + c51 * t2i;
+                        // e1 = j(s1 t3 + s2 t4), e2 = j(s2 t3 - s1 t4)
+                        float e1r = -(s51 * t3i + s52 * t4i);
+                        float e1i = s51 * t3r + s52 * t4r;
+                        float e2r = -(s52 * t3i - s51 * t4i);
+                        float e2i = s52 * t3r - s51 * t4r;
+                        a0r += t1r + t2r; a0i += t1i + t2i;
+                        a1r = b1r + e1r; a1i = b1i + e1i;
+                        a4r = b1r - e1r; a4i = b1i - e1i;
+                        a2r = b2r + e2r; a2i = b2i + e2i;
+                        a3r = b2r - e2r; a3i = b2i - e2i;
+                        break;
+                    }
+                    default:
+                        throw new IllegalStateException(
+                            "Unsupported radix: " + radix);
+                }
+
+                // ---------------  twiddle and scatter  --------------------
+                int out = q + stride * radix * p, tw = p * stride;
+                yr[out] = a0r; yi[out] = a0i;
+                yr[out + stride] = a1r * cos[tw] - a1i * sin[tw];
+                yi[out + stride] = a1r * sin[tw] + a1i * cos[tw];
+                if (radix > 2) {
+                    yr[out + 2 * stride] = a2r * cos[2 * tw] - a2i * sin[2 * tw];
+                    yi[out + 2 * stride] = a2r * sin[2 * tw] + a2i * cos[2 * tw];
+                }
+                if (radix > 3) {
+                    yr[out + 3 * stride] = a3r * cos[3 * tw] - a3i * sin[3 * tw];
+                    yi[out + 3 * stride] = a3r * sin[3 * tw] + a3i * cos[3 * tw];
+                }
+                if (radix > 4) {
+                    yr[out + 4 * stride] = a4r * cos[4 * tw] - a4i * sin[4 * tw];
+                    yi[out + 4 * stride] = a4r * sin[4 * tw] + a4i * cos[4 * tw];
+                }
+            }
+        }
+    }
+
+    // ======================================================================
+    // --------------------------  helpers  ---------------------------------
+    // ======================================================================
+    /** Convert a table to float (null safe) */
+    private static float[] toFloat(double[] values) {
+        if (values == null)
+            return null;
+        float[] out = new float[values.length];
+        for (int ind0 = 0; ind0 < values.length; ind0++)
+            out[ind0] = (float) values[ind0];
+        return out;
+    }
+
+    /** Per thread scratch buffers of a plan */
+    private static final class Workspace {
+        final double[] reD, imD, tmpReD, tmpImD, bluReD, bluImD;
+        final float[] reF, imF, tmpReF, tmpImF, bluReF, bluImF;
+
+        Workspace(int size, int bluesteinSize, Precision precision) {
+            boolean isDouble = precision == Precision.DOUBLE;
+            int n = isDouble ? size : 0;
+            int m = isDouble ? bluesteinSize : 0;
+            reD = new double[n]; imD = new double[n];
+            tmpReD = new double[n]; tmpImD = new double[n];
+            bluReD = new double[m]; bluImD = new double[m];
+
+            n = isDouble ? 0 : size;
+            m = isDouble ? 0 : bluesteinSize;
+            reF = new float[n]; imF = new float[n];
+            tmpReF = new float[n]; tmpImF = new float[n];
+            bluReF = new float[m]; bluImF = new float[m];
+        }
+    }
+}
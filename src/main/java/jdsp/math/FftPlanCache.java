@@ -0,0 +1,144 @@
+/**
+ * Bounded cache of FFT plans.
+ *
+ * @author Keith Chow
+ */
+package net.kcundercover.jdsp.math;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Thread-safe, least recently used cache of {@link FftPlan} keyed by
+ * (size, direction, precision), and of {@link RealFftPlan} keyed by
+ * (size, precision).  Plans are built outside of the lock so a
+ * slow plan does not block lookups of other sizes.
+ */
+public class FftPlanCache {
+    /** Default number of plans kept by the shared cache */
+    public final static int DEFAULT_CAPACITY = 64;
+
+    /** Cache used by {@link FftPlan#of} and {@link FFT} */
+    private static final FftPlanCache SHARED = new FftPlanCache(DEFAULT_CAPACITY);
+
+    /** Maximum number of plans */
+    private int capacity;
+
+    /** Plans in access order (eldest first) */
+    private final LinkedHashMap<Long, Object> plans;
+
+    /**
+     * Constructor
+     * @param capacity Maximum number of plans to keep
+     */
+    public FftPlanCache(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity should be >= 1");
+        this.capacity = capacity;
+        plans = new LinkedHashMap<Long, Object>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Object> eldest) {
+                return size() > FftPlanCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Get the cache shared across the library
+     * @return The shared cache
+     */
+    public static FftPlanCache getShared() { return SHARED; }
+
+    /**
+     * Get a plan, building it on a miss.
+     * @param size Number of complex points
+     * @param inverse If true, use the positive exponent (no 1/n scaling)
+     * @param precision Precision of the tables and kernels
+     * @return The cached plan
+     */
+    public FftPlan get(int size, boolean inverse, FftPlan.Precision precision) {
+        Long key = key(size, inverse, precision, false);
+        synchronized (plans) {
+            Object plan = plans.get(key);
+            if (plan != null)
+                return (FftPlan) plan;
+        }
+
+        // build outside of the lock, first plan stored wins
+        FftPlan plan = new FftPlan(size, inverse, precision);
+        synchronized (plans) {
+            Object existing = plans.putIfAbsent(key, plan);
+            return existing == null ? plan : (FftPlan) existing;
+        }
+    }
+
+    /**
+     * Get a real input plan, building it on a miss.
+     * @param size Number of real points
+     * @param precision Precision of the tables and kernels
+     * @return The cached plan
+     */
+    public RealFftPlan getReal(int size, FftPlan.Precision precision) {
+        Long key = key(size, false, precision, true);
+        synchronized (plans) {
+            Object plan = plans.get(key);
+            if (plan != null)
+                return (RealFftPlan) plan;
+        }
+
+        RealFftPlan plan = new RealFftPlan(size, precision);
+        synchronized (plans) {
+            Object existing = plans.putIfAbsent(key, plan);
+            return existing == null ? plan : (RealFftPlan) existing;
+        }
+    }
+
+    /**
+     * Set the maximum number of plans.  Extra plans are evicted on the
+     * next insertion.
+     * @param capacity Maximum number of plans to keep
+     */
+    public void setCapacity(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity should be >= 1");
+        synchronized (plans) {
+            this.capacity = capacity;
+        }
+    }
+
+    /**
+     * Get the maximum number of plans
+     * @return Capacity of the cache
+     */
+    public int getCapacity() {
+        synchronized (plans) {
+            return capacity;
+        }
+    }
+
+    /**
+     * Get the number of cached plans
+     * @return Number of plans currently held
+     */
+    public int size() {
+        synchronized (plans) {
+            return plans.size();
+        }
+    }
+
+    /** Remove all plans */
+    public void clear() {
+        synchronized (plans) {
+            plans.clear();
+        }
+    }
+
+    /** Pack the plan parameters into a single key */
+    private static Long key(int size, boolean inverse,
+            FftPlan.Precision precision, boolean real) {
+        return ((long) size << 3) | (inverse ? 1L : 0L)
+            | (precision == FftPlan.Precision.DOUBLE ? 2L : 0L)
+            | (real ? 4L : 0L);
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * Vector API butterflies for the FFT.
+ *
+ * @author Keith Chow
+ * @since Jan 2026
+ */
+package net.kcundercover.jdsp.math;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD radix-4 (merged radix-2 pair) stages on split real/imaginary
+ * arrays.  Lanes run across the butterfly index k, whose data and per-stage
+ * twiddles are contiguous.  Callers finish the remaining k with the scalar
+ * kernel.
+ */
+final class FftVectorKernels {
+    private static final VectorSpecies<Double> SPECIES_DOUBLE = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> SPECIES_FLOAT = FloatVector.SPECIES_PREFERRED;
+
+    /** Number of double lanes */
+    static final int DOUBLE_LANES = SPECIES_DOUBLE.length();
+
+    /** Number of float lanes */
+    static final int FLOAT_LANES = SPECIES_FLOAT.length();
+
+    private FftVectorKernels() {}
+
+    /**
+     * Merged radix-2 pair (span to 4 * span) over double lanes.
+     * @return First k left for the scalar tail
+     */
+    static int radix4Stage(double[] re, double[] im, int n, int span,
+            double[] cos, double[] sin, double sgn) {
+        int off1 = span - 1;
+        int off2 = 2 * span - 1;
+        int upper = SPECIES_DOUBLE.loopBound(span);
+        for (int block = 0; block < n; block += 4 * span) {
+            for (int k = 0; k < upper; k += DOUBLE_LANES) {
+                DoubleVector w1r = DoubleVector.fromArray(SPECIES_DOUBLE, cos, off1 + k);
+                DoubleVector w1i = DoubleVector.fromArray(SPECIES_DOUBLE, sin, off1 + k);
+                DoubleVector w2r = DoubleVector.fromArray(SPECIES_DOUBLE, cos, off2 + k);
+                DoubleVector w2i = DoubleVector.fromArray(SPECIES_DOUBLE, sin, off2 + k);
+                int i0 = block + k, i1 = i0 + span;
+                int i2 = i1 + span, i3 = i2 + span;
+
+                DoubleVector x0r = DoubleVector.fromArray(SPECIES_DOUBLE, re, i0);
+                DoubleVector x0i = DoubleVector.fromArray(SPECIES_DOUBLE, im, i0);
+                DoubleVector x1r = DoubleVector.fromArray(SPECIES_DOUBLE, re, i1);
+                DoubleVector x1i = DoubleVector.fromArray(SPECIES_DOUBLE, im, i1);
+                DoubleVector x2r = DoubleVector.fromArray(SPECIES_DOUBLE, re, i2);
+                DoubleVector x2i = DoubleVector.fromArray(SPECIES_DOUBLE, im, i2);
+                DoubleVector x3r = DoubleVector.fromArray(SPECIES_DOUBLE, re, i3);
+                DoubleVector x3i = DoubleVector.fromArray(SPECIES_DOUBLE, im, i3);
+
+                // first radix-2 stage (twiddle W_2s^k)
+                DoubleVector br = x1r.mul(w1r).sub(x1i.mul(w1i));
+                DoubleVector bi = x1r.mul(w1i).add(x1i.mul(w1r));
+                DoubleVector dr = x3r.mul(w1r).sub(x3i.mul(w1i));
+                DoubleVector di = x3r.mul(w1i).add(x3i.mul(w1r));
+                DoubleVector a1r = x0r.add(br), a1i = x0i.add(bi);
+                DoubleVector b1r = x0r.sub(br), b1i = x0i.sub(bi);
+                DoubleVector c1r = x2r.add(dr), c1i = x2i.add(di);
+                DoubleVector d1r = x2r.sub(dr), d1i = x2i.sub(di);
+
+                // second radix-2 stage (twiddle W_4s^k and W_4s^(k+s))
+                DoubleVector c2r = c1r.mul(w2r).sub(c1i.mul(w2i));
+                DoubleVector c2i = c1r.mul(w2i).add(c1i.mul(w2r));
+                DoubleVector tr = d1r.mul(w2r).sub(d1i.mul(w2i));
+                DoubleVector ti = d1r.mul(w2i).add(d1i.mul(w2r));
+                DoubleVector d2r = ti.mul(-sgn), d2i = tr.mul(sgn);
+
+                a1r.add(c2r).intoArray(re, i0); a1i.add(c2i).intoArray(im, i0);
+                a1r.sub(c2r).intoArray(re, i2); a1i.sub(c2i).intoArray(im, i2);
+                b1r.add(d2r).intoArray(re, i1); b1i.add(d2i).intoArray(im, i1);
+                b1r.sub(d2r).intoArray(re, i3); b1i.sub(d2i).intoArray(im, i3);
+            }
+        }
+        return upper;
+    }
+
+    /**
+     * Merged radix-2 pair (span to 4 * span) over float lanes.
+     * @return First k left for the scalar tail
+     */
+    static int radix4Stage(float[] re, float[] im, int n, int span,
+            float[] cos, float[] sin, float sgn) {
+        int off1 = span - 1;
+        int off2 = 2 * span - 1;
+        int upper = SPECIES_FLOAT.loopBound(span);
+        for (int block = 0; block < n; block += 4 * span) {
+            for (int k = 0; k < upper; k += FLOAT_LANES) {
+                FloatVector w1r = FloatVector.fromArray(SPECIES_FLOAT, cos, off1 + k);
+                FloatVector w1i = FloatVector.fromArray(SPECIES_FLOAT, sin, off1 + k);
+                FloatVector w2r = FloatVector.fromArray(SPECIES_FLOAT, cos, off2 + k);
+                FloatVector w2i = FloatVector.fromArray(SPECIES_FLOAT, sin, off2 + k);
+                int i0 = block + k, i1 = i0 + span;
+                int i2 = i1 + span, i3 = i2 + span;
+
+                FloatVector x0r = FloatVector.fromArray(SPECIES_FLOAT, re, i0);
+                FloatVector x0i = FloatVector.fromArray(SPECIES_FLOAT, im, i0);
+                FloatVector x1r = FloatVector.fromArray(SPECIES_FLOAT, re, i1);
+                FloatVector x1i = FloatVector.fromArray(SPECIES_FLOAT, im, i1);
+                FloatVector x2r = FloatVector.fromArray(SPECIES_FLOAT, re, i2);
+                FloatVector x2i = FloatVector.fromArray(SPECIES_FLOAT, im, i2);
+                FloatVector x3r = FloatVector.fromArray(SPECIES_FLOAT, re, i3);
+                FloatVector x3i = FloatVector.fromArray(SPECIES_FLOAT, im, i3);
+
+                // first radix-2 stage (twiddle W_2s^k)
+                FloatVector br = x1r.mul(w1r).sub(x1i.mul(w1i));
+                FloatVector bi = x1r.mul(w1i).add(x1i.mul(w1r));
+                FloatVector dr = x3r.mul(w1r).sub(x3i.mul(w1i));
+                FloatVector di = x3r.mul(w1i).add(x3i.mul(w1r));
+                FloatVector a1r = x0r.add(br), a1i = x0i.add(bi);
+                FloatVector b1r = x0r.sub(br), b1i = x0i.sub(bi);
+                FloatVector c1r = x2r.add(dr), c1i = x2i.add(di);
+                FloatVector d1r = x2r.sub(dr), d1i = x2i.sub(di);
+
+                // second radix-2 stage (twiddle W_4s^k and W_4s^(k+s))
+                FloatVector c2r = c1r.mul(w2r).sub(c1i.mul(w2i));
+                FloatVector c2i = c1r.mul(w2i).add(c1i.mul(w2r));
+                FloatVector tr = d1r.mul(w2r).sub(d1i.mul(w2i));
+                FloatVector ti = d1r.mul(w2i).add(d1i.mul(w2r));
+                FloatVector d2r = ti.mul(-sgn), d2i = tr.mul(sgn);
+
+                a1r.add(c2r).intoArray(re, i0); a1i.add(c2i).intoArray(im, i0);
+                a1r.sub(c2r).intoArray(re, i2); a1i.sub(c2i).intoArray(im, i2);
+                b1r.add(d2r).intoArray(re, i1); b1i.add(d2i).intoArray(im, i1);
+                b1r.sub(d2r).intoArray(re, i3); b1i.sub(d2i).intoArray(im, i3);
+            }
+        }
+        return upper;
+    }
+}
@@ -0,0 +1,332 @@
+/**
+ * Real input FFT plan.
+ *
+ * An even length N real signal is packed into N/2 complex samples
+ * (z[k] = x[2k] + j x[2k+1]), transformed with a half size complex plan
+ * and split back into the N/2+1 non-redundant bins with one twiddle pass.
+ * Odd lengths fall back to a full size complex plan.
+ *
+ * @author Keith Chow
+ */
+package net.kcundercover.jdsp.math;
+
+/** Reusable real-to-complex / complex-to-real FFT plan */
+public final class RealFftPlan {
+    /** Number of real points */
+    private final int size;
+
+    /** Precision of tables and kernels */
+    private final FftPlan.Precision precision;
+
+    /** Forward and inverse complex plans (N/2 points, or N when odd) */
+    private final FftPlan forwardPlan, inversePlan;
+
+    /** Post processing twiddles W_N^k = cos - j sin, k &lt;= N/2 */
+    private final double[] cosD, sinD;
+    private final float[] cosF, sinF;
+
+    /** Per thread split scratch buffers */
+    private final ThreadLocal<Object[]> workspace;
+
+    /**
+     * Create a plan.  Prefer {@link #of(int, FftPlan.Precision)} which
+     * shares plans through {@link FftPlanCache}.
+     * @param size Number of real points
+     * @param precision Precision of the tables and kernels
+     */
+    public RealFftPlan(int size, FftPlan.Precision precision) {
+        // ---------------------  error checking  ---------------------------
+        if (size < 1)
+            throw new IllegalArgumentException("FFT size should be >= 1");
+        if (precision == null)
+            throw new IllegalArgumentException("precision should be set");
+
+        this.size = size;
+        this.precision = precision;
+
+        // -----------------  complex plans and twiddles  -------------------
+        boolean packed = (size & 1) == 0;
+        int numComplex = packed ? size / 2 : size;
+        FftPlanCache cache = FftPlanCache.getShared();
+        forwardPlan = cache.get(numComplex, false, precision);
+        inversePlan = cache.get(numComplex, true, precision);
+
+        double[] cos = null, sin = null;
+        if (packed) {
+            cos = new double[size / 2 + 1];
+            sin = new double[size / 2 + 1];
+            for (int k = 0; k <= size / 2; k++) {
+                double ang = 2 * Math.PI * k / size;
+                cos[k] = Math.cos(ang);
+                sin[k] = Math.sin(ang);
+            }
+        }
+
+        if (precision == FftPlan.Precision.DOUBLE) {
+            cosD = cos; sinD = sin;
+            cosF = sinF = null;
+            workspace = ThreadLocal.withInitial(() -> new Object[] {
+                new double[numComplex], new double[numComplex]});
+        }
+        else {
+            cosF = toFloat(cos); sinF = toFloat(sin);
+            cosD = sinD = null;
+            workspace = ThreadLocal.withInitial(() -> new Object[] {
+                new float[numComplex], new float[numComplex]});
+        }
+    }
+
+    /**
+     * Get a shared plan from the default {@link FftPlanCache}.
+     * @param size Number of real points
+     * @param precision Precision of the tables and kernels
+     * @return The cached plan
+     */
+    public static RealFftPlan of(int size, FftPlan.Precision precision) {
+        return FftPlanCache.getShared().getReal(size, precision);
+    }
+
+    /**
+     * Get the number of real points
+     * @return Size of the transform
+     */
+    public int getSize() { return size; }
+
+    /**
+     * Get the number of complex bins produced by the forward transform
+     * @return N / 2 + 1
+     */
+    public int getNumBins() { return size / 2 + 1; }
+
+    /**
+     * Get the precision of the plan
+     * @return Precision of the tables and kernels
+     */
+    public FftPlan.Precision getPrecision() { return precision; }
+
+    // ======================================================================
+    // ----------------------  double precision  ----------------------------
+    // ======================================================================
+    /**
+     * Forward transform of N real samples into N/2+1 complex bins.
+     * @param in Real input
+     * @param inOff Offset of the first input sample
+     * @param out Complex interleaved output (2 * (N/2+1) values)
+     * @param outOff Offset (in doubles) of the first output bin
+     */
+    public void forward(double[] in, int inOff, double[] out, int outOff) {
+        checkPrecision(FftPlan.Precision.DOUBLE);
+        Object[] ws = workspace.get();
+        double[] zr = (double[]) ws[0], zi = (double[]) ws[1];
+
+        // ------------------  odd length, full complex  --------------------
+        if (cosD == null) {
+            for (int k = 0; k < size; k++) {
+                zr[k] = in[inOff + k];
+                zi[k] = 0;
+            }
+            forwardPlan.executeSplit(zr, zi);
+            for (int k = 0; k <= size / 2; k++) {
+                out[outOff + 2 * k] = zr[k];
+                out[outOff + 2 * k + 1] = zi[k];
+            }
+            return;
+        }
+
+        // ---------------  pack, transform half size  ----------------------
+        int half = size / 2;
+        for (int k = 0; k < half; k++) {
+            zr[k] = in[inOff + 2 * k];
+            zi[k] = in[inOff + 2 * k + 1];
+        }
+        forwardPlan.executeSplit(zr, zi);
+
+        // ------  X[k] = E[k] + W^k O[k], with E, O split from Z  ----------
+        for (int k = 0; k <= half; k++) {
+            int k1 = k == half ? 0 : k;
+            int k2 = k == 0 ? 0 : half - k;
+            double zkr = zr[k1], zki = zi[k1];
+            double zcr = zr[k2], zci = -zi[k2];
+            double er = 0.5 * (zkr + zcr), ei = 0.5 * (zki + zci);
+            // O = (Zk - Zc) / 2j
+            double or = 0.5 * (zki - zci), oi = -0.5 * (zkr - zcr);
+            double wr = cosD[k], wi = -sinD[k];
+            out[outOff + 2 * k] = er + or * wr - oi * wi;
+            out[outOff + 2 * k + 1] = ei + or * wi + oi * wr;
+        }
+    }
+
+    /**
+     * Inverse transform of N/2+1 complex bins into N real samples.
+     * The output is not scaled (it is N times the original signal).
+     * @param in Complex interleaved input (2 * (N/2+1) values)
+     * @param inOff Offset (in doubles) of the first input bin
+     * @param out Real output
+     * @param outOff Offset of the first output sample
+     */
+    public void inverse(double[] in, int inOff, double[] out, int outOff) {
+        checkPrecision(FftPlan.Precision.DOUBLE);
+        Object[] ws = workspace.get();
+        double[] zr = (double[]) ws[0], zi = (double[]) ws[1];
+
+        // --------  odd length, rebuild the hermitian spectrum  ------------
+        if (cosD == null) {
+            for (int k = 0; k <= size / 2; k++) {
+                zr[k] = in[inOff + 2 * k];
+                zi[k] = in[inOff + 2 * k + 1];
+                if (k > 0) {
+                    zr[size - k] = zr[k];
+                    zi[size - k] = -zi[k];
+                }
+            }
+            inversePlan.executeSplit(zr, zi);
+            for (int k = 0; k < size; k++)
+                out[outOff + k] = zr[k];
+            return;
+        }
+
+        // -----------  Z[k] = E[k] + j O[k], O = (Xk - Xc) W^-k  -----------
+        int half = size / 2;
+        for (int k = 0; k < half; k++) {
+            double xkr = in[inOff + 2 * k], xki = in[inOff + 2 * k + 1];
+            double xcr = in[inOff + 2 * (half - k)];
+            double xci = -in[inOff + 2 * (half - k) + 1];
+            double er = xkr + xcr, ei = xki + xci;
+            double dr = xkr - xcr, di = xki - xci;
+            double wr = cosD[k], wi = sinD[k];
+            double or = dr * wr - di * wi, oi = dr * wi + di * wr;
+            zr[k] = er - oi;
+            zi[k] = ei + or;
+        }
+        inversePlan.executeSplit(zr, zi);
+
+        // ---------------------------  unpack  ----------------------------
+        for (int k = 0; k < half; k++) {
+            out[outOff + 2 * k] = zr[k];
+            out[outOff + 2 * k + 1] = zi[k];
+        }
+    }
+
+    // ======================================================================
+    // ----------------------  float precision  -----------------------------
+    // ======================================================================
+    /**
+     * Forward transform of N real samples into N/2+1 complex bins.
+     * @param in Real input
+     * @param inOff Offset of the first input sample
+     * @param out Complex interleaved output (2 * (N/2+1) values)
+     * @param outOff Offset (in floats) of the first output bin
+     */
+    public void forward(float[] in, int inOff, float[] out, int outOff) {
+        checkPrecision(FftPlan.Precision.FLOAT);
+        Object[] ws = workspace.get();
+        float[] zr = (float[]) ws[0], zi = (float[]) ws[1];
+
+        // ------------------  odd length, full complex  --------------------
+        if (cosF == null) {
+            for (int k = 0; k < size; k++) {
+                zr[k] = in[inOff + k];
+                zi[k] = 0;
+            }
+            forwardPlan.executeSplit(zr, zi);
+            for (int k = 0; k <= size / 2; k++) {
+                out[outOff + 2 * k] = zr[k];
+                out[outOff + 2 * k + 1] = zi[k];
+            }
+            return;
+        }
+
+        // ---------------  pack, transform half size  ----------------------
+        int half = size / 2;
+        for (int k = 0; k < half; k++) {
+            zr[k] = in[inOff + 2 * k];
+            zi[k] = in[inOff + 2 * k + 1];
+        }
+        forwardPlan.executeSplit(zr, zi);
+
+        // ------  X[k] = E[k] + W^k O[k], with E, O split from Z  ----------
+        for (int k = 0; k <= half; k++) {
+            int k1 = k == half ? 0 : k;
+            int k2 = k == 0 ? 0 : half - k;
+            float zkr = zr[k1], zki = zi[k1];
+            float zcr = zr[k2], zci = -zi[k2];
+            float er = 0.5f * (zkr + zcr), ei = 0.5f * (zki + zci);
+            // O = (Zk - Zc) / 2j
+            float or = 0.5f * (zki - zci), oi = -0.5f * (zkr - zcr);
+            float wr = cosF[k], wi = -sinF[k];
+            out[outOff + 2 * k] = er + or * wr - oi * wi;
+            out[outOff + 2 * k + 1] = ei + or * wi + oi * wr;
+        }
+    }
+
+    /**
+     * Inverse transform of N/2+1 complex bins into N real samples.
+     * The output is not scaled (it is N times the original signal).
+     * @param in Complex interleaved input (2 * (N/2+1) values)
+     * @param inOff Offset (in floats) of the first input bin
+     * @param out Real output
+     * @param outOff Offset of the first output sample
+     */
+    public void inverse(float[] in, int inOff, float[] out, int outOff) {
+        checkPrecision(FftPlan.Precision.FLOAT);
+        Object[] ws = workspace.get();
+        float[] zr = (float[]) ws[0], zi = (float[]) ws[1];
+
+        // --------  odd length, rebuild the hermitian spectrum  ------------
+        if (cosF == null) {
+            for (int k = 0; k <= size / 2; k++) {
+                zr[k] = in[inOff + 2 * k];
+                zi[k] = in[inOff + 2 * k + 1];
+                if (k > 0) {
+                    zr[size - k] = zr[k];
+                    zi[size - k] = -zi[k];
+                }
+            }
+            inversePlan.executeSplit(zr, zi);
+            for (int k = 0; k < size; k++)
+                out[outOff + k] = zr[k];
+            return;
+        }
+
+        // -----------  Z[k] = E[k] + j O[k], O = (Xk - Xc) W^-k  -----------
+        int half = size / 2;
+        for (int k = 0; k < half; k++) {
+            float xkr = in[inOff + 2 * k], xki = in[inOff + 2 * k + 1];
+            float xcr = in[inOff + 2 * (half - k)];
+            float xci = -in[inOff + 2 * (half - k) + 1];
+            float er = xkr + xcr, ei = xki + xci;
+            float dr = xkr - xcr, di = xki - xci;
+            float wr = cosF[k], wi = sinF[k];
+            float or = dr * wr - di * wi, oi = dr * wi + di * wr;
+            zr[k] = er - oi;
+            zi[k] = ei + or;
+        }
+        inversePlan.executeSplit(zr, zi);
+
+        // ---------------------------  unpack  ----------------------------
+        for (int k = 0; k < half; k++) {
+            out[outOff + 2 * k] = zr[k];
+            out[outOff + 2 * k + 1] = zi[k];
+        }
+    }
+
+    // ======================================================================
+    // --------------------------  helpers  ---------------------------------
+    // ======================================================================
+    /** Verify the caller matches the plan precision */
+    private void checkPrecision(FftPlan.Precision expected) {
+        if (precision != expected)
+            throw new IllegalStateException(
+                "Plan precision is " + precision + ", not " + expected);
+    }
+
+    /** Convert a table to float (null safe) */
+    private static float[] toFloat(double[] values) {
+        if (values == null)
+            return null;
+        float[] out = new float[values.length];
+        for (int ind0 = 0; ind0 < values.length; ind0++)
+            out[ind0] = (float) values[ind0];
+        return out;
+    }
+}
@@ -9,6 +9,7 @@ import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.Arrays;
 import net.kcundercover.jdsp.math.DTFT;
+import net.kcundercover.jdsp.math.FFT;
 import java.awt.Graphics2D;
 import net.kcundercover.jdsp.math.Vector;
 import net.kcundercover.jdsp.math.ComplexInterleaved;
@@ -231,22 +232,14 @@ public class Spectrogram extends Plot{
         }
 
         // ---------------------- available windows  ------------------------
-        float[] currWindow = new float[window];
-        float[] currMagn, fftOut;
+        float[] currMagn = new float[nfft];
         float valF;
         int val, colLoc;
-        String tmpStr;
         boolean isComplex = floatDataComplex;
+        float[] allMagn = windowMagnitudes(numWindows, isComplex);
         for (int winIndex = 0; winIndex < numWindows; winIndex++){
-            // -------------------  load current window  ----------------
-            System.arraycopy(floatData, winIndex * window, currWindow, 0, window);
-
             // -----------------  calculate magn spectrum  --------------
-            if (!isComplex)
-                fftOut = DTFT.discreteFourierTransform(currWindow, nfft);
-            else
-                fftOut = DTFT.discreteFourierTransformComplex(currWindow, nfft);
-            currMagn = ComplexInterleaved.magnitude(fftOut);
+            System.arraycopy(allMagn, winIndex * nfft, currMagn, 0, nfft);
             currMagn = DTFT.fftShift(currMagn);
 
             // ---------------------  update image  ---------------------
@@ -294,4 +287,57 @@ public class Spectrogram extends Plot{
         // ---------------------   draw image  ------------------------------
         g2.drawImage(bImage, marginX, marginY, null);
     }
-}
\ No newline at end of file
+
+    /**
+     * Magnitude spectrum of every window of the float data, computed with
+     * one batched FFT.  Scaling and bin order match the DTFT based loop
+     * (half amplitude, exp(+jwt) kernel, windows wrapped modulo nfft).
+     * @param numWindows Number of windows
+     * @param isComplex Whether float data is complex interleaved
+     * @return numWindows * nfft magnitudes (not shifted)
+     */
+    private float[] windowMagnitudes(int numWindows, boolean isComplex){
+        // -------------  wrap or zero pad each window to nfft  -------------
+        int stride = isComplex ? 2 : 1;
+        float[] frames = floatData;
+        int hop = window / stride;
+        if (window != nfft * stride){
+            frames = new float[numWindows * nfft * stride];
+            hop = nfft;
+            for (int winIndex = 0; winIndex < numWindows; winIndex++)
+                for (int t = 0; t < window / stride; t++)
+                    for (int c = 0; c < stride; c++)
+                        frames[(winIndex * nfft + t % nfft) * stride + c] +=
+                            floatData[winIndex * window + t * stride + c];
+        }
+
+        // -----------------  batched FFT, then magnitude  ------------------
+        float[] magn = new float[numWindows * nfft];
+        if (isComplex){
+            float[] spectra = new float[2 * numWindows * nfft];
+            FFT.fftBatch(frames, nfft, hop, numWindows, spectra, true);
+            for (int winIndex = 0; winIndex < numWindows; winIndex++)
+                for (int k = 0; k < nfft; k++){
+                    // exp(+jwt) bin k is FFT bin -k
+                    int ind = 2 * (winIndex * nfft + (nfft - k) % nfft);
+                    magn[winIndex * nfft + k] = 0.5f * (float) Math.sqrt(
+                        spectra[ind] * spectra[ind] +
+                        spectra[ind + 1] * spectra[ind + 1]);
+                }
+        }
+        else{
+            int numBins = nfft / 2 + 1;
+            float[] spectra = new float[2 * numWindows * numBins];
+            FFT.rfftBatch(frames, nfft, hop, numWindows, spectra, true);
+            for (int winIndex = 0; winIndex < numWindows; winIndex++)
+                for (int k = 0; k < nfft; k++){
+                    // input is real, upper half mirrors the lower half
+                    int ind = 2 * (winIndex * numBins + Math.min(k, nfft - k));
+                    magn[winIndex * nfft + k] = 0.5f * (float) Math.sqrt(
+                        spectra[ind] * spectra[ind] +
+                        spectra[ind + 1] * spectra[ind + 1]);
+                }
+        }
+        return magn;
+    }
+}
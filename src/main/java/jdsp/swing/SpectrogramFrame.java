@@ -224,10 +224,10 @@ public class SpectrogramFrame extends JFrame{
                 if (fr != null){
                     // try updating the data with the new position
                     floatData = fr.loadSignalRawAsFloat(
-                        slPosition.getValue() * bufferSize, bufferSize);
+                        (long) slPosition.getValue() * bufferSize, bufferSize);
 
                     // update the time offset of the spectrogram
-                    timeOffset = slPosition.getValue() * bufferSize / sampleRate;
+                    timeOffset = (long) slPosition.getValue() * bufferSize / sampleRate;
                     specgram.setSignalInfo(sampleRate, centerFrequency, timeOffset);
 
                     // update data and UI
@@ -244,7 +244,7 @@ public class SpectrogramFrame extends JFrame{
                 specgram.setNfft(nfft);
 
                 // update the time offset of the spectrogram
-                timeOffset = slPosition.getValue() * bufferSize / sampleRate;
+                timeOffset = (long) slPosition.getValue() * bufferSize / sampleRate;
                 specgram.setSignalInfo(sampleRate, centerFrequency, timeOffset);
 
                 // update data and UI
@@ -259,7 +259,7 @@ public class SpectrogramFrame extends JFrame{
                 specgram.setWindow(window);
 
                 // update the time offset of the spectrogram
-                timeOffset = slPosition.getValue() * bufferSize / sampleRate;
+                timeOffset = (long) slPosition.getValue() * bufferSize / sampleRate;
                 specgram.setSignalInfo(sampleRate, centerFrequency, timeOffset);
 
                 // update data and UI
@@ -290,21 +290,21 @@ public class SpectrogramFrame extends JFrame{
                         // do something with the file
                         try {
                             fi = new FileInfo(filepath);
-                            int numSamples=1;
+                            long numSamples=1;
                             if (ext4.equals("32cf")) {
-                                numSamples = (int) (fi.getFileSize() / 8);
+                                numSamples = fi.getNumSamples(8);
                                 fileType = 3;
                             }
                             else if (ext4.equals("16ct")) {
-                                numSamples = (int)(fi.getFileSize() / 4);
+                                numSamples = fi.getNumSamples(4);
                                 fileType = 1;
                             }
                             else if (ext3.equals("16t")) {
-                                numSamples = (int)(fi.getFileSize() / 2);
+                                numSamples = fi.getNumSamples(2);
                                 fileType=0;
                             }
                             else if (ext3.equals("32f")) {
-                                numSamples = (int)(fi.getFileSize() / 4);
+                                numSamples = fi.getNumSamples(4);
                                 fileType = 2;
                             }
                             else if (ext3.equals("wav")) {
@@ -339,13 +339,13 @@ public class SpectrogramFrame extends JFrame{
 
                                 fr = new FileReader(filepath, fileType, false);
 
-                                floatData = fr.loadSignalRawAsFloat(slPosition.getValue() * bufferSize, bufferSize);
+                                floatData = fr.loadSignalRawAsFloat((long) slPosition.getValue() * bufferSize, bufferSize);
                                 setFloatDataComplex();
 
                                 specgram.setFloatData(floatData);
                             }
 
-                            timeOffset = slPosition.getValue() * bufferSize / sampleRate;
+                            timeOffset = (long) slPosition.getValue() * bufferSize / sampleRate;
                             specgram.setSignalInfo(sampleRate, centerFrequency, timeOffset);
 
                             specgram.repaint();
@@ -0,0 +1,22 @@
+import java.util.Random;
+
+/**
+ * Test signals shared by the test classes
+ * @author Keith Chow
+ */
+public final class Signals {
+    private Signals() {}
+
+    /**
+     * White gaussian noise
+     * @param r Source of the values
+     * @param numValues Number of values
+     * @return Random values with unit variance
+     */
+    public static double[] randomSignal(Random r, int numValues){
+        double[] out = new double[numValues];
+        for (int ind0 = 0; ind0 < numValues; ind0++)
+            out[ind0] = r.nextGaussian();
+        return out;
+    }
+}
@@ -0,0 +1,98 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.Random;
+import org.junit.Test;
+import net.kcundercover.jdsp.filters.Channelizer;
+import net.kcundercover.jdsp.math.Convolve;
+
+/**
+ * Tests the polyphase channelizer against mixing and filtering per channel
+ * @author Keith Chow
+ */
+public class TestChannelizer {
+    double threshD = 1e-9;
+
+    /** Mix channel k to baseband, filter, keep every D-th sample */
+    private static double[] reference(double[] x, int chan, int numChannels,
+            int decim, double[] prototype, int numFrames){
+        int len = x.length / 2;
+        double[] mixed = new double[x.length];
+        for (int n = 0; n < len; n++){
+            double w = -2 * Math.PI * ((long) chan * n % numChannels) / numChannels;
+            double c = Math.cos(w), s = Math.sin(w);
+            mixed[2 * n] = x[2 * n] * c - x[2 * n + 1] * s;
+            mixed[2 * n + 1] = x[2 * n] * s + x[2 * n + 1] * c;
+        }
+        double[] full = Convolve.convolveRealComplex(prototype, mixed);
+        double[] out = new double[2 * numFrames];
+        for (int m = 0; m < numFrames; m++){
+            out[2 * m] = full[2 * m * decim];
+            out[2 * m + 1] = full[2 * m * decim + 1];
+        }
+        return out;
+    }
+
+    @Test
+    /** Critically and 2x oversampled banks match per channel filtering */
+    public void testReference(){
+        Random r = new Random(5);
+        for (int numChannels : new int[] {8, 6}){
+            for (boolean oversampled : new boolean[] {false, true}){
+                double[] prototype = Channelizer.designPrototype(numChannels);
+                Channelizer ch = new Channelizer(numChannels, oversampled, prototype);
+                int decim = ch.getDecimation();
+                assertEquals(oversampled ? numChannels / 2 : numChannels, decim);
+
+                double[] x = new double[2 * 1500];
+                for (int ind0 = 0; ind0 < x.length; ind0++)
+                    x[ind0] = r.nextGaussian();
+                int numFrames = (1500 + decim - 1) / decim;
+                assertEquals(numFrames, ch.getNumFrames(1500));
+
+                // random block sizes
+                double[] frames = new double[2 * numFrames * numChannels];
+                int pos = 0, count = 0;
+                while (pos < 1500){
+                    int len = Math.min(1500 - pos, r.nextInt(200));
+                    count += ch.process(x, 2 * pos, frames,
+                        2 * count * numChannels, len);
+                    pos += len;
+                }
+                assertEquals(numFrames, count);
+
+                for (int chan = 0; chan < numChannels; chan++){
+                    double[] expected = reference(x, chan, numChannels, decim,
+                        prototype, numFrames);
+                    for (int m = 0; m < numFrames; m++){
+                        int ind = 2 * (m * numChannels + chan);
+                        assertEquals(expected[2 * m], frames[ind], threshD);
+                        assertEquals(expected[2 * m + 1], frames[ind + 1], threshD);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    /** A tone at a channel center only shows up in that channel */
+    public void testTone(){
+        int numChannels = 16;
+        double[] x = new double[2 * 16 * 200];
+        for (int n = 0; n < x.length / 2; n++){
+            x[2 * n] = Math.cos(2 * Math.PI * 3.0 / numChannels * n);
+            x[2 * n + 1] = Math.sin(2 * Math.PI * 3.0 / numChannels * n);
+        }
+        double[][] out = new Channelizer(numChannels, false).process(x);
+        assertEquals(numChannels, out.length);
+        for (int chan = 0; chan < numChannels; chan++){
+            // skip the prototype transient
+            for (int m = 20; m < out[chan].length / 2; m++){
+                double mag = Math.hypot(out[chan][2 * m], out[chan][2 * m + 1]);
+                if (chan == 3)
+                    assertEquals(1.0, mag, 1e-2);
+                else
+                    assertTrue("channel " + chan + " leaks " + mag, mag < 1e-2);
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertFalse;
+import java.util.Random;
+import org.junit.Test;
+import net.kcundercover.jdsp.filters.CicDecimator;
+import net.kcundercover.jdsp.filters.CicInterpolator;
+import net.kcundercover.jdsp.filters.FilterDesign;
+
+/**
+ * Tests the CIC decimator, interpolator and compensation filter
+ * @author Keith Chow
+ */
+public class TestCic {
+    /** Impulse response (boxcar of RM)^N, exact in longs */
+    private static long[] response(int order, int ratio, int diffDelay){
+        long[] h = {1};
+        for (int stage = 0; stage < order; stage++){
+            long[] next = new long[h.length + ratio * diffDelay - 1];
+            for (int ind0 = 0; ind0 < h.length; ind0++)
+                for (int ind1 = 0; ind1 < ratio * diffDelay; ind1++)
+                    next[ind0 + ind1] += h[ind0];
+            h = next;
+        }
+        return h;
+    }
+
+    /** Full rate filter output at index n (zero before the start) */
+    private static long filterAt(long[] x, long[] h, int n){
+        long sum = 0;
+        for (int k = 0; k < h.length && k <= n; k++)
+            if (n - k < x.length)
+                sum += h[k] * x[n - k];
+        return sum;
+    }
+
+    private static short[] randomShorts(Random r, int numValues){
+        short[] out = new short[numValues];
+        for (int ind0 = 0; ind0 < numValues; ind0++)
+            out[ind0] = (short) r.nextInt(1 << 16);
+        return out;
+    }
+
+    @Test
+    /** Decimator matches filter then downsample, int and long registers */
+    public void testDecimator(){
+        Random r = new Random(6);
+        int[][] configs = {{2, 16, 1}, {3, 10, 2}, {5, 100, 1}};
+        for (int[] cfg : configs){
+            CicDecimator cic = new CicDecimator(cfg[0], cfg[1], cfg[2]);
+            assertEquals(cfg[0] == 5, cic.isLongAccumulator());
+            long[] h = response(cfg[0], cfg[1], cfg[2]);
+
+            short[] x = randomShorts(r, 2 * 4000);
+            long[] xLong = new long[4000];
+            for (int ind0 = 0; ind0 < 4000; ind0++)
+                xLong[ind0] = x[2 * ind0 + 1];
+
+            // complex stream in random blocks, check the imaginary part
+            long[] out = new long[2 * (4000 / cfg[1])];
+            int pos = 0, count = 0;
+            while (pos < 4000){
+                int len = Math.min(4000 - pos, r.nextInt(500));
+                count += cic.processComplexInterleaved(x, 2 * pos, out, 2 * count, len);
+                pos += len;
+            }
+            assertEquals(4000 / cfg[1], count);
+            for (int m = 0; m < count; m++)
+                assertEquals(filterAt(xLong, h, m * cfg[1] + cfg[1] - 1), out[2 * m + 1]);
+        }
+    }
+
+    @Test
+    /** Integrators wrap around on a long full scale input */
+    public void testOverflow(){
+        CicDecimator cic = new CicDecimator(4, 8, 1);
+        assertFalse(cic.isLongAccumulator());
+        assertEquals(28, cic.getOutputBits());
+        short[] x = new short[1 << 20];
+        java.util.Arrays.fill(x, Short.MIN_VALUE);
+        long[] out = new long[x.length / 8];
+        assertEquals(out.length, cic.process(x, 0, out, 0, x.length));
+        for (int m = 10; m < out.length; m++)
+            assertEquals(Short.MIN_VALUE * 4096L, out[m]);
+
+        double[] scaled = new CicDecimator(5, 100, 1).process(x);
+        for (int m = 10; m < scaled.length; m++)
+            assertEquals(Short.MIN_VALUE, scaled[m], 1e-9);
+    }
+
+    @Test
+    /** Interpolator matches zero stuffing then filtering */
+    public void testInterpolator(){
+        Random r = new Random(7);
+        int[][] configs = {{3, 4, 1}, {4, 5, 2}, {6, 20, 1}};
+        for (int[] cfg : configs){
+            CicInterpolator cic = new CicInterpolator(cfg[0], cfg[1], cfg[2]);
+            long[] h = response(cfg[0], cfg[1], cfg[2]);
+            short[] x = randomShorts(r, 300);
+            long[] up = new long[300 * cfg[1]];
+            for (int ind0 = 0; ind0 < 300; ind0++)
+                up[ind0 * cfg[1]] = x[ind0];
+
+            long[] out = new long[up.length];
+            assertEquals(150 * cfg[1], cic.process(x, 0, out, 0, 150));
+            cic.process(x, 150, out, 150 * cfg[1], 150);
+            for (int n = 0; n < up.length; n++)
+                assertEquals(filterAt(up, h, n), out[n]);
+        }
+    }
+
+    @Test
+    /** Compensator flattens the CIC droop over the passband */
+    public void testCompensator(){
+        int order = 4, ratio = 32, diffDelay = 1;
+        double cutoff = 0.2;
+        double[] comp = FilterDesign.designCicCompensator(63, order, ratio,
+            diffDelay, cutoff);
+        double maxErr = 0, maxDroop = 0;
+        // passband short of the window transition
+        for (double f = 0; f <= cutoff - 0.04; f += 0.005){
+            double droop = f == 0 ? 1 : Math.pow(Math.abs(Math.sin(Math.PI * f) /
+                (ratio * Math.sin(Math.PI * f / ratio))), order);
+            double re = 0, im = 0;
+            for (int ind0 = 0; ind0 < comp.length; ind0++){
+                re += comp[ind0] * Math.cos(2 * Math.PI * f * ind0);
+                im -= comp[ind0] * Math.sin(2 * Math.PI * f * ind0);
+            }
+            double gain = Math.hypot(re, im);
+            maxDroop = Math.max(maxDroop, Math.abs(20 * Math.log10(droop)));
+            maxErr = Math.max(maxErr, Math.abs(20 * Math.log10(gain * droop)));
+        }
+        assertTrue("droop " + maxDroop, maxDroop > 1);
+        assertTrue("compensated error " + maxErr, maxErr < 0.05);
+    }
+}
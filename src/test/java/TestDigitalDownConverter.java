@@ -0,0 +1,79 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertArrayEquals;
+import java.util.Random;
+import org.junit.Test;
+import net.kcundercover.jdsp.filters.DigitalDownConverter;
+import net.kcundercover.jdsp.filters.FilterDesign;
+import net.kcundercover.jdsp.filters.StreamingFirD;
+import net.kcundercover.jdsp.math.ComplexInterleaved;
+
+/**
+ * Tests the fused digital downconverter
+ * @author Keith Chow
+ */
+public class TestDigitalDownConverter {
+    double threshD = 1e-9;
+
+    /** Shifted copy, filtered, every decim-th sample kept */
+    private static double[] reference(double[] shifted, double[] taps, int decim){
+        int len = shifted.length / 2;
+        double[] re = new double[len], im = new double[len];
+        for (int ind0 = 0; ind0 < len; ind0++){
+            re[ind0] = shifted[2 * ind0];
+            im[ind0] = shifted[2 * ind0 + 1];
+        }
+        new StreamingFirD(taps, 0).process(re, 0, re, 0, len);
+        new StreamingFirD(taps, 0).process(im, 0, im, 0, len);
+        double[] out = new double[2 * ((len + decim - 1) / decim)];
+        for (int ind0 = 0; ind0 < out.length / 2; ind0++){
+            out[2 * ind0] = re[decim * ind0];
+            out[2 * ind0 + 1] = im[decim * ind0];
+        }
+        return out;
+    }
+
+    @Test
+    /** Complex input in odd pieces matches translate, filter, decimate */
+    public void testComplexMatchesThreePass(){
+        Random r = new Random(20);
+        double[] x = Signals.randomSignal(r, 2 * 10007);
+        double[] taps = FilterDesign.firWindowDesignD(61, "HAMMING", 0.2);
+        double[] expected = reference(
+            ComplexInterleaved.freqTranslateComplex(x, -0.3), taps, 5);
+
+        DigitalDownConverter ddc = new DigitalDownConverter(-0.3, 5, taps);
+        double[] out = new double[expected.length];
+        int count = 0;
+        for (int pos = 0; pos < x.length / 2; pos += 999){
+            int num = Math.min(999, x.length / 2 - pos);
+            count += ddc.processComplexInterleaved(x, 2 * pos, out, 2 * count, num);
+        }
+        assertEquals(expected.length / 2, count);
+        assertArrayEquals(expected, out, threshD);
+    }
+
+    @Test
+    /** Real input matches the real translate, tone lands at DC */
+    public void testRealInput(){
+        Random r = new Random(21);
+        double[] x = Signals.randomSignal(r, 9000);
+        double[] taps = FilterDesign.firWindowDesignD(33, "HANN", 0.25);
+        double[] expected = reference(
+            ComplexInterleaved.freqTranslateReal(x, 0.45), taps, 4);
+        double[] out = new DigitalDownConverter(0.45, 4, taps).processReal(x);
+        assertArrayEquals(expected, out, threshD);
+
+        // ---------------  complex tone at 0.4 shifted to DC  ---------------
+        int len = 20000;
+        double[] tone = new double[2 * len];
+        for (int ind0 = 0; ind0 < len; ind0++){
+            tone[2 * ind0] = Math.cos(Math.PI * 0.4 * ind0);
+            tone[2 * ind0 + 1] = Math.sin(Math.PI * 0.4 * ind0);
+        }
+        double[] base = new DigitalDownConverter(-0.4, 8).processComplexInterleaved(tone);
+        for (int ind0 = base.length / 2; ind0 < base.length; ind0 += 2){
+            assertEquals(1.0, base[ind0], 1e-6);
+            assertEquals(0.0, base[ind0 + 1], 1e-6);
+        }
+    }
+}
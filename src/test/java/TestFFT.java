@@ -0,0 +1,190 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import java.util.Random;
+import org.junit.Test;
+import net.kcundercover.jdsp.math.DTFT;
+import net.kcundercover.jdsp.math.FFT;
+import net.kcundercover.jdsp.math.FftPlan;
+import net.kcundercover.jdsp.math.FftPlanCache;
+
+/**
+ * Tests the FFT against a direct DFT
+ * @author Keith Chow
+ */
+public class TestFFT {
+    double threshD = 1e-9;
+    float threshF = 1e-3f;
+
+    /** Sizes covering radix-2/4, mixed radix and Bluestein kernels */
+    int[] sizes = {1, 2, 4, 8, 16, 32, 128, 6, 12, 15, 60, 100, 7, 13, 97};
+
+    /** Direct DFT of complex interleaved data */
+    private static double[] directDft(double[] x, int n, boolean inverse) {
+        double sgn = inverse ? 1.0 : -1.0;
+        double[] out = new double[2 * n];
+        for (int k = 0; k < n; k++) {
+            for (int t = 0; t < n; t++) {
+                double ang = sgn * 2 * Math.PI * ((long) k * t % n) / n;
+                out[2 * k] += x[2 * t] * Math.cos(ang) - x[2 * t + 1] * Math.sin(ang);
+                out[2 * k + 1] += x[2 * t] * Math.sin(ang) + x[2 * t + 1] * Math.cos(ang);
+            }
+        }
+        return out;
+    }
+
+    @Test
+    /** Compare the forward transform against the direct DFT */
+    public void testForwardDouble() {
+        for (int n : sizes) {
+            double[] x = Signals.randomSignal(new Random(n), 2 * n);
+            assertArrayEquals("FFT size " + n, directDft(x, n, false),
+                FFT.fft(x, n), threshD * n);
+        }
+    }
+
+    @Test
+    /** The inverse should recover the input */
+    public void testRoundTripDouble() {
+        for (int n : sizes) {
+            double[] x = Signals.randomSignal(new Random(n + 1), 2 * n);
+            assertArrayEquals("IFFT size " + n, x,
+                FFT.ifft(FFT.fft(x, n), n), threshD * n);
+        }
+    }
+
+    @Test
+    /** Real float input with zero padding */
+    public void testRealFloat() {
+        float[] x = {1f, 2f, 3f, 4f, 5f};
+        double[] xc = new double[16];
+        for (int ind0 = 0; ind0 < x.length; ind0++)
+            xc[2 * ind0] = x[ind0];
+        double[] expected = directDft(xc, 8, false);
+        float[] out = FFT.fftReal(x, 8);
+        for (int ind0 = 0; ind0 < expected.length; ind0++)
+            assertEquals(expected[ind0], out[ind0], threshF);
+    }
+
+    @Test
+    /** DTFT of a real signal keeps its half-scaled, exp(+jwt) contract */
+    public void testDtftReal() {
+        float[] x = new float[40];
+        Random r = new Random(3);
+        for (int ind0 = 0; ind0 < x.length; ind0++)
+            x[ind0] = r.nextFloat();
+        int nfft = 16;
+        float[] out = DTFT.discreteFourierTransform(x, nfft);
+        for (int freq = 0; freq <= nfft / 2; freq++) {
+            double sumReal = 0, sumImag = 0;
+            for (int t = 0; t < x.length; t++) {
+                sumReal += x[t] * Math.cos(2 * Math.PI * freq * t / nfft);
+                sumImag += x[t] * Math.sin(2 * Math.PI * freq * t / nfft);
+            }
+            assertEquals(sumReal / 2, out[2 * freq], threshF);
+            assertEquals(freq == 0 ? 0 : sumImag / 2, out[2 * freq + 1], threshF);
+        }
+    }
+
+    @Test
+    /** Float plans agree with the direct DFT */
+    public void testForwardFloat() {
+        for (int n : sizes) {
+            double[] x = Signals.randomSignal(new Random(n + 2), 2 * n);
+            float[] xf = new float[x.length];
+            for (int ind0 = 0; ind0 < x.length; ind0++)
+                xf[ind0] = (float) x[ind0];
+            double[] expected = directDft(x, n, false);
+            float[] out = FFT.fft(xf, n);
+            for (int ind0 = 0; ind0 < expected.length; ind0++)
+                assertEquals("FFT size " + n, expected[ind0], out[ind0], threshF * n);
+        }
+    }
+
+    @Test
+    /** Plans are shared per (size, direction, precision) and evicted LRU */
+    public void testPlanCache() {
+        FftPlanCache cache = new FftPlanCache(2);
+        FftPlan p1 = cache.get(64, false, FftPlan.Precision.DOUBLE);
+        assertSame(p1, cache.get(64, false, FftPlan.Precision.DOUBLE));
+        assertNotSame(p1, cache.get(64, true, FftPlan.Precision.DOUBLE));
+        cache.get(64, false, FftPlan.Precision.FLOAT);
+        assertEquals(2, cache.size());
+        assertNotSame(p1, cache.get(64, false, FftPlan.Precision.DOUBLE));
+    }
+
+    @Test
+    /** Packed real FFT matches the complex FFT and inverts (even and odd) */
+    public void testRealPacked() {
+        for (int n : new int[] {2, 8, 64, 12, 30, 26, 9, 15}) {
+            double[] x = Signals.randomSignal(new Random(n + 3), n);
+            double[] xc = new double[2 * n];
+            for (int ind0 = 0; ind0 < n; ind0++)
+                xc[2 * ind0] = x[ind0];
+            double[] full = FFT.fft(xc, n);
+            double[] half = FFT.rfft(x, n);
+            assertEquals(2 * (n / 2 + 1), half.length);
+            for (int ind0 = 0; ind0 < half.length; ind0++)
+                assertEquals("RFFT size " + n, full[ind0], half[ind0], threshD * n);
+            assertArrayEquals("IRFFT size " + n, x, FFT.irfft(half, n), threshD * n);
+        }
+    }
+
+    @Test
+    /** SIMD butterflies agree with the scalar kernel */
+    public void testVectorMatchesScalar() {
+        boolean enabled = FftPlan.isVectorEnabled();
+        try {
+            for (int n : new int[] {64, 512, 2048, 4096}) {
+                double[] x = Signals.randomSignal(new Random(n + 4), 2 * n);
+                FftPlan.setVectorEnabled(false);
+                double[] scalar = FFT.fft(x, n);
+                FftPlan.setVectorEnabled(true);
+                assertArrayEquals("FFT size " + n, scalar, FFT.fft(x, n), threshD * n);
+            }
+        }
+        finally {
+            FftPlan.setVectorEnabled(enabled);
+        }
+    }
+
+    @Test
+    /** Batched frames match per frame transforms, serial or parallel */
+    public void testBatch() {
+        int frameLen = 48, hop = 20, count = 9;
+        double[] x = Signals.randomSignal(new Random(6),
+            2 * ((count - 1) * hop + frameLen));
+        float[] xf = new float[x.length];
+        for (int ind0 = 0; ind0 < x.length; ind0++)
+            xf[ind0] = (float) x[ind0];
+
+        // ---------------------  complex frames  ---------------------------
+        float[] serial = new float[2 * frameLen * count];
+        float[] parallel = new float[serial.length];
+        FFT.fftBatch(xf, frameLen, hop, count, serial);
+        FFT.fftBatch(xf, frameLen, hop, count, parallel, true);
+        assertArrayEquals(serial, parallel, 0f);
+        for (int f = 0; f < count; f++) {
+            float[] frame = new float[2 * frameLen];
+            System.arraycopy(xf, 2 * f * hop, frame, 0, frame.length);
+            float[] expected = FFT.fft(frame, frameLen);
+            for (int ind0 = 0; ind0 < expected.length; ind0++)
+                assertEquals(expected[ind0], serial[2 * f * frameLen + ind0],
+                    threshF * frameLen);
+        }
+
+        // -----------------------  real frames  ----------------------------
+        int numBins = frameLen / 2 + 1;
+        float[] real = new float[2 * numBins * count];
+        FFT.rfftBatch(xf, frameLen, hop, count, real, true);
+        for (int f = 0; f < count; f++) {
+            float[] frame = new float[frameLen];
+            System.arraycopy(xf, f * hop, frame, 0, frameLen);
+            float[] expected = FFT.rfft(frame, frameLen);
+            for (int ind0 = 0; ind0 < expected.length; ind0++)
+                assertEquals(expected[ind0], real[2 * f * numBins + ind0],
+                    threshF * frameLen);
+        }
+    }
+}
@@ -1,7 +1,15 @@
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assume.assumeTrue;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import org.junit.Test;
 import net.kcundercover.jdsp.io.FileReader;
+import net.kcundercover.jdsp.io.MappedSignalReader;
 
 public class TestFileReader{
     @Test
@@ -20,7 +28,116 @@ public class TestFileReader{
         FileReader.bytesToShort(bytes, sList, false);
         assertArrayEquals("Byte to Short (big endian) failed",
             expectedLittle, sList);
+
+        // -----------  low bytes >= 0x80 are not sign extended  ------------
+        byte[] high = {(byte) 0x12, (byte) 0x80, (byte) 0xFF, (byte) 0xFF};
+        short[] sHigh = new short[2];
+        FileReader.bytesToShort(high, sHigh, true);
+        assertArrayEquals(new short[] {0x1280, -1}, sHigh);
+        FileReader.bytesToShort(high, sHigh, false);
+        assertArrayEquals(new short[] {(short) 0x8012, -1}, sHigh);
+    }
+
+    @Test
+    public void testBlockReads() throws IOException {
+        // ------------------  complex int16, big endian  -------------------
+        short[] values = new short[2 * 1000];
+        for (int ind0 = 0; ind0 < values.length; ind0++)
+            values[ind0] = (short) (ind0 * 97 - 32000);
+        ByteBuffer bytes = ByteBuffer.allocate(2 * values.length)
+            .order(ByteOrder.BIG_ENDIAN);
+        bytes.asShortBuffer().put(values);
+        Path path = Files.createTempFile("blocks", ".16ct");
+        path.toFile().deleteOnExit();
+        Files.write(path, bytes.array());
+
+        try (FileReader fr = new FileReader(path.toString(), 1, true)) {
+            fr.setBlockSize(60);
+            assertEquals(1000, fr.getNumSamples());
+
+            // ---------  many small blocks match the written values  -------
+            short[] out = new short[2 * 300];
+            assertEquals(300, fr.readAsShort(100, out, 0, 300));
+            for (int ind0 = 0; ind0 < out.length; ind0++)
+                assertEquals(values[200 + ind0], out[ind0]);
+
+            float[] fOut = fr.loadSignalRawAsFloat(990, 50);
+            assertEquals(20, fOut.length);
+            for (int ind0 = 0; ind0 < fOut.length; ind0++)
+                assertEquals(values[1980 + ind0] / 32767.0f, fOut[ind0], 1e-7f);
+        }
     }
 
+    @Test
+    public void testBeyond2GB() throws IOException {
+        // sparse file of 6 GB with samples written past 2^31 bytes
+        long numSamples = 3L << 28;
+        long offset = (1L << 29) + 12345;
+        float[] values = {1.5f, -2.25f, 3.0f, 4.0f};
+        Path path = Files.createTempFile("large", ".32cf");
+        path.toFile().deleteOnExit();
+        // only sparse on some filesystems, skip unless the full size fits
+        assumeTrue("Not enough free space for the large file",
+            Files.getFileStore(path).getUsableSpace() > 8 * numSamples);
+        try (RandomAccessFile raf = new RandomAccessFile(path.toFile(), "rw")) {
+            raf.setLength(8 * numSamples);
+            ByteBuffer bytes = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+            bytes.asFloatBuffer().put(values);
+            raf.seek(8 * offset);
+            raf.write(bytes.array());
+        }
+
+        try (FileReader fr = new FileReader(path.toString(), 3, false)) {
+            assertEquals(numSamples, fr.getNumSamples());
+            assertArrayEquals(values, fr.loadSignalRawAsFloat(offset, 2), 0f);
+        }
+        try (MappedSignalReader mr = new MappedSignalReader(path.toString(), 3, false)) {
+            assertArrayEquals(values, mr.readAsFloat(offset, 2), 0f);
+            assertEquals(-2.25f, mr.floatView(offset, 2).get(1), 0f);
+        }
+        Files.delete(path);
+    }
 
+    @Test
+    public void testConcurrentReads() throws Exception {
+        // float32 ramp shared by many threads through one reader
+        int numSamples = 1 << 16;
+        ByteBuffer bytes = ByteBuffer.allocate(4 * numSamples)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        for (int ind0 = 0; ind0 < numSamples; ind0++)
+            bytes.putFloat(ind0);
+        Path path = Files.createTempFile("shared", ".32f");
+        path.toFile().deleteOnExit();
+        Files.write(path, bytes.array());
+
+        try (FileReader fr = new FileReader(path.toString(), 2, false)) {
+            fr.setBlockSize(1000);
+            Thread[] threads = new Thread[8];
+            int[] errors = new int[threads.length];
+            for (int ind0 = 0; ind0 < threads.length; ind0++){
+                int id = ind0;
+                threads[ind0] = new Thread(() -> {
+                    java.util.Random r = new java.util.Random(id);
+                    float[] out = new float[777];
+                    for (int iter = 0; iter < 300; iter++){
+                        int offset = r.nextInt(numSamples - out.length);
+                        fr.readAsFloat(offset, out, 0, out.length);
+                        for (int ind1 = 0; ind1 < out.length; ind1++)
+                            if (out[ind1] != offset + ind1)
+                                errors[id]++;
+                    }
+                });
+                threads[ind0].start();
+            }
+            for (Thread t : threads)
+                t.join();
+            assertArrayEquals(new int[threads.length], errors);
+
+            // closed readers release the file, later reads come back empty
+            float[] out = new float[10];
+            assertEquals(10, fr.readAsFloat(5, out, 0, 10));
+            fr.close();
+            assertEquals(0, fr.readAsFloat(5, out, 0, 10));
+        }
+    }
 }
@@ -1,11 +1,22 @@
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import java.util.Arrays;
 import java.util.Random;
 import org.junit.Test;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import net.kcundercover.jdsp.math.Convolve;
+import net.kcundercover.jdsp.math.ConvolveCalibration;
+import net.kcundercover.jdsp.math.Convolver;
 import net.kcundercover.jdsp.filters.FilterD;
 import net.kcundercover.jdsp.filters.FilterF;
+import net.kcundercover.jdsp.filters.FilterDesign;
+import net.kcundercover.jdsp.filters.FilterObject;
+import net.kcundercover.jdsp.filters.StreamingFirD;
+import net.kcundercover.jdsp.filters.StreamingFirF;
 
 /**
  * Tests the convolution function
@@ -62,6 +73,210 @@ public class TestFilters{
         assertArrayEquals(d3, outD, threshD);
     }
 
+    @Test
+    /** FFT convolution matches the direct form in both block modes */
+    public void testFftConvolve(){
+        Random r = new Random(7);
+        double[] x = new double[1000];
+        double[] h = new double[37];
+        for (int ind0 = 0; ind0 < x.length; ind0++)
+            x[ind0] = r.nextGaussian();
+        for (int ind0 = 0; ind0 < h.length; ind0++)
+            h[ind0] = r.nextGaussian();
+        double[] expected = Convolve.convolve(x, h);
+
+        for (Convolve.BlockMode mode : Convolve.BlockMode.values()){
+            for (int nfft : new int[] {0, 37, 64, 100, 2048}){
+                assertArrayEquals(mode + " " + nfft, expected,
+                    Convolve.fftConvolve(h, x, mode, nfft), 1e-9);
+            }
+        }
+        assertArrayEquals(d3, Convolve.fftConvolve(d1, d2), 1e-9);
+        assertArrayEquals(expected4, Convolve.fftConvolve(expected3, s1), 1e-4f);
+    }
+
+    @Test
+    /** Complex FFT convolution matches convolveRealComplex */
+    public void testFftConvolveComplex(){
+        Random r = new Random(8);
+        double[] x = new double[2 * 500];
+        double[] h = new double[21];
+        for (int ind0 = 0; ind0 < x.length; ind0++)
+            x[ind0] = r.nextGaussian();
+        for (int ind0 = 0; ind0 < h.length; ind0++)
+            h[ind0] = r.nextGaussian();
+        double[] expected = Convolve.convolveRealComplex(h, x);
+
+        for (Convolve.BlockMode mode : Convolve.BlockMode.values()){
+            assertArrayEquals(mode.toString(), expected,
+                Convolve.fftConvolveRealComplex(h, x, mode, 0), 1e-9);
+            assertArrayEquals(mode.toString(), expected,
+                Convolve.fftConvolveRealComplex(h, x, mode, 48), 1e-9);
+        }
+    }
+
+    @Test
+    /** Every strategy of convolveAuto matches the direct form */
+    public void testConvolveAuto() throws java.io.IOException{
+        Random r = new Random(9);
+        double[] x = new double[20000];
+        double[] h = new double[65];
+        for (int ind0 = 0; ind0 < x.length; ind0++)
+            x[ind0] = r.nextGaussian();
+        for (int ind0 = 0; ind0 < h.length; ind0++)
+            h[ind0] = r.nextGaussian();
+        double[] expected = Convolve.convolve(x, h);
+        double[] xc = new double[2 * x.length];
+        for (int ind0 = 0; ind0 < x.length; ind0++)
+            xc[2 * ind0] = x[ind0];
+        double[] expectedC = Convolve.convolveRealComplex(h, xc);
+
+        ConvolveCalibration[] tables = {
+            new ConvolveCalibration(new int[] {1}, new int[] {100}, 1),
+            new ConvolveCalibration(new int[] {1}, new int[] {8}, Integer.MAX_VALUE),
+            new ConvolveCalibration(new int[] {1}, new int[] {8}, 1000)};
+        Convolve.Strategy[] strategies = {Convolve.Strategy.DIRECT,
+            Convolve.Strategy.FFT_OVERLAP_ADD, Convolve.Strategy.PARALLEL_BLOCK};
+        try{
+            for (int ind0 = 0; ind0 < tables.length; ind0++){
+                ConvolveCalibration.setDefault(tables[ind0]);
+                assertEquals(strategies[ind0],
+                    Convolve.selectStrategy(x.length, h.length));
+                assertArrayEquals(expected, Convolve.convolveAuto(x, h), 1e-9);
+                assertArrayEquals(expectedC,
+                    Convolve.convolveRealComplexAuto(h, xc), 1e-9);
+            }
+
+            // calibration survives a save / load
+            Path tmp = Files.createTempFile("calibration", ".properties");
+            tables[2].save(tmp);
+            ConvolveCalibration loaded = ConvolveCalibration.load(tmp);
+            Files.delete(tmp);
+            assertEquals(tables[2].toString(), loaded.toString());
+
+            // each kind has its own crossover, nothing measured by default
+            ConvolveCalibration.setDefault(new ConvolveCalibration(new int[] {1},
+                new int[] {8}, new int[] {100}, new int[] {8}, Integer.MAX_VALUE));
+            assertEquals(Convolve.Strategy.DIRECT, Convolve.selectStrategy(
+                ConvolveCalibration.Kind.FLOAT, x.length, h.length));
+            assertEquals(Convolve.Strategy.FFT_OVERLAP_ADD, Convolve.selectStrategy(
+                ConvolveCalibration.Kind.COMPLEX, x.length, h.length));
+            ConvolveCalibration.setDefault(null);
+            assertSame(ConvolveCalibration.FIXED, ConvolveCalibration.getDefault());
+        }
+        finally{
+            ConvolveCalibration.setDefault(null);
+        }
+    }
+
+    @Test
+    /** Vector kernels agree with the scalar loops for every overload */
+    public void testConvolveVector(){
+        Random r = new Random(10);
+        boolean enabled = Convolve.isVectorEnabled();
+        try{
+            for (int[] lens : new int[][] {{1, 1}, {5, 3}, {100, 7}, {7, 100},
+                    {333, 64}, {1000, 1}}){
+                double[] a = new double[lens[0]];
+                double[] b = new double[lens[1]];
+                double[] bc = new double[2 * lens[1]];
+                float[] af = new float[lens[0]];
+                float[] bf = new float[lens[1]];
+                int[] ai = new int[lens[0]];
+                int[] bi = new int[lens[1]];
+                for (int ind0 = 0; ind0 < a.length; ind0++){
+                    a[ind0] = r.nextGaussian();
+                    af[ind0] = (float) a[ind0];
+                    ai[ind0] = r.nextInt();
+                }
+                for (int ind0 = 0; ind0 < b.length; ind0++){
+                    b[ind0] = r.nextGaussian();
+                    bf[ind0] = (float) b[ind0];
+                    bi[ind0] = r.nextInt();
+                    bc[2 * ind0] = r.nextGaussian();
+                    bc[2 * ind0 + 1] = r.nextGaussian();
+                }
+
+                Convolve.setVectorEnabled(false);
+                double[] scalarD = Convolve.convolve(a, b);
+                float[] scalarF = Convolve.convolve(af, bf);
+                int[] scalarI = Convolve.convolve(ai, bi);
+                long[] scalarL = Convolve.convolveLong(ai, bi);
+                double[] scalarC = Convolve.convolveRealComplex(a, bc);
+                Convolve.setVectorEnabled(true);
+                assertArrayEquals(scalarD, Convolve.convolve(a, b), 1e-9);
+                assertArrayEquals(scalarF, Convolve.convolve(af, bf), 1e-4f);
+                assertArrayEquals(scalarI, Convolve.convolve(ai, bi));
+                assertArrayEquals(scalarL, Convolve.convolveLong(ai, bi));
+                assertArrayEquals(scalarC, Convolve.convolveRealComplex(a, bc), 1e-9);
+
+                // int wraps around, long is the widened result
+                for (int ind0 = 0; ind0 < scalarI.length; ind0++){
+                    long sum = 0;
+                    for (int ind1 = 0; ind1 < ai.length; ind1++)
+                        if (ind0 - ind1 >= 0 && ind0 - ind1 < bi.length)
+                            sum += (long) ai[ind1] * bi[ind0 - ind1];
+                    assertEquals(sum, scalarL[ind0]);
+                    assertEquals((int) sum, scalarI[ind0]);
+                }
+            }
+        }
+        finally{
+            Convolve.setVectorEnabled(enabled);
+        }
+    }
+
+    @Test
+    /** One Convolver serves many calls, on its own pool or an executor */
+    public void testConvolver(){
+        Random r = new Random(11);
+        float[] af = new float[50000];
+        float[] bf = new float[33];
+        double[] ad = new double[20000];
+        double[] bc = new double[2 * 17];
+        for (int ind0 = 0; ind0 < af.length; ind0++)
+            af[ind0] = r.nextFloat();
+        for (int ind0 = 0; ind0 < bf.length; ind0++)
+            bf[ind0] = r.nextFloat();
+        for (int ind0 = 0; ind0 < ad.length; ind0++)
+            ad[ind0] = r.nextGaussian();
+        for (int ind0 = 0; ind0 < bc.length; ind0++)
+            bc[ind0] = r.nextGaussian();
+        double[] bd = Arrays.copyOf(ad, 40);
+
+        java.util.concurrent.ExecutorService service =
+            java.util.concurrent.Executors.newFixedThreadPool(3);
+        Convolver pooled = new Convolver(4);
+        Convolver onService = new Convolver(service, 4096);
+        try{
+            for (Convolver c : new Convolver[] {pooled, onService}){
+                for (int ind0 = 0; ind0 < 3; ind0++){
+                    assertArrayEquals(Convolve.convolve(af, bf),
+                        c.convolve(af, bf), 1e-4f);
+                    assertArrayEquals(Convolve.convolve(ad, bd),
+                        c.convolve(bd, ad), 1e-9);
+                    assertArrayEquals(Convolve.convolveRealComplex(ad, bc),
+                        c.convolveRealComplex(ad, bc), 1e-9);
+                }
+            }
+        }
+        finally{
+            pooled.close();
+            onService.close();
+        }
+        assertEquals(false, service.isShutdown());
+        service.shutdown();
+
+        boolean thrown = false;
+        try{
+            pooled.convolve(af, bf);
+        }
+        catch (IllegalStateException ise){
+            thrown = true;
+        }
+        assertEquals(true, thrown);
+    }
+
     @Test
     /**
      * Test running filter in blocks.
@@ -86,6 +301,261 @@ public class TestFilters{
         assertArrayEquals(out, out2, 0.1);
     }
 
+    @Test
+    /** Streaming FIR in random sized blocks matches one convolution */
+    public void testStreamingFir(){
+        Random r = new Random(12);
+        double[] taps = new double[45];
+        double[] x = new double[3000];
+        for (int ind0 = 0; ind0 < taps.length; ind0++)
+            taps[ind0] = r.nextGaussian();
+        for (int ind0 = 0; ind0 < x.length; ind0++)
+            x[ind0] = r.nextGaussian();
+        double[] expected = Arrays.copyOf(Convolve.convolve(x, taps), x.length);
+        float[] tapsF = new float[taps.length];
+        float[] xF = new float[x.length];
+        for (int ind0 = 0; ind0 < taps.length; ind0++)
+            tapsF[ind0] = (float) taps[ind0];
+        for (int ind0 = 0; ind0 < x.length; ind0++)
+            xF[ind0] = (float) x[ind0];
+
+        for (int nfft : new int[] {0, 64, 256}){
+            StreamingFirD fir = new StreamingFirD(taps, nfft);
+            StreamingFirF firF = new StreamingFirF(tapsF, nfft);
+            double[] out = x.clone();
+            float[] outF = new float[x.length];
+            int pos = 0;
+            while (pos < x.length){
+                int len = Math.min(x.length - pos, r.nextInt(300));
+                fir.process(out, pos, out, pos, len);   // in place
+                firF.process(xF, pos, outF, pos, len);
+                pos += len;
+            }
+            assertArrayEquals("nfft " + nfft, expected, out, 1e-9);
+            for (int ind0 = 0; ind0 < x.length; ind0++)
+                assertEquals(expected[ind0], outF[ind0], 1e-3);
+        }
+    }
+
+    @Test
+    /** Long FIR designs pick overlap-save from the crossover table */
+    public void testFftBlocksAuto(){
+        double[] taps = FilterDesign.firWindowDesignD(1001, "HANN", 0.1);
+        assertFalse(new StreamingFirD(taps).isFrequencyDomain());
+        assertTrue(new StreamingFirD(taps,
+            StreamingFirD.fftSizeFor(taps.length)).isFrequencyDomain());
+
+        double[] x = new double[20000];
+        x[3] = 1;
+        FilterD fd = new FilterD(1);
+        fd.setFilter(taps, new double[0]);
+        assertTrue(fd.isFftBlocks());
+        double[] fast = fd.applyFilter(x);
+        fd.setFftBlocks(false);
+        assertFalse(fd.isFftBlocks());
+        double[] direct = fd.applyFilter(x);
+        assertArrayEquals(direct, fast, 1e-12);
+        assertEquals(taps[10], direct[13], 0);
+
+        // short filters stay in the direct form
+        fd.setFilter(FilterDesign.firWindowDesignD(31, "HANN", 0.1),
+            new double[0]);
+        assertFalse(fd.isFftBlocks());
+        FilterF ff = new FilterF(1);
+        ff.setFilter(FilterDesign.firWindowDesignF(1001, "HANN", 0.1f),
+            new float[0]);
+        assertTrue(ff.isFftBlocks());
+    }
+
+    @Test
+    /** Edits of the caller's taps do not reach the filter */
+    public void testNumeratorCopied(){
+        double[] taps = {1, 2, 1};
+        FilterObject fo = new FilterObject();
+        fo.setNumerator(taps);
+        taps[0] = 5;
+        double[] x = {1, 0, 0, 0};
+        double[] out = new double[x.length + 2];
+        fo.filterReal(x, 0, out, 0, x.length);
+        assertArrayEquals(fo.filterReal(x), out, 0);
+        assertEquals(1, out[0], 0);
+        assertEquals(Convolve.Symmetry.SYMMETRIC, fo.getSymmetry());
+    }
+
+    @Test
+    /** Complex stream in random blocks matches one full convolution */
+    public void testComplexStream(){
+        Random r = new Random(17);
+        double[] taps = FilterDesign.firWindowDesignD(45, "HAMMING", 0.2);
+        int len = 5000;
+        double[] x = new double[2 * len];
+        for (int ind0 = 0; ind0 < x.length; ind0++)
+            x[ind0] = r.nextGaussian();
+        double[] full = Convolve.convolveRealComplex(taps, x);
+
+        FilterObject fo = new FilterObject();
+        fo.setNumerator(taps);
+        for (int pass = 0; pass < 2; pass++){
+            double[] out = x.clone();
+            double[] re = new double[len];
+            double[] im = new double[len];
+            int pos = 0;
+            boolean split = false;
+            while (pos < len){
+                int num = Math.min(len - pos, r.nextInt(3000));
+                if (split){
+                    for (int ind0 = 0; ind0 < num; ind0++){
+                        re[pos + ind0] = x[2 * (pos + ind0)];
+                        im[pos + ind0] = x[2 * (pos + ind0) + 1];
+                    }
+                    fo.streamComplex(re, im, pos, re, im, pos, num);
+                    for (int ind0 = 0; ind0 < num; ind0++){
+                        out[2 * (pos + ind0)] = re[pos + ind0];
+                        out[2 * (pos + ind0) + 1] = im[pos + ind0];
+                    }
+                }
+                else
+                    fo.streamComplexInterleaved(out, 2 * pos, out, 2 * pos, num);
+                split = !split;
+                pos += num;
+            }
+            assertArrayEquals(Arrays.copyOf(full, 2 * len), out, 1e-9);
+            fo.resetStream();
+        }
+    }
+
+    @Test
+    /** Caller supplied buffers: no allocation per call after warm up */
+    public void testNoAllocation(){
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean)
+            java.lang.management.ManagementFactory.getThreadMXBean();
+        org.junit.Assume.assumeTrue(bean.isThreadAllocatedMemorySupported());
+        bean.setThreadAllocatedMemoryEnabled(true);
+        long id = Thread.currentThread().threadId();
+
+        FilterD fd = new FilterD(1);
+        fd.designFilter(31, 0, "HANN", 0.1);
+        FilterF ff = new FilterF(1);
+        ff.designFilter(31, 0, "HANN", 0.1f);
+        fd.setFftBlocks(false);
+        ff.setFftBlocks(false);
+        // overlap-save over several full FFT blocks per call
+        FilterD fdFft = new FilterD(1);
+        fdFft.designFilter(101, 0, "HANN", 0.1);
+        fdFft.setFftBlocks(true);
+        FilterF ffFft = new FilterF(1);
+        ffFft.designFilter(101, 0, "HANN", 0.1f);
+        ffFft.setFftBlocks(true);
+        double[] longD = new double[4 * StreamingFirD.fftSizeFor(101)];
+        float[] longF = new float[longD.length];
+        FilterObject fo = new FilterObject();
+        fo.setNumerator(FilterDesign.firWindowDesignD(31, "HANN", 0.1));
+        double[] srcD = new double[2 * 512];
+        double[] dstD = new double[2 * (512 + 30)];
+        float[] srcF = new float[512];
+        float[] dstF = new float[512];
+        Random r = new Random(13);
+        for (int ind0 = 0; ind0 < srcD.length; ind0++)
+            srcD[ind0] = r.nextGaussian();
+
+        // buffer overloads match the allocating methods
+        double[] real = Arrays.copyOf(srcD, 512);
+        assertEquals(512 + 30, fo.filterReal(real, 0, dstD, 0, 512));
+        assertArrayEquals(fo.filterReal(real), Arrays.copyOf(dstD, 542), 1e-9);
+        assertEquals(512 + 30, fo.filterComplexInterleaved(srcD, 0, dstD, 0, 512));
+        assertArrayEquals(fo.filterComplexInterleaved(srcD), dstD, 1e-9);
+
+        Runnable calls = () -> {
+            fd.applyFilter(srcD, 0, dstD, 0, 512);
+            ff.applyFilter(srcF, 0, dstF, 0, 512);
+            fo.filterReal(srcD, 0, dstD, 0, 512);
+            fo.filterComplexInterleaved(srcD, 0, dstD, 0, 512);
+            fo.streamComplexInterleaved(srcD, 0, dstD, 0, 512);
+            fdFft.applyFilter(longD, 0, longD, 0, longD.length);
+            ffFft.applyFilter(longF, 0, longF, 0, longF.length);
+        };
+        for (int ind0 = 0; ind0 < 20000; ind0++)
+            calls.run();
+
+        int numCalls = 1000;
+        long before = bean.getThreadAllocatedBytes(id);
+        for (int ind0 = 0; ind0 < numCalls; ind0++)
+            calls.run();
+        long allocated = bean.getThreadAllocatedBytes(id) - before;
+        assertEquals("bytes per call", 0, allocated / numCalls);
+    }
+
+    @Test
+    /** Linear phase taps are detected exactly, designs are symmetric */
+    public void testSymmetryDetection(){
+        assertEquals(Convolve.Symmetry.SYMMETRIC,
+            Convolve.symmetryOf(new double[]{1, 2, 3, 2, 1}));
+        assertEquals(Convolve.Symmetry.SYMMETRIC,
+            Convolve.symmetryOf(new float[]{1, 2, 2, 1}));
+        assertEquals(Convolve.Symmetry.ANTISYMMETRIC,
+            Convolve.symmetryOf(new double[]{1, 2, 0, -2, -1}));
+        assertEquals(Convolve.Symmetry.ANTISYMMETRIC,
+            Convolve.symmetryOf(new float[]{1, -1}));
+        assertEquals(Convolve.Symmetry.NONE,
+            Convolve.symmetryOf(new double[]{1, 2, 1, -2, -1}));
+        assertEquals(Convolve.Symmetry.NONE,
+            Convolve.symmetryOf(new double[]{1}));
+        for (int numTap = 2; numTap < 130; numTap += 7){
+            assertEquals(Convolve.Symmetry.SYMMETRIC, Convolve.symmetryOf(
+                FilterDesign.firWindowDesignD(numTap, "HAMMING", 0.2)));
+            assertEquals(Convolve.Symmetry.SYMMETRIC, Convolve.symmetryOf(
+                FilterDesign.firWindowDesignF(numTap, "HANN", 0.2f)));
+        }
+
+        FilterObject fo = new FilterObject();
+        fo.setNumerator(FilterDesign.firWindowDesignD(33, "HAMMING", 0.3));
+        assertEquals(Convolve.Symmetry.SYMMETRIC, fo.getSymmetry());
+        assertEquals(Convolve.Symmetry.SYMMETRIC,
+            new StreamingFirD(FilterDesign.designMovingAverageD(8), 0).getSymmetry());
+    }
+
+    @Test
+    /** Folded kernels match the plain kernels (lengths, strides, tails) */
+    public void testSymmetricKernels(){
+        Random r = new Random(18);
+        for (int numTap = 2; numTap <= 21; numTap++){
+            double[] sym = new double[numTap], anti = new double[numTap];
+            float[] symF = new float[numTap], antiF = new float[numTap];
+            for (int ind0 = 0; ind0 < numTap / 2; ind0++){
+                sym[ind0] = sym[numTap - 1 - ind0] = r.nextGaussian();
+                anti[ind0] = r.nextGaussian();
+                anti[numTap - 1 - ind0] = -anti[ind0];
+            }
+            if (numTap % 2 == 1)
+                sym[numTap / 2] = r.nextGaussian();
+            for (int ind0 = 0; ind0 < numTap; ind0++){
+                symF[ind0] = (float) sym[ind0];
+                antiF[ind0] = (float) anti[ind0];
+            }
+            for (int stride = 1; stride <= 2; stride++){
+                int count = 37 + numTap;
+                double[] sig = new double[3 + count + stride * (numTap - 1)];
+                float[] sigF = new float[sig.length];
+                for (int ind0 = 0; ind0 < sig.length; ind0++)
+                    sigF[ind0] = (float) (sig[ind0] = r.nextGaussian());
+                for (double[] taps : new double[][]{sym, anti}){
+                    Convolve.Symmetry s = Convolve.symmetryOf(taps);
+                    double[] want = new double[count], got = new double[count];
+                    Convolve.convolveValid(sig, 3, stride, taps, want, 0, count);
+                    Convolve.convolveValid(sig, 3, stride, taps, s, got, 0, count);
+                    assertArrayEquals(want, got, 1e-12);
+                }
+                for (float[] taps : new float[][]{symF, antiF}){
+                    Convolve.Symmetry s = Convolve.symmetryOf(taps);
+                    float[] want = new float[count], got = new float[count];
+                    Convolve.convolveValid(sigF, 3, stride, taps, want, 0, count);
+                    Convolve.convolveValid(sigF, 3, stride, taps, s, got, 0, count);
+                    assertArrayEquals(want, got, 1e-4f);
+                }
+            }
+        }
+    }
+
     @Test
     public void testThroughputFloat(){
         // ------------------------  setup  ---------------------------------
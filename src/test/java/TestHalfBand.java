@@ -0,0 +1,95 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertArrayEquals;
+import java.util.Random;
+import org.junit.Test;
+import net.kcundercover.jdsp.filters.FilterDesign;
+import net.kcundercover.jdsp.filters.HalfBandCascade;
+import net.kcundercover.jdsp.filters.HalfBandDecimator;
+import net.kcundercover.jdsp.filters.HalfBandInterpolator;
+import net.kcundercover.jdsp.filters.Resampler;
+
+/**
+ * Tests the half-band decimator, interpolator and cascade
+ * @author Keith Chow
+ */
+public class TestHalfBand {
+    double threshD = 1e-9;
+
+    @Test
+    /** Every other tap is exactly zero, unity DC gain */
+    public void testDesign(){
+        double[] h = FilterDesign.designHalfBand(23);
+        double sum = 0;
+        for (int ind0 = 0; ind0 < h.length; ind0++){
+            sum += h[ind0];
+            if (ind0 != 11 && (ind0 & 1) == 1)
+                assertEquals(0.0, h[ind0], 0);
+            assertEquals(h[ind0], h[22 - ind0], 0);
+        }
+        assertEquals(0.5, h[11], 0);
+        assertEquals(1.0, sum, 1e-12);
+    }
+
+    @Test
+    /** Decimator matches the generic polyphase resampler */
+    public void testDecimator(){
+        Random r = new Random(8);
+        double[] taps = FilterDesign.designHalfBand(31);
+        double[] x = Signals.randomSignal(r, 2 * 9001);
+        double[] expected = new Resampler(1, 2, taps).processComplexInterleaved(x);
+
+        HalfBandDecimator hb = new HalfBandDecimator(taps);
+        double[] out = new double[expected.length];
+        int pos = 0, count = 0;
+        while (pos < 9001){
+            int len = Math.min(9001 - pos, r.nextInt(5000));
+            count += hb.processComplexInterleaved(x, 2 * pos, out, 2 * count, len);
+            pos += len;
+        }
+        assertEquals(expected.length / 2, count);
+        assertArrayEquals(expected, out, threshD);
+
+        double[] real = java.util.Arrays.copyOf(x, 777);
+        assertArrayEquals(new Resampler(1, 2, taps).process(real),
+            new HalfBandDecimator(taps).process(real), threshD);
+    }
+
+    @Test
+    /** Interpolator matches the generic polyphase resampler */
+    public void testInterpolator(){
+        Random r = new Random(9);
+        double[] taps = FilterDesign.designHalfBand(19);
+        double[] x = Signals.randomSignal(r, 5000);
+        double[] expected = new Resampler(2, 1, taps).process(x);
+        HalfBandInterpolator hb = new HalfBandInterpolator(taps);
+        double[] out = new double[2 * x.length];
+        hb.process(x, 0, out, 0, 1234);
+        hb.process(x, 1234, out, 2 * 1234, x.length - 1234);
+        assertArrayEquals(expected, out, threshD);
+
+        double[] complex = new HalfBandInterpolator(taps).processComplexInterleaved(
+            Signals.randomSignal(new Random(9), 2 * 100));
+        assertEquals(400, complex.length);
+    }
+
+    @Test
+    /** Cascade equals the stages run one after the other */
+    public void testCascade(){
+        int[] taps = HalfBandCascade.stageTaps(4, 47);
+        assertArrayEquals(new int[] {7, 11, 23, 47}, taps);
+
+        Random r = new Random(10);
+        double[] x = Signals.randomSignal(r, 20000);
+        double[] expected = x;
+        for (int numTap : taps)
+            expected = new HalfBandDecimator(numTap).process(expected);
+
+        HalfBandCascade cascade = new HalfBandCascade(4, 47);
+        assertEquals(16, cascade.getDecimation());
+        double[] out = new double[cascade.getNumOutputs(x.length)];
+        int count = cascade.process(x, 0, out, 0, 7777);
+        count += cascade.process(x, 7777, out, count, x.length - 7777);
+        assertEquals(expected.length, count);
+        assertArrayEquals(expected, out, threshD);
+    }
+}
@@ -0,0 +1,164 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.Random;
+import org.junit.Test;
+import net.kcundercover.jdsp.filters.FilterD;
+import net.kcundercover.jdsp.filters.FilterDesign;
+import net.kcundercover.jdsp.filters.FilterF;
+import net.kcundercover.jdsp.filters.IirFilterD;
+import net.kcundercover.jdsp.filters.IirFilterF;
+
+/**
+ * Tests the IIR designs and the direct form II transposed filters
+ * @author Keith Chow
+ */
+public class TestIirFilters {
+    double threshD = 1e-9;
+
+    /** Magnitude (dB) of a cascade of sections at f cycles per sample */
+    private static double gainDb(double[][] sos, double f) {
+        double w = 2 * Math.PI * f;
+        double mag = 1.0;
+        for (double[] s : sos) {
+            double br = s[0] + s[1] * Math.cos(w) + s[2] * Math.cos(2 * w);
+            double bi = -s[1] * Math.sin(w) - s[2] * Math.sin(2 * w);
+            double ar = s[3] + s[4] * Math.cos(w) + s[5] * Math.cos(2 * w);
+            double ai = -s[4] * Math.sin(w) - s[5] * Math.sin(2 * w);
+            mag *= Math.hypot(br, bi) / Math.hypot(ar, ai);
+        }
+        return 20 * Math.log10(mag);
+    }
+
+    /** Poles of every section lie inside the unit circle */
+    private static void assertStable(double[][] sos) {
+        for (double[] s : sos) {
+            // |a2| < 1 and |a1| < 1 + a2 (stability triangle)
+            assertTrue(Math.abs(s[5]) < 1);
+            assertTrue(Math.abs(s[4]) < 1 + s[5]);
+        }
+    }
+
+    @Test
+    /** Butterworth matches the textbook 4th order lowpass */
+    public void testButterworth() {
+        double[][] sos = FilterDesign.designButterworthSos(4, 0.1, false);
+        double[][] tf = FilterDesign.sosToTransferFunction(sos);
+        double[] b = {0.00482434, 0.01929737, 0.02894606, 0.01929737, 0.00482434};
+        double[] a = {1., -2.36951301, 2.31398841, -1.05466541, 0.18737949};
+        assertArrayEquals(b, tf[0], 1e-7);
+        assertArrayEquals(a, tf[1], 1e-7);
+        assertEquals(-3.0103, gainDb(sos, 0.1), 1e-3);
+
+        double[][] high = FilterDesign.designButterworthSos(5, 0.2, true);
+        assertStable(high);
+        assertEquals(0.0, gainDb(high, 0.5), 1e-9);
+        assertEquals(-3.0103, gainDb(high, 0.2), 1e-3);
+    }
+
+    @Test
+    /** Chebyshev ripple stays within the specification */
+    public void testChebyshev() {
+        for (int order : new int[] {3, 6}) {
+            double[][] sos = FilterDesign.designChebyshevSos(order, 0.5, 0.15, false);
+            assertStable(sos);
+            for (double f = 0; f <= 0.15; f += 0.005)
+                assertTrue(gainDb(sos, f) > -0.5 - 1e-6 && gainDb(sos, f) < 1e-6);
+            assertEquals(-0.5, gainDb(sos, 0.15), 1e-6);
+        }
+    }
+
+    @Test
+    /** Elliptic meets passband ripple and stopband attenuation */
+    public void testElliptic() {
+        for (int order : new int[] {4, 5, 8}) {
+            double[][] sos = FilterDesign.designEllipticSos(order, 1, 60, 0.1, false);
+            assertStable(sos);
+            double maxPass = -1e9, minPass = 1e9;
+            for (double f = 0; f <= 0.1; f += 0.001) {
+                maxPass = Math.max(maxPass, gainDb(sos, f));
+                minPass = Math.min(minPass, gainDb(sos, f));
+            }
+            assertEquals(0.0, maxPass, 1e-3);
+            assertEquals(-1.0, minPass, 1e-3);
+
+            // equiripple stopband: no lobe above -60 dB past the transition
+            double maxStop = -1e9;
+            for (double f = 0.25; f <= 0.5; f += 0.001)
+                maxStop = Math.max(maxStop, gainDb(sos, f));
+            assertTrue("order " + order + " stopband " + maxStop, maxStop < -60 + 1e-3);
+        }
+        double[][] high = FilterDesign.designEllipticSos(6, 0.5, 50, 0.3, true);
+        assertStable(high);
+        assertEquals(-0.5, gainDb(high, 0.5), 1e-6);
+    }
+
+    @Test
+    /** Cascade, single section and block processing agree */
+    public void testStreaming() {
+        double[][] sos = FilterDesign.designEllipticSos(6, 1, 50, 0.12, false);
+        double[][] tf = FilterDesign.sosToTransferFunction(sos);
+        Random r = new Random(1);
+        double[] x = new double[2000];
+        for (int ind0 = 0; ind0 < x.length; ind0++)
+            x[ind0] = r.nextGaussian();
+
+        // direct recursion of the expanded transfer function
+        double[] expected = new double[x.length];
+        for (int n = 0; n < x.length; n++) {
+            double acc = 0;
+            for (int k = 0; k < tf[0].length && k <= n; k++)
+                acc += tf[0][k] * x[n - k];
+            for (int k = 1; k < tf[1].length && k <= n; k++)
+                acc -= tf[1][k] * expected[n - k];
+            expected[n] = acc;
+        }
+
+        IirFilterD cascade = new IirFilterD(sos);
+        IirFilterD single = new IirFilterD(tf[0], tf[1]);
+        double[] outCascade = new double[x.length];
+        double[] outSingle = x.clone();
+        int pos = 0;
+        while (pos < x.length) {
+            int len = Math.min(x.length - pos, r.nextInt(100));
+            cascade.process(x, pos, outCascade, pos, len);
+            single.process(outSingle, pos, outSingle, pos, len);
+            pos += len;
+        }
+        assertArrayEquals(expected, outCascade, 1e-8);
+        assertArrayEquals(expected, outSingle, 1e-8);
+
+        float[] xf = new float[x.length];
+        float[] outF = new float[x.length];
+        for (int ind0 = 0; ind0 < x.length; ind0++)
+            xf[ind0] = (float) x[ind0];
+        new IirFilterF(sos).process(xf, 0, outF, 0, xf.length);
+        for (int ind0 = 0; ind0 < x.length; ind0++)
+            assertEquals(expected[ind0], outF[ind0], 1e-4);
+    }
+
+    @Test
+    /** FilterD and FilterF run IIR designs with block continuity */
+    public void testFilterIir() {
+        FilterD fd = new FilterD(1);
+        fd.designFilter(1, 9, "ELLIPTIC", 0.2);
+        FilterD whole = new FilterD(1);
+        whole.designFilter(1, 9, "ELLIPTIC", 0.2);
+        FilterF ff = new FilterF(1);
+        ff.designFilter(1, 9, "ELLIPTIC", 0.2f);
+
+        double[] x = new double[500];
+        float[] xf = new float[500];
+        x[0] = 1;
+        xf[0] = 1;
+        double[] expected = whole.applyFilter(x);
+        double[] part1 = fd.applyFilter(java.util.Arrays.copyOfRange(x, 0, 123));
+        double[] part2 = fd.applyFilter(java.util.Arrays.copyOfRange(x, 123, 500));
+        float[] outF = ff.applyFilter(xf);
+        for (int ind0 = 0; ind0 < 500; ind0++) {
+            double got = ind0 < 123 ? part1[ind0] : part2[ind0 - 123];
+            assertEquals(expected[ind0], got, threshD);
+            assertEquals(expected[ind0], outF[ind0], 1e-5);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertArrayEquals;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Test;
+import net.kcundercover.jdsp.io.MappedSignalReader;
+
+/**
+ * Tests the memory mapped signal reader
+ * @author Keith Chow
+ */
+public class TestMappedSignalReader {
+    private static Path writeFile(ByteBuffer bytes) throws IOException {
+        Path path = Files.createTempFile("mapped", ".bin");
+        path.toFile().deleteOnExit();
+        Files.write(path, bytes.array());
+        return path;
+    }
+
+    @Test
+    /** Complex int16 (big endian) views and float conversion */
+    public void testComplexInt16() throws IOException {
+        short[] values = new short[2 * 100];
+        for (int ind0 = 0; ind0 < values.length; ind0++)
+            values[ind0] = (short) (ind0 * 331 - 30000);
+        ByteBuffer bytes = ByteBuffer.allocate(2 * values.length + 1)
+            .order(ByteOrder.BIG_ENDIAN);
+        bytes.asShortBuffer().put(values);
+        Path path = writeFile(bytes);
+
+        try (MappedSignalReader mr = new MappedSignalReader(path.toString(), 1, true)){
+            assertEquals(100, mr.getNumSamples());
+            ShortBuffer view = mr.shortView(10, 5);
+            assertEquals(10, view.remaining());
+            for (int ind0 = 0; ind0 < 10; ind0++)
+                assertEquals(values[20 + ind0], view.get(ind0));
+
+            // -------------  clipped at the end of the file  ---------------
+            float[] out = new float[2 * 20];
+            assertEquals(10, mr.readAsFloat(90, out, 0, 20));
+            for (int ind0 = 0; ind0 < 20; ind0++)
+                assertEquals(values[180 + ind0] / 32767.0f, out[ind0], 1e-7f);
+        }
+    }
+
+    @Test
+    /** Float32 (little endian) views match the written values */
+    public void testFloat32() throws IOException {
+        float[] values = new float[1000];
+        for (int ind0 = 0; ind0 < values.length; ind0++)
+            values[ind0] = (float) Math.sin(0.01 * ind0);
+        ByteBuffer bytes = ByteBuffer.allocate(4 * values.length)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        bytes.asFloatBuffer().put(values);
+        Path path = writeFile(bytes);
+
+        try (MappedSignalReader mr = new MappedSignalReader(path.toString(), 2, false)){
+            FloatBuffer view = mr.floatView(500, 3);
+            assertEquals(values[501], view.get(1), 0);
+            float[] out = mr.readAsFloat(0, 2000);
+            assertArrayEquals(values, out, 0);
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    /** Views outside the file are rejected */
+    public void testOutside() throws IOException {
+        Path path = writeFile(ByteBuffer.allocate(64));
+        try (MappedSignalReader mr = new MappedSignalReader(path.toString(), 0, false)){
+            mr.shortView(30, 4);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertArrayEquals;
+import java.util.Random;
+import org.junit.Test;
+import net.kcundercover.jdsp.filters.FilterDesign;
+import net.kcundercover.jdsp.filters.MovingAverage;
+import net.kcundercover.jdsp.filters.StreamingFirD;
+import net.kcundercover.jdsp.math.Convolve;
+
+/**
+ * Tests the running sum moving average
+ * @author Keith Chow
+ */
+public class TestMovingAverage {
+    double threshD = 1e-9;
+
+    @Test
+    /** Cascade in pieces matches the FIR of the convolved boxcars */
+    public void testMatchesFir(){
+        Random r = new Random(19);
+        double[] x = Signals.randomSignal(r, 3000);
+        double[] box = FilterDesign.designMovingAverageD(13);
+        double[] taps = Convolve.convolve(Convolve.convolve(box, box), box);
+        double[] expected = new double[x.length];
+        new StreamingFirD(taps, 0).process(x, 0, expected, 0, x.length);
+
+        MovingAverage ma = new MovingAverage(13, 3);
+        double[] out = new double[x.length];
+        for (int pos = 0; pos < x.length; pos += 257)
+            ma.process(x, pos, out, pos, Math.min(257, x.length - pos));
+        assertArrayEquals(expected, out, threshD);
+        assertEquals(18.0, ma.getDelay(), 0);
+    }
+
+    @Test
+    /** Integrator is N times the average, complex matches real */
+    public void testIntegratorComplex(){
+        Random r = new Random(20);
+        double[] x = Signals.randomSignal(r, 2 * 500);
+        double[] re = new double[500], im = new double[500];
+        for (int ind0 = 0; ind0 < 500; ind0++){
+            re[ind0] = x[2 * ind0];
+            im[ind0] = x[2 * ind0 + 1];
+        }
+        double[] avgRe = new MovingAverage(10, 2).process(re);
+        double[] avgIm = new MovingAverage(10, 2).process(im);
+        double[] sum = new MovingAverage(10, 2, false).processComplexInterleaved(x);
+        for (int ind0 = 0; ind0 < 500; ind0++){
+            assertEquals(100 * avgRe[ind0], sum[2 * ind0], threshD);
+            assertEquals(100 * avgIm[ind0], sum[2 * ind0 + 1], threshD);
+        }
+    }
+
+    @Test
+    /** Long windows on a large offset do not drift */
+    public void testNoDrift(){
+        Random r = new Random(21);
+        int n = 10000;
+        MovingAverage ma = new MovingAverage(n);
+        double[] x = new double[10 * n + 123];
+        for (int ind0 = 0; ind0 < x.length; ind0++)
+            x[ind0] = 1e6 + r.nextGaussian();
+        double[] out = ma.process(x);
+
+        double mean = 0;
+        for (int ind0 = x.length - n; ind0 < x.length; ind0++)
+            mean += x[ind0];
+        assertEquals(mean / n, out[x.length - 1], 1e-6);
+    }
+}
@@ -0,0 +1,96 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Test;
+import net.kcundercover.jdsp.io.FileReader;
+import net.kcundercover.jdsp.io.PrefetchingBlockReader;
+import net.kcundercover.jdsp.io.SignalBlockReader;
+
+/**
+ * Tests the read ahead block reader
+ * @author Keith Chow
+ */
+public class TestPrefetchingBlockReader {
+    /** Float32 little endian file holding 0, 1, 2, ... */
+    private static String rampFile(int numSamples) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(4 * numSamples)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        for (int ind0 = 0; ind0 < numSamples; ind0++)
+            bytes.putFloat(ind0);
+        Path path = Files.createTempFile("prefetch", ".32f");
+        path.toFile().deleteOnExit();
+        Files.write(path, bytes.array());
+        return path.toString();
+    }
+
+    @Test
+    /** Slow consumer sees every block intact, in order */
+    public void testSequence() throws Exception {
+        try (FileReader fr = new FileReader(rampFile(10000), 2, false)) {
+            fr.setBlockSize(256);
+            try (PrefetchingBlockReader pr = new PrefetchingBlockReader(fr, 300,
+                    250, SignalBlockReader.Format.DOUBLE, 2)){
+                assertEquals(40, pr.estimateSize());
+                int numBlocks = 0;
+                SignalBlockReader.Block block;
+                while ((block = pr.next()) != null){
+                    double[] data = block.getDoubles();
+                    if (numBlocks % 7 == 0)
+                        Thread.sleep(2);
+                    for (int ind0 = 0; ind0 < block.getNumSamples(); ind0++)
+                        assertEquals(250.0 * numBlocks + ind0, data[ind0], 0);
+                    numBlocks++;
+                }
+                assertEquals(40, numBlocks);
+                assertTrue(pr.awaitTermination(5000));
+            }
+        }
+    }
+
+    @Test
+    /** Closing part way stops the reader thread */
+    public void testCancel() throws Exception {
+        try (FileReader fr = new FileReader(rampFile(100000), 2, false)) {
+            PrefetchingBlockReader pr = new PrefetchingBlockReader(fr, 100, 100,
+                SignalBlockReader.Format.FLOAT);
+            assertEquals(0.0f, pr.next().getFloats()[0], 0);
+            assertEquals(100.0f, pr.next().getFloats()[0], 0);
+            pr.close();
+            assertNull(pr.next());
+            assertTrue(pr.awaitTermination(5000));
+            assertEquals(0, pr.stream().count());
+        }
+    }
+
+    @Test(timeout = 10000)
+    /** A failure of the reader thread, even an Error, reaches the consumer */
+    public void testFailure() throws Exception {
+        AssertionError failure = new AssertionError("read failed");
+        FileReader fr = new FileReader(rampFile(1000), 2, false){
+            @Override
+            public int readAsFloat(long sampleOffset, float[] dst, int dstOff,
+                    int numSamples) {
+                if (sampleOffset >= 500)
+                    throw failure;
+                return super.readAsFloat(sampleOffset, dst, dstOff, numSamples);
+            }
+        };
+        try (fr; PrefetchingBlockReader pr = new PrefetchingBlockReader(fr,
+                100, 100, SignalBlockReader.Format.FLOAT)){
+            for (int ind0 = 0; ind0 < 5; ind0++)
+                assertEquals(100, pr.next().getNumSamples());
+            pr.next();
+            fail("Expecting the failure of the reader thread");
+        }
+        catch (IllegalStateException ise) {
+            assertSame(failure, ise.getCause());
+        }
+    }
+}
@@ -0,0 +1,93 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertArrayEquals;
+import java.util.Random;
+import org.junit.Test;
+import net.kcundercover.jdsp.filters.Resampler;
+import net.kcundercover.jdsp.math.Convolve;
+
+/**
+ * Tests the polyphase resampler against upsample, filter and downsample
+ * @author Keith Chow
+ */
+public class TestResampler {
+    double threshD = 1e-9;
+
+    /** Zero stuff by L, filter at the high rate, keep every M-th sample */
+    private static double[] reference(double[] x, int interp, int decim,
+            double[] prototype, int numOut){
+        double[] up = new double[x.length * interp];
+        for (int ind0 = 0; ind0 < x.length; ind0++)
+            up[ind0 * interp] = interp * x[ind0];
+        double[] full = Convolve.convolve(up, prototype);
+        double[] out = new double[numOut];
+        for (int ind0 = 0; ind0 < numOut; ind0++)
+            out[ind0] = full[ind0 * decim];
+        return out;
+    }
+
+    @Test
+    /** Polyphase output in random blocks matches the full rate reference */
+    public void testReference(){
+        Random r = new Random(3);
+        int[][] ratios = {{1, 5}, {3, 2}, {2, 7}, {4, 1}, {1, 1}};
+        for (int[] ratio : ratios){
+            double[] prototype = Resampler.designPrototype(ratio[0], ratio[1]);
+            Resampler rs = new Resampler(ratio[0], ratio[1], prototype);
+            double[] x = Signals.randomSignal(r, 3000);
+            int numOut = (x.length * ratio[0] + ratio[1] - 1) / ratio[1];
+            assertEquals(numOut, rs.getNumOutputs(x.length));
+            double[] expected = reference(x, ratio[0], ratio[1], prototype, numOut);
+
+            double[] out = new double[numOut];
+            int pos = 0, count = 0;
+            while (pos < x.length){
+                int len = Math.min(x.length - pos, r.nextInt(700));
+                count += rs.process(x, pos, out, count, len);
+                pos += len;
+            }
+            assertEquals(numOut, count);
+            assertArrayEquals(expected, out, threshD);
+        }
+    }
+
+    @Test
+    /** Complex interleaved resampling filters both parts independently */
+    public void testComplex(){
+        Random r = new Random(4);
+        double[] x = Signals.randomSignal(r, 2 * 2000);
+        double[] re = new double[2000];
+        double[] im = new double[2000];
+        for (int ind0 = 0; ind0 < 2000; ind0++){
+            re[ind0] = x[2 * ind0];
+            im[ind0] = x[2 * ind0 + 1];
+        }
+        double[] out = new Resampler(3, 7).processComplexInterleaved(x);
+        double[] outRe = new Resampler(3, 7).process(re);
+        double[] outIm = new Resampler(3, 7).process(im);
+        assertEquals(2 * outRe.length, out.length);
+        for (int ind0 = 0; ind0 < outRe.length; ind0++){
+            assertEquals(outRe[ind0], out[2 * ind0], threshD);
+            assertEquals(outIm[ind0], out[2 * ind0 + 1], threshD);
+        }
+    }
+
+    @Test
+    /** A tone in the passband keeps its level, 50 to 1 decimation */
+    public void testDecimate(){
+        Resampler rs = new Resampler(2, 100);
+        assertEquals(50, rs.getDecimation());
+        assertEquals(1, rs.getInterpolation());
+
+        // tone at 0.1 of the output rate, in place
+        double[] x = new double[50 * 400];
+        for (int ind0 = 0; ind0 < x.length; ind0++)
+            x[ind0] = Math.cos(2 * Math.PI * 0.1 / 50 * ind0);
+        int count = rs.process(x, 0, x, 0, x.length);
+        assertEquals(400, count);
+        assertEquals(Resampler.DEFAULT_TAPS_PER_PHASE * 50, rs.getTapsPerPhase());
+        double delay = (rs.getTapsPerPhase() - 1) / 2.0;
+        for (int ind0 = 100; ind0 < count; ind0++)
+            assertEquals(Math.cos(2 * Math.PI * 0.1 / 50 * (50 * ind0 - delay)),
+                x[ind0], 1e-2);
+    }
+}
@@ -0,0 +1,101 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.channels.FileChannel;
+import org.junit.Test;
+import net.kcundercover.jdsp.io.FileReader;
+import net.kcundercover.jdsp.io.SignalBlockReader;
+
+/**
+ * Tests the block iterator over capture files
+ * @author Keith Chow
+ */
+public class TestSignalBlockReader {
+    /** Complex int16 little endian file of numSamples samples */
+    private static short[] values;
+
+    /** Path of the last file written by complexFile */
+    private static Path path;
+
+    private static FileReader complexFile(int numSamples) throws IOException {
+        values = new short[2 * numSamples];
+        for (int ind0 = 0; ind0 < values.length; ind0++)
+            values[ind0] = (short) (ind0 * 13 - 9000);
+        ByteBuffer bytes = ByteBuffer.allocate(2 * values.length)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        bytes.asShortBuffer().put(values);
+        path = Files.createTempFile("blocks", ".16ct");
+        path.toFile().deleteOnExit();
+        Files.write(path, bytes.array());
+        return new FileReader(path.toString(), 1, false);
+    }
+
+    @Test
+    /** Overlapping blocks match the file, last block zero padded */
+    public void testOverlap() throws IOException {
+        try (FileReader fr = complexFile(1000)) {
+            SignalBlockReader br = new SignalBlockReader(fr, 100, 60,
+                SignalBlockReader.Format.FLOAT);
+            assertEquals(17, br.estimateSize());
+            int numBlocks = 0;
+            SignalBlockReader.Block block;
+            while ((block = br.next()) != null){
+                long offset = block.getOffset();
+                assertEquals(60L * numBlocks, offset);
+                assertEquals(Math.min(100, 1000 - offset), block.getNumSamples());
+                float[] data = block.getFloats();
+                for (int ind0 = 0; ind0 < data.length; ind0++){
+                    long ind = 2 * offset + ind0;
+                    float expected = ind < values.length ? values[(int) ind] / 32767.0f : 0;
+                    assertEquals(expected, data[ind0], 1e-7f);
+                }
+                numBlocks++;
+            }
+            assertEquals(17, numBlocks);
+            assertEquals(0, br.estimateSize());
+        }
+    }
+
+    @Test
+    /** Skipping hop, raw and double formats, ring reuse, stream */
+    public void testFormats() throws IOException {
+        try (FileReader fr = complexFile(500)) {
+            SignalBlockReader br = new SignalBlockReader(fr, 40, 90,
+                SignalBlockReader.Format.SHORT, 2);
+            SignalBlockReader.Block first = br.next();
+            br.next();
+            SignalBlockReader.Block third = br.next();
+            assertSame(first, third);
+            assertEquals(180, third.getOffset());
+            for (int ind0 = 0; ind0 < 80; ind0++)
+                assertEquals(values[360 + ind0], third.getShorts()[ind0]);
+            assertNull(third.getFloats());
+
+            SignalBlockReader bd = new SignalBlockReader(fr, 64, 32,
+                SignalBlockReader.Format.DOUBLE);
+            assertEquals(16, bd.stream().filter(b ->
+                b.getDoubles()[1] == values[2 * (int) b.getOffset() + 1] / 32767.0f).count());
+        }
+    }
+
+    @Test(expected = UncheckedIOException.class)
+    /** Samples missing before the end are an error, not zero padding */
+    public void testShortRead() throws IOException {
+        try (FileReader fr = complexFile(1000)) {
+            SignalBlockReader br = new SignalBlockReader(fr, 100, 100,
+                SignalBlockReader.Format.FLOAT);
+            assertEquals(100, br.next().getNumSamples());
+            try (FileChannel fc = FileChannel.open(path, StandardOpenOption.WRITE)){
+                fc.truncate(4 * 450);
+            }
+            while (br.next() != null);
+        }
+    }
+}